@@ -0,0 +1,47 @@
+package com.ivan.utils.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the same arguments as JMH's own
+ * launcher, but writes the results as JSON to <code>jmh-result.json</code>
+ * unless <code>-rf</code> or <code>-rff</code> say otherwise, so that runs
+ * against different releases of the library can be compared with any JSON
+ * diff tool or JMH visualizer.
+ */
+public final class Benchmarks {
+    private Benchmarks() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions cmd;
+        try {
+            cmd = new CommandLineOptions(args);
+        } catch (final CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (cmd.shouldHelp()) {
+            cmd.showHelp();
+            return;
+        }
+        if (cmd.shouldList()) {
+            new Runner(cmd).list();
+            return;
+        }
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,57 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.lang.CircularBuffer;
+
+/**
+ * A write followed by a read of the same number of values on a
+ * {@link CircularBuffer}, from a single thread. The buffer size is not a
+ * multiple of the chunk size, so the positions drift and some transfers wrap
+ * around the end of the array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CircularBufferBenchmark {
+    @Param({ "16", "1024" })
+    public int chunk;
+
+    private CircularBuffer buffer;
+
+    private int[] in;
+
+    private int[] out;
+
+    @Setup
+    public void setUp() {
+        buffer = new CircularBuffer((1 << 16) - 1);
+        in = new int[chunk];
+        out = new int[chunk];
+        for (int i = 0; i < chunk; i++) {
+            in[i] = i;
+        }
+    }
+
+    @Benchmark
+    public int[] writeRead() {
+        buffer.write(in);
+        buffer.read(out);
+        return out;
+    }
+}
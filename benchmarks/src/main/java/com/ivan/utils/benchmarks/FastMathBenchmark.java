@@ -0,0 +1,112 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.math.FastMath;
+
+/**
+ * The table-based trigonometric functions of {@link FastMath} with nearest,
+ * linear (lerp) and spline (slerp) interpolation, against {@link Math}, ported
+ * from the timing part of <code>FastMathTest</code>. The angles are random
+ * within four turns either way, so the tables are indexed all over. The table
+ * size is set with <code>-jvmArgsAppend -Dfastmath.trig.granularity=N</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FastMathBenchmark {
+    private static final int ANGLES = 1 << 10;
+
+    private final double[] doubles = new double[ANGLES];
+
+    private final float[] floats = new float[ANGLES];
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final Random rnd = new Random(42);
+        for (int i = 0; i < ANGLES; i++) {
+            doubles[i] = (rnd.nextDouble() * 2 - 1) * 8 * Math.PI;
+            floats[i] = (float) doubles[i];
+        }
+    }
+
+    private double nextDouble() {
+        return doubles[next++ & ANGLES - 1];
+    }
+
+    private float nextFloat() {
+        return floats[next++ & ANGLES - 1];
+    }
+
+    @Benchmark
+    public double mathSin() {
+        return Math.sin(nextDouble());
+    }
+
+    @Benchmark
+    public double sinDouble() {
+        return FastMath.sin(nextDouble());
+    }
+
+    @Benchmark
+    public double sinLerpDouble() {
+        return FastMath.sinLerp(nextDouble());
+    }
+
+    @Benchmark
+    public double sinSlerpDouble() {
+        return FastMath.sinSlerp(nextDouble());
+    }
+
+    @Benchmark
+    public float sinFloat() {
+        return FastMath.sin(nextFloat());
+    }
+
+    @Benchmark
+    public float sinLerpFloat() {
+        return FastMath.sinLerp(nextFloat());
+    }
+
+    @Benchmark
+    public float sinSlerpFloat() {
+        return FastMath.sinSlerp(nextFloat());
+    }
+
+    @Benchmark
+    public double mathTan() {
+        return Math.tan(nextDouble());
+    }
+
+    @Benchmark
+    public double tanDouble() {
+        return FastMath.tan(nextDouble());
+    }
+
+    @Benchmark
+    public double tanLerpDouble() {
+        return FastMath.tanLerp(nextDouble());
+    }
+
+    @Benchmark
+    public double tanSlerpDouble() {
+        return FastMath.tanSlerp(nextDouble());
+    }
+}
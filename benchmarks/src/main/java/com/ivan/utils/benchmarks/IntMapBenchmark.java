@@ -0,0 +1,297 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.colt.map.OpenIntObjectHashMap;
+
+import com.ivan.utils.collections.map.IntMap;
+import com.ivan.utils.collections.map.IntSet;
+import com.ivan.utils.collections.map.OpenIntMap;
+import com.ivan.utils.collections.map.SwissIntMap;
+
+/**
+ * Single operations on maps with <code>int</code> keys, ported from
+ * <code>PrimitiveMapPerformanceTest</code>: lookups that hit and miss, a
+ * remove followed by a put of the same key, and building a map from empty.
+ * Each implementation runs in its own forks, so the call sites into the
+ * kernels stay monomorphic.
+ * <p>
+ * The <code>keys</code> parameter selects random keys, sequential keys, or
+ * multiples of 2^12, which put the entropy in the high bits only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntMapBenchmark {
+    /**
+     * The number of keys of the lookup sequences, a power of two.
+     */
+    private static final int LOOKUPS = 1 << 16;
+
+    private static final Object VALUE = new Object();
+
+    @Param({ "HashMap", "IntMap", "OpenIntMap", "SwissIntMap", "Colt" })
+    public String impl;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "random", "sequential", "strided" })
+    public String keys;
+
+    private int[] present;
+
+    private int[] hits;
+
+    private int[] misses;
+
+    private Kernel map;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final Random rnd = new Random(42);
+        present = new int[size];
+        final int[] absent = new int[size];
+        final IntSet used = new IntSet();
+        for (int i = 0; i < size; i++) {
+            if (keys.equals("sequential")) {
+                present[i] = i;
+                absent[i] = size + i;
+            } else if (keys.equals("strided")) {
+                present[i] = i << 12;
+                absent[i] = i << 12 | 1 << 11;
+            } else {
+                int key;
+                do {
+                    key = rnd.nextInt();
+                } while (!used.add(key));
+                present[i] = key;
+            }
+        }
+        if (keys.equals("random")) {
+            for (int i = 0; i < size; i++) {
+                int key;
+                do {
+                    key = rnd.nextInt();
+                } while (used.contains(key));
+                absent[i] = key;
+            }
+        }
+        hits = new int[LOOKUPS];
+        misses = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits[i] = present[rnd.nextInt(size)];
+            misses[i] = absent[rnd.nextInt(size)];
+        }
+        map = Kernel.create(impl);
+        for (final int key : present) {
+            map.put(key, VALUE);
+        }
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return map.get(hits[index++ & LOOKUPS - 1]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return map.get(misses[index++ & LOOKUPS - 1]);
+    }
+
+    @Benchmark
+    public boolean containsKey() {
+        return map.containsKey(hits[index++ & LOOKUPS - 1]);
+    }
+
+    @Benchmark
+    public Object removeAndPut() {
+        final int key = hits[index++ & LOOKUPS - 1];
+        map.remove(key);
+        return map.put(key, VALUE);
+    }
+
+    /**
+     * Builds a map of <code>size</code> keys, from the default capacity.
+     */
+    @Benchmark
+    public Kernel build() {
+        final Kernel m = Kernel.create(impl);
+        for (final int key : present) {
+            m.put(key, VALUE);
+        }
+        return m;
+    }
+
+    /**
+     * The operations under test, for each implementation.
+     */
+    public abstract static class Kernel {
+        abstract Object put(int key, Object value);
+
+        abstract Object get(int key);
+
+        abstract boolean containsKey(int key);
+
+        abstract Object remove(int key);
+
+        static Kernel create(final String impl) {
+            if (impl.equals("HashMap")) {
+                return new HashMapKernel();
+            }
+            if (impl.equals("IntMap")) {
+                return new IntMapKernel();
+            }
+            if (impl.equals("OpenIntMap")) {
+                return new OpenIntMapKernel();
+            }
+            if (impl.equals("SwissIntMap")) {
+                return new SwissIntMapKernel();
+            }
+            if (impl.equals("Colt")) {
+                return new ColtKernel();
+            }
+            throw new IllegalArgumentException("Unknown map: " + impl);
+        }
+    }
+
+    static final class HashMapKernel extends Kernel {
+        private final Map<Integer, Object> map = new HashMap<Integer, Object>();
+
+        @Override
+        Object put(final int key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final int key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final int key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final int key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class IntMapKernel extends Kernel {
+        private final IntMap<Object> map = new IntMap<Object>();
+
+        @Override
+        Object put(final int key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final int key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final int key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final int key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class OpenIntMapKernel extends Kernel {
+        private final OpenIntMap<Object> map = new OpenIntMap<Object>();
+
+        @Override
+        Object put(final int key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final int key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final int key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final int key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class SwissIntMapKernel extends Kernel {
+        private final SwissIntMap<Object> map = new SwissIntMap<Object>();
+
+        @Override
+        Object put(final int key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final int key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final int key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final int key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class ColtKernel extends Kernel {
+        private final OpenIntObjectHashMap map = new OpenIntObjectHashMap();
+
+        @Override
+        Object put(final int key, final Object value) {
+            return map.put(key, value) ? null : value;
+        }
+
+        @Override
+        Object get(final int key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final int key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final int key) {
+            return map.removeKey(key) ? VALUE : null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.collections.map.IntMap;
+
+/**
+ * Latency distribution of single <code>IntMap.put</code> calls while the map
+ * grows from empty, with one-shot and incremental rehashing, ported from the
+ * <code>putlatency</code> mode of <code>PrimitiveMapPerformanceTest</code>.
+ * The interesting figures are the high percentiles and the maximum of the
+ * sample, which contain the puts that resize the table. The young generation
+ * is made large enough that the old tables do not trigger collections in the
+ * middle of a resize.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms4g", "-Xmx4g", "-Xmn2g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IntMapPutLatencyBenchmark {
+    private static final Object VALUE = new Object();
+
+    @Param({ "false", "true" })
+    public boolean incremental;
+
+    @Param({ "10000000" })
+    public int maxSize;
+
+    private IntMap<Object> map;
+
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        restart();
+    }
+
+    private void restart() {
+        map = new IntMap<Object>();
+        map.setIncrementalRehash(incremental);
+        next = 0;
+    }
+
+    @Benchmark
+    public Object put() {
+        if (next == maxSize) {
+            // starting over costs a small allocation, far below a resize
+            restart();
+        }
+        return map.put(next++ * 0x9E3779B9, VALUE);
+    }
+}
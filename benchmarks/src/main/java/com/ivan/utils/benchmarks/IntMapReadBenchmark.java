@@ -0,0 +1,99 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ivan.utils.collections.map.FrozenIntMap;
+import com.ivan.utils.collections.map.IntMap;
+
+/**
+ * Read paths of <code>IntMap</code> that have no counterpart in the other
+ * maps, ported from the <code>batched</code> and <code>frozen</code> modes of
+ * <code>PrimitiveMapPerformanceTest</code>: lookups one key at a time, through
+ * {@link IntMap#getAll(int[], Object[])} and on the {@link FrozenIntMap}
+ * returned by {@link IntMap#freeze()}. All methods report the time per key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntMapReadBenchmark {
+    /**
+     * The number of keys looked up by each invocation.
+     */
+    private static final int BATCH = 256;
+
+    @Param({ "1000", "100000", "10000000" })
+    public int size;
+
+    private IntMap<Object> map;
+
+    private FrozenIntMap<Object> frozen;
+
+    private int[][] batches;
+
+    private final Object[] out = new Object[BATCH];
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final Random rnd = new Random(42);
+        map = new IntMap<Object>();
+        final int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = rnd.nextInt();
+            map.put(keys[i], keys);
+        }
+        frozen = map.freeze();
+        batches = new int[64][BATCH];
+        for (final int[] batch : batches) {
+            for (int i = 0; i < BATCH; i++) {
+                batch[i] = keys[rnd.nextInt(size)];
+            }
+        }
+    }
+
+    private int[] nextBatch() {
+        return batches[index++ & batches.length - 1];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void get(final Blackhole bh) {
+        for (final int key : nextBatch()) {
+            bh.consume(map.get(key));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object[] getAll() {
+        map.getAll(nextBatch(), out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void frozenGet(final Blackhole bh) {
+        for (final int key : nextBatch()) {
+            bh.consume(frozen.get(key));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.math.geometry.Point3D;
+import com.ivan.utils.space.kdtree.DoubleKdTree;
+import com.ivan.utils.space.kdtree.KdTree;
+
+/**
+ * Queries specific to {@link KdTree}: the <code>k</code> nearest neighbours of
+ * random points in the unit cube, collected into a new list or read from a
+ * reused query context, and the points within the sphere and the cube around
+ * them which hold <code>k</code> points on average. The nearest neighbours are
+ * also searched in a {@link DoubleKdTree} over the same coordinates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KdTreeBenchmark {
+    private static final int QUERIES = 1 << 12;
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    @Param({ "1", "10", "100" })
+    public int k;
+
+    private KdTree<Point3D> tree;
+
+    private KdTree<Point3D>.Query query;
+
+    private DoubleKdTree.Query primitiveQuery;
+
+    private double[][] primitiveQueries;
+
+    private double radius;
+
+    private double halfSide;
+
+    private Point3D[] queries;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final Random rnd = new Random(42);
+        final Point3D[] points = SpatialIndexBenchmark.randomPoints(rnd, size);
+        tree = KdTree.build(points);
+        queries = SpatialIndexBenchmark.randomPoints(rnd, QUERIES);
+        query = tree.query();
+
+        final double[][] axes = new double[3][size];
+        for (int i = 0; i < size; i++) {
+            axes[0][i] = points[i].x;
+            axes[1][i] = points[i].y;
+            axes[2][i] = points[i].z;
+        }
+        primitiveQuery = DoubleKdTree.build(axes).query();
+        primitiveQueries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            primitiveQueries[i] = new double[] { queries[i].x, queries[i].y, queries[i].z };
+        }
+        radius = Math.cbrt(3.0 * k / (4 * Math.PI * size));
+        halfSide = Math.cbrt((double) k / size) / 2;
+    }
+
+    @Benchmark
+    public Object findNearest() {
+        return tree.findNearest(queries[next++ & QUERIES - 1], k);
+    }
+
+    @Benchmark
+    public double findNearestQuery() {
+        final int found = query.findNearest(queries[next++ & QUERIES - 1], k);
+        return query.squaredDistance(found - 1);
+    }
+
+    @Benchmark
+    public double findNearestPrimitive() {
+        final int found = primitiveQuery.findNearest(primitiveQueries[next++ & QUERIES - 1], k);
+        return primitiveQuery.squaredDistance(found - 1);
+    }
+
+    @Benchmark
+    public int countWithinRadius() {
+        return tree.countWithinRadius(queries[next++ & QUERIES - 1], radius);
+    }
+
+    @Benchmark
+    public int countInBox() {
+        final Point3D center = queries[next++ & QUERIES - 1];
+        return tree.countInBox(new Point3D(center.x - halfSide, center.y - halfSide, center.z - halfSide),
+                new Point3D(center.x + halfSide, center.y + halfSide, center.z + halfSide));
+    }
+}
@@ -0,0 +1,109 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.collections.list.ListNode;
+
+/**
+ * Inline linked lists against {@link LinkedList}, ported from the test program
+ * of the same name: filling a list at its start and at its end, and summing
+ * its elements. Each method handles a whole list of <code>size</code>
+ * elements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ListNodeBenchmark {
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private Integer[] values;
+
+    private ListNode<Integer> nodes;
+
+    private List<Integer> list;
+
+    @Setup
+    public void setUp() {
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        nodes = nodeAddLast();
+        list = listAddLast();
+    }
+
+    @Benchmark
+    public ListNode<Integer> nodeAddFirst() {
+        final ListNode<Integer> head = ListNode.create();
+        for (final Integer value : values) {
+            head.add(value);
+        }
+        return head;
+    }
+
+    @Benchmark
+    public List<Integer> listAddFirst() {
+        final List<Integer> l = new LinkedList<Integer>();
+        for (final Integer value : values) {
+            l.add(0, value);
+        }
+        return l;
+    }
+
+    @Benchmark
+    public ListNode<Integer> nodeAddLast() {
+        final ListNode<Integer> head = ListNode.create();
+        ListNode<Integer> node = head;
+        for (final Integer value : values) {
+            node = node.add(value);
+        }
+        return head;
+    }
+
+    @Benchmark
+    public List<Integer> listAddLast() {
+        final List<Integer> l = new LinkedList<Integer>();
+        for (final Integer value : values) {
+            l.add(value);
+        }
+        return l;
+    }
+
+    @Benchmark
+    public long nodeIterate() {
+        long sum = 0;
+        ListNode<Integer> it = nodes;
+        while (it.hasNext()) {
+            it = it.next();
+            sum += it.get();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long listIterate() {
+        long sum = 0;
+        for (final Integer i : list) {
+            sum += i;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,297 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cern.colt.map.OpenLongObjectHashMap;
+
+import com.ivan.utils.collections.map.LongMap;
+import com.ivan.utils.collections.map.LongSet;
+import com.ivan.utils.collections.map.OpenLongMap;
+import com.ivan.utils.collections.map.SwissLongMap;
+
+/**
+ * Single operations on maps with <code>long</code> keys, ported from
+ * <code>PrimitiveMapPerformanceTest</code>: lookups that hit and miss, a
+ * remove followed by a put of the same key, and building a map from empty.
+ * Each implementation runs in its own forks, so the call sites into the
+ * kernels stay monomorphic.
+ * <p>
+ * The <code>keys</code> parameter selects random keys, sequential keys, or
+ * multiples of 2^32, which put the entropy in the high half only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LongMapBenchmark {
+    /**
+     * The number of keys of the lookup sequences, a power of two.
+     */
+    private static final int LOOKUPS = 1 << 16;
+
+    private static final Object VALUE = new Object();
+
+    @Param({ "HashMap", "LongMap", "OpenLongMap", "SwissLongMap", "Colt" })
+    public String impl;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "random", "sequential", "strided" })
+    public String keys;
+
+    private long[] present;
+
+    private long[] hits;
+
+    private long[] misses;
+
+    private Kernel map;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final Random rnd = new Random(42);
+        present = new long[size];
+        final long[] absent = new long[size];
+        final LongSet used = new LongSet();
+        for (int i = 0; i < size; i++) {
+            if (keys.equals("sequential")) {
+                present[i] = i;
+                absent[i] = size + i;
+            } else if (keys.equals("strided")) {
+                present[i] = (long) i << 32;
+                absent[i] = (long) i << 32 | 1L << 31;
+            } else {
+                long key;
+                do {
+                    key = rnd.nextLong();
+                } while (!used.add(key));
+                present[i] = key;
+            }
+        }
+        if (keys.equals("random")) {
+            for (int i = 0; i < size; i++) {
+                long key;
+                do {
+                    key = rnd.nextLong();
+                } while (used.contains(key));
+                absent[i] = key;
+            }
+        }
+        hits = new long[LOOKUPS];
+        misses = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits[i] = present[rnd.nextInt(size)];
+            misses[i] = absent[rnd.nextInt(size)];
+        }
+        map = Kernel.create(impl);
+        for (final long key : present) {
+            map.put(key, VALUE);
+        }
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return map.get(hits[index++ & LOOKUPS - 1]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return map.get(misses[index++ & LOOKUPS - 1]);
+    }
+
+    @Benchmark
+    public boolean containsKey() {
+        return map.containsKey(hits[index++ & LOOKUPS - 1]);
+    }
+
+    @Benchmark
+    public Object removeAndPut() {
+        final long key = hits[index++ & LOOKUPS - 1];
+        map.remove(key);
+        return map.put(key, VALUE);
+    }
+
+    /**
+     * Builds a map of <code>size</code> keys, from the default capacity.
+     */
+    @Benchmark
+    public Kernel build() {
+        final Kernel m = Kernel.create(impl);
+        for (final long key : present) {
+            m.put(key, VALUE);
+        }
+        return m;
+    }
+
+    /**
+     * The operations under test, for each implementation.
+     */
+    public abstract static class Kernel {
+        abstract Object put(long key, Object value);
+
+        abstract Object get(long key);
+
+        abstract boolean containsKey(long key);
+
+        abstract Object remove(long key);
+
+        static Kernel create(final String impl) {
+            if (impl.equals("HashMap")) {
+                return new HashMapKernel();
+            }
+            if (impl.equals("LongMap")) {
+                return new LongMapKernel();
+            }
+            if (impl.equals("OpenLongMap")) {
+                return new OpenLongMapKernel();
+            }
+            if (impl.equals("SwissLongMap")) {
+                return new SwissLongMapKernel();
+            }
+            if (impl.equals("Colt")) {
+                return new ColtKernel();
+            }
+            throw new IllegalArgumentException("Unknown map: " + impl);
+        }
+    }
+
+    static final class HashMapKernel extends Kernel {
+        private final Map<Long, Object> map = new HashMap<Long, Object>();
+
+        @Override
+        Object put(final long key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final long key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final long key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final long key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class LongMapKernel extends Kernel {
+        private final LongMap<Object> map = new LongMap<Object>();
+
+        @Override
+        Object put(final long key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final long key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final long key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final long key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class OpenLongMapKernel extends Kernel {
+        private final OpenLongMap<Object> map = new OpenLongMap<Object>();
+
+        @Override
+        Object put(final long key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final long key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final long key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final long key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class SwissLongMapKernel extends Kernel {
+        private final SwissLongMap<Object> map = new SwissLongMap<Object>();
+
+        @Override
+        Object put(final long key, final Object value) {
+            return map.put(key, value);
+        }
+
+        @Override
+        Object get(final long key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final long key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final long key) {
+            return map.remove(key);
+        }
+    }
+
+    static final class ColtKernel extends Kernel {
+        private final OpenLongObjectHashMap map = new OpenLongObjectHashMap();
+
+        @Override
+        Object put(final long key, final Object value) {
+            return map.put(key, value) ? null : value;
+        }
+
+        @Override
+        Object get(final long key) {
+            return map.get(key);
+        }
+
+        @Override
+        boolean containsKey(final long key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        Object remove(final long key) {
+            return map.removeKey(key) ? VALUE : null;
+        }
+    }
+}
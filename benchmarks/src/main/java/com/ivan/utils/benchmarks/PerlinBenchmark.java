@@ -0,0 +1,54 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.math.geometry.Point3D;
+import com.ivan.utils.math.noise.Perlin;
+
+/**
+ * {@link Perlin#noise(double, double, double)} sampled along a diagonal walk
+ * through the lattice, with a step which is not a fraction of the cell size,
+ * as when filling a texture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PerlinBenchmark {
+    private static final double STEP = 0.137;
+
+    private final Point3D point = new Point3D();
+
+    private double t;
+
+    private double nextCoordinate() {
+        // wrap before the coordinates lose their fractional precision
+        t = t > 1 << 20 ? 0 : t + STEP;
+        return t;
+    }
+
+    @Benchmark
+    public double noise() {
+        final double c = nextCoordinate();
+        return Perlin.noise(c, c * 0.5, c * 0.25);
+    }
+
+    @Benchmark
+    public double noisePoint() {
+        final double c = nextCoordinate();
+        point.set(c, c * 0.5, c * 0.25);
+        return Perlin.noise(point);
+    }
+}
@@ -0,0 +1,175 @@
+package com.ivan.utils.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ivan.utils.math.geometry.Point2D;
+import com.ivan.utils.math.geometry.Point3D;
+import com.ivan.utils.space.kdtree.KdTree;
+import com.ivan.utils.space.octree.Octree;
+import com.ivan.utils.space.quadtree.Quadtree;
+
+/**
+ * Building the spatial indexes from uniformly random points, and nearest
+ * neighbour queries on them. The k-d tree and the octree index points in the
+ * unit cube, the quadtree points in the unit square. Queries are points of
+ * the same distribution that are not in the index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SpatialIndexBenchmark {
+    /**
+     * The number of query points, a power of two.
+     */
+    private static final int QUERIES = 1 << 12;
+
+    @Param({ "KdTree", "Octree", "Quadtree" })
+    public String index;
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private Kernel kernel;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final Random rnd = new Random(42);
+        if (index.equals("Quadtree")) {
+            kernel = new QuadtreeKernel(rnd, size);
+        } else if (index.equals("Octree")) {
+            kernel = new OctreeKernel(rnd, size);
+        } else if (index.equals("KdTree")) {
+            kernel = new KdTreeKernel(rnd, size);
+        } else {
+            throw new IllegalArgumentException("Unknown index: " + index);
+        }
+        kernel.build();
+    }
+
+    @Benchmark
+    public Object build() {
+        return kernel.build();
+    }
+
+    @Benchmark
+    public Object findNearest() {
+        return kernel.findNearest(next++ & QUERIES - 1);
+    }
+
+    /**
+     * The operations under test, for each index.
+     */
+    abstract static class Kernel {
+        /**
+         * Builds the index from the points, keeps it for the queries and
+         * returns it.
+         */
+        abstract Object build();
+
+        /**
+         * Returns the nearest neighbour of the query point with the specified
+         * index.
+         */
+        abstract Object findNearest(int query);
+    }
+
+    static final class KdTreeKernel extends Kernel {
+        private final Point3D[] points;
+
+        private final Point3D[] queries = new Point3D[QUERIES];
+
+        private KdTree<Point3D> tree;
+
+        KdTreeKernel(final Random rnd, final int size) {
+            points = randomPoints(rnd, size);
+            System.arraycopy(randomPoints(rnd, QUERIES), 0, queries, 0, QUERIES);
+        }
+
+        @Override
+        Object build() {
+            return tree = KdTree.build(points);
+        }
+
+        @Override
+        Object findNearest(final int query) {
+            return tree.findNearest(queries[query]);
+        }
+    }
+
+    static final class OctreeKernel extends Kernel {
+        private final Point3D[] points;
+
+        private final Point3D[] queries = new Point3D[QUERIES];
+
+        private Octree<Point3D> tree;
+
+        OctreeKernel(final Random rnd, final int size) {
+            points = randomPoints(rnd, size);
+            System.arraycopy(randomPoints(rnd, QUERIES), 0, queries, 0, QUERIES);
+        }
+
+        @Override
+        Object build() {
+            return tree = Octree.build(points);
+        }
+
+        @Override
+        Object findNearest(final int query) {
+            return tree.findNearest(queries[query]);
+        }
+    }
+
+    static final class QuadtreeKernel extends Kernel {
+        private final Point2D[] points;
+
+        private final Point2D[] queries = new Point2D[QUERIES];
+
+        private Quadtree<Point2D> tree;
+
+        QuadtreeKernel(final Random rnd, final int size) {
+            points = new Point2D[size];
+            for (int i = 0; i < size; i++) {
+                points[i] = new Point2D(rnd.nextDouble(), rnd.nextDouble());
+            }
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = new Point2D(rnd.nextDouble(), rnd.nextDouble());
+            }
+        }
+
+        @Override
+        Object build() {
+            return tree = Quadtree.build(points);
+        }
+
+        @Override
+        Object findNearest(final int query) {
+            return tree.findNearest(queries[query]);
+        }
+    }
+
+    static Point3D[] randomPoints(final Random rnd, final int n) {
+        final Point3D[] points = new Point3D[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = new Point3D(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble());
+        }
+        return points;
+    }
+}
@@ -0,0 +1,649 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ivan.utils.math.MathEx;
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * Thread-safe <code>int</code>-based hash map which uses integer primitives as
+ * keys. This is the concurrent counterpart of {@link IntMap}: retrievals never
+ * block and run concurrently with updates, while updates lock only the
+ * segment of the table the key belongs to, so up to
+ * <code>concurrencyLevel</code> threads can update the map at the same time.
+ * <p>
+ * Each segment is a small chained hash table that grows independently of the
+ * others. A segment is resized while holding its own lock only, so threads
+ * working on other segments are not affected, and readers keep traversing the
+ * old table of the resized segment until the new one is published.
+ * <p>
+ * Retrievals reflect the results of the most recently completed updates
+ * holding upon their onset. Aggregate operations such as {@link #size()},
+ * {@link #keys()} and {@link #containsValue(Object)} are weakly consistent:
+ * they do not block updates and may or may not reflect concurrent changes.
+ * <p>
+ * Like <code>ConcurrentHashMap</code>, this map does not allow
+ * <code>null</code> values, so that a <code>null</code> return value always
+ * means the map contains no mapping for the key.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public class ConcurrentIntMap<V> {
+    final Segment<V>[] segments;
+
+    private final int segmentShift;
+
+    private final int segmentMask;
+
+    /**
+     * The minimum capacity of each segment - MUST be a power of two.
+     */
+    private static final int MINIMUM_SEGMENT_CAPACITY = 2;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+    * The maximum capacity, used if a higher value is implicitly specified
+    * by either of the constructors with arguments.
+    * MUST be a power of two <= 1<<30.
+    */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The number of segments used when none specified in constructor.
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * The maximum number of segments - MUST be a power of two.
+     */
+    private static final int MAXIMUM_SEGMENTS = 1 << 16;
+
+    /**
+     * Constructs an empty <code>ConcurrentIntMap</code> with the default
+     * initial capacity (16), load factor (0.75) and concurrency level (16).
+     */
+    public ConcurrentIntMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>ConcurrentIntMap</code> with the specified
+     * initial capacity and the default load factor (0.75) and concurrency
+     * level (16).
+     *
+     * @param capacity the initial capacity
+     */
+    public ConcurrentIntMap(final int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs an empty <code>ConcurrentIntMap</code> with the specified
+     * initial capacity, load factor and concurrency level.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param concurrencyLevel the estimated number of concurrently updating
+     *        threads, rounded up to a power of two to obtain the number of
+     *        segments
+     * @throws IllegalArgumentException if the load factor or the concurrency
+     *         level are nonpositive
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ConcurrentIntMap(final int capacity, final float loadFactor, final int concurrencyLevel) {
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal concurrency level: " + concurrencyLevel);
+        }
+        final int numSegments = Math.min(BitMath.nextPowerOfTwo(concurrencyLevel), MAXIMUM_SEGMENTS);
+        segmentShift = 32 - Integer.numberOfTrailingZeros(numSegments);
+        segmentMask = numSegments - 1;
+
+        final int cap = MathEx.clamp(BitMath.nextPowerOfTwo(capacity), MINIMUM_SEGMENT_CAPACITY, MAXIMUM_CAPACITY);
+        final int segmentCapacity = Math.max(MINIMUM_SEGMENT_CAPACITY, cap / numSegments);
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<V>(segmentCapacity, loadFactor);
+        }
+    }
+
+    /**
+     * Hashes the given key. The high bits of the hash select the segment and
+     * the low bits select the bucket within the segment.
+     *
+     * @param key the key to be hashed
+     * @return the hash of the key
+     */
+    static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Returns the segment that should be used for the key with the given hash.
+     *
+     * @param hash the hash of the key
+     * @return the segment
+     */
+    private Segment<V> segmentFor(final int hash) {
+        return segments[hash >>> segmentShift & segmentMask];
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map. The count is not
+     * taken atomically across segments and may not reflect updates that are in
+     * progress.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        long sum = 0;
+        for (final Segment<V> segment : segments) {
+            sum += segment.count;
+        }
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        for (final Segment<V> segment : segments) {
+            if (segment.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key. This
+     * method never blocks.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     */
+    public V get(final int key) {
+        final int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key. This method never blocks.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     *         specified key.
+     */
+    public boolean containsKey(final int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns <code>true</code> if this map maps one or more keys to the
+     * specified value. This method traverses the whole map without locking it.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return <code>true</code> if this map maps one or more keys to the
+     *         specified value
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(final Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        for (final Segment<V> segment : segments) {
+            if (segment.containsValue(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>
+     * @throws NullPointerException if the specified value is null
+     */
+    public V put(final int key, final V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * Atomically associates the specified value with the specified key if the
+     * key is not already associated with a value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the value currently associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>
+     *         and the new value was stored
+     * @throws NullPointerException if the specified value is null
+     */
+    public V putIfAbsent(final int key, final V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Returns the value associated with the specified key, computing it with
+     * the given function and storing it if the key is not already associated
+     * with a value. The function is invoked at most once per absent key, while
+     * holding the lock of the segment of the key, so it should be short and
+     * must not update this map. If the function returns <code>null</code>, no
+     * mapping is stored.
+     *
+     * @param key key with which the value is to be associated
+     * @param function the function that computes the value
+     * @return the current (existing or computed) value associated with the
+     *         key, or <code>null</code> if the computed value is null
+     */
+    public V computeIfAbsent(final int key, final IntFunction<? extends V> function) {
+        final int hash = hash(key);
+        final Segment<V> segment = segmentFor(hash);
+        final V value = segment.get(key, hash);
+        return value != null ? value : segment.computeIfAbsent(key, hash, function);
+    }
+
+    /**
+     * Atomically replaces the value of the specified key only if it is
+     * currently mapped to some value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or <code>null</code>
+     *         if there was no mapping for the key
+     * @throws NullPointerException if the specified value is null
+     */
+    public V replace(final int key, final V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, value);
+    }
+
+    /**
+     * Atomically replaces the value of the specified key only if it is
+     * currently mapped to the given value.
+     *
+     * @param key key with which the specified value is associated
+     * @param oldValue value expected to be associated with the key
+     * @param newValue value to be associated with the key
+     * @return <code>true</code> if the value was replaced
+     * @throws NullPointerException if any of the values is null
+     */
+    public boolean replace(final int key, final V oldValue, final V newValue) {
+        if (oldValue == null || newValue == null) {
+            throw new NullPointerException();
+        }
+        final int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, oldValue, newValue);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>
+     */
+    public V remove(final int key) {
+        final int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Atomically removes the mapping for the specified key only if it is
+     * currently mapped to the given value.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @param value value expected to be associated with the key
+     * @return <code>true</code> if the mapping was removed
+     */
+    public boolean remove(final int key, final Object value) {
+        if (value == null) {
+            return false;
+        }
+        final int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, value) != null;
+    }
+
+    /**
+     * Removes all of the mappings from this map. Segments are cleared one at
+     * a time, so mappings added concurrently to segments that were already
+     * cleared survive this call.
+     */
+    public void clear() {
+        for (final Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns an array of the keys contained in this map. The array is built
+     * without locking the map, so it may or may not reflect concurrent updates.
+     *
+     * @return an <code>int[]</code> with the keys contained in this map
+     */
+    public int[] keys() {
+        int[] keys = new int[size()];
+        int n = 0;
+        for (final Segment<V> segment : segments) {
+            final AtomicReferenceArray<HashEntry<V>> tab = segment.table;
+            for (int i = 0; i < tab.length(); i++) {
+                for (HashEntry<V> e = tab.get(i); e != null; e = e.next) {
+                    if (n == keys.length) {
+                        keys = Arrays.copyOf(keys, Math.max(16, n << 1));
+                    }
+                    keys[n++] = e.key;
+                }
+            }
+        }
+        return n == keys.length ? keys : Arrays.copyOf(keys, n);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        for (final Segment<V> segment : segments) {
+            final AtomicReferenceArray<HashEntry<V>> tab = segment.table;
+            for (int i = 0; i < tab.length(); i++) {
+                for (HashEntry<V> e = tab.get(i); e != null; e = e.next) {
+                    sb.append(sep).append(e.key).append('=').append(e.value);
+                    sep = ", ";
+                }
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A mapping from a key to a value. The key and the link to the next entry
+     * are immutable, so readers can traverse a chain while it is being updated;
+     * removals copy the entries that precede the removed one instead of
+     * unlinking it.
+     *
+     * @param <T> the type of the value
+     */
+    static final class HashEntry<T> {
+        final int key;
+
+        final int hash;
+
+        volatile T value;
+
+        final HashEntry<T> next;
+
+        HashEntry(final int key, final int hash, final HashEntry<T> next, final T value) {
+            this.key = key;
+            this.hash = hash;
+            this.next = next;
+            this.value = value;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A lock-protected chained hash table holding a part of the mappings of
+     * the map. Buckets are published through an {@link AtomicReferenceArray},
+     * which lets readers see fully constructed entries without locking.
+     *
+     * @param <T> the type of the values
+     */
+    static final class Segment<T> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        volatile int count;
+
+        volatile AtomicReferenceArray<HashEntry<T>> table;
+
+        private final float loadFactor;
+
+        private int threshold;
+
+        Segment(final int capacity, final float loadFactor) {
+            this.loadFactor = loadFactor;
+            setTable(new AtomicReferenceArray<HashEntry<T>>(capacity));
+        }
+
+        private void setTable(final AtomicReferenceArray<HashEntry<T>> newTable) {
+            threshold = (int) (newTable.length() * loadFactor);
+            table = newTable;
+        }
+
+        T get(final int key, final int hash) {
+            final AtomicReferenceArray<HashEntry<T>> tab = table;
+            for (HashEntry<T> e = tab.get(hash & tab.length() - 1); e != null; e = e.next) {
+                if (e.key == key) {
+                    return e.value;
+                }
+            }
+            return null;
+        }
+
+        boolean containsValue(final Object value) {
+            final AtomicReferenceArray<HashEntry<T>> tab = table;
+            for (int i = 0; i < tab.length(); i++) {
+                for (HashEntry<T> e = tab.get(i); e != null; e = e.next) {
+                    if (value.equals(e.value)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        T put(final int key, final int hash, final T value, final boolean onlyIfAbsent) {
+            lock();
+            try {
+                final AtomicReferenceArray<HashEntry<T>> tab = table;
+                final int index = hash & tab.length() - 1;
+                final HashEntry<T> first = tab.get(index);
+                for (HashEntry<T> e = first; e != null; e = e.next) {
+                    if (e.key == key) {
+                        final T old = e.value;
+                        if (!onlyIfAbsent) {
+                            e.value = value;
+                        }
+                        return old;
+                    }
+                }
+                insert(tab, index, first, key, hash, value);
+                return null;
+            } finally {
+                unlock();
+            }
+        }
+
+        T computeIfAbsent(final int key, final int hash, final IntFunction<? extends T> function) {
+            lock();
+            try {
+                final AtomicReferenceArray<HashEntry<T>> tab = table;
+                final int index = hash & tab.length() - 1;
+                final HashEntry<T> first = tab.get(index);
+                for (HashEntry<T> e = first; e != null; e = e.next) {
+                    if (e.key == key) {
+                        return e.value;
+                    }
+                }
+                final T value = function.apply(key);
+                if (value != null) {
+                    insert(tab, index, first, key, hash, value);
+                }
+                return value;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Links a new entry at the head of a bucket and grows the table if
+         * needed. Must be called while holding the lock.
+         */
+        private void insert(final AtomicReferenceArray<HashEntry<T>> tab, final int index, final HashEntry<T> first, final int key, final int hash, final T value) {
+            tab.set(index, new HashEntry<T>(key, hash, first, value));
+            final int c = count + 1;
+            count = c;
+            if (c > threshold) {
+                rehash();
+            }
+        }
+
+        T replace(final int key, final int hash, final T value) {
+            lock();
+            try {
+                for (HashEntry<T> e = table.get(hash & table.length() - 1); e != null; e = e.next) {
+                    if (e.key == key) {
+                        final T old = e.value;
+                        e.value = value;
+                        return old;
+                    }
+                }
+                return null;
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean replace(final int key, final int hash, final T oldValue, final T newValue) {
+            lock();
+            try {
+                for (HashEntry<T> e = table.get(hash & table.length() - 1); e != null; e = e.next) {
+                    if (e.key == key) {
+                        if (oldValue.equals(e.value)) {
+                            e.value = newValue;
+                            return true;
+                        }
+                        return false;
+                    }
+                }
+                return false;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Removes the mapping for the key, if it is mapped to the given value
+         * or <code>value</code> is <code>null</code>.
+         */
+        T remove(final int key, final int hash, final Object value) {
+            lock();
+            try {
+                final AtomicReferenceArray<HashEntry<T>> tab = table;
+                final int index = hash & tab.length() - 1;
+                final HashEntry<T> first = tab.get(index);
+                HashEntry<T> e = first;
+                while (e != null && e.key != key) {
+                    e = e.next;
+                }
+                if (e == null) {
+                    return null;
+                }
+                final T old = e.value;
+                if (value != null && !value.equals(old)) {
+                    return null;
+                }
+                // copy the entries in front of the removed one
+                HashEntry<T> newFirst = e.next;
+                for (HashEntry<T> p = first; p != e; p = p.next) {
+                    newFirst = new HashEntry<T>(p.key, p.hash, newFirst, p.value);
+                }
+                tab.set(index, newFirst);
+                count = count - 1;
+                return old;
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            if (count == 0) {
+                return;
+            }
+            lock();
+            try {
+                setTable(new AtomicReferenceArray<HashEntry<T>>(table.length()));
+                count = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Doubles the capacity of this segment. The entries at the tail of
+         * each chain that stay together in the new table are reused as is, the
+         * others are copied, so readers traversing the old table are never
+         * disturbed. Must be called while holding the lock.
+         */
+        private void rehash() {
+            final AtomicReferenceArray<HashEntry<T>> oldTable = table;
+            final int oldCapacity = oldTable.length();
+            if (oldCapacity >= MAXIMUM_CAPACITY) {
+                return;
+            }
+            final AtomicReferenceArray<HashEntry<T>> newTable = new AtomicReferenceArray<HashEntry<T>>(oldCapacity << 1);
+            final int mask = newTable.length() - 1;
+            for (int i = 0; i < oldCapacity; i++) {
+                final HashEntry<T> e = oldTable.get(i);
+                if (e == null) {
+                    continue;
+                }
+                // find the longest tail of entries that land in the same bucket
+                HashEntry<T> lastRun = e;
+                int lastIndex = e.hash & mask;
+                for (HashEntry<T> p = e.next; p != null; p = p.next) {
+                    final int k = p.hash & mask;
+                    if (k != lastIndex) {
+                        lastIndex = k;
+                        lastRun = p;
+                    }
+                }
+                newTable.set(lastIndex, lastRun);
+                for (HashEntry<T> p = e; p != lastRun; p = p.next) {
+                    final int k = p.hash & mask;
+                    newTable.set(k, new HashEntry<T>(p.key, p.hash, newTable.get(k), p.value));
+                }
+            }
+            setTable(newTable);
+        }
+    }
+}
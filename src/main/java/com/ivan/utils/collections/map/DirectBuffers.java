@@ -0,0 +1,93 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Allocation and explicit release of the direct buffers backing the off-heap
+ * maps.
+ * <p>
+ * The JDK only frees the memory of a direct buffer once the buffer has been
+ * garbage collected, which may take arbitrarily long for buffers that have
+ * reached the old generation. {@link #free(ByteBuffer)} runs the cleaner of
+ * the buffer immediately, through <code>sun.misc.Unsafe.invokeCleaner</code>
+ * on Java 9 and later or the <code>cleaner()</code> method of the buffer on
+ * earlier versions. If neither is accessible, freeing falls back to dropping
+ * the reference and waiting for the collector.
+ */
+final class DirectBuffers {
+    private static final Object UNSAFE;
+
+    private static final Method INVOKE_CLEANER;
+
+    private static final Method CLEANER;
+
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (final Exception e) {
+            invokeCleaner = null;
+            try {
+                final ByteBuffer probe = ByteBuffer.allocateDirect(1);
+                cleaner = probe.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                clean = cleaner.getReturnType().getMethod("clean");
+                clean.setAccessible(true);
+                clean.invoke(cleaner.invoke(probe));
+            } catch (final Exception e2) {
+                cleaner = null;
+                clean = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    private DirectBuffers() {
+    }
+
+    /**
+     * Allocates a zero-filled direct buffer in the native byte order.
+     *
+     * @param bytes the capacity of the buffer, in bytes
+     * @return the new buffer
+     */
+    static ByteBuffer allocate(final int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Releases the native memory of the specified direct buffer. The buffer
+     * must not be accessed afterwards.
+     *
+     * @param buffer the buffer to release
+     */
+    static void free(final ByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else if (CLEANER != null) {
+                final Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+            }
+        } catch (final Exception e) {
+            // leave it to the garbage collector
+        }
+    }
+}
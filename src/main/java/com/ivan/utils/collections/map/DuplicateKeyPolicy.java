@@ -0,0 +1,19 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * What the bulk construction methods of the primitive maps, such as
+ * {@link IntMap#build(int[], Object[], int, DuplicateKeyPolicy)}, do when a key
+ * appears more than once in their input.
+ */
+public enum DuplicateKeyPolicy {
+    /**
+     * Keeps the value at the highest index of the input, as if the mappings
+     * had been put one after the other.
+     */
+    LAST_WINS,
+
+    /**
+     * Fails with an {@link IllegalArgumentException} which names the key.
+     */
+    REJECT
+}
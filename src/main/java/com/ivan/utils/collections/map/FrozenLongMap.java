@@ -0,0 +1,280 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * Immutable map which uses <code>long</code> primitives as keys, created by
+ * {@link LongMap#freeze()}. The keys and values are stored in two arrays with
+ * exactly one slot per mapping, placed by a minimal perfect hash function built
+ * for the keys of the map with the <i>hash, displace and compress</i> (CHD)
+ * scheme: each key hashes to a small bucket, and each bucket stores the
+ * displacement which sends its keys to free slots, or directly the slot of its
+ * only key. A lookup reads the displacement of its bucket and then compares a
+ * single key, so it takes the same time whether the key is present or not, and
+ * there is no load factor slack: the map takes about 2 bytes per mapping beyond
+ * the keys and values.
+ * <p>
+ * Freezing takes time roughly proportional to the number of mappings. All
+ * state is assigned in the constructor and never changes, so a frozen map can
+ * be shared by any number of threads without locking.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public final class FrozenLongMap<V> {
+    /**
+     * The average number of keys per bucket. Larger buckets make the map
+     * smaller, but leave more buckets of several keys to be placed when few
+     * slots are left, which makes it much slower to build.
+     */
+    private static final int KEYS_PER_BUCKET = 2;
+
+    private final long[] keys;
+
+    private final Object[] values;
+
+    private final int[] displacements;
+
+    FrozenLongMap(final LongMap<? extends V> map) {
+        final int n = map.size;
+        keys = new long[n];
+        values = new Object[n];
+        displacements = new int[Math.max(1, (n + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET)];
+        if (n == 0) {
+            return;
+        }
+        final int buckets = displacements.length;
+
+        // gather the mappings grouped by bucket
+        final int[] bucketStart = new int[buckets + 1];
+        for (final LongMap.Entry<? extends V> entry : map.table) {
+            for (LongMap.Entry<? extends V> e = entry; e != null; e = e.next) {
+                bucketStart[bucket(mix(e.key), buckets) + 1]++;
+            }
+        }
+        int largest = 0;
+        for (int b = 0; b < buckets; b++) {
+            largest = Math.max(largest, bucketStart[b + 1]);
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        final int[] fill = bucketStart.clone();
+        final long[] groupedKeys = new long[n];
+        final Object[] groupedValues = new Object[n];
+        final long[] groupedHashes = new long[n];
+        for (final LongMap.Entry<? extends V> entry : map.table) {
+            for (LongMap.Entry<? extends V> e = entry; e != null; e = e.next) {
+                final long hash = mix(e.key);
+                final int i = fill[bucket(hash, buckets)]++;
+                groupedKeys[i] = e.key;
+                groupedHashes[i] = hash;
+                groupedValues[i] = e.value;
+            }
+        }
+
+        // place the buckets from the largest to the smallest, while the
+        // table is still empty enough for large buckets to fit
+        final int[] bySize = new int[largest + 2];
+        for (int b = 0; b < buckets; b++) {
+            bySize[largest - (bucketStart[b + 1] - bucketStart[b]) + 1]++;
+        }
+        for (int s = 0; s <= largest; s++) {
+            bySize[s + 1] += bySize[s];
+        }
+        final int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[bySize[largest - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+        }
+
+        final long[] taken = new long[(n + 63) >>> 6];
+        final int[] slots = new int[largest];
+        int freeSlot = 0;
+        for (final int b : order) {
+            final int start = bucketStart[b];
+            final int count = bucketStart[b + 1] - start;
+            if (count == 0) {
+                break;
+            }
+            if (count == 1) {
+                // searching a displacement for the last few free slots would
+                // take time proportional to the size of the map, so buckets
+                // of a single key store its slot instead
+                while ((taken[freeSlot >>> 6] & 1L << freeSlot) != 0) {
+                    freeSlot++;
+                }
+                taken[freeSlot >>> 6] |= 1L << freeSlot;
+                displacements[b] = ~freeSlot;
+                keys[freeSlot] = groupedKeys[start];
+                values[freeSlot] = groupedValues[start];
+                continue;
+            }
+            for (int d = 0;; d++) {
+                if (d < 0) {
+                    throw new IllegalStateException("No displacement found for bucket " + b);
+                }
+                if (place(groupedHashes, start, count, d, n, taken, slots)) {
+                    displacements[b] = d;
+                    for (int i = 0; i < count; i++) {
+                        keys[slots[i]] = groupedKeys[start + i];
+                        values[slots[i]] = groupedValues[start + i];
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tries to send the keys of a bucket to free, distinct slots with the
+     * specified displacement, and marks the slots as taken if it succeeds.
+     */
+    private static boolean place(final long[] hashes, final int start, final int count, final int d, final int n,
+            final long[] taken, final int[] slots) {
+        for (int i = 0; i < count; i++) {
+            final int slot = slot(hashes[start + i], d, n);
+            if ((taken[slot >>> 6] & 1L << slot) != 0) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        for (int i = 0; i < count; i++) {
+            taken[slots[i] >>> 6] |= 1L << slots[i];
+        }
+        return true;
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer.
+     */
+    private static long mix(final long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    /**
+     * Maps the high half of the hash to a bucket, without a division.
+     */
+    private static int bucket(final long hash, final int buckets) {
+        return (int) ((hash >>> 32) * buckets >>> 32);
+    }
+
+    /**
+     * Maps the hash, displaced by <code>d</code>, to a slot, without a
+     * division.
+     */
+    private static int slot(final long hash, final int d, final int n) {
+        final long h = (hash ^ d * 0x9E3779B97F4A7C15L) * 0xC4CEB9FE1A85EC53L;
+        return (int) ((h >>> 32) * n >>> 32);
+    }
+
+    private int indexOf(final long key) {
+        final int n = keys.length;
+        if (n == 0) {
+            return -1;
+        }
+        final long h = mix(key);
+        final int d = displacements[bucket(h, displacements.length)];
+        // select ~d for direct slots without a hard to predict branch
+        final int direct = d >> 31;
+        final int slot = ~d & direct | slot(h, d, n) & ~direct;
+        return keys[slot] == key ? slot : -1;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     */
+    public boolean containsKey(final long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return a <code>long[]</code> with the keys contained in this map
+     */
+    public long[] keys() {
+        return keys.clone();
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this map, without
+     * boxing the keys.
+     *
+     * @param procedure the procedure to invoke
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final LongObjectProcedure<? super V> procedure) {
+        for (int i = 0; i < keys.length; i++) {
+            procedure.apply(keys[i], (V) values[i]);
+        }
+    }
+
+    /**
+     * Copies the contents of this map into a new, mutable {@link LongMap}.
+     *
+     * @return a <code>LongMap</code> with the mappings of this map
+     */
+    @SuppressWarnings("unchecked")
+    public LongMap<V> toLongMap() {
+        final LongMap<V> map = new LongMap<V>((int) Math.min((long) (keys.length / 0.75f) + 1, 1 << 30));
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], (V) values[i]);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        for (int i = 0; i < keys.length; i++) {
+            sb.append(sep).append(keys[i]).append('=').append(values[i]);
+            sep = ", ";
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
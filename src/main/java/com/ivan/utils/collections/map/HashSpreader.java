@@ -0,0 +1,82 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * Functions used by the primitive hash maps to spread the bits of a key before
+ * masking the result down to a bucket index. Since the tables of these maps
+ * have power-of-two capacities, only the low bits of the spread key select
+ * the bucket; a spreader decides how much the other bits of the key
+ * contribute to them.
+ * <p>
+ * The spreader is chosen when a map is constructed. {@link #IDENTITY} is the
+ * cheapest and works best for dense, sequential keys. Keys that are multiples
+ * of a power of two, or that only differ in their high bits (timestamps, ids
+ * with a sequence number in the low bits) pile up in a few buckets with it;
+ * {@link #FIBONACCI} and {@link #MURMUR3} distribute such keys evenly at the
+ * cost of a few extra instructions per operation.
+ */
+public enum HashSpreader {
+    /**
+     * Uses the key as is. <code>long</code> keys have their high half folded
+     * into their low half.
+     */
+    IDENTITY,
+
+    /**
+     * Multiplies the key by 2<sup>32</sup>/&phi; (2<sup>64</sup>/&phi; for
+     * <code>long</code> keys) and folds the high half of the product into its
+     * low half.
+     */
+    FIBONACCI,
+
+    /**
+     * Applies the finalization step of MurmurHash3 (<code>fmix32</code> and
+     * <code>fmix64</code>), so that every bit of the key affects every bit of
+     * the result.
+     */
+    MURMUR3;
+
+    /**
+     * Spreads the bits of the specified <code>int</code> key.
+     *
+     * @param key the key
+     * @return the spread key, to be masked down to a bucket index
+     */
+    public int spread(final int key) {
+        if (this == IDENTITY) {
+            return key;
+        }
+        if (this == FIBONACCI) {
+            final int h = key * 0x9E3779B9;
+            return h ^ h >>> 16;
+        }
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Spreads the bits of the specified <code>long</code> key.
+     *
+     * @param key the key
+     * @return the spread key, to be masked down to a bucket index
+     */
+    public int spread(final long key) {
+        if (this == IDENTITY) {
+            return (int) (key ^ key >>> 32);
+        }
+        if (this == FIBONACCI) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            final int x = (int) (h ^ h >>> 32);
+            return x ^ x >>> 16;
+        }
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ h >>> 33);
+    }
+}
@@ -0,0 +1,11 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * A function that computes a value from an <code>int</code> key, used by the
+ * primitive maps to produce values on demand without boxing the key.
+ *
+ * @param <V> the type of the value produced by the function
+ */
+public interface IntFunction<V> {
+    V apply(int key);
+}
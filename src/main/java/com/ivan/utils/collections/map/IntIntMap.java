@@ -0,0 +1,594 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+
+import com.ivan.utils.math.MathEx;
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * Hash map from <code>int</code> keys to <code>int</code> values. Neither keys
+ * nor values are boxed: keys are stored in an <code>int[]</code> table and
+ * values in a parallel <code>int[]</code> table, using open addressing with
+ * linear probing, so none of the lookup and update operations allocate memory
+ * once the table has reached its final capacity.
+ * <p>
+ * Since values are primitives, absent mappings are reported through a
+ * configurable <i>no value</i> sentinel, which defaults to <code>0</code>.
+ * {@link #get(int)}, {@link #put(int, int)} and {@link #remove(int)} return
+ * the sentinel when there was no mapping for the key; use
+ * {@link #containsKey(int)} to tell an absent mapping apart from a key that
+ * is mapped to the sentinel value. This collection is not thread-safe.
+ * <p>
+ * This class is one of a family of primitive maps that share the same
+ * implementation, differing only in the key and value types.
+ */
+public class IntIntMap {
+    int[] keyTable;
+
+    int[] valueTable;
+
+    /**
+     * The capacity mask, also the index of the slot reserved for the key 0.
+     */
+    int capacityMask;
+
+    boolean hasZeroKey;
+
+    int size;
+
+    private float loadFactor;
+
+    private int threshold;
+
+    private final int noValue;
+
+    private final HashSpreader spreader;
+
+    /**
+     * The minimum capacity - MUST be a power of two.
+     */
+    private static final int MINIMUM_CAPACITY = 4;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+    * The maximum capacity, used if a higher value is implicitly specified
+    * by either of the constructors with arguments.
+    * MUST be a power of two <= 1<<30.
+    */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Constructs an empty <code>IntIntMap</code> with the default initial
+     * capacity (16), the default load factor (0.75) and <code>0</code> as
+     * the no value sentinel.
+     */
+    public IntIntMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>IntIntMap</code> with the specified initial
+     * capacity, the default load factor (0.75) and <code>0</code> as the
+     * no value sentinel.
+     *
+     * @param capacity the initial capacity
+     */
+    public IntIntMap(final int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty <code>IntIntMap</code> with the specified initial
+     * capacity and load factor, and <code>0</code> as the no value
+     * sentinel.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public IntIntMap(final int capacity, final float loadFactor) {
+        this(capacity, loadFactor, 0);
+    }
+
+    /**
+     * Constructs an empty <code>IntIntMap</code> with the specified initial
+     * capacity, load factor and no value sentinel.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param noValue the value returned by the methods of this map to signal
+     *        the absence of a mapping
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public IntIntMap(final int capacity, final float loadFactor, final int noValue) {
+        this(capacity, loadFactor, noValue, HashSpreader.FIBONACCI);
+    }
+
+    /**
+     * Constructs an empty <code>IntIntMap</code> with the specified initial
+     * capacity, load factor, no value sentinel and hash spreader. Linear
+     * probing is sensitive to clustered hashes, so
+     * {@link HashSpreader#IDENTITY} should only be used with dense, sequential
+     * keys.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param noValue the value returned by the methods of this map to signal
+     *        the absence of a mapping
+     * @param spreader the function used to spread the bits of the keys
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     * @throws NullPointerException if the spreader is null
+     */
+    public IntIntMap(final int capacity, final float loadFactor, final int noValue, final HashSpreader spreader) {
+        if (spreader == null) {
+            throw new NullPointerException("spreader");
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.noValue = noValue;
+        this.spreader = spreader;
+        allocate(MathEx.clamp(BitMath.nextPowerOfTwo(capacity), MINIMUM_CAPACITY, MAXIMUM_CAPACITY));
+    }
+
+    /**
+     * Hashes the given key with the hash spreader of this map, returning the
+     * index of the slot where its probe sequence starts.
+     *
+     * @param key the key to be hashed
+     * @return the index of the first slot to probe for the key
+     */
+    private int hash(final int key, final int mask) {
+        return spreader.spread(key) & mask;
+    }
+
+    /**
+     * Allocates empty arrays for the specified capacity and updates the mask
+     * and threshold accordingly. One extra slot is allocated for the key 0.
+     *
+     * @param capacity the new capacity, MUST be a power of two
+     */
+    private void allocate(final int capacity) {
+        keyTable = new int[capacity + 1];
+        valueTable = new int[capacity + 1];
+        capacityMask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Rehashes the contents of this map into new arrays with a different
+     * capacity. This method is called automatically when the number of keys in
+     * this map reaches its threshold or {@link #trimToSize()} is invoked.
+     *
+     * @param newCapacity the new capacity, MUST be a power of two
+     */
+    private void rehash(final int newCapacity) {
+        if (newCapacity == capacityMask + 1) {
+            return;
+        }
+        final int[] oldKeys = keyTable;
+        final int[] oldValues = valueTable;
+        final int oldCapacity = capacityMask + 1;
+        allocate(newCapacity);
+
+        final int[] k = keyTable;
+        final int[] v = valueTable;
+        final int mask = capacityMask;
+        for (int i = 0; i < oldCapacity; i++) {
+            final int key = oldKeys[i];
+            if (key != 0) {
+                int pos = hash(key, mask);
+                while (k[pos] != 0) {
+                    pos = pos + 1 & mask;
+                }
+                k[pos] = key;
+                v[pos] = oldValues[i];
+            }
+        }
+        v[mask + 1] = oldValues[oldCapacity];
+    }
+
+    /**
+     * Returns the index of the slot that holds the specified key, or
+     * <code>-1</code> if this map contains no mapping for the key.
+     *
+     * @param key the key to look up
+     * @return the index of the slot holding the key, or <code>-1</code>
+     */
+    int indexOf(final int key) {
+        if (key == 0) {
+            return hasZeroKey ? capacityMask + 1 : -1;
+        }
+        final int[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        int curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return pos;
+            }
+            pos = pos + 1 & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value used by this map to signal the absence of a mapping.
+     *
+     * @return the no value sentinel of this map
+     */
+    public int noValue() {
+        return noValue;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     */
+    public boolean containsKey(final int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map maps one or more keys to the
+     * specified value.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return <code>true</code> if this map maps one or more keys to the
+     *         specified value
+     */
+    public boolean containsValue(final int value) {
+        final int[] k = keyTable;
+        final int[] v = valueTable;
+        if (hasZeroKey && v[capacityMask + 1] == value) {
+            return true;
+        }
+        for (int i = capacityMask; i >= 0; i--) {
+            if (k[i] != 0 && v[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the no value
+     * sentinel if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@link #noValue()} if this map contains no mapping for the key
+     */
+    public int get(final int key) {
+        if (key == 0) {
+            return hasZeroKey ? valueTable[capacityMask + 1] : noValue;
+        }
+        final int[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        int curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return valueTable[pos];
+            }
+            pos = pos + 1 & mask;
+        }
+        return noValue;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>defaultValue</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if the key is not mapped
+     * @return the value to which the specified key is mapped, or
+     *         <code>defaultValue</code> if this map contains no mapping for the
+     *         key
+     */
+    public int getOrDefault(final int key, final int defaultValue) {
+        final int pos = indexOf(key);
+        return pos < 0 ? defaultValue : valueTable[pos];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         {@link #noValue()} if there was no mapping for <code>key</code>
+     */
+    public int put(final int key, final int value) {
+        final int pos = insertionIndex(key);
+        if (pos < 0) {
+            final int old = valueTable[-pos - 1];
+            valueTable[-pos - 1] = value;
+            return old;
+        }
+        valueTable[pos] = value;
+        inserted();
+        return noValue;
+    }
+
+    /**
+     * Adds the specified amount to the value associated with the specified
+     * key. If the map contained no mapping for the key, it is mapped to
+     * <code>initialValue + increment</code>.
+     *
+     * @param key key whose associated value is to be incremented
+     * @param increment the amount to add to the value
+     * @param initialValue the value to increment if there is no mapping for
+     *        the key
+     * @return the new value associated with <code>key</code>
+     */
+    public int addTo(final int key, final int increment, final int initialValue) {
+        final int pos = insertionIndex(key);
+        if (pos < 0) {
+            return valueTable[-pos - 1] += increment;
+        }
+        final int value = valueTable[pos] = initialValue + increment;
+        inserted();
+        return value;
+    }
+
+    /**
+     * Finds the slot for the specified key, claiming a free slot for it if the
+     * map contains no mapping for the key. The caller must store the value in
+     * the claimed slot and invoke {@link #inserted()}.
+     *
+     * @param key the key
+     * @return the index of the claimed slot, or <code>-(index + 1)</code> if
+     *         the key was already mapped
+     */
+    private int insertionIndex(final int key) {
+        if (key == 0) {
+            final int pos = capacityMask + 1;
+            if (hasZeroKey) {
+                return -pos - 1;
+            }
+            hasZeroKey = true;
+            return pos;
+        }
+        final int[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        int curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return -pos - 1;
+            }
+            pos = pos + 1 & mask;
+        }
+        k[pos] = key;
+        return pos;
+    }
+
+    /**
+     * Accounts for a mapping added through {@link #insertionIndex(int)},
+     * growing the table if needed.
+     */
+    private void inserted() {
+        if (++size >= threshold) {
+            rehash(capacityMask + 1 << 1);
+        }
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         {@link #noValue()} if there was no mapping for <code>key</code>
+     */
+    public int remove(final int key) {
+        final int pos = indexOf(key);
+        if (pos < 0) {
+            return noValue;
+        }
+        final int old = valueTable[pos];
+        if (pos == capacityMask + 1) {
+            hasZeroKey = false;
+        } else {
+            shiftKeys(pos);
+        }
+        size--;
+        return old;
+    }
+
+    /**
+     * Empties the specified slot and moves back the entries that follow it in
+     * the same probe sequence, so that no lookup is cut short by the hole.
+     *
+     * @param slot the index of the slot to empty
+     */
+    private void shiftKeys(final int slot) {
+        final int[] k = keyTable;
+        final int[] v = valueTable;
+        final int mask = capacityMask;
+        int last = slot;
+        int pos = slot;
+        while (true) {
+            pos = pos + 1 & mask;
+            final int curr = k[pos];
+            if (curr == 0) {
+                k[last] = 0;
+                return;
+            }
+            final int home = hash(curr, mask);
+            if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                k[last] = curr;
+                v[last] = v[pos];
+                last = pos;
+            }
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map. These
+     * mappings will replace any mappings that this map had for any of the keys
+     * currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(final IntIntMap m) {
+        final int numKeysToBeAdded = m.size();
+        if (numKeysToBeAdded == 0) {
+            return;
+        }
+
+        /*
+         * Expand the map if the map if the number of mappings to be added
+         * is greater than or equal to threshold.  This is conservative; the
+         * obvious condition is (m.size() + size) >= threshold, but this
+         * condition could result in a map with twice the appropriate capacity,
+         * if the keys to be added overlap with the keys already in this map.
+         * By using the conservative calculation, we subject ourself
+         * to at most one extra resize.
+         */
+        if (numKeysToBeAdded > threshold) {
+            int targetCapacity = (int) (numKeysToBeAdded / loadFactor + 1);
+            if (targetCapacity > MAXIMUM_CAPACITY) {
+                targetCapacity = MAXIMUM_CAPACITY;
+            }
+            int newCapacity = capacityMask + 1;
+            while (newCapacity < targetCapacity) {
+                newCapacity <<= 1;
+            }
+            rehash(newCapacity);
+        }
+
+        final int[] k = m.keyTable;
+        final int[] v = m.valueTable;
+        for (int i = k.length - 2; i >= 0; i--) {
+            if (k[i] != 0) {
+                put(k[i], v[i]);
+            }
+        }
+        if (m.hasZeroKey) {
+            put(0, v[k.length - 1]);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        size = 0;
+        hasZeroKey = false;
+        if (capacityMask + 1 == DEFAULT_INITIAL_CAPACITY) {
+            Arrays.fill(keyTable, 0);
+        } else {
+            allocate(DEFAULT_INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return an <code>int[]</code> with the keys contained in this map
+     */
+    public int[] keys() {
+        final int[] result = new int[size];
+        int i = 0;
+        final int[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                result[i++] = k[pos];
+            }
+        }
+        if (hasZeroKey) {
+            result[i] = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns an array of the values contained in this map, in the same order
+     * as the keys returned by {@link #keys()}.
+     *
+     * @return an <code>int[]</code> with the values contained in this map
+     */
+    public int[] values() {
+        final int[] result = new int[size];
+        int i = 0;
+        final int[] k = keyTable;
+        final int[] v = valueTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                result[i++] = v[pos];
+            }
+        }
+        if (hasZeroKey) {
+            result[i] = v[capacityMask + 1];
+        }
+        return result;
+    }
+
+    /**
+     * Reduces the internal arrays to the minimum capacity required to hold all
+     * mappings contained in this mapping respecting the load factor.
+     */
+    public void trimToSize() {
+        final int newCapacity = Math.max(MINIMUM_CAPACITY, BitMath.nextPowerOfTwo((int) (size / loadFactor) + 1));
+        rehash(newCapacity);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        final int[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                sb.append(sep).append(k[pos]).append('=').append(valueTable[pos]);
+                sep = ", ";
+            }
+        }
+        if (hasZeroKey) {
+            sb.append(sep).append(0).append('=').append(valueTable[capacityMask + 1]);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * A callback invoked with a key and a value of a map with <code>int</code>
+ * keys and <code>int</code> values, without boxing either.
+ */
+public interface IntIntProcedure {
+    void apply(int key, int value);
+}
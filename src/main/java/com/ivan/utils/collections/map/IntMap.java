@@ -1,6 +1,8 @@
 package com.ivan.utils.collections.map;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.file.Path;
 import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
@@ -10,6 +12,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import com.ivan.utils.lang.Objects;
 import com.ivan.utils.math.MathEx;
@@ -32,6 +35,13 @@ import com.ivan.utils.math.bits.BitMath;
  * changes made to the collections returned by these methods are reflected in
  * this map and vice-versa. The iterators returned by these collections are
  * <i>fail-fast</i>.
+ * <p>
+ * By default the map grows by rehashing all of its mappings into a table of
+ * twice the capacity, inside the <code>put</code> that crosses the threshold.
+ * With {@link #setIncrementalRehash(boolean) incremental rehashing} enabled,
+ * the new table is allocated instead and both tables stay live, and each later
+ * <code>put</code> or <code>remove</code> migrates a few buckets of the old
+ * table, so no single call pays for the whole resize.
  *
  * @param <V> the type of the values stored by this map
  */
@@ -48,6 +58,27 @@ public class IntMap<V> {
 
     private int threshold;
 
+    private final HashSpreader spreader;
+
+    private boolean incrementalRehash;
+
+    /**
+     * The table being migrated into {@link #table} by an incremental rehash,
+     * or <code>null</code>. Its buckets below {@link #migrated} have been
+     * moved; the others still hold their mappings.
+     */
+    private Entry<V>[] oldTable;
+
+    private int migrated;
+
+    private int resizeCount;
+
+    private boolean recordStats;
+
+    private long lookupCount;
+
+    private long missCount;
+
     private Collection<V> values;
 
     /**
@@ -72,6 +103,39 @@ public class IntMap<V> {
      */
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
+    /**
+     * The number of keys whose buckets are loaded ahead of probing by the
+     * batched operations.
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * The number of buckets of the old table migrated by each update during
+     * an incremental rehash. The old table has half the capacity of the new
+     * one and a rehash starts when the old one reaches its threshold, so with
+     * any load factor above 1/4 the migration ends before the new table fills
+     * up; otherwise the next resize finishes it first.
+     */
+    private static final int MIGRATION_STEP = 4;
+
+    /**
+     * The number of keys below which {@link #build(int[], Object[], int)} runs
+     * on the calling thread.
+     */
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 16;
+
+    /**
+     * The maximum number of bucket ranges filled concurrently by
+     * {@link #build(int[], Object[], int)} - MUST be a power of two.
+     */
+    private static final int MAX_BUILD_RANGES = 1 << 10;
+
+    /**
+     * The estimated size of an {@link Entry}, on a 64-bit JVM with compressed
+     * references.
+     */
+    private static final int ENTRY_BYTES = 24;
+
     /**
      * Constructs an empty <code>IntMap</code> with the default initial capacity
      * (16) and the default load factor (0.75).
@@ -92,13 +156,31 @@ public class IntMap<V> {
 
     /**
      * Constructs an empty <code>IntMap</code> with the specified initial
-     * capacity and load factor.
+     * capacity and load factor, using the {@link HashSpreader#IDENTITY
+     * identity} hash spreader.
      *
      * @param initialCapacity the initial capacity, clamped to a valid number
      * @param loadFactor the load factor
      * @throws IllegalArgumentException if the load factor is nonpositive
      */
     public IntMap(final int capacity, final float loadFactor) {
+        this(capacity, loadFactor, HashSpreader.IDENTITY);
+    }
+
+    /**
+     * Constructs an empty <code>IntMap</code> with the specified initial
+     * capacity, load factor and hash spreader.
+     *
+     * @param initialCapacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param spreader the function used to spread the bits of the keys
+     * @throws IllegalArgumentException if the load factor is nonpositive
+     * @throws NullPointerException if the spreader is null
+     */
+    public IntMap(final int capacity, final float loadFactor, final HashSpreader spreader) {
+        if (spreader == null) {
+            throw new NullPointerException("spreader");
+        }
         if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
             throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
         }
@@ -106,6 +188,7 @@ public class IntMap<V> {
         capacityMask = cap - 1;
         this.loadFactor = loadFactor;
         threshold = (int) (cap * loadFactor);
+        this.spreader = spreader;
         table = createTable(cap);
     }
 
@@ -125,14 +208,182 @@ public class IntMap<V> {
     }
 
     /**
-     * Hashes the given key, returning the index of the bucket where it is to
-     * be placed.
+     * Builds a map from the specified keys and values, associating
+     * <code>keys[i]</code> with <code>values[i]</code>, as if they had been put
+     * in order: a repeated key keeps its last value. See
+     * {@link #build(int[], Object[], int, DuplicateKeyPolicy)}.
+     *
+     * @param keys the keys
+     * @param values the values, at the same indices as their keys
+     * @param parallelism the number of threads to build the map with
+     * @return a new map with the mappings
+     * @throws IllegalArgumentException if the arrays have different lengths or
+     *         the parallelism is less than 1
+     */
+    public static <V> IntMap<V> build(final int[] keys, final V[] values, final int parallelism) {
+        return build(keys, values, parallelism, DuplicateKeyPolicy.LAST_WINS);
+    }
+
+    /**
+     * Builds a map from the specified keys and values, associating
+     * <code>keys[i]</code> with <code>values[i]</code>, on up to
+     * <code>parallelism</code> threads. The table is sized for all the keys up
+     * front, so it is never rehashed. The keys are then grouped by ranges of
+     * buckets, which lets each thread fill its own range of the table without
+     * synchronization.
+     * <p>
+     * Within a range the keys are inserted in the order of their indices, so
+     * the result does not depend on the number of threads or their
+     * scheduling. If a key appears more than once, the policy either keeps
+     * the value at its highest index or rejects the input, naming the key
+     * whose second occurrence has the lowest index.
+     *
+     * @param keys the keys
+     * @param values the values, at the same indices as their keys
+     * @param parallelism the number of threads to build the map with
+     * @param duplicates what to do with repeated keys
+     * @return a new map with the mappings
+     * @throws IllegalArgumentException if the arrays have different lengths,
+     *         the parallelism is less than 1 or the policy is
+     *         {@link DuplicateKeyPolicy#REJECT} and a key is repeated
+     * @throws NullPointerException if the policy is null
+     */
+    public static <V> IntMap<V> build(final int[] keys, final V[] values, final int parallelism,
+            final DuplicateKeyPolicy duplicates) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Array lengths differ: " + keys.length + " != " + values.length);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+        }
+        if (duplicates == null) {
+            throw new NullPointerException("duplicates");
+        }
+        final int n = keys.length;
+        final IntMap<V> map = new IntMap<V>((int) Math.min(n / DEFAULT_LOAD_FACTOR + 1, MAXIMUM_CAPACITY));
+        final Entry<V>[] t = map.table;
+        final int mask = map.capacityMask;
+
+        // several ranges per thread even out unlucky ranges; small inputs
+        // are not worth the threads
+        final int ranges = n < PARALLEL_BUILD_THRESHOLD || parallelism == 1 ? 1
+                : Math.min(Math.min(BitMath.nextPowerOfTwo(parallelism * 4), MAX_BUILD_RANGES), t.length);
+        final int shift = Integer.numberOfTrailingZeros(t.length) - Integer.numberOfTrailingZeros(ranges);
+        final int[] order;
+        final int[] rangeStart = new int[ranges + 1];
+        final ForkJoinPool pool = ranges == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            if (ranges == 1) {
+                order = null;
+                rangeStart[1] = n;
+            } else {
+                // counting sort of the indices by bucket range: count the keys
+                // of each chunk of the input in each range, then scatter
+                final int[][] offsets = new int[ranges][ranges];
+                ParallelTasks.invoke(pool, ranges, new ParallelTasks.Task() {
+                    @Override
+                    public void run(final int chunk) {
+                        final int[] counts = offsets[chunk];
+                        for (int i = chunkStart(chunk, n, ranges), end = chunkStart(chunk + 1, n, ranges); i < end; i++) {
+                            counts[map.hash(keys[i], mask) >>> shift]++;
+                        }
+                    }
+                });
+                int pos = 0;
+                for (int r = 0; r < ranges; r++) {
+                    rangeStart[r] = pos;
+                    for (int chunk = 0; chunk < ranges; chunk++) {
+                        final int count = offsets[chunk][r];
+                        offsets[chunk][r] = pos;
+                        pos += count;
+                    }
+                }
+                rangeStart[ranges] = n;
+                order = new int[n];
+                ParallelTasks.invoke(pool, ranges, new ParallelTasks.Task() {
+                    @Override
+                    public void run(final int chunk) {
+                        final int[] next = offsets[chunk];
+                        for (int i = chunkStart(chunk, n, ranges), end = chunkStart(chunk + 1, n, ranges); i < end; i++) {
+                            order[next[map.hash(keys[i], mask) >>> shift]++] = i;
+                        }
+                    }
+                });
+            }
+
+            final int[] added = new int[ranges];
+            final int[] firstDuplicate = new int[ranges];
+            ParallelTasks.invoke(pool, ranges, new ParallelTasks.Task() {
+                @Override
+                public void run(final int r) {
+                    int count = 0;
+                    firstDuplicate[r] = -1;
+                    for (int k = rangeStart[r]; k < rangeStart[r + 1]; k++) {
+                        final int i = order == null ? k : order[k];
+                        final int key = keys[i];
+                        final int slot = map.hash(key, mask);
+                        Entry<V> e = t[slot];
+                        while (e != null && e.key != key) {
+                            e = e.next;
+                        }
+                        if (e == null) {
+                            t[slot] = new Entry<V>(key, values[i], t[slot]);
+                            count++;
+                        } else if (duplicates == DuplicateKeyPolicy.LAST_WINS) {
+                            e.value = values[i];
+                        } else {
+                            firstDuplicate[r] = i;
+                            break;
+                        }
+                    }
+                    added[r] = count;
+                }
+            });
+
+            int duplicate = -1;
+            for (int r = 0; r < ranges; r++) {
+                map.size += added[r];
+                if (firstDuplicate[r] >= 0 && (duplicate < 0 || firstDuplicate[r] < duplicate)) {
+                    duplicate = firstDuplicate[r];
+                }
+            }
+            if (duplicate >= 0) {
+                throw new IllegalArgumentException("Duplicate key: " + keys[duplicate]);
+            }
+            return map;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns the start index of a chunk of the input of
+     * {@link #build(int[], Object[], int, DuplicateKeyPolicy)}.
+     */
+    private static int chunkStart(final int chunk, final int n, final int chunks) {
+        return (int) ((long) n * chunk / chunks);
+    }
+
+    /**
+     * Hashes the given key with the hash spreader of this map, returning the
+     * index of the bucket where it is to be placed.
      * 
      * @param key the key to be hashed
      * @return the index of the bucket where the key should be allocated
      */
-    private static int hash(final int key, final int mask) {
-        return key & mask;
+    private int hash(final int key, final int mask) {
+        return spreader.spread(key) & mask;
+    }
+
+    /**
+     * Returns the function used by this map to spread the bits of the keys.
+     *
+     * @return the hash spreader of this map
+     */
+    public HashSpreader getHashSpreader() {
+        return spreader;
     }
 
     /**
@@ -143,9 +394,11 @@ public class IntMap<V> {
      * @param newCapacity the new capacity, MUST be a power of two
      */
     private void rehash(final int newCapacity) {
+        completeRehash();
         if (newCapacity == table.length) {
             return;
         }
+        resizeCount++;
         final int newCapacityMask = newCapacity - 1;
         final Entry<V>[] newTable = createTable(newCapacity);
         for (final Entry<V> entry : table) {
@@ -164,6 +417,169 @@ public class IntMap<V> {
         threshold = (int) (newCapacity * loadFactor);
     }
 
+    /**
+     * Grows the table to twice its capacity, either at once or by starting an
+     * incremental rehash.
+     */
+    private void grow() {
+        if (!incrementalRehash) {
+            rehash(table.length << 1);
+            return;
+        }
+        completeRehash();
+        final int newCapacity = table.length << 1;
+        resizeCount++;
+        oldTable = table;
+        migrated = 0;
+        table = createTable(newCapacity);
+        capacityMask = newCapacity - 1;
+        threshold = (int) (newCapacity * loadFactor);
+    }
+
+    /**
+     * Moves the mappings of the next buckets of the old table into the new
+     * one, ending the incremental rehash after the last bucket.
+     *
+     * @param buckets the maximum number of buckets to migrate
+     */
+    private void migrate(final int buckets) {
+        final Entry<V>[] old = oldTable;
+        final Entry<V>[] t = table;
+        final int end = Math.min(old.length, migrated + buckets);
+        for (int i = migrated; i < end; i++) {
+            Entry<V> e = old[i];
+            old[i] = null;
+            while (e != null) {
+                final int hash = hash(e.key, capacityMask);
+                final Entry<V> nx = e.next;
+                e.next = t[hash];
+                t[hash] = e;
+                e = nx;
+            }
+        }
+        migrated = end;
+        if (end == old.length) {
+            oldTable = null;
+        }
+    }
+
+    /**
+     * Finishes a pending incremental rehash. Operations which visit every
+     * mapping of the map call this first, so that they only have to scan
+     * {@link #table}.
+     */
+    private void completeRehash() {
+        if (oldTable != null) {
+            migrate(oldTable.length);
+        }
+    }
+
+    /**
+     * Returns the head of the chain which holds the key, which is still in
+     * the old table if its bucket there has not been migrated yet.
+     */
+    private Entry<V> chain(final int key) {
+        final Entry<V>[] old = oldTable;
+        if (old != null) {
+            final int i = hash(key, old.length - 1);
+            if (i >= migrated) {
+                return old[i];
+            }
+        }
+        return table[hash(key, capacityMask)];
+    }
+
+    /**
+     * Enables or disables incremental rehashing. When enabled, the map grows
+     * by allocating a table of twice the capacity and migrating a few buckets
+     * on each later <code>put</code> or <code>remove</code> instead of
+     * rehashing every mapping at once, which bounds the latency of the call
+     * that crosses the threshold at the cost of keeping both tables alive
+     * during the migration. Lookups in the meantime check the bucket of the
+     * old table first. Operations which visit every mapping, such as
+     * iteration, finish a pending migration first, and so does disabling
+     * incremental rehashing.
+     *
+     * @param enabled whether to rehash incrementally
+     */
+    public void setIncrementalRehash(final boolean enabled) {
+        incrementalRehash = enabled;
+        if (!enabled) {
+            completeRehash();
+        }
+    }
+
+    /**
+     * Enables or disables the lookup counters reported by {@link #stats()}.
+     * While enabled, every <code>get</code> and <code>containsKey</code> call
+     * increments a counter, and those that find no mapping increment a miss
+     * counter; while disabled, the counters keep their values.
+     *
+     * @param enabled whether to count lookups
+     */
+    public void setRecordStats(final boolean enabled) {
+        recordStats = enabled;
+    }
+
+    /**
+     * Resets the lookup and miss counters reported by {@link #stats()} to
+     * zero.
+     */
+    public void resetStats() {
+        lookupCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Returns a snapshot of the occupancy of this map: capacity, load, chain
+     * lengths, estimated footprint, number of resizes and, if enabled by
+     * {@link #setRecordStats(boolean)}, lookup counters. This takes time
+     * proportional to the capacity of the map, but does not modify it.
+     *
+     * @return the statistics of this map
+     */
+    public MapStats stats() {
+        int[] histogram = countChains(table, 0, new int[8]);
+        long bytes = MapStats.arrayBytes(table.length) + (long) size * ENTRY_BYTES;
+        final Entry<V>[] old = oldTable;
+        if (old != null) {
+            histogram = countChains(old, migrated, histogram);
+            bytes += MapStats.arrayBytes(old.length);
+        }
+        return new MapStats(table.length, size, loadFactor, histogram, bytes, resizeCount, lookupCount, missCount);
+    }
+
+    /**
+     * Adds the lengths of the chains of a table, from the specified bucket on,
+     * to a histogram, which is grown as needed.
+     */
+    private static int[] countChains(final Entry<?>[] t, final int from, final int[] histogram) {
+        int[] h = histogram;
+        for (int i = from; i < t.length; i++) {
+            int n = 0;
+            for (Entry<?> e = t[i]; e != null; e = e.next) {
+                n++;
+            }
+            if (n >= h.length) {
+                final int[] grown = new int[Math.max(n + 1, h.length * 2)];
+                System.arraycopy(h, 0, grown, 0, h.length);
+                h = grown;
+            }
+            h[n]++;
+        }
+        return h;
+    }
+
+    /**
+     * Returns <code>true</code> if this map rehashes incrementally.
+     *
+     * @return whether this map rehashes incrementally
+     * @see #setIncrementalRehash(boolean)
+     */
+    public boolean isIncrementalRehash() {
+        return incrementalRehash;
+    }
+
     /**
      * Creates a new table with the specified capacity.
      * 
@@ -201,12 +617,18 @@ public class IntMap<V> {
      * specified key.
      */
     public boolean containsKey(final int key) {
-        final int hash = hash(key, capacityMask);
-        for (Entry<V> e = table[hash]; e != null; e = e.next) {
+        for (Entry<V> e = chain(key); e != null; e = e.next) {
             if (e.key == key) {
+                if (recordStats) {
+                    lookupCount++;
+                }
                 return true;
             }
         }
+        if (recordStats) {
+            lookupCount++;
+            missCount++;
+        }
         return false;
     }
 
@@ -219,6 +641,7 @@ public class IntMap<V> {
      *         specified value
      */
     public boolean containsValue(final V value) {
+        completeRehash();
         for (final Entry<V> entry : table) {
             for (Entry<V> e = entry; e != null; e = e.next) {
                 if (Objects.equals(e.value, value)) {
@@ -247,12 +670,18 @@ public class IntMap<V> {
      * @see #put(int, Object)
      */
     public V get(final int key) {
-        final int hash = hash(key, capacityMask);
-        for (Entry<V> e = table[hash]; e != null; e = e.next) {
+        for (Entry<V> e = chain(key); e != null; e = e.next) {
             if (e.key == key) {
+                if (recordStats) {
+                    lookupCount++;
+                }
                 return e.value;
             }
         }
+        if (recordStats) {
+            lookupCount++;
+            missCount++;
+        }
         return null;
     }
 
@@ -269,8 +698,18 @@ public class IntMap<V> {
      *         previously associated <code>null</code> with <code>key</code>.)
      */
     public V put(final int key, final V value) {
-        final int hash = hash(key, capacityMask);
-        Entry<V> e = table[hash];
+        Entry<V>[] t = table;
+        int hash = hash(key, capacityMask);
+        final Entry<V>[] pending = oldTable;
+        if (pending != null) {
+            migrate(MIGRATION_STEP);
+            final int i = hash(key, pending.length - 1);
+            if (i >= migrated) {
+                t = pending;
+                hash = i;
+            }
+        }
+        Entry<V> e = t[hash];
         while (e != null) {
             if (e.key == key) {
                 final V old = e.value;
@@ -279,12 +718,12 @@ public class IntMap<V> {
             }
             e = e.next;
         }
-        table[hash] = new Entry<V>(key, value, table[hash]);
+        t[hash] = new Entry<V>(key, value, t[hash]);
         size++;
         modCount++;
 
         if (size >= threshold) {
-            rehash(table.length << 1);
+            grow();
         }
         return null;
     }
@@ -299,15 +738,25 @@ public class IntMap<V> {
      *         previously associated <code>null</code> with <code>key</code>.)
      */
     public V remove(final int key) {
-        final int hash = hash(key, capacityMask);
-        Entry<V> e = table[hash];
+        Entry<V>[] t = table;
+        int hash = hash(key, capacityMask);
+        final Entry<V>[] pending = oldTable;
+        if (pending != null) {
+            migrate(MIGRATION_STEP);
+            final int i = hash(key, pending.length - 1);
+            if (i >= migrated) {
+                t = pending;
+                hash = i;
+            }
+        }
+        Entry<V> e = t[hash];
         if (e == null) {
             return null;
         }
 
         if (e.key == key) {
             final V old = e.value;
-            table[hash] = e.next;
+            t[hash] = e.next;
             size--;
             modCount++;
             return old;
@@ -342,30 +791,9 @@ public class IntMap<V> {
         if (numKeysToBeAdded == 0) {
             return;
         }
+        ensureCapacity(numKeysToBeAdded);
 
-        /*
-         * Expand the map if the map if the number of mappings to be added
-         * is greater than or equal to threshold.  This is conservative; the
-         * obvious condition is (m.size() + size) >= threshold, but this
-         * condition could result in a map with twice the appropriate capacity,
-         * if the keys to be added overlap with the keys already in this map.
-         * By using the conservative calculation, we subject ourself
-         * to at most one extra resize.
-         */
-        if (numKeysToBeAdded > threshold) {
-            int targetCapacity = (int) (numKeysToBeAdded / loadFactor + 1);
-            if (targetCapacity > MAXIMUM_CAPACITY) {
-                targetCapacity = MAXIMUM_CAPACITY;
-            }
-            int newCapacity = table.length;
-            while (newCapacity < targetCapacity) {
-                newCapacity <<= 1;
-            }
-            if (newCapacity > table.length) {
-                rehash(newCapacity);
-            }
-        }
-
+        m.completeRehash();
         for (final Entry<? extends V> entry : m.table) {
             for (Entry<? extends V> e = entry; e != null; e = e.next) {
                 put(e.key, e.value);
@@ -386,16 +814,25 @@ public class IntMap<V> {
         if (numKeysToBeAdded == 0) {
             return;
         }
+        ensureCapacity(numKeysToBeAdded);
 
-        /*
-         * Expand the map if the map if the number of mappings to be added
-         * is greater than or equal to threshold.  This is conservative; the
-         * obvious condition is (m.size() + size) >= threshold, but this
-         * condition could result in a map with twice the appropriate capacity,
-         * if the keys to be added overlap with the keys already in this map.
-         * By using the conservative calculation, we subject ourself
-         * to at most one extra resize.
-         */
+        for (final Map.Entry<? extends Integer, ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Expands the map ahead of a bulk insertion if the number of mappings to
+     * be added is greater than or equal to threshold. This is conservative; the
+     * obvious condition is (m.size() + size) >= threshold, but this condition
+     * could result in a map with twice the appropriate capacity, if the keys
+     * to be added overlap with the keys already in this map. By using the
+     * conservative calculation, we subject ourself to at most one extra
+     * resize.
+     *
+     * @param numKeysToBeAdded the number of mappings about to be added
+     */
+    private void ensureCapacity(final int numKeysToBeAdded) {
         if (numKeysToBeAdded > threshold) {
             int targetCapacity = (int) (numKeysToBeAdded / loadFactor + 1);
             if (targetCapacity > MAXIMUM_CAPACITY) {
@@ -409,9 +846,111 @@ public class IntMap<V> {
                 rehash(newCapacity);
             }
         }
+    }
 
-        for (final Map.Entry<? extends Integer, ? extends V> entry : m.entrySet()) {
-            put(entry.getKey(), entry.getValue());
+    /**
+     * Looks up the values of several keys at once, storing the value of
+     * <code>keys[i]</code>, or <code>null</code> if it is not mapped, into
+     * <code>out[i]</code>.
+     * <p>
+     * The keys are processed in batches: the buckets of a whole batch are
+     * loaded before any chain is walked, so the cache misses of independent
+     * lookups overlap instead of being paid one after the other.
+     *
+     * @param keys the keys to look up
+     * @param out the array that receives the values
+     * @throws IllegalArgumentException if <code>out</code> is shorter than
+     *         <code>keys</code>
+     */
+    public void getAll(final int[] keys, final V[] out) {
+        if (out.length < keys.length) {
+            throw new IllegalArgumentException("Output array too short: " + out.length + " < " + keys.length);
+        }
+        if (oldTable != null) {
+            // keys may be in either table until the migration ends
+            for (int i = 0; i < keys.length; i++) {
+                out[i] = get(keys[i]);
+            }
+            return;
+        }
+        final Entry<V>[] t = table;
+        final int mask = capacityMask;
+        final Entry<V>[] heads = createTable(BATCH_SIZE);
+        for (int base = 0; base < keys.length; base += BATCH_SIZE) {
+            final int n = Math.min(BATCH_SIZE, keys.length - base);
+            for (int i = 0; i < n; i++) {
+                heads[i] = t[hash(keys[base + i], mask)];
+            }
+            for (int i = 0; i < n; i++) {
+                final int key = keys[base + i];
+                Entry<V> e = heads[i];
+                while (e != null && e.key != key) {
+                    e = e.next;
+                }
+                out[base + i] = e == null ? null : e.value;
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for every one
+     * of the specified keys. The keys are looked up in batches, like
+     * {@link #getAll(int[], Object[])} does.
+     *
+     * @param keys the keys whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for all of the
+     *         keys
+     */
+    public boolean containsAll(final int[] keys) {
+        if (oldTable != null) {
+            // keys may be in either table until the migration ends
+            for (final int key : keys) {
+                if (!containsKey(key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final Entry<V>[] t = table;
+        final int mask = capacityMask;
+        final Entry<V>[] heads = createTable(BATCH_SIZE);
+        for (int base = 0; base < keys.length; base += BATCH_SIZE) {
+            final int n = Math.min(BATCH_SIZE, keys.length - base);
+            for (int i = 0; i < n; i++) {
+                heads[i] = t[hash(keys[base + i], mask)];
+            }
+            for (int i = 0; i < n; i++) {
+                final int key = keys[base + i];
+                Entry<V> e = heads[i];
+                while (e != null && e.key != key) {
+                    e = e.next;
+                }
+                if (e == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Associates each of the specified keys with the value at the same index
+     * of <code>values</code>. The table is grown up front to hold the current
+     * mappings and all of the keys, as if none of them were mapped yet, so
+     * that it is not rehashed over and over while they are inserted.
+     *
+     * @param keys the keys
+     * @param values the values to be associated with the keys
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    public void putAll(final int[] keys, final V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Array lengths differ: " + keys.length + " != " + values.length);
+        }
+        completeRehash();
+        ensureCapacity((int) Math.min((long) size + keys.length, Integer.MAX_VALUE));
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
         }
     }
 
@@ -422,6 +961,7 @@ public class IntMap<V> {
     public void clear() {
         size = 0;
         modCount++;
+        oldTable = null;
         table = createTable(DEFAULT_INITIAL_CAPACITY);
         capacityMask = DEFAULT_INITIAL_CAPACITY - 1;
     }
@@ -432,6 +972,7 @@ public class IntMap<V> {
      * @return an <code>int[]</code> with the keys contained in this map 
      */
     public int[] keys() {
+        completeRehash();
         final int[] keys = new int[size];
         int i = 0;
         for (final Entry<V> entry : table) {
@@ -510,6 +1051,145 @@ public class IntMap<V> {
         return new MapView();
     }
 
+    /**
+     * Returns a cursor over the mappings of this map. Unlike the iterators of
+     * the collection views, a cursor does not box keys or allocate any object
+     * per mapping. The cursor is <i>fail-fast</i>: modifying the map other than
+     * through the cursor itself while it is in use causes its next
+     * {@link Cursor#advance()} to throw a
+     * {@link ConcurrentModificationException}.
+     *
+     * @return a cursor positioned before the first mapping of this map
+     */
+    public Cursor cursor() {
+        completeRehash();
+        return new Cursor();
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this map, without
+     * boxing the keys.
+     *
+     * @param procedure the procedure to invoke
+     * @throws ConcurrentModificationException if the procedure modifies this
+     *         map
+     */
+    public void forEach(final IntObjectProcedure<? super V> procedure) {
+        completeRehash();
+        final int mc = modCount;
+        for (final Entry<V> entry : table) {
+            for (Entry<V> e = entry; e != null; e = e.next) {
+                procedure.apply(e.key, e.value);
+            }
+        }
+        if (modCount != mc) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Removes all of the mappings of this map that satisfy the specified
+     * predicate, in a single pass over the table.
+     *
+     * @param filter the predicate which returns <code>true</code> for the
+     *        mappings to be removed
+     * @return <code>true</code> if any mappings were removed
+     * @throws ConcurrentModificationException if the predicate modifies this
+     *         map
+     */
+    public boolean removeIf(final IntObjectPredicate<? super V> filter) {
+        completeRehash();
+        final int mc = modCount;
+        final Entry<V>[] t = table;
+        int removed = 0;
+        for (int i = 0; i < t.length; i++) {
+            Entry<V> prev = null;
+            for (Entry<V> e = t[i]; e != null; e = e.next) {
+                if (filter.evaluate(e.key, e.value)) {
+                    if (prev == null) {
+                        t[i] = e.next;
+                    } else {
+                        prev.next = e.next;
+                    }
+                    removed++;
+                } else {
+                    prev = e;
+                }
+            }
+        }
+        if (modCount != mc) {
+            throw new ConcurrentModificationException();
+        }
+        if (removed == 0) {
+            return false;
+        }
+        size -= removed;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replaces the value of each mapping of this map with the result of
+     * invoking the specified transformer on it, in a single pass over the
+     * table.
+     *
+     * @param transformer the function that computes the new values
+     * @throws ConcurrentModificationException if the transformer modifies this
+     *         map
+     */
+    public void replaceAll(final IntObjectTransformer<V> transformer) {
+        completeRehash();
+        final int mc = modCount;
+        for (final Entry<V> entry : table) {
+            for (Entry<V> e = entry; e != null; e = e.next) {
+                e.value = transformer.transform(e.key, e.value);
+            }
+        }
+        if (modCount != mc) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Returns an immutable copy of this map, indexed by a minimal perfect
+     * hash function, for maps that are built once and then only read. Later
+     * changes to this map are not reflected in the copy.
+     *
+     * @return a {@link FrozenIntMap} with the mappings of this map
+     */
+    public FrozenIntMap<V> freeze() {
+        completeRehash();
+        return new FrozenIntMap<V>(this);
+    }
+
+    /**
+     * Writes a snapshot of this map to the specified file, replacing its
+     * contents. The snapshot can be opened with
+     * {@link MappedIntMap#open(Path, ValueCodec)}, which maps it into memory
+     * and serves lookups straight from the file instead of rebuilding the map.
+     * The map must not be modified while the snapshot is being written.
+     *
+     * @param path the file to write
+     * @param codec the codec used to write the values
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(final Path path, final ValueCodec<? super V> codec) throws IOException {
+        final MapSnapshot snapshot = new MapSnapshot(path, MapSnapshot.INT_MAGIC, size);
+        try {
+            long added = 0;
+            completeRehash();
+            for (final Entry<V> entry : table) {
+                for (Entry<V> e = entry; e != null; e = e.next) {
+                    snapshot.add(e.key, e.value, codec);
+                    added++;
+                }
+            }
+            snapshot.finish(added);
+        } finally {
+            snapshot.close();
+        }
+    }
+
     /**
      * Reduces the internal table to the minimum capacity required to hold all
      * mappings contained in this mapping respecting the load factor.
@@ -522,6 +1202,7 @@ public class IntMap<V> {
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
+        completeRehash();
         sb.append('{');
         String sep = "";
         for (final Entry<V> entry : table) {
@@ -717,8 +1398,7 @@ public class IntMap<V> {
      * Returns null if the IntMap contains no mapping for the key.
      */
     Entry<V> getEntry(final int key) {
-        final int hash = hash(key, capacityMask);
-        for (Entry<V> e = table[hash]; e != null; e = e.next) {
+        for (Entry<V> e = chain(key); e != null; e = e.next) {
             if (e.key == key) {
                 return e;
             }
@@ -828,6 +1508,128 @@ public class IntMap<V> {
         }
     }
 
+    /**
+     * Cursor over the mappings of the map, returned by {@link IntMap#cursor()}.
+     * A cursor starts before the first mapping; each successful call to
+     * {@link #advance()} moves it to the next mapping, whose key and value
+     * can then be read, replaced or removed without allocating.
+     * <pre>
+     * for (IntMap&lt;V&gt;.Cursor c = map.cursor(); c.advance();) {
+     *     use(c.key(), c.value());
+     * }
+     * </pre>
+     */
+    public final class Cursor {
+        private int index; // next slot to scan
+
+        private Entry<V> current; // entry under the cursor
+
+        private Entry<V> prev; // entry preceding the current one in its chain
+
+        private Entry<V> following; // entry following the current one in its chain
+
+        private int expectedModCount = modCount; // For fast-fail
+
+        Cursor() {
+        }
+
+        /**
+         * Moves the cursor to the next mapping.
+         *
+         * @return <code>true</code> if the cursor is on a mapping,
+         *         <code>false</code> if there are no more mappings
+         * @throws ConcurrentModificationException if the map was modified
+         *         other than through this cursor
+         */
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (current != null) {
+                prev = current;
+            }
+            Entry<V> e = following;
+            if (e == null) {
+                prev = null;
+                final Entry<V>[] t = table;
+                while (index < t.length && (e = t[index++]) == null) {
+                }
+                if (e == null) {
+                    current = null;
+                    return false;
+                }
+            }
+            current = e;
+            following = e.next;
+            return true;
+        }
+
+        private Entry<V> current() {
+            final Entry<V> e = current;
+            if (e == null) {
+                throw new IllegalStateException();
+            }
+            return e;
+        }
+
+        /**
+         * Returns the key of the mapping under the cursor.
+         *
+         * @return the key of the current mapping
+         * @throws IllegalStateException if the cursor is not on a mapping
+         */
+        public int key() {
+            return current().key;
+        }
+
+        /**
+         * Returns the value of the mapping under the cursor.
+         *
+         * @return the value of the current mapping
+         * @throws IllegalStateException if the cursor is not on a mapping
+         */
+        public V value() {
+            return current().value;
+        }
+
+        /**
+         * Replaces the value of the mapping under the cursor.
+         *
+         * @param value the new value
+         * @return the previous value of the current mapping
+         * @throws IllegalStateException if the cursor is not on a mapping
+         */
+        public V setValue(final V value) {
+            final Entry<V> e = current();
+            final V old = e.value;
+            e.value = value;
+            return old;
+        }
+
+        /**
+         * Removes the mapping under the cursor from the map. The cursor is left
+         * between mappings until the next call to {@link #advance()}.
+         *
+         * @throws IllegalStateException if the cursor is not on a mapping
+         * @throws ConcurrentModificationException if the map was modified
+         *         other than through this cursor
+         */
+        public void remove() {
+            current();
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (prev == null) {
+                table[index - 1] = following;
+            } else {
+                prev.next = following;
+            }
+            current = null;
+            size--;
+            expectedModCount = ++modCount;
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // iterator that enables operations on collections returned by the keySet(),
     // values() and entrySet() methods to be backed by this map
@@ -848,6 +1650,7 @@ public class IntMap<V> {
         Entry<V> current; // current entry
 
         HashIterator() {
+            completeRehash();
             expectedModCount = modCount;
             if (size > 0) { // advance to first entry
                 final Entry<V>[] t = table;
@@ -0,0 +1,11 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * A condition on the mappings of a map with <code>int</code> keys, evaluated
+ * without boxing the key.
+ *
+ * @param <V> the type of the values
+ */
+public interface IntObjectPredicate<V> {
+    boolean evaluate(int key, V value);
+}
@@ -0,0 +1,11 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * A callback invoked with each mapping of a map with <code>int</code> keys,
+ * without boxing the key.
+ *
+ * @param <V> the type of the values
+ */
+public interface IntObjectProcedure<V> {
+    void apply(int key, V value);
+}
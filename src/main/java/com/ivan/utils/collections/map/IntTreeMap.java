@@ -0,0 +1,986 @@
+package com.ivan.utils.collections.map;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted map which uses <code>int</code> primitives as keys, implemented as a
+ * B+tree. Every node stores its keys in a primitive array, and the mappings
+ * live in the leaves, which are linked in key order. Compared to a
+ * <code>TreeMap&lt;Integer, ?&gt;</code>, keys are never boxed, there is no
+ * node per mapping and a lookup touches a handful of contiguous arrays
+ * instead of chasing a pointer per level of a binary tree.
+ * <p>
+ * Besides the usual map operations, this class provides floor, ceiling,
+ * lower and higher key lookups and range views ({@link #subMap(int, int)},
+ * {@link #headMap(int)} and {@link #tailMap(int)}) that iterate their
+ * mappings in order through a {@link Cursor} or an {@link IntObjectProcedure},
+ * without boxing. A map can also be bulk loaded from sorted arrays in linear
+ * time with {@link #IntTreeMap(int[], Object[])}.
+ * <p>
+ * This collection is not thread-safe. Cursors are <i>fail-fast</i>.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public class IntTreeMap<V> {
+    /**
+     * The maximum number of keys in a node. Leaves hold up to this many
+     * mappings; inner nodes hold up to this many separator keys and one more
+     * child. Must be even.
+     */
+    private static final int MAX_KEYS = 64;
+
+    /**
+     * The minimum number of keys in a node other than the root.
+     */
+    private static final int MIN_KEYS = MAX_KEYS / 2;
+
+    private Node root;
+
+    /**
+     * The number of inner levels above the leaves.
+     */
+    private int height;
+
+    private int size;
+
+    int modCount;
+
+    /**
+     * The node created by the last split during an insertion, which must be
+     * added to the parent of the split node, or <code>null</code>.
+     */
+    private Node splitNode;
+
+    /**
+     * The smallest key reachable through {@link #splitNode}.
+     */
+    private int splitKey;
+
+    /**
+     * Constructs an empty <code>IntTreeMap</code>.
+     */
+    public IntTreeMap() {
+        root = new Leaf();
+    }
+
+    /**
+     * Constructs an <code>IntTreeMap</code> with the specified mappings, which
+     * must be sorted by key. The tree is built bottom-up in linear time, with
+     * full leaves, which is considerably faster than adding the mappings one
+     * by one and makes the best use of memory for maps that are mostly read.
+     *
+     * @param keys the keys, in strictly ascending order
+     * @param values the values, at the same indices as their keys
+     * @throws IllegalArgumentException if the arrays have different lengths or
+     *         the keys are not in strictly ascending order
+     */
+    public IntTreeMap(final int[] keys, final V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Array lengths differ: " + keys.length + " != " + values.length);
+        }
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] >= keys[i]) {
+                throw new IllegalArgumentException("Keys not in strictly ascending order at index " + i + ": "
+                        + keys[i - 1] + ", " + keys[i]);
+            }
+        }
+        final int n = keys.length;
+        size = n;
+        if (n == 0) {
+            root = new Leaf();
+            return;
+        }
+
+        // spread the mappings evenly so that no leaf falls below MIN_KEYS
+        int count = (n + MAX_KEYS - 1) / MAX_KEYS;
+        Node[] level = new Node[count];
+        int[] lowKeys = new int[count];
+        Leaf prev = null;
+        for (int i = 0, start = 0; i < count; i++) {
+            final int length = n / count + (i < n % count ? 1 : 0);
+            final Leaf leaf = new Leaf();
+            System.arraycopy(keys, start, leaf.keys, 0, length);
+            System.arraycopy(values, start, leaf.values, 0, length);
+            leaf.count = length;
+            if (prev != null) {
+                prev.next = leaf;
+            }
+            prev = leaf;
+            level[i] = leaf;
+            lowKeys[i] = keys[start];
+            start += length;
+        }
+
+        // then build each inner level from the one below it
+        while (count > 1) {
+            final int parents = (count + MAX_KEYS) / (MAX_KEYS + 1);
+            final Node[] upper = new Node[parents];
+            final int[] upperLowKeys = new int[parents];
+            for (int i = 0, start = 0; i < parents; i++) {
+                final int length = count / parents + (i < count % parents ? 1 : 0);
+                final Inner inner = new Inner();
+                System.arraycopy(level, start, inner.children, 0, length);
+                System.arraycopy(lowKeys, start + 1, inner.keys, 0, length - 1);
+                inner.count = length - 1;
+                upper[i] = inner;
+                upperLowKeys[i] = lowKeys[start];
+                start += length;
+            }
+            level = upper;
+            lowKeys = upperLowKeys;
+            count = parents;
+            height++;
+        }
+        root = level[0];
+    }
+
+    /**
+     * Returns the index of the child of an inner node which may contain the
+     * specified key, that is, the number of separator keys less than or equal
+     * to it.
+     */
+    private static int childIndex(final Inner node, final int key) {
+        final int[] keys = node.keys;
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Searches a leaf for the specified key.
+     *
+     * @return the index of the key, if found; otherwise,
+     *         <code>(-(insertion point) - 1)</code>
+     */
+    private static int indexOf(final Leaf leaf, final int key) {
+        final int[] keys = leaf.keys;
+        int lo = 0;
+        int hi = leaf.count - 1;
+        while (lo <= hi) {
+            final int mid = lo + hi >>> 1;
+            final int k = keys[mid];
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Returns the leaf which contains, or would contain, the specified key.
+     */
+    private Leaf leafFor(final int key) {
+        Node n = root;
+        for (int h = height; h > 0; h--) {
+            final Inner inner = (Inner) n;
+            n = inner.children[childIndex(inner, key)];
+        }
+        return (Leaf) n;
+    }
+
+    private Leaf firstLeaf() {
+        Node n = root;
+        for (int h = height; h > 0; h--) {
+            n = ((Inner) n).children[0];
+        }
+        return (Leaf) n;
+    }
+
+    private static Leaf lastLeaf(Node n, final int height) {
+        for (int h = height; h > 0; h--) {
+            final Inner inner = (Inner) n;
+            n = inner.children[inner.count];
+        }
+        return (Leaf) n;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     */
+    public boolean containsKey(final int key) {
+        return indexOf(leafFor(key), key) >= 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        final Leaf leaf = leafFor(key);
+        final int i = indexOf(leaf, key);
+        return i >= 0 ? (V) leaf.values[i] : null;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map. If
+     * the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>.
+     *         (A <code>null</code> return can also indicate that the map
+     *         previously associated <code>null</code> with <code>key</code>.)
+     */
+    public V put(final int key, final V value) {
+        final V old = insert(root, height, key, value);
+        if (splitNode != null) {
+            final Inner newRoot = new Inner();
+            newRoot.children[0] = root;
+            newRoot.children[1] = splitNode;
+            newRoot.keys[0] = splitKey;
+            newRoot.count = 1;
+            root = newRoot;
+            height++;
+            splitNode = null;
+        }
+        return old;
+    }
+
+    /**
+     * Inserts a mapping into the subtree rooted at the specified node. If the
+     * node has to be split, the new right sibling is left in
+     * {@link #splitNode} for the caller to add to the parent.
+     */
+    @SuppressWarnings("unchecked")
+    private V insert(final Node node, final int level, final int key, final V value) {
+        if (level == 0) {
+            final Leaf leaf = (Leaf) node;
+            int i = indexOf(leaf, key);
+            if (i >= 0) {
+                final V old = (V) leaf.values[i];
+                leaf.values[i] = value;
+                return old;
+            }
+            i = -i - 1;
+            size++;
+            modCount++;
+            if (leaf.count < MAX_KEYS) {
+                leaf.insert(i, key, value);
+                return null;
+            }
+            final Leaf right = new Leaf();
+            System.arraycopy(leaf.keys, MIN_KEYS, right.keys, 0, MAX_KEYS - MIN_KEYS);
+            System.arraycopy(leaf.values, MIN_KEYS, right.values, 0, MAX_KEYS - MIN_KEYS);
+            for (int j = MIN_KEYS; j < MAX_KEYS; j++) {
+                leaf.values[j] = null;
+            }
+            right.count = MAX_KEYS - MIN_KEYS;
+            leaf.count = MIN_KEYS;
+            right.next = leaf.next;
+            leaf.next = right;
+            if (i <= MIN_KEYS) {
+                leaf.insert(i, key, value);
+            } else {
+                right.insert(i - MIN_KEYS, key, value);
+            }
+            splitNode = right;
+            splitKey = right.keys[0];
+            return null;
+        }
+
+        final Inner inner = (Inner) node;
+        final int ci = childIndex(inner, key);
+        final V old = insert(inner.children[ci], level - 1, key, value);
+        final Node child = splitNode;
+        if (child == null) {
+            return old;
+        }
+        final int separator = splitKey;
+        if (inner.count < MAX_KEYS) {
+            inner.insert(ci, separator, child);
+            splitNode = null;
+            return old;
+        }
+
+        // split a full inner node: MAX_KEYS + 1 keys go MIN_KEYS to the left,
+        // one up to the parent and the rest to the right
+        final int[] keys = new int[MAX_KEYS + 1];
+        final Node[] children = new Node[MAX_KEYS + 2];
+        System.arraycopy(inner.keys, 0, keys, 0, ci);
+        keys[ci] = separator;
+        System.arraycopy(inner.keys, ci, keys, ci + 1, MAX_KEYS - ci);
+        System.arraycopy(inner.children, 0, children, 0, ci + 1);
+        children[ci + 1] = child;
+        System.arraycopy(inner.children, ci + 1, children, ci + 2, MAX_KEYS - ci);
+
+        final Inner right = new Inner();
+        System.arraycopy(keys, 0, inner.keys, 0, MIN_KEYS);
+        System.arraycopy(children, 0, inner.children, 0, MIN_KEYS + 1);
+        for (int j = MIN_KEYS + 1; j <= MAX_KEYS; j++) {
+            inner.children[j] = null;
+        }
+        inner.count = MIN_KEYS;
+        System.arraycopy(keys, MIN_KEYS + 1, right.keys, 0, MAX_KEYS - MIN_KEYS);
+        System.arraycopy(children, MIN_KEYS + 1, right.children, 0, MAX_KEYS - MIN_KEYS + 1);
+        right.count = MAX_KEYS - MIN_KEYS;
+        splitNode = right;
+        splitKey = keys[MIN_KEYS];
+        return old;
+    }
+
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>.
+     */
+    public V remove(final int key) {
+        final V old = delete(root, height, key);
+        if (height > 0 && root.count == 0) {
+            root = ((Inner) root).children[0];
+            height--;
+        }
+        return old;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V delete(final Node node, final int level, final int key) {
+        if (level == 0) {
+            final Leaf leaf = (Leaf) node;
+            final int i = indexOf(leaf, key);
+            if (i < 0) {
+                return null;
+            }
+            final V old = (V) leaf.values[i];
+            leaf.remove(i);
+            size--;
+            modCount++;
+            return old;
+        }
+        final Inner inner = (Inner) node;
+        final int ci = childIndex(inner, key);
+        final Node child = inner.children[ci];
+        final V old = delete(child, level - 1, key);
+        if (child.count < MIN_KEYS) {
+            if (level == 1) {
+                rebalanceLeaf(inner, ci);
+            } else {
+                rebalanceInner(inner, ci);
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Refills an underflowing leaf by borrowing a mapping from a sibling, or
+     * merges it with a sibling if neither has mappings to spare.
+     */
+    private static void rebalanceLeaf(final Inner parent, final int ci) {
+        final Leaf leaf = (Leaf) parent.children[ci];
+        if (ci > 0) {
+            final Leaf left = (Leaf) parent.children[ci - 1];
+            if (left.count > MIN_KEYS) {
+                final int last = left.count - 1;
+                leaf.insert(0, left.keys[last], left.values[last]);
+                left.remove(last);
+                parent.keys[ci - 1] = leaf.keys[0];
+            } else {
+                left.append(leaf);
+                parent.remove(ci);
+            }
+        } else {
+            final Leaf right = (Leaf) parent.children[1];
+            if (right.count > MIN_KEYS) {
+                leaf.insert(leaf.count, right.keys[0], right.values[0]);
+                right.remove(0);
+                parent.keys[0] = right.keys[0];
+            } else {
+                leaf.append(right);
+                parent.remove(1);
+            }
+        }
+    }
+
+    /**
+     * Refills an underflowing inner node by rotating a child through the
+     * parent from a sibling, or merges it with a sibling and the separator
+     * between them if neither has children to spare.
+     */
+    private static void rebalanceInner(final Inner parent, final int ci) {
+        final Inner node = (Inner) parent.children[ci];
+        if (ci > 0) {
+            final Inner left = (Inner) parent.children[ci - 1];
+            if (left.count > MIN_KEYS) {
+                System.arraycopy(node.keys, 0, node.keys, 1, node.count);
+                System.arraycopy(node.children, 0, node.children, 1, node.count + 1);
+                node.keys[0] = parent.keys[ci - 1];
+                node.children[0] = left.children[left.count];
+                node.count++;
+                parent.keys[ci - 1] = left.keys[left.count - 1];
+                left.children[left.count] = null;
+                left.count--;
+            } else {
+                left.append(parent.keys[ci - 1], node);
+                parent.remove(ci);
+            }
+        } else {
+            final Inner right = (Inner) parent.children[1];
+            if (right.count > MIN_KEYS) {
+                node.keys[node.count] = parent.keys[0];
+                node.children[node.count + 1] = right.children[0];
+                node.count++;
+                parent.keys[0] = right.keys[0];
+                System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+                System.arraycopy(right.children, 1, right.children, 0, right.count);
+                right.children[right.count] = null;
+                right.count--;
+            } else {
+                node.append(parent.keys[0], right);
+                parent.remove(1);
+            }
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        root = new Leaf();
+        height = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns the lowest key currently in this map.
+     *
+     * @return the lowest key currently in this map
+     * @throws NoSuchElementException if this map is empty
+     */
+    public int firstKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return firstLeaf().keys[0];
+    }
+
+    /**
+     * Returns the highest key currently in this map.
+     *
+     * @return the highest key currently in this map
+     * @throws NoSuchElementException if this map is empty
+     */
+    public int lastKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        final Leaf leaf = lastLeaf(root, height);
+        return leaf.keys[leaf.count - 1];
+    }
+
+    /**
+     * Returns the greatest key less than or equal to the specified key.
+     *
+     * @param key the key
+     * @return the greatest key less than or equal to <code>key</code>
+     * @throws NoSuchElementException if there is no such key
+     */
+    public int floorKey(final int key) {
+        return below(key, true);
+    }
+
+    /**
+     * Returns the greatest key strictly less than the specified key.
+     *
+     * @param key the key
+     * @return the greatest key less than <code>key</code>
+     * @throws NoSuchElementException if there is no such key
+     */
+    public int lowerKey(final int key) {
+        return below(key, false);
+    }
+
+    /**
+     * Returns the least key greater than or equal to the specified key.
+     *
+     * @param key the key
+     * @return the least key greater than or equal to <code>key</code>
+     * @throws NoSuchElementException if there is no such key
+     */
+    public int ceilingKey(final int key) {
+        return above(key, true);
+    }
+
+    /**
+     * Returns the least key strictly greater than the specified key.
+     *
+     * @param key the key
+     * @return the least key greater than <code>key</code>
+     * @throws NoSuchElementException if there is no such key
+     */
+    public int higherKey(final int key) {
+        return above(key, false);
+    }
+
+    private int below(final int key, final boolean inclusive) {
+        // the last subtree to the left of the search path holds the
+        // predecessor if the leaf does not
+        Node n = root;
+        Node left = null;
+        int leftHeight = 0;
+        for (int h = height; h > 0; h--) {
+            final Inner inner = (Inner) n;
+            final int ci = childIndex(inner, key);
+            if (ci > 0) {
+                left = inner.children[ci - 1];
+                leftHeight = h - 1;
+            }
+            n = inner.children[ci];
+        }
+        final Leaf leaf = (Leaf) n;
+        final int i = indexOf(leaf, key);
+        if (i >= 0 && inclusive) {
+            return key;
+        }
+        final int index = i >= 0 ? i : -i - 1;
+        if (index > 0) {
+            return leaf.keys[index - 1];
+        }
+        if (left == null) {
+            throw new NoSuchElementException();
+        }
+        final Leaf last = lastLeaf(left, leftHeight);
+        return last.keys[last.count - 1];
+    }
+
+    private int above(final int key, final boolean inclusive) {
+        final Leaf leaf = leafFor(key);
+        final int i = indexOf(leaf, key);
+        if (i >= 0 && inclusive) {
+            return key;
+        }
+        final int index = i >= 0 ? i + 1 : -i - 1;
+        if (index < leaf.count) {
+            return leaf.keys[index];
+        }
+        if (leaf.next == null) {
+            throw new NoSuchElementException();
+        }
+        return leaf.next.keys[0];
+    }
+
+    /**
+     * Returns an array of the keys contained in this map, in ascending order.
+     *
+     * @return an <code>int[]</code> with the keys contained in this map
+     */
+    public int[] keys() {
+        final int[] keys = new int[size];
+        int i = 0;
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.keys, 0, keys, i, leaf.count);
+            i += leaf.count;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a cursor over the mappings of this map, in ascending key order.
+     *
+     * @return a cursor positioned before the first mapping of this map
+     */
+    public Cursor cursor() {
+        return new Cursor(firstLeaf(), 0, false, 0);
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this map, in
+     * ascending key order, without boxing the keys.
+     *
+     * @param procedure the procedure to invoke
+     * @throws ConcurrentModificationException if the procedure modifies this
+     *         map
+     */
+    public void forEach(final IntObjectProcedure<? super V> procedure) {
+        forEach(firstLeaf(), 0, false, 0, procedure);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEach(final Leaf from, final int index, final boolean bounded, final int toKey,
+            final IntObjectProcedure<? super V> procedure) {
+        final int mc = modCount;
+        int i = index;
+        for (Leaf leaf = from; leaf != null; leaf = leaf.next, i = 0) {
+            for (; i < leaf.count; i++) {
+                final int key = leaf.keys[i];
+                if (bounded && key >= toKey) {
+                    break;
+                }
+                procedure.apply(key, (V) leaf.values[i]);
+                if (modCount != mc) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from
+     * <code>fromKey</code>, inclusive, to <code>toKey</code>, exclusive. The
+     * view is backed by this map, so it reflects later changes to it.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys in the view
+     * @param toKey high endpoint (exclusive) of the keys in the view
+     * @return a view of the mappings with keys in the specified range
+     * @throws IllegalArgumentException if <code>fromKey</code> is greater than
+     *         <code>toKey</code>
+     */
+    public SubMap subMap(final int fromKey, final int toKey) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("fromKey > toKey: " + fromKey + " > " + toKey);
+        }
+        return new SubMap(fromKey, true, toKey);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are strictly less
+     * than <code>toKey</code>.
+     *
+     * @param toKey high endpoint (exclusive) of the keys in the view
+     * @return a view of the mappings with keys less than <code>toKey</code>
+     */
+    public SubMap headMap(final int toKey) {
+        return new SubMap(Integer.MIN_VALUE, true, toKey);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than or
+     * equal to <code>fromKey</code>.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys in the view
+     * @return a view of the mappings with keys greater than or equal to
+     *         <code>fromKey</code>
+     */
+    public SubMap tailMap(final int fromKey) {
+        return new SubMap(fromKey, false, 0);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                sb.append(sep).append(leaf.keys[i]).append('=').append(leaf.values[i]);
+                sep = ", ";
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    abstract static class Node {
+        final int[] keys = new int[MAX_KEYS];
+
+        int count;
+    }
+
+    static final class Leaf extends Node {
+        final Object[] values = new Object[MAX_KEYS];
+
+        Leaf next;
+
+        void insert(final int index, final int key, final Object value) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            System.arraycopy(values, index, values, index + 1, count - index);
+            keys[index] = key;
+            values[index] = value;
+            count++;
+        }
+
+        void remove(final int index) {
+            count--;
+            System.arraycopy(keys, index + 1, keys, index, count - index);
+            System.arraycopy(values, index + 1, values, index, count - index);
+            values[count] = null;
+        }
+
+        /**
+         * Moves all mappings of the following leaf into this one and unlinks
+         * it.
+         */
+        void append(final Leaf right) {
+            System.arraycopy(right.keys, 0, keys, count, right.count);
+            System.arraycopy(right.values, 0, values, count, right.count);
+            count += right.count;
+            next = right.next;
+        }
+    }
+
+    static final class Inner extends Node {
+        final Node[] children = new Node[MAX_KEYS + 1];
+
+        /**
+         * Inserts a separator key and the child to its right.
+         */
+        void insert(final int index, final int key, final Node child) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            System.arraycopy(children, index + 1, children, index + 2, count - index);
+            keys[index] = key;
+            children[index + 1] = child;
+            count++;
+        }
+
+        /**
+         * Removes a child and the separator key to its left.
+         */
+        void remove(final int index) {
+            System.arraycopy(keys, index, keys, index - 1, count - index);
+            System.arraycopy(children, index + 1, children, index, count - index);
+            children[count] = null;
+            count--;
+        }
+
+        /**
+         * Moves the separator between this node and the following one, and
+         * all keys and children of the following one, into this node.
+         */
+        void append(final int separator, final Inner right) {
+            keys[count] = separator;
+            System.arraycopy(right.keys, 0, keys, count + 1, right.count);
+            System.arraycopy(right.children, 0, children, count + 1, right.count + 1);
+            count += right.count + 1;
+        }
+    }
+
+    /**
+     * A view of a range of keys of an {@link IntTreeMap}, returned by
+     * {@link IntTreeMap#subMap(int, int)}, {@link IntTreeMap#headMap(int)} and
+     * {@link IntTreeMap#tailMap(int)}.
+     */
+    public final class SubMap {
+        private final int fromKey;
+
+        private final boolean bounded;
+
+        private final int toKey;
+
+        SubMap(final int fromKey, final boolean bounded, final int toKey) {
+            this.fromKey = fromKey;
+            this.bounded = bounded;
+            this.toKey = toKey;
+        }
+
+        /**
+         * Returns a cursor over the mappings of this view, in ascending key
+         * order.
+         *
+         * @return a cursor positioned before the first mapping of this view
+         */
+        public Cursor cursor() {
+            final Leaf leaf = leafFor(fromKey);
+            final int i = indexOf(leaf, fromKey);
+            return new Cursor(leaf, i >= 0 ? i : -i - 1, bounded, toKey);
+        }
+
+        /**
+         * Invokes the specified procedure with each mapping of this view, in
+         * ascending key order, without boxing the keys.
+         *
+         * @param procedure the procedure to invoke
+         * @throws ConcurrentModificationException if the procedure modifies
+         *         the map
+         */
+        public void forEach(final IntObjectProcedure<? super V> procedure) {
+            final Cursor c = cursor();
+            IntTreeMap.this.forEach(c.leaf, c.index, bounded, toKey, procedure);
+        }
+
+        /**
+         * Returns the number of mappings in this view. This takes time
+         * proportional to the number of mappings in the view.
+         *
+         * @return the number of mappings in this view
+         */
+        public int size() {
+            int n = 0;
+            for (final Cursor c = cursor(); c.advance();) {
+                n++;
+            }
+            return n;
+        }
+
+        /**
+         * Returns <code>true</code> if this view contains no mappings.
+         *
+         * @return <code>true</code> if this view contains no mappings
+         */
+        public boolean isEmpty() {
+            return !cursor().advance();
+        }
+
+        /**
+         * Returns an array of the keys contained in this view, in ascending
+         * order.
+         *
+         * @return an <code>int[]</code> with the keys contained in this view
+         */
+        public int[] keys() {
+            final int[] keys = new int[size()];
+            final Cursor c = cursor();
+            for (int i = 0; c.advance(); i++) {
+                keys[i] = c.key();
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * A cursor over the mappings of an {@link IntTreeMap} or one of its
+     * {@link SubMap} views, in ascending key order, that exposes the keys as
+     * primitives and allocates nothing while moving. Obtain one from
+     * {@link IntTreeMap#cursor()} or {@link SubMap#cursor()}, then call
+     * {@link #advance()} before reading each mapping:
+     *
+     * <pre>
+     * for (IntTreeMap&lt;V&gt;.Cursor c = map.subMap(from, to).cursor(); c.advance();) {
+     *     use(c.key(), c.value());
+     * }
+     * </pre>
+     *
+     * Cursors are <i>fail-fast</i>: adding or removing mappings other than
+     * through {@link #setValue(Object)} makes the cursor throw a
+     * {@link ConcurrentModificationException}.
+     */
+    public final class Cursor {
+        private Leaf leaf; // leaf of the next mapping
+
+        private int index; // index of the next mapping in its leaf
+
+        private final boolean bounded;
+
+        private final int toKey;
+
+        private Leaf currentLeaf;
+
+        private int currentIndex;
+
+        private final int expectedModCount = modCount; // For fast-fail
+
+        Cursor(final Leaf leaf, final int index, final boolean bounded, final int toKey) {
+            this.leaf = leaf;
+            this.index = index;
+            this.bounded = bounded;
+            this.toKey = toKey;
+        }
+
+        /**
+         * Moves the cursor to the next mapping.
+         *
+         * @return <code>true</code> if the cursor is on a mapping,
+         *         <code>false</code> if there are no more mappings
+         * @throws ConcurrentModificationException if the map was structurally
+         *         modified
+         */
+        public boolean advance() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Leaf l = leaf;
+            while (l != null && index >= l.count) {
+                l = l.next;
+                index = 0;
+            }
+            leaf = l;
+            if (l == null || bounded && l.keys[index] >= toKey) {
+                leaf = null;
+                currentLeaf = null;
+                return false;
+            }
+            currentLeaf = l;
+            currentIndex = index++;
+            return true;
+        }
+
+        private Leaf current() {
+            final Leaf l = currentLeaf;
+            if (l == null) {
+                throw new IllegalStateException();
+            }
+            return l;
+        }
+
+        /**
+         * Returns the key of the mapping under the cursor.
+         *
+         * @return the key of the current mapping
+         * @throws IllegalStateException if the cursor is not on a mapping
+         */
+        public int key() {
+            return current().keys[currentIndex];
+        }
+
+        /**
+         * Returns the value of the mapping under the cursor.
+         *
+         * @return the value of the current mapping
+         * @throws IllegalStateException if the cursor is not on a mapping
+         */
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return (V) current().values[currentIndex];
+        }
+
+        /**
+         * Replaces the value of the mapping under the cursor.
+         *
+         * @param value the new value
+         * @return the previous value
+         * @throws IllegalStateException if the cursor is not on a mapping
+         */
+        @SuppressWarnings("unchecked")
+        public V setValue(final V value) {
+            final Leaf l = current();
+            final V old = (V) l.values[currentIndex];
+            l.values[currentIndex] = value;
+            return old;
+        }
+    }
+}
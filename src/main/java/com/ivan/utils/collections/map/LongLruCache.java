@@ -0,0 +1,557 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * Bounded cache which uses <code>long</code> primitives as keys and evicts the
+ * least recently used mappings. The cache is bounded by the number of
+ * mappings and, optionally, by the total weight of its values as computed by
+ * a {@link Weigher}; when a {@link #put(long, Object)} exceeds either bound,
+ * mappings are evicted starting from the least recently used one, and handed
+ * to the eviction listener, if any.
+ * <p>
+ * The mappings are kept in parallel arrays, linked in recency order by
+ * indices, and located through an open addressing index of those indices.
+ * Cache hits, misses and updates of existing keys never allocate; the arrays
+ * grow by doubling until they reach the maximum size.
+ * <p>
+ * The cache keeps count of hits, misses and evictions. This collection is not
+ * thread-safe.
+ *
+ * @param <V> the type of the values stored by this cache
+ */
+public class LongLruCache<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Linear probing needs well distributed hashes.
+     */
+    private static final HashSpreader SPREADER = HashSpreader.FIBONACCI;
+
+    private static final int NONE = -1;
+
+    private final int maxSize;
+
+    private final long maxWeight;
+
+    private final Weigher<? super V> weigher;
+
+    private final LongObjectProcedure<? super V> evictionListener;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int[] weights;
+
+    /**
+     * The slots of the next more recently and less recently used mappings.
+     * Free slots are chained through {@link #older}.
+     */
+    private int[] newer;
+
+    private int[] older;
+
+    private int head = NONE; // most recently used
+
+    private int tail = NONE; // least recently used
+
+    private int free = NONE;
+
+    private int used; // slots handed out so far
+
+    /**
+     * Linear probing table of slot numbers plus one; 0 marks a free position.
+     */
+    private int[] index;
+
+    private int indexMask;
+
+    private int size;
+
+    private long weight;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Constructs an empty <code>LongLruCache</code> which holds at most the
+     * specified number of mappings.
+     *
+     * @param maxSize the maximum number of mappings
+     * @throws IllegalArgumentException if the maximum size is not positive
+     */
+    public LongLruCache(final int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Constructs an empty <code>LongLruCache</code> which holds at most the
+     * specified number of mappings and notifies the specified listener of
+     * every eviction.
+     *
+     * @param maxSize the maximum number of mappings
+     * @param evictionListener the procedure invoked with each evicted mapping,
+     *        after it has been removed from the cache, or <code>null</code>
+     * @throws IllegalArgumentException if the maximum size is not positive
+     */
+    public LongLruCache(final int maxSize, final LongObjectProcedure<? super V> evictionListener) {
+        this(maxSize, Long.MAX_VALUE, null, evictionListener);
+    }
+
+    /**
+     * Constructs an empty <code>LongLruCache</code> bounded both by the number
+     * of mappings and by the total weight of its values.
+     *
+     * @param maxSize the maximum number of mappings
+     * @param maxWeight the maximum total weight of the values
+     * @param weigher the function which computes the weight of each value, or
+     *        <code>null</code> to bound the cache by size only
+     * @param evictionListener the procedure invoked with each evicted mapping,
+     *        after it has been removed from the cache, or <code>null</code>
+     * @throws IllegalArgumentException if the maximum size is not positive or
+     *         the maximum weight is negative
+     */
+    public LongLruCache(final int maxSize, final long maxWeight, final Weigher<? super V> weigher,
+            final LongObjectProcedure<? super V> evictionListener) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Illegal maximum size: " + maxSize);
+        }
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Illegal maximum weight: " + maxWeight);
+        }
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+        allocate(Math.min(maxSize, INITIAL_CAPACITY));
+    }
+
+    private void allocate(final int capacity) {
+        keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+        values = values == null ? new Object[capacity] : Arrays.copyOf(values, capacity);
+        newer = newer == null ? new int[capacity] : Arrays.copyOf(newer, capacity);
+        older = older == null ? new int[capacity] : Arrays.copyOf(older, capacity);
+        if (weigher != null) {
+            weights = weights == null ? new int[capacity] : Arrays.copyOf(weights, capacity);
+        }
+
+        // keep the index at most half full
+        index = new int[BitMath.nextPowerOfTwo(capacity * 2)];
+        indexMask = index.length - 1;
+        for (int slot = head; slot != NONE; slot = older[slot]) {
+            int pos = SPREADER.spread(keys[slot]) & indexMask;
+            while (index[pos] != 0) {
+                pos = pos + 1 & indexMask;
+            }
+            index[pos] = slot + 1;
+        }
+    }
+
+    /**
+     * Returns the position in the index of the specified key, or -1 if the
+     * key is not in the cache.
+     */
+    private int find(final long key) {
+        final int[] ix = index;
+        final int mask = indexMask;
+        int pos = SPREADER.spread(key) & mask;
+        int s;
+        while ((s = ix[pos]) != 0) {
+            if (keys[s - 1] == key) {
+                return pos;
+            }
+            pos = pos + 1 & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Clears a position of the index, shifting back the keys that follow it
+     * in the same cluster.
+     */
+    private void deleteIndex(final int pos) {
+        final int[] ix = index;
+        final int mask = indexMask;
+        int gap = pos;
+        for (int p = pos + 1 & mask;; p = p + 1 & mask) {
+            final int s = ix[p];
+            if (s == 0) {
+                break;
+            }
+            final int home = SPREADER.spread(keys[s - 1]) & mask;
+            // move the key into the gap unless its home lies between them
+            if ((p - home & mask) >= (p - gap & mask)) {
+                ix[gap] = s;
+                gap = p;
+            }
+        }
+        ix[gap] = 0;
+    }
+
+    private void unlink(final int slot) {
+        final int n = newer[slot];
+        final int o = older[slot];
+        if (n == NONE) {
+            head = o;
+        } else {
+            older[n] = o;
+        }
+        if (o == NONE) {
+            tail = n;
+        } else {
+            newer[o] = n;
+        }
+    }
+
+    private void linkFirst(final int slot) {
+        newer[slot] = NONE;
+        older[slot] = head;
+        if (head == NONE) {
+            tail = slot;
+        } else {
+            newer[head] = slot;
+        }
+        head = slot;
+    }
+
+    private int weigh(final V value) {
+        final int w = weigher.weigh(value);
+        if (w < 0) {
+            throw new IllegalArgumentException("Negative weight: " + w);
+        }
+        return w;
+    }
+
+    /**
+     * Returns the number of mappings in this cache.
+     *
+     * @return the number of mappings in this cache
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this cache contains no mappings.
+     *
+     * @return <code>true</code> if this cache contains no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the maximum number of mappings of this cache.
+     *
+     * @return the maximum number of mappings of this cache
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total weight of the values in this cache, or 0 if the cache
+     * has no weigher.
+     *
+     * @return the total weight of the values in this cache
+     */
+    public long weight() {
+        return weight;
+    }
+
+    /**
+     * Returns the maximum total weight of the values of this cache.
+     *
+     * @return the maximum total weight of the values of this cache
+     */
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this cache contains no mapping for the key. A hit
+     * marks the mapping as the most recently used one. Hits and misses are
+     * counted.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this cache contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final int pos = find(key);
+        if (pos < 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        final int slot = index[pos] - 1;
+        if (slot != head) {
+            unlink(slot);
+            linkFirst(slot);
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this cache contains no mapping for the key, without
+     * changing the recency of the mapping or the hit and miss counts.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this cache contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V peek(final long key) {
+        final int pos = find(key);
+        return pos < 0 ? null : (V) values[index[pos] - 1];
+    }
+
+    /**
+     * Returns <code>true</code> if this cache contains a mapping for the
+     * specified key, without changing the recency of the mapping or the hit
+     * and miss counts.
+     *
+     * @param key The key whose presence in this cache is to be tested
+     * @return <code>true</code> if this cache contains a mapping for the
+     *         specified key
+     */
+    public boolean containsKey(final long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this cache and
+     * marks the mapping as the most recently used one. If this exceeds the
+     * maximum size or weight of the cache, the least recently used mappings
+     * are evicted until it fits again; a value heavier than the maximum
+     * weight is evicted right away.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>
+     * @throws IllegalArgumentException if the weigher returns a negative weight
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        final int w = weigher == null ? 0 : weigh(value);
+        final int pos = find(key);
+        if (pos >= 0) {
+            final int slot = index[pos] - 1;
+            final V old = (V) values[slot];
+            values[slot] = value;
+            if (weigher != null) {
+                weight += w - weights[slot];
+                weights[slot] = w;
+            }
+            if (slot != head) {
+                unlink(slot);
+                linkFirst(slot);
+            }
+            evictOverweight();
+            return old;
+        }
+
+        if (size == maxSize) {
+            evict();
+        }
+        int slot = free;
+        if (slot != NONE) {
+            free = older[slot];
+        } else {
+            if (used == keys.length) {
+                allocate((int) Math.min((long) keys.length << 1, maxSize));
+            }
+            slot = used++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (weigher != null) {
+            weights[slot] = w;
+            weight += w;
+        }
+        int p = SPREADER.spread(key) & indexMask;
+        while (index[p] != 0) {
+            p = p + 1 & indexMask;
+        }
+        index[p] = slot + 1;
+        linkFirst(slot);
+        size++;
+        evictOverweight();
+        return null;
+    }
+
+    private void evictOverweight() {
+        while (weight > maxWeight) {
+            evict();
+        }
+    }
+
+    /**
+     * Evicts the least recently used mapping and notifies the listener.
+     */
+    @SuppressWarnings("unchecked")
+    private void evict() {
+        final int slot = tail;
+        final long key = keys[slot];
+        final V value = (V) values[slot];
+        removeSlot(find(key), slot);
+        evictions++;
+        if (evictionListener != null) {
+            evictionListener.apply(key, value);
+        }
+    }
+
+    private void removeSlot(final int pos, final int slot) {
+        deleteIndex(pos);
+        unlink(slot);
+        values[slot] = null;
+        if (weigher != null) {
+            weight -= weights[slot];
+        }
+        older[slot] = free;
+        free = slot;
+        size--;
+    }
+
+    /**
+     * Removes the mapping for a key from this cache if it is present. The
+     * eviction listener is not notified of explicit removals.
+     *
+     * @param key key whose mapping is to be removed from the cache
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        final int pos = find(key);
+        if (pos < 0) {
+            return null;
+        }
+        final int slot = index[pos] - 1;
+        final V old = (V) values[slot];
+        removeSlot(pos, slot);
+        return old;
+    }
+
+    /**
+     * Removes all of the mappings from this cache. The eviction listener is
+     * not notified, and the statistics are kept.
+     */
+    public void clear() {
+        Arrays.fill(index, 0);
+        Arrays.fill(values, 0, used, null);
+        head = NONE;
+        tail = NONE;
+        free = NONE;
+        used = 0;
+        size = 0;
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of times {@link #get(long)} found a mapping.
+     *
+     * @return the number of cache hits
+     */
+    public long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of times {@link #get(long)} did not find a mapping.
+     *
+     * @return the number of cache misses
+     */
+    public long missCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the ratio of hits to lookups, or 1 if there were no lookups.
+     *
+     * @return the hit rate of this cache
+     */
+    public double hitRate() {
+        final long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the number of mappings evicted to respect the bounds of this
+     * cache.
+     *
+     * @return the number of evictions
+     */
+    public long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts to zero.
+     */
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns the keys of this cache, from the most to the least recently
+     * used.
+     *
+     * @return a <code>long[]</code> with the keys contained in this cache
+     */
+    public long[] keys() {
+        final long[] k = new long[size];
+        int i = 0;
+        for (int slot = head; slot != NONE; slot = older[slot]) {
+            k[i++] = keys[slot];
+        }
+        return k;
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this cache, from
+     * the most to the least recently used, without boxing the keys or
+     * changing their recency.
+     *
+     * @param procedure the procedure to invoke
+     * @throws ConcurrentModificationException if the procedure modifies this
+     *         cache
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final LongObjectProcedure<? super V> procedure) {
+        final int s = size;
+        final int h = head;
+        for (int slot = head; slot != NONE; slot = older[slot]) {
+            procedure.apply(keys[slot], (V) values[slot]);
+            if (size != s || head != h) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        for (int slot = head; slot != NONE; slot = older[slot]) {
+            sb.append(sep).append(keys[slot]).append('=').append(values[slot]);
+            sep = ", ";
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,637 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+
+import com.ivan.utils.math.MathEx;
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * Multimap which uses <code>long</code> primitives as keys and associates each
+ * key with a list of values, such as a postings list or the neighbours of a
+ * vertex. Instead of a list object per key, the values of all keys are stored
+ * in one arena made of large chunks, where each key owns a contiguous block;
+ * the key table only keeps the position, length and capacity of the block in
+ * parallel <code>int[]</code> arrays, using open addressing with linear
+ * probing.
+ * <p>
+ * A block that fills up is extended in place if it is the last one of its
+ * chunk, or moved to a block twice its size otherwise. The abandoned blocks,
+ * and those of removed keys, stay in the arena until {@link #compact()} copies
+ * the live values into a tightly packed arena. Reading the values of a key
+ * with {@link #forEachValue(long, LongObjectProcedure)} or
+ * {@link #get(long, int)} scans a single array range and never allocates
+ * memory. This collection is not thread-safe.
+ *
+ * @param <V> the type of the values stored by this multimap
+ */
+public class LongMultiMap<V> {
+    long[] keyTable;
+
+    /**
+     * The index of the arena chunk holding the block of each key.
+     */
+    int[] chunkTable;
+
+    /**
+     * The index of the first value of the block of each key in its chunk.
+     */
+    int[] startTable;
+
+    int[] lengthTable;
+
+    /**
+     * The number of values the block of each key has room for.
+     */
+    int[] blockTable;
+
+    /**
+     * The capacity mask, also the index of the slot reserved for the key 0.
+     */
+    int capacityMask;
+
+    boolean hasZeroKey;
+
+    int size;
+
+    long valueCount;
+
+    private Object[][] chunks = new Object[4][];
+
+    private int chunkCount;
+
+    /**
+     * The number of slots of the last chunk handed out to blocks.
+     */
+    private int chunkFill;
+
+    private long arenaSize;
+
+    private float loadFactor;
+
+    private int threshold;
+
+    private final HashSpreader spreader;
+
+    /**
+     * The number of values of the arena chunks, except those allocated for a
+     * single block larger than this.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * The capacity of the block of a new key.
+     */
+    private static final int INITIAL_BLOCK = 2;
+
+    /**
+     * The largest block, which bounds the number of values of a key.
+     */
+    private static final int MAXIMUM_BLOCK = 1 << 30;
+
+    /**
+     * The minimum capacity - MUST be a power of two.
+     */
+    private static final int MINIMUM_CAPACITY = 4;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+    * The maximum capacity, used if a higher value is implicitly specified
+    * by either of the constructors with arguments.
+    * MUST be a power of two <= 1<<30.
+    */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Constructs an empty <code>LongMultiMap</code> with the default initial
+     * capacity (16) and the default load factor (0.75).
+     */
+    public LongMultiMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>LongMultiMap</code> with room for the specified
+     * number of keys before the key table grows, and the default load factor
+     * (0.75).
+     *
+     * @param capacity the initial capacity
+     */
+    public LongMultiMap(final int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty <code>LongMultiMap</code> with the specified initial
+     * capacity and load factor.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public LongMultiMap(final int capacity, final float loadFactor) {
+        this(capacity, loadFactor, HashSpreader.FIBONACCI);
+    }
+
+    /**
+     * Constructs an empty <code>LongMultiMap</code> with the specified initial
+     * capacity, load factor and hash spreader. Linear probing is sensitive to
+     * clustered hashes, so {@link HashSpreader#IDENTITY} should only be used
+     * with dense, sequential keys.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param spreader the function used to spread the bits of the keys
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     * @throws NullPointerException if the spreader is null
+     */
+    public LongMultiMap(final int capacity, final float loadFactor, final HashSpreader spreader) {
+        if (spreader == null) {
+            throw new NullPointerException("spreader");
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.spreader = spreader;
+        allocate(MathEx.clamp(BitMath.nextPowerOfTwo(capacity), MINIMUM_CAPACITY, MAXIMUM_CAPACITY));
+    }
+
+    /**
+     * Hashes the given key with the hash spreader of this map, returning the
+     * index of the slot where its probe sequence starts.
+     *
+     * @param key the key to be hashed
+     * @return the index of the first slot to probe for the key
+     */
+    private int hash(final long key, final int mask) {
+        return spreader.spread(key) & mask;
+    }
+
+    /**
+     * Allocates empty key tables for the specified capacity and updates the
+     * mask and threshold accordingly. One extra slot is allocated for the key
+     * 0.
+     *
+     * @param capacity the new capacity, MUST be a power of two
+     */
+    private void allocate(final int capacity) {
+        keyTable = new long[capacity + 1];
+        chunkTable = new int[capacity + 1];
+        startTable = new int[capacity + 1];
+        lengthTable = new int[capacity + 1];
+        blockTable = new int[capacity + 1];
+        capacityMask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Rehashes the keys of this map into new tables with a different capacity.
+     * The blocks of values stay where they are. This method is called
+     * automatically when the number of keys in this map reaches its threshold.
+     *
+     * @param newCapacity the new capacity, MUST be a power of two
+     */
+    private void rehash(final int newCapacity) {
+        if (newCapacity == capacityMask + 1) {
+            return;
+        }
+        final long[] oldKeys = keyTable;
+        final int[] oldChunks = chunkTable;
+        final int[] oldStarts = startTable;
+        final int[] oldLengths = lengthTable;
+        final int[] oldBlocks = blockTable;
+        final int oldCapacity = capacityMask + 1;
+        allocate(newCapacity);
+
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        for (int i = 0; i <= oldCapacity; i++) {
+            final long key = oldKeys[i];
+            if (key != 0 || i == oldCapacity) {
+                int pos = mask + 1;
+                if (i < oldCapacity) {
+                    pos = hash(key, mask);
+                    while (k[pos] != 0) {
+                        pos = pos + 1 & mask;
+                    }
+                    k[pos] = key;
+                }
+                chunkTable[pos] = oldChunks[i];
+                startTable[pos] = oldStarts[i];
+                lengthTable[pos] = oldLengths[i];
+                blockTable[pos] = oldBlocks[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the slot that holds the specified key, or
+     * <code>-1</code> if this map contains no values for the key.
+     *
+     * @param key the key to look up
+     * @return the index of the slot holding the key, or <code>-1</code>
+     */
+    int indexOf(final long key) {
+        if (key == 0) {
+            return hasZeroKey ? capacityMask + 1 : -1;
+        }
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        long curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return pos;
+            }
+            pos = pos + 1 & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of keys in this map.
+     *
+     * @return the number of keys with at least one value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no keys.
+     *
+     * @return <code>true</code> if this map contains no keys
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of values of all keys of this map.
+     *
+     * @return the total number of values
+     */
+    public long valueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Returns the number of values associated with the specified key.
+     *
+     * @param key the key whose values are to be counted
+     * @return the number of values of the key, <code>0</code> if it is absent
+     */
+    public int valueCount(final long key) {
+        final int pos = indexOf(key);
+        return pos < 0 ? 0 : lengthTable[pos];
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains at least one value for
+     * the specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains values for the specified
+     *         key
+     */
+    public boolean containsKey(final long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value at the specified position in the list of values of
+     * the specified key. Values are kept in the order they were added.
+     *
+     * @param key the key whose value is to be returned
+     * @param index the index of the value in the list of the key
+     * @return the value at the index
+     * @throws IndexOutOfBoundsException if the index is negative or not less
+     *         than {@link #valueCount(long) valueCount(key)}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key, final int index) {
+        final int pos = indexOf(key);
+        final int length = pos < 0 ? 0 : lengthTable[pos];
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+        return (V) chunks[chunkTable[pos]][startTable[pos] + index];
+    }
+
+    /**
+     * Invokes the specified procedure with each value of the specified key, in
+     * the order they were added, without boxing the key or allocating memory.
+     * The procedure must not modify this map.
+     *
+     * @param key the key whose values are to be visited
+     * @param procedure the procedure to invoke
+     * @return the number of values visited
+     */
+    @SuppressWarnings("unchecked")
+    public int forEachValue(final long key, final LongObjectProcedure<? super V> procedure) {
+        final int pos = indexOf(key);
+        if (pos < 0) {
+            return 0;
+        }
+        final Object[] chunk = chunks[chunkTable[pos]];
+        final int start = startTable[pos];
+        final int length = lengthTable[pos];
+        for (int i = start, end = start + length; i < end; i++) {
+            procedure.apply(key, (V) chunk[i]);
+        }
+        return length;
+    }
+
+    /**
+     * Invokes the specified procedure with every key and value of this map.
+     * The values of each key are visited together, in the order they were
+     * added. The procedure must not modify this map.
+     *
+     * @param procedure the procedure to invoke
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final LongObjectProcedure<? super V> procedure) {
+        final long[] k = keyTable;
+        for (int pos = capacityMask + 1; pos >= 0; pos--) {
+            if (k[pos] != 0 || pos == capacityMask + 1 && hasZeroKey) {
+                final Object[] chunk = chunks[chunkTable[pos]];
+                for (int i = startTable[pos], end = i + lengthTable[pos]; i < end; i++) {
+                    procedure.apply(k[pos], (V) chunk[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the specified value to the list of values of the specified key.
+     * The same value may be added several times.
+     *
+     * @param key key with which the value is to be associated
+     * @param value value to be added to the values of <code>key</code>
+     * @return the number of values of the key, including the new one
+     * @throws IllegalStateException if the key already has the maximum number
+     *         of values (2^30)
+     */
+    public int add(final long key, final V value) {
+        int pos = insertionIndex(key);
+        if (pos >= 0) {
+            allocateBlock(pos, INITIAL_BLOCK);
+            chunks[chunkTable[pos]][startTable[pos]] = value;
+            lengthTable[pos] = 1;
+            valueCount++;
+            if (++size >= threshold) {
+                rehash(capacityMask + 1 << 1);
+            }
+            return 1;
+        }
+        pos = -pos - 1;
+        final int length = lengthTable[pos];
+        if (length == blockTable[pos]) {
+            growBlock(pos);
+        }
+        chunks[chunkTable[pos]][startTable[pos] + length] = value;
+        valueCount++;
+        return lengthTable[pos] = length + 1;
+    }
+
+    /**
+     * Finds the slot for the specified key, claiming a free slot for it if the
+     * map contains no values for the key. The caller must give the claimed
+     * slot a block and account for the new key.
+     *
+     * @param key the key
+     * @return the index of the claimed slot, or <code>-(index + 1)</code> if
+     *         the key was already present
+     */
+    private int insertionIndex(final long key) {
+        if (key == 0) {
+            final int pos = capacityMask + 1;
+            if (hasZeroKey) {
+                return -pos - 1;
+            }
+            hasZeroKey = true;
+            return pos;
+        }
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        long curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return -pos - 1;
+            }
+            pos = pos + 1 & mask;
+        }
+        k[pos] = key;
+        return pos;
+    }
+
+    /**
+     * Hands out a block of the specified capacity to the specified slot,
+     * opening a new chunk if the current one has no room for it. A block
+     * larger than a chunk gets a chunk of its own.
+     */
+    private void allocateBlock(final int pos, final int capacity) {
+        if (chunkCount == 0 || chunks[chunkCount - 1].length - chunkFill < capacity) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount << 1);
+            }
+            chunks[chunkCount++] = new Object[Math.max(CHUNK_SIZE, capacity)];
+            arenaSize += chunks[chunkCount - 1].length;
+            chunkFill = 0;
+        }
+        chunkTable[pos] = chunkCount - 1;
+        startTable[pos] = chunkFill;
+        blockTable[pos] = capacity;
+        chunkFill += capacity;
+    }
+
+    /**
+     * Doubles the block of the specified slot, in place if it is the last
+     * block of the current chunk and the chunk has room for it, or else by
+     * moving its values to a new block.
+     */
+    private void growBlock(final int pos) {
+        final int block = blockTable[pos];
+        if (block >= MAXIMUM_BLOCK) {
+            throw new IllegalStateException("Too many values for key " + keyAt(pos));
+        }
+        final int chunk = chunkTable[pos];
+        final int start = startTable[pos];
+        if (chunk == chunkCount - 1 && start + block == chunkFill && chunks[chunk].length - chunkFill >= block) {
+            chunkFill += block;
+            blockTable[pos] = block << 1;
+            return;
+        }
+        allocateBlock(pos, block << 1);
+        System.arraycopy(chunks[chunk], start, chunks[chunkTable[pos]], startTable[pos], lengthTable[pos]);
+        // let the values be collected
+        Arrays.fill(chunks[chunk], start, start + lengthTable[pos], null);
+    }
+
+    private long keyAt(final int pos) {
+        return pos == capacityMask + 1 ? 0 : keyTable[pos];
+    }
+
+    /**
+     * Removes the specified key and all of its values from this map. The block
+     * of the key is left unused until the map is {@link #compact() compacted}.
+     *
+     * @param key key whose values are to be removed from the map
+     * @return the number of values removed
+     */
+    public int removeAll(final long key) {
+        final int pos = indexOf(key);
+        if (pos < 0) {
+            return 0;
+        }
+        final int length = lengthTable[pos];
+        Arrays.fill(chunks[chunkTable[pos]], startTable[pos], startTable[pos] + length, null);
+        if (pos == capacityMask + 1) {
+            hasZeroKey = false;
+        } else {
+            shiftKeys(pos);
+        }
+        size--;
+        valueCount -= length;
+        return length;
+    }
+
+    /**
+     * Empties the specified slot and moves back the keys that follow it in
+     * the same probe sequence, so that no lookup is cut short by the hole.
+     *
+     * @param slot the index of the slot to empty
+     */
+    private void shiftKeys(final int slot) {
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int last = slot;
+        int pos = slot;
+        while (true) {
+            pos = pos + 1 & mask;
+            final long curr = k[pos];
+            if (curr == 0) {
+                k[last] = 0;
+                return;
+            }
+            final int home = hash(curr, mask);
+            if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                k[last] = curr;
+                chunkTable[last] = chunkTable[pos];
+                startTable[last] = startTable[pos];
+                lengthTable[last] = lengthTable[pos];
+                blockTable[last] = blockTable[pos];
+                last = pos;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of value slots of the arena, which is
+     * {@link #valueCount()} plus the room left in the blocks, the blocks
+     * abandoned by growing or removed keys, and the unused ends of the chunks.
+     * Comparing both tells when to {@link #compact()} the map.
+     *
+     * @return the capacity of the arena in values
+     */
+    public long arenaSize() {
+        return arenaSize;
+    }
+
+    /**
+     * Copies the values of every key into a new arena where each block is
+     * exactly as large as the number of values of its key, releasing the
+     * blocks abandoned by growing or removed keys. Until it returns, the old
+     * and new arenas are both in memory. The order of the values of each key
+     * is preserved.
+     */
+    public void compact() {
+        final Object[][] old = chunks;
+        chunks = new Object[Math.max(4, BitMath.nextPowerOfTwo((int) Math.min(valueCount / CHUNK_SIZE + 1,
+                MAXIMUM_CAPACITY)))][];
+        chunkCount = 0;
+        chunkFill = 0;
+        arenaSize = 0;
+        final long[] k = keyTable;
+        for (int pos = capacityMask + 1; pos >= 0; pos--) {
+            if (k[pos] != 0 || pos == capacityMask + 1 && hasZeroKey) {
+                final Object[] chunk = old[chunkTable[pos]];
+                final int start = startTable[pos];
+                allocateBlock(pos, lengthTable[pos]);
+                System.arraycopy(chunk, start, chunks[chunkTable[pos]], startTable[pos], lengthTable[pos]);
+            }
+        }
+    }
+
+    /**
+     * Removes all of the keys and values from this map, and releases its
+     * arena. The map will be empty after this call returns.
+     */
+    public void clear() {
+        size = 0;
+        valueCount = 0;
+        hasZeroKey = false;
+        chunks = new Object[4][];
+        chunkCount = 0;
+        chunkFill = 0;
+        arenaSize = 0;
+        if (capacityMask + 1 == DEFAULT_INITIAL_CAPACITY) {
+            Arrays.fill(keyTable, 0L);
+        } else {
+            allocate(DEFAULT_INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return a <code>long[]</code> with the keys contained in this map
+     */
+    public long[] keys() {
+        final long[] result = new long[size];
+        int i = 0;
+        final long[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                result[i++] = k[pos];
+            }
+        }
+        if (hasZeroKey) {
+            result[i] = 0;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        final long[] k = keyTable;
+        for (int pos = capacityMask + 1; pos >= 0; pos--) {
+            if (k[pos] != 0 || pos == capacityMask + 1 && hasZeroKey) {
+                sb.append(sep).append(k[pos]).append("=[");
+                final Object[] chunk = chunks[chunkTable[pos]];
+                for (int i = startTable[pos], end = i + lengthTable[pos]; i < end; i++) {
+                    sb.append(i == startTable[pos] ? "" : ", ").append(chunk[i]);
+                }
+                sb.append(']');
+                sep = ", ";
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * A callback invoked with each mapping of a map with <code>long</code> keys,
+ * without boxing the key.
+ *
+ * @param <V> the type of the values
+ */
+public interface LongObjectProcedure<V> {
+    void apply(long key, V value);
+}
@@ -0,0 +1,11 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * A function that computes a new value for a mapping of a map with
+ * <code>long</code> keys, without boxing the key.
+ *
+ * @param <V> the type of the values
+ */
+public interface LongObjectTransformer<V> {
+    V transform(long key, V value);
+}
@@ -0,0 +1,769 @@
+package com.ivan.utils.collections.map;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.ivan.utils.math.MathEx;
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * Hash set of <code>long</code> primitives, stored in a single
+ * <code>long[]</code> using open addressing with linear probing. Elements are
+ * never boxed and the set allocates no memory per element, unlike an
+ * {@link LongMap} with dummy values.
+ * <p>
+ * The bulk operations {@link #retainAll(LongSet)} and {@link #removeAll(LongSet)}
+ * work directly on the primitive tables of both sets. This class does not
+ * implement {@link Set}, but {@link #asSet()} returns a view that does. This
+ * collection is not thread-safe.
+ * <p>
+ * The element <code>0</code> is used internally to mark free slots and is
+ * tracked separately. Removals shift subsequent elements of the probe sequence
+ * back, so the table never accumulates tombstones. The load factor must be
+ * less than <code>1</code>.
+ */
+public class LongSet {
+    long[] keyTable;
+
+    /**
+     * The capacity mask of the table.
+     */
+    int capacityMask;
+
+    boolean hasZeroKey;
+
+    int size;
+
+    volatile int modCount;
+
+    private float loadFactor;
+
+    private int threshold;
+
+    private final HashSpreader spreader;
+
+    /**
+     * The minimum capacity - MUST be a power of two.
+     */
+    private static final int MINIMUM_CAPACITY = 4;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+    * The maximum capacity, used if a higher value is implicitly specified
+    * by either of the constructors with arguments.
+    * MUST be a power of two <= 1<<30.
+    */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Constructs an empty <code>LongSet</code> with the default initial
+     * capacity (16), the default load factor (0.75) and the
+     * {@link HashSpreader#FIBONACCI Fibonacci} hash spreader.
+     */
+    public LongSet() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>LongSet</code> with the specified initial
+     * capacity, the default load factor (0.75) and the
+     * {@link HashSpreader#FIBONACCI Fibonacci} hash spreader.
+     *
+     * @param capacity the initial capacity
+     */
+    public LongSet(final int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty <code>LongSet</code> with the specified initial
+     * capacity and load factor, and the {@link HashSpreader#FIBONACCI
+     * Fibonacci} hash spreader.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public LongSet(final int capacity, final float loadFactor) {
+        this(capacity, loadFactor, HashSpreader.FIBONACCI);
+    }
+
+    /**
+     * Constructs an empty <code>LongSet</code> with the specified initial
+     * capacity, load factor and hash spreader. Linear probing is sensitive to
+     * clustered hashes, so {@link HashSpreader#IDENTITY} should only be used
+     * with dense, sequential elements.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param spreader the function used to spread the bits of the elements
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     * @throws NullPointerException if the spreader is null
+     */
+    public LongSet(final int capacity, final float loadFactor, final HashSpreader spreader) {
+        if (spreader == null) {
+            throw new NullPointerException("spreader");
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.spreader = spreader;
+        allocate(MathEx.clamp(BitMath.nextPowerOfTwo(capacity), MINIMUM_CAPACITY, MAXIMUM_CAPACITY));
+    }
+
+    /**
+     * Constructs a new <code>LongSet</code> with the elements of the specified
+     * array, with the default load factor (0.75) and an initial capacity
+     * sufficient to hold them.
+     *
+     * @param elements the elements to be placed in this set
+     * @throws NullPointerException if the specified array is null
+     */
+    public LongSet(final long[] elements) {
+        this(Math.max((int) (elements.length / DEFAULT_LOAD_FACTOR) + 1, DEFAULT_INITIAL_CAPACITY));
+        addAll(elements);
+    }
+
+    /**
+     * Hashes the given element with the hash spreader of this set, returning
+     * the index of the slot where its probe sequence starts.
+     *
+     * @param key the element to be hashed
+     * @return the index of the first slot to probe for the element
+     */
+    int hash(final long key, final int mask) {
+        return spreader.spread(key) & mask;
+    }
+
+    /**
+     * Returns the function used by this set to spread the bits of the
+     * elements.
+     *
+     * @return the hash spreader of this set
+     */
+    public HashSpreader getHashSpreader() {
+        return spreader;
+    }
+
+    /**
+     * Allocates an empty table for the specified capacity and updates the mask
+     * and threshold accordingly.
+     *
+     * @param capacity the new capacity, MUST be a power of two
+     */
+    private void allocate(final int capacity) {
+        keyTable = new long[capacity];
+        capacityMask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Rehashes the contents of this set into a new table with a different
+     * capacity. This method is called automatically when the number of
+     * elements in this set reaches its threshold or {@link #trimToSize()} is
+     * invoked.
+     *
+     * @param newCapacity the new capacity, MUST be a power of two
+     */
+    private void rehash(final int newCapacity) {
+        if (newCapacity == capacityMask + 1) {
+            return;
+        }
+        final long[] oldKeys = keyTable;
+        allocate(newCapacity);
+
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        for (final long key : oldKeys) {
+            if (key != 0) {
+                int pos = hash(key, mask);
+                while (k[pos] != 0) {
+                    pos = pos + 1 & mask;
+                }
+                k[pos] = key;
+            }
+        }
+    }
+
+    /**
+     * Grows the table ahead of a bulk insertion, so that it is resized at most
+     * once.
+     *
+     * @param numKeysToBeAdded the number of elements about to be added
+     */
+    private void ensureCapacity(final int numKeysToBeAdded) {
+        if (numKeysToBeAdded > threshold) {
+            int targetCapacity = (int) (numKeysToBeAdded / loadFactor + 1);
+            if (targetCapacity > MAXIMUM_CAPACITY) {
+                targetCapacity = MAXIMUM_CAPACITY;
+            }
+            int newCapacity = capacityMask + 1;
+            while (newCapacity < targetCapacity) {
+                newCapacity <<= 1;
+            }
+            rehash(newCapacity);
+        }
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return the number of elements in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this set contains no elements.
+     *
+     * @return <code>true</code> if this set contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this set contains the specified element.
+     *
+     * @param key the element whose presence in this set is to be tested
+     * @return <code>true</code> if this set contains the specified element
+     */
+    public boolean contains(final long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        long curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return true;
+            }
+            pos = pos + 1 & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the specified element to this set if it is not already present.
+     *
+     * @param key the element to be added
+     * @return <code>true</code> if this set did not already contain the
+     *         element
+     */
+    public boolean add(final long key) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = true;
+        } else {
+            final long[] k = keyTable;
+            final int mask = capacityMask;
+            int pos = hash(key, mask);
+            long curr;
+            while ((curr = k[pos]) != 0) {
+                if (curr == key) {
+                    return false;
+                }
+                pos = pos + 1 & mask;
+            }
+            k[pos] = key;
+        }
+        modCount++;
+        if (++size >= threshold) {
+            rehash(capacityMask + 1 << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Adds all of the elements of the specified array to this set, growing the
+     * table at most once.
+     *
+     * @param keys the elements to be added
+     * @return <code>true</code> if this set changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean addAll(final long[] keys) {
+        ensureCapacity(keys.length);
+        final int before = size;
+        for (final long key : keys) {
+            add(key);
+        }
+        return size != before;
+    }
+
+    /**
+     * Adds all of the elements of the specified set to this set.
+     *
+     * @param s the set whose elements are to be added
+     * @return <code>true</code> if this set changed as a result of the call
+     * @throws NullPointerException if the specified set is null
+     */
+    public boolean addAll(final LongSet s) {
+        ensureCapacity(s.size);
+        final int before = size;
+        for (final long key : s.keyTable) {
+            if (key != 0) {
+                add(key);
+            }
+        }
+        if (s.hasZeroKey) {
+            add(0);
+        }
+        return size != before;
+    }
+
+    /**
+     * Removes the specified element from this set if it is present.
+     *
+     * @param key the element to be removed
+     * @return <code>true</code> if this set contained the element
+     */
+    public boolean remove(final long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            size--;
+            modCount++;
+            return true;
+        }
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        long curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                shiftKeys(pos);
+                size--;
+                modCount++;
+                return true;
+            }
+            pos = pos + 1 & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Empties the specified slot and moves back the elements that follow it in
+     * the same probe sequence, so that no lookup is cut short by the hole.
+     *
+     * @param slot the index of the slot to empty
+     */
+    private void shiftKeys(final int slot) {
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int last = slot;
+        int pos = slot;
+        while (true) {
+            pos = pos + 1 & mask;
+            final long curr = k[pos];
+            if (curr == 0) {
+                k[last] = 0;
+                return;
+            }
+            final int home = hash(curr, mask);
+            if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                k[last] = curr;
+                last = pos;
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if this set contains all of the elements of
+     * the specified array.
+     *
+     * @param keys the elements to be checked for containment in this set
+     * @return <code>true</code> if this set contains all of the elements
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean containsAll(final long[] keys) {
+        for (final long key : keys) {
+            if (!contains(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of the elements of the specified array from this set.
+     *
+     * @param keys the elements to be removed
+     * @return <code>true</code> if this set changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean removeAll(final long[] keys) {
+        final int before = size;
+        for (final long key : keys) {
+            remove(key);
+        }
+        return size != before;
+    }
+
+    /**
+     * Removes from this set all of its elements that are contained in the
+     * specified set, in a single pass over the smaller of the two tables.
+     *
+     * @param s the set containing the elements to be removed
+     * @return <code>true</code> if this set changed as a result of the call
+     * @throws NullPointerException if the specified set is null
+     */
+    public boolean removeAll(final LongSet s) {
+        if (s.size < size) {
+            final int before = size;
+            for (final long key : s.keyTable) {
+                if (key != 0) {
+                    remove(key);
+                }
+            }
+            if (s.hasZeroKey) {
+                remove(0);
+            }
+            return size != before;
+        }
+        return filter(s, false);
+    }
+
+    /**
+     * Retains only the elements of this set that are contained in the
+     * specified set, in a single pass over the table of this set.
+     *
+     * @param s the set containing the elements to be retained
+     * @return <code>true</code> if this set changed as a result of the call
+     * @throws NullPointerException if the specified set is null
+     */
+    public boolean retainAll(final LongSet s) {
+        return filter(s, true);
+    }
+
+    /**
+     * Removes the elements of this set whose presence in the specified set
+     * differs from <code>retain</code>, in place.
+     * <p>
+     * The scan starts right after a free slot and wraps around the table once.
+     * Removing an element only moves back elements of the same probe run, which
+     * lie ahead of the scan and end before the free slot it started from, so
+     * every element is tested exactly once; the slot of a removed element is
+     * tested again since it may have received one of them.
+     */
+    private boolean filter(final LongSet s, final boolean retain) {
+        final int before = size;
+        if (hasZeroKey && s.hasZeroKey != retain) {
+            hasZeroKey = false;
+            size--;
+        }
+        final long[] k = keyTable;
+        final int mask = capacityMask;
+        int start = 0;
+        while (k[start] != 0) {
+            start++;
+        }
+        for (int pos = start + 1 & mask; pos != start;) {
+            final long key = k[pos];
+            if (key != 0 && s.contains(key) != retain) {
+                shiftKeys(pos);
+                size--;
+            } else {
+                pos = pos + 1 & mask;
+            }
+        }
+        if (size == before) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes all of the elements from this set.
+     * The set will be empty after this call returns.
+     */
+    public void clear() {
+        size = 0;
+        modCount++;
+        hasZeroKey = false;
+        if (capacityMask + 1 == DEFAULT_INITIAL_CAPACITY) {
+            Arrays.fill(keyTable, 0L);
+        } else {
+            allocate(DEFAULT_INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Returns an array of the elements contained in this set.
+     *
+     * @return a <code>long[]</code> with the elements contained in this set
+     */
+    public long[] toArray() {
+        final long[] result = new long[size];
+        int i = 0;
+        final long[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                result[i++] = k[pos];
+            }
+        }
+        if (hasZeroKey) {
+            result[i] = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a {@link Set} view of this set. The view is backed by this set,
+     * so changes to either of them are reflected in the other. All
+     * <code>Set</code> operations are supported, and its iterator is
+     * <i>fail-fast</i>.
+     *
+     * @return a <code>Set</code> view of this set
+     */
+    public Set<Long> asSet() {
+        return new SetView();
+    }
+
+    /**
+     * Reduces the internal table to the minimum capacity required to hold all
+     * elements contained in this set respecting the load factor.
+     */
+    public void trimToSize() {
+        final int newCapacity = Math.max(MINIMUM_CAPACITY, BitMath.nextPowerOfTwo((int) (size / loadFactor) + 1));
+        rehash(newCapacity);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof LongSet)) {
+            return false;
+        }
+        final LongSet s = (LongSet) o;
+        if (s.size != size || s.hasZeroKey != hasZeroKey) {
+            return false;
+        }
+        for (final long key : keyTable) {
+            if (key != 0 && !s.contains(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sum of the hash codes of the elements of this set, which is
+     * also the hash code of its {@link #asSet()} view.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (final long key : keyTable) {
+            h += (int) (key ^ key >>> 32);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        String sep = "";
+        final long[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                sb.append(sep).append(k[pos]);
+                sep = ", ";
+            }
+        }
+        if (hasZeroKey) {
+            sb.append(sep).append(0);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * <code>Set</code> view of this set, returned by {@link LongSet#asSet()}.
+     */
+    final class SetView extends AbstractSet<Long> {
+        @Override
+        public Iterator<Long> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof Long && LongSet.this.contains((Long) o);
+        }
+
+        @Override
+        public boolean add(final Long e) {
+            return LongSet.this.add(e);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            return o instanceof Long && LongSet.this.remove((Long) o);
+        }
+
+        @Override
+        public void clear() {
+            LongSet.this.clear();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Iterator over the elements of this set, returned by the view of
+     * {@link LongSet#asSet()}.
+     * <p>
+     * The slots are visited from the end of the table towards its start, so
+     * that elements moved back by a removal through the iterator land on slots
+     * that have already been visited. Elements that wrap around from the start
+     * of the table to its end are remembered and returned at the end of the
+     * iteration.
+     */
+    final class KeyIterator implements Iterator<Long> {
+        int expectedModCount; // For fast-fail
+
+        int pos; // current slot; negative once iterating over wrapped keys
+
+        int last = -1; // last returned element: slot, capacity for 0, or MIN_VALUE if wrapped
+
+        int remaining; // number of elements yet to be returned
+
+        boolean mustReturnZeroKey;
+
+        long[] wrapped; // keys moved from unvisited to visited slots
+
+        int wrappedCount;
+
+        KeyIterator() {
+            expectedModCount = modCount;
+            pos = capacityMask + 1;
+            remaining = size;
+            mustReturnZeroKey = hasZeroKey;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        @Override
+        public Long next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            if (mustReturnZeroKey) {
+                mustReturnZeroKey = false;
+                last = capacityMask + 1;
+                return 0L;
+            }
+            final long[] k = keyTable;
+            while (true) {
+                if (--pos < 0) {
+                    last = Integer.MIN_VALUE;
+                    return wrapped[-pos - 1];
+                }
+                if (k[pos] != 0) {
+                    last = pos;
+                    return k[pos];
+                }
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (last == capacityMask + 1) {
+                LongSet.this.remove(0);
+            } else if (pos >= 0) {
+                shiftKeys(last);
+                size--;
+                modCount++;
+            } else {
+                LongSet.this.remove(wrapped[-pos - 1]);
+            }
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Same as {@link LongSet#shiftKeys(int)}, but keeps track of the
+         * elements that wrap around into slots already visited by this
+         * iterator.
+         */
+        private void shiftKeys(final int slot) {
+            final long[] k = keyTable;
+            final int mask = capacityMask;
+            int last = slot;
+            int pos = slot;
+            while (true) {
+                pos = pos + 1 & mask;
+                final long curr = k[pos];
+                if (curr == 0) {
+                    k[last] = 0;
+                    return;
+                }
+                final int home = hash(curr, mask);
+                if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                    if (pos < last) {
+                        addWrapped(curr);
+                    }
+                    k[last] = curr;
+                    last = pos;
+                }
+            }
+        }
+
+        private void addWrapped(final long key) {
+            if (wrapped == null) {
+                wrapped = new long[2];
+            } else if (wrappedCount == wrapped.length) {
+                wrapped = Arrays.copyOf(wrapped, wrappedCount << 1);
+            }
+            wrapped[wrappedCount++] = key;
+        }
+    }
+}
@@ -4,22 +4,28 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 public final class MapBuilder<K, V> {
-    // TODO strong/soft/weak keys
-    // TODO strong/soft/weak values
-    private final Map<K, V> map;
+    private enum Kind {
+        OTHER, HASH, INT, LONG
+    }
+
+    private Map<K, V> map;
 
-    private MapBuilder(final Map<K, V> map) {
+    private final Kind kind;
+
+    private MapBuilder(final Map<K, V> map, final Kind kind) {
         this.map = map;
+        this.kind = kind;
     }
 
     public static <K, V> MapBuilder<K, V> map(final Map<K, V> map) {
-        return new MapBuilder<K, V>(map);
+        return new MapBuilder<K, V>(map, Kind.OTHER);
     }
 
     public static <K, V> MapBuilder<K, V> hashMap() {
-        return map(new HashMap<K, V>());
+        return new MapBuilder<K, V>(new HashMap<K, V>(), Kind.HASH);
     }
 
     public static <K, V> MapBuilder<K, V> treeMap() {
@@ -31,15 +37,15 @@ public final class MapBuilder<K, V> {
     }
 
     public static <V> MapBuilder<Integer, V> intMap() {
-        return map(new IntMap<V>().asMap());
+        return new MapBuilder<Integer, V>(new IntMap<V>().asMap(), Kind.INT);
     }
 
     public static <V> MapBuilder<Long, V> longMap() {
-        return map(new LongMap<V>().asMap());
+        return new MapBuilder<Long, V>(new LongMap<V>().asMap(), Kind.LONG);
     }
 
     public static <K, V> MapBuilder<K, V> hashMap(final Map<K, V> map) {
-        return map(new HashMap<K, V>(map));
+        return new MapBuilder<K, V>(new HashMap<K, V>(map), Kind.HASH);
     }
 
     public static <K, V> MapBuilder<K, V> treeMap(final Map<K, V> map) {
@@ -51,11 +57,76 @@ public final class MapBuilder<K, V> {
     }
 
     public static <V> MapBuilder<Integer, V> intMap(final Map<Integer, V> map) {
-        return map(new IntMap<V>(map).asMap());
+        return new MapBuilder<Integer, V>(new IntMap<V>(map).asMap(), Kind.INT);
     }
 
     public static <V> MapBuilder<Long, V> longMap(final Map<Long, V> map) {
-        return map(new LongMap<V>(map).asMap());
+        return new MapBuilder<Long, V>(new LongMap<V>(map).asMap(), Kind.LONG);
+    }
+
+    /**
+     * Makes the map hold its values through soft references, which the
+     * garbage collector clears when memory runs low. The map becomes a view of
+     * a {@link ReferenceIntMap} or {@link ReferenceLongMap}; the mappings put
+     * so far are kept.
+     *
+     * @return this builder
+     * @throws UnsupportedOperationException if the builder was not created by
+     *         {@link #intMap()} or {@link #longMap()}
+     */
+    public MapBuilder<K, V> softValues() {
+        return referenceValues(ReferenceStrength.SOFT);
+    }
+
+    /**
+     * Makes the map hold its values through weak references, which the
+     * garbage collector clears as soon as nothing else refers to the values.
+     * The map becomes a view of a {@link ReferenceIntMap} or
+     * {@link ReferenceLongMap}; the mappings put so far are kept.
+     *
+     * @return this builder
+     * @throws UnsupportedOperationException if the builder was not created by
+     *         {@link #intMap()} or {@link #longMap()}
+     */
+    public MapBuilder<K, V> weakValues() {
+        return referenceValues(ReferenceStrength.WEAK);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MapBuilder<K, V> referenceValues(final ReferenceStrength strength) {
+        final Map<?, V> values;
+        switch (kind) {
+        case INT:
+            values = new ReferenceIntMap<V>(strength).asMap();
+            break;
+        case LONG:
+            values = new ReferenceLongMap<V>(strength).asMap();
+            break;
+        default:
+            throw new UnsupportedOperationException("Reference values need intMap() or longMap()");
+        }
+        final Map<K, V> old = map;
+        map = (Map<K, V>) values;
+        map.putAll(old);
+        return this;
+    }
+
+    /**
+     * Makes the map hold its keys through weak references, replacing it with
+     * a {@link WeakHashMap} which keeps the mappings put so far. Primitive
+     * keys cannot be referenced weakly, and there is no soft keys counterpart
+     * because the JDK has no map which holds its keys softly.
+     *
+     * @return this builder
+     * @throws UnsupportedOperationException if the builder was not created by
+     *         {@link #hashMap()}
+     */
+    public MapBuilder<K, V> weakKeys() {
+        if (kind != Kind.HASH) {
+            throw new UnsupportedOperationException("Weak keys need hashMap()");
+        }
+        map = new WeakHashMap<K, V>(map);
+        return this;
     }
 
     public MapBuilder<K, V> put(final K key, final V value) {
@@ -0,0 +1,230 @@
+package com.ivan.utils.collections.map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * The file format shared by {@link MappedIntMap} and {@link MappedLongMap},
+ * and the writer used by {@link IntMap#writeTo(Path, ValueCodec)} and
+ * {@link LongMap#writeTo(Path, ValueCodec)}.
+ * <p>
+ * A snapshot consists of a header, an open addressing index and the values.
+ * All numbers are big-endian.
+ * <ul>
+ * <li>The header holds the magic number of the key type, the format version,
+ * the number of mappings, the capacity of the index and the ordinal of the
+ * {@link HashSpreader} used to build it.</li>
+ * <li>The index is a linear probing table whose slots hold a key followed by
+ * the absolute offset of its value in the file. Unused slots have an offset of
+ * 0, so every key, including 0, can be stored in any slot. The index is kept at
+ * most half full.</li>
+ * <li>Each value is stored as its length in bytes followed by the bytes
+ * written by the {@link ValueCodec}; <code>null</code> values have a length of
+ * -1 and no bytes.</li>
+ * </ul>
+ * Lookups on a mapped snapshot read the index and the value straight from the
+ * file, so opening one takes the same time regardless of its size.
+ */
+final class MapSnapshot implements Closeable {
+    static final int INT_MAGIC = 0x494D4150; // "IMAP"
+
+    static final int LONG_MAGIC = 0x4C4D4150; // "LMAP"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 32;
+
+    static final int SIZE_OFFSET = 8;
+
+    static final int CAPACITY_OFFSET = 16;
+
+    static final int SPREADER_OFFSET = 24;
+
+    /**
+     * The spreader used to build new snapshots. Linear probing needs well
+     * distributed hashes regardless of the spreader of the source map.
+     */
+    static final HashSpreader SPREADER = HashSpreader.FIBONACCI;
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+
+    private final MappedFile index;
+
+    private final int keyBytes;
+
+    private final int slotBytes;
+
+    private final long capacityMask;
+
+    private final long valuesOffset;
+
+    /**
+     * The position in the file of the first value byte still in the buffer.
+     */
+    private long flushed;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream data = new DataOutputStream(bytes);
+
+    private final long size;
+
+    /**
+     * Creates or truncates the specified file and reserves room for the header
+     * and the index of a snapshot with the specified number of mappings.
+     *
+     * @param path the file to write
+     * @param magic {@link #INT_MAGIC} or {@link #LONG_MAGIC}
+     * @param size the number of mappings that will be added
+     * @throws IOException if an I/O error occurs
+     */
+    MapSnapshot(final Path path, final int magic, final long size) throws IOException {
+        this.size = size;
+        keyBytes = magic == INT_MAGIC ? 4 : 8;
+        slotBytes = slotBytes(keyBytes);
+        final long capacity = Math.max(2, BitMath.nextPowerOfTwo(size * 2));
+        capacityMask = capacity - 1;
+        valuesOffset = HEADER_BYTES + capacity * slotBytes;
+        flushed = valuesOffset;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean ok = false;
+        try {
+            index = new MappedFile(channel, MapMode.READ_WRITE, valuesOffset);
+            index.putInt(0, magic);
+            index.putInt(4, VERSION);
+            index.putLong(SIZE_OFFSET, size);
+            index.putLong(CAPACITY_OFFSET, capacity);
+            index.putInt(SPREADER_OFFSET, SPREADER.ordinal());
+            ok = true;
+        } finally {
+            if (!ok) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the size of an index slot for the specified key size.
+     *
+     * @param keyBytes the size of a key in bytes
+     * @return the size of an index slot in bytes
+     */
+    static int slotBytes(final int keyBytes) {
+        return keyBytes + 8;
+    }
+
+    /**
+     * Adds a mapping with an <code>int</code> key. Keys must not be repeated.
+     *
+     * @param key the key
+     * @param value the value
+     * @param codec the codec for non-null values
+     * @throws IOException if an I/O error occurs
+     */
+    <V> void add(final int key, final V value, final ValueCodec<? super V> codec) throws IOException {
+        long pos = SPREADER.spread(key) & 0xFFFFFFFFL & capacityMask;
+        while (index.getLong(HEADER_BYTES + pos * slotBytes + keyBytes) != 0) {
+            pos = pos + 1 & capacityMask;
+        }
+        final long slot = HEADER_BYTES + pos * slotBytes;
+        index.putInt(slot, key);
+        index.putLong(slot + keyBytes, writeValue(value, codec));
+    }
+
+    /**
+     * Adds a mapping with a <code>long</code> key. Keys must not be repeated.
+     *
+     * @param key the key
+     * @param value the value
+     * @param codec the codec for non-null values
+     * @throws IOException if an I/O error occurs
+     */
+    <V> void add(final long key, final V value, final ValueCodec<? super V> codec) throws IOException {
+        long pos = SPREADER.spread(key) & 0xFFFFFFFFL & capacityMask;
+        while (index.getLong(HEADER_BYTES + pos * slotBytes + keyBytes) != 0) {
+            pos = pos + 1 & capacityMask;
+        }
+        final long slot = HEADER_BYTES + pos * slotBytes;
+        index.putLong(slot, key);
+        index.putLong(slot + keyBytes, writeValue(value, codec));
+    }
+
+    /**
+     * Appends a value record and returns its offset.
+     */
+    private <V> long writeValue(final V value, final ValueCodec<? super V> codec) throws IOException {
+        final long offset = flushed + buffer.position();
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        if (value == null) {
+            buffer.putInt(-1);
+            return offset;
+        }
+        bytes.reset();
+        codec.write(value, data);
+        data.flush();
+        final int length = bytes.size();
+        buffer.putInt(length);
+        if (length > buffer.remaining()) {
+            flush();
+            writeAt(ByteBuffer.wrap(bytes.toByteArray()));
+        } else {
+            buffer.put(bytes.toByteArray());
+        }
+        return offset;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeAt(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer at the end of the values written
+     * so far.
+     */
+    private void writeAt(final ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            flushed += channel.write(b, flushed);
+        }
+    }
+
+    /**
+     * Flushes the values and the index to the file. Must be invoked after all
+     * mappings have been added.
+     *
+     * @param added the number of mappings that were added
+     * @throws IOException if an I/O error occurs or the number of mappings
+     *         differs from the one given to the constructor
+     */
+    void finish(final long added) throws IOException {
+        if (added != size) {
+            throw new IOException("Expected " + size + " mappings, got " + added + "; was the map modified concurrently?");
+        }
+        flush();
+        index.force();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.unmap();
+        channel.close();
+    }
+}
@@ -0,0 +1,192 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of the occupancy of a chained hash map, returned by
+ * {@link IntMap#stats()} and {@link LongMap#stats()}. It reports how the
+ * mappings are spread over the buckets, which reveals degenerate maps, such as
+ * one whose keys defeat its {@link HashSpreader}, without a heap dump.
+ * <p>
+ * The lookup counters are only maintained while the map
+ * {@link IntMap#setRecordStats(boolean) records statistics}; otherwise they
+ * are zero. A snapshot never changes after it is taken.
+ */
+public final class MapStats {
+    private final int capacity;
+
+    private final int size;
+
+    private final float loadFactor;
+
+    private final int[] histogram;
+
+    private final long estimatedBytes;
+
+    private final int resizeCount;
+
+    private final long lookupCount;
+
+    private final long missCount;
+
+    MapStats(final int capacity, final int size, final float loadFactor, final int[] histogram,
+            final long estimatedBytes, final int resizeCount, final long lookupCount, final long missCount) {
+        this.capacity = capacity;
+        this.size = size;
+        this.loadFactor = loadFactor;
+        int max = histogram.length - 1;
+        while (max > 0 && histogram[max] == 0) {
+            max--;
+        }
+        this.histogram = new int[max + 1];
+        System.arraycopy(histogram, 0, this.histogram, 0, max + 1);
+        this.estimatedBytes = estimatedBytes;
+        this.resizeCount = resizeCount;
+        this.lookupCount = lookupCount;
+        this.missCount = missCount;
+    }
+
+    /**
+     * Returns the size of an array of references, on a 64-bit JVM with
+     * compressed references.
+     */
+    static long arrayBytes(final int length) {
+        return 16 + 4L * length + 7 & ~7L;
+    }
+
+    /**
+     * Returns the number of buckets of the table.
+     *
+     * @return the capacity of the map
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of mappings of the map.
+     *
+     * @return the size of the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the load factor the map was configured with: the ratio of size
+     * to capacity at which it grows.
+     *
+     * @return the configured load factor
+     */
+    public float loadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * Returns the current ratio of size to capacity.
+     *
+     * @return the current load of the map
+     */
+    public double load() {
+        return capacity == 0 ? 0.0 : (double) size / capacity;
+    }
+
+    /**
+     * Returns the number of buckets with each chain length: element
+     * <code>i</code> of the array counts the buckets which hold exactly
+     * <code>i</code> mappings. The array ends at the longest chain.
+     *
+     * @return the chain length histogram
+     */
+    public int[] chainLengthHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Returns the length of the longest chain, which bounds the number of
+     * keys compared by a lookup.
+     *
+     * @return the maximum chain length
+     */
+    public int maxChainLength() {
+        return histogram.length - 1;
+    }
+
+    /**
+     * Returns the mean length of the non-empty chains. Keys spread evenly at
+     * the default load factor give between 1.2 and 1.4; much larger values
+     * mean that many keys share their buckets.
+     *
+     * @return the mean length of the non-empty chains, or 0 if the map is
+     *         empty
+     */
+    public double meanChainLength() {
+        final int used = buckets() - histogram[0];
+        return used == 0 ? 0.0 : (double) size / used;
+    }
+
+    /**
+     * Returns the fraction of the buckets which hold no mapping.
+     *
+     * @return the ratio of empty buckets to all buckets
+     */
+    public double emptyBucketRatio() {
+        final int buckets = buckets();
+        return buckets == 0 ? 0.0 : (double) histogram[0] / buckets;
+    }
+
+    private int buckets() {
+        int buckets = 0;
+        for (final int n : histogram) {
+            buckets += n;
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns an estimate of the memory retained by the table and the entries
+     * of the map, excluding the values, for a 64-bit JVM with compressed
+     * references.
+     *
+     * @return the estimated retained size in bytes
+     */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Returns the number of times the map has resized its table.
+     *
+     * @return the number of resizes
+     */
+    public int resizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Returns the number of <code>get</code> and <code>containsKey</code>
+     * calls counted while recording statistics.
+     *
+     * @return the number of recorded lookups
+     */
+    public long lookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * Returns the number of recorded lookups which did not find a mapping.
+     *
+     * @return the number of recorded misses
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "MapStats{capacity=%d, size=%d, load=%.3f/%.2f, maxChain=%d, meanChain=%.3f,"
+                + " emptyBuckets=%.1f%%, estimatedBytes=%d, resizes=%d, lookups=%d, misses=%d}", capacity, size, load(),
+                loadFactor, maxChainLength(), meanChainLength(), emptyBucketRatio() * 100, estimatedBytes, resizeCount,
+                lookupCount, missCount);
+    }
+}
@@ -0,0 +1,134 @@
+package com.ivan.utils.collections.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A region of a file mapped into memory through as many
+ * {@link MappedByteBuffer}s as needed to get past the 2 GB limit of a single
+ * buffer. Chunks start every 2<sup>30</sup> bytes and overlap the next one by
+ * {@link #OVERLAP} bytes, so that any primitive, and any index slot of the map
+ * snapshots, can be accessed through a single chunk.
+ */
+final class MappedFile {
+    private static final int CHUNK_SHIFT = 30;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    /**
+     * The number of bytes each chunk shares with the next one.
+     */
+    static final int OVERLAP = 16;
+
+    private MappedByteBuffer[] chunks;
+
+    private final long size;
+
+    /**
+     * Maps the first <code>size</code> bytes of the specified channel.
+     *
+     * @param channel the channel of the file to map
+     * @param mode the mapping mode
+     * @param size the number of bytes to map
+     * @throws IOException if an I/O error occurs
+     */
+    MappedFile(final FileChannel channel, final MapMode mode, final long size) throws IOException {
+        this.size = size;
+        chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            final long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(mode, start, Math.min(size - start, CHUNK_MASK + 1 + OVERLAP));
+        }
+    }
+
+    /**
+     * Returns the number of mapped bytes.
+     *
+     * @return the size of the mapped region
+     */
+    long size() {
+        return size;
+    }
+
+    private MappedByteBuffer chunk(final long pos) {
+        final MappedByteBuffer[] c = chunks;
+        if (c == null) {
+            throw new IllegalStateException("File has been unmapped");
+        }
+        return c[(int) (pos >>> CHUNK_SHIFT)];
+    }
+
+    int getInt(final long pos) {
+        return chunk(pos).getInt((int) pos & CHUNK_MASK);
+    }
+
+    long getLong(final long pos) {
+        return chunk(pos).getLong((int) pos & CHUNK_MASK);
+    }
+
+    void putInt(final long pos, final int value) {
+        chunk(pos).putInt((int) pos & CHUNK_MASK, value);
+    }
+
+    void putLong(final long pos, final long value) {
+        chunk(pos).putLong((int) pos & CHUNK_MASK, value);
+    }
+
+    /**
+     * Returns a read-only buffer over the specified range of the file. The
+     * buffer shares the mapped memory unless the range crosses the end of a
+     * chunk, in which case the bytes are copied to the heap.
+     *
+     * @param pos the position of the first byte
+     * @param length the number of bytes
+     * @return a buffer whose remaining bytes are the specified range
+     */
+    ByteBuffer slice(final long pos, final int length) {
+        final int offset = (int) pos & CHUNK_MASK;
+        final MappedByteBuffer chunk = chunk(pos);
+        if (offset + length <= chunk.capacity()) {
+            final ByteBuffer b = chunk.asReadOnlyBuffer();
+            b.limit(offset + length).position(offset);
+            return b.slice();
+        }
+        final byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            final long p = pos + copied;
+            final ByteBuffer b = chunk(p).duplicate();
+            final int o = (int) p & CHUNK_MASK;
+            final int n = Math.min(length - copied, CHUNK_MASK + 1 - o);
+            b.position(o);
+            b.get(bytes, copied, n);
+            copied += n;
+        }
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Flushes the changes made to the mapped region to the storage device.
+     */
+    void force() {
+        for (final MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Unmaps the file. Buffers returned by {@link #slice(long, int)} that share
+     * the mapped memory must not be accessed afterwards.
+     */
+    void unmap() {
+        final MappedByteBuffer[] c = chunks;
+        if (c == null) {
+            return;
+        }
+        chunks = null;
+        for (final MappedByteBuffer chunk : c) {
+            DirectBuffers.free(chunk);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.ivan.utils.collections.map;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of an {@link IntMap} snapshot written by
+ * {@link IntMap#writeTo(Path, ValueCodec)}. The snapshot file is mapped into
+ * memory and lookups run directly against it: opening a snapshot only reads
+ * its header, so it takes the same time regardless of the number of mappings,
+ * and the operating system pages the file in on demand. Values are decoded by
+ * the {@link ValueCodec} on every lookup.
+ * <p>
+ * The mapping is released by {@link #close()}; the map cannot be used
+ * afterwards. This class is safe for use by multiple threads as long as none
+ * of them closes the map while others are using it.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public class MappedIntMap<V> implements Closeable {
+    private static final int SLOT_BYTES = MapSnapshot.slotBytes(4);
+
+    private final MappedFile file;
+
+    private final ValueCodec<? extends V> codec;
+
+    private final HashSpreader spreader;
+
+    private final long capacityMask;
+
+    private final int size;
+
+    private MappedIntMap(final MappedFile file, final ValueCodec<? extends V> codec, final HashSpreader spreader,
+            final long capacity, final int size) {
+        this.file = file;
+        this.codec = codec;
+        this.spreader = spreader;
+        capacityMask = capacity - 1;
+        this.size = size;
+    }
+
+    /**
+     * Maps the specified snapshot into memory.
+     *
+     * @param path the snapshot file
+     * @param codec the codec used to write the values of the snapshot
+     * @return a read-only map backed by the file
+     * @throws IOException if an I/O error occurs, or the file is not an
+     *         <code>IntMap</code> snapshot or its header is corrupt
+     */
+    public static <V> MappedIntMap<V> open(final Path path, final ValueCodec<? extends V> codec) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final long length = channel.size();
+            if (length < MapSnapshot.HEADER_BYTES) {
+                throw new IOException("Not an IntMap snapshot: " + path);
+            }
+            final MappedFile file = new MappedFile(channel, MapMode.READ_ONLY, length);
+            if (file.getInt(0) != MapSnapshot.INT_MAGIC) {
+                file.unmap();
+                throw new IOException("Not an IntMap snapshot: " + path);
+            }
+            final int version = file.getInt(4);
+            if (version != MapSnapshot.VERSION) {
+                file.unmap();
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            final int spreader = file.getInt(MapSnapshot.SPREADER_OFFSET);
+            final long capacity = file.getLong(MapSnapshot.CAPACITY_OFFSET);
+            final long size = file.getLong(MapSnapshot.SIZE_OFFSET);
+            String error = null;
+            if (spreader < 0 || spreader >= HashSpreader.values().length) {
+                error = "Unknown hash spreader " + spreader;
+            } else if (capacity <= 0 || (capacity & capacity - 1) != 0) {
+                error = "Illegal capacity " + capacity;
+            } else if (capacity > (length - MapSnapshot.HEADER_BYTES) / SLOT_BYTES) {
+                error = "Truncated file of " + length + " bytes for capacity " + capacity;
+            } else if (size < 0 || size >= capacity || size > Integer.MAX_VALUE) {
+                // the table must keep an empty slot for the probes to end
+                error = "Illegal size " + size + " for capacity " + capacity;
+            }
+            if (error != null) {
+                file.unmap();
+                throw new IOException(error + ": " + path);
+            }
+            return new MappedIntMap<V>(file, codec, HashSpreader.values()[spreader], capacity, (int) size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the offset of the value record of the specified key, or
+     * <code>0</code> if the snapshot contains no mapping for the key.
+     *
+     * @param key the key to look up
+     * @return the offset of the value of the key, or <code>0</code>
+     */
+    private long valueOffset(final int key) {
+        final MappedFile f = file;
+        final long mask = capacityMask;
+        long pos = spreader.spread(key) & 0xFFFFFFFFL & mask;
+        while (true) {
+            final long slot = MapSnapshot.HEADER_BYTES + pos * SLOT_BYTES;
+            final long offset = f.getLong(slot + 4);
+            if (offset == 0 || f.getInt(slot) == key) {
+                return offset;
+            }
+            pos = pos + 1 & mask;
+        }
+    }
+
+    private V readValue(final long offset) {
+        final int length = file.getInt(offset);
+        return length < 0 ? null : codec.read(file.slice(offset + 4, length));
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     * @throws IllegalStateException if this map has been closed
+     */
+    public boolean containsKey(final int key) {
+        return valueOffset(key) != 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     * @throws IllegalStateException if this map has been closed
+     */
+    public V get(final int key) {
+        final long offset = valueOffset(key);
+        return offset == 0 ? null : readValue(offset);
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return an <code>int[]</code> with the keys contained in this map
+     * @throws IllegalStateException if this map has been closed
+     */
+    public int[] keys() {
+        final int[] keys = new int[size];
+        int i = 0;
+        final MappedFile f = file;
+        for (long pos = 0; pos <= capacityMask; pos++) {
+            final long slot = MapSnapshot.HEADER_BYTES + pos * SLOT_BYTES;
+            if (f.getLong(slot + 4) != 0) {
+                keys[i++] = f.getInt(slot);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Copies the contents of this map into a new, mutable {@link IntMap}.
+     *
+     * @return an <code>IntMap</code> with the mappings of this map
+     * @throws IllegalStateException if this map has been closed
+     */
+    public IntMap<V> toIntMap() {
+        final IntMap<V> map = new IntMap<V>((int) Math.min((long) (size / 0.75f) + 1, 1 << 30));
+        final MappedFile f = file;
+        for (long pos = 0; pos <= capacityMask; pos++) {
+            final long slot = MapSnapshot.HEADER_BYTES + pos * SLOT_BYTES;
+            final long offset = f.getLong(slot + 4);
+            if (offset != 0) {
+                map.put(f.getInt(slot), readValue(offset));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Unmaps the snapshot file. Any further lookup on the map throws an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        file.unmap();
+    }
+}
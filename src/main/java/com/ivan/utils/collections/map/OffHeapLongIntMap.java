@@ -0,0 +1,664 @@
+package com.ivan.utils.collections.map;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+import com.ivan.utils.math.MathEx;
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * Hash map from <code>long</code> keys to <code>int</code> values stored
+ * outside of the Java heap, meant for indexes too large to be kept in a
+ * {@link LongMap} or a {@link LongIntMap}. Mappings live in direct
+ * {@link ByteBuffer}s, so the garbage collector never scans or copies them and
+ * the heap footprint of the map is a few small arrays regardless of its size.
+ * <p>
+ * The table is split into a fixed number of segments, each one an open
+ * addressing table with linear probing in its own buffer. The high bits of the
+ * hash of a key select its segment and the low bits its slot. Segments grow
+ * independently, so a resize only copies the segment that reached its
+ * threshold instead of the whole table, and the total capacity is not bounded
+ * by the size of a single buffer. The number of segments is derived from the
+ * initial capacity and fixed from then on; presizing a large map keeps its
+ * segments, and therefore the pauses caused by growing them, small.
+ * <p>
+ * A segment has at most 2<sup>26</sup> slots and keeps to the load factor at
+ * that size too, so the map holds at most <i>segments &times; 2<sup>26</sup>
+ * &times; load factor</i> mappings. At the default load factor, that is about
+ * 3&middot;2<sup>30</sup> mappings for the 64 segments of a map constructed
+ * with a capacity of at most 2<sup>26</sup>, the default one included, and
+ * 0.75&middot;2<sup>40</sup> for the 2<sup>14</sup> segments of a map presized
+ * for 2<sup>34</sup> mappings or more.
+ * Adding a mapping to a segment that has reached its limit throws an
+ * {@link IllegalStateException}.
+ * <p>
+ * The native memory of the map is released by {@link #close()}; the map
+ * cannot be used afterwards. Maps that are not closed release their memory
+ * once they are garbage collected. Note that direct memory is limited by the
+ * <code>-XX:MaxDirectMemorySize</code> option of the JVM.
+ * <p>
+ * As with {@link LongIntMap}, absent mappings are reported through a
+ * configurable <i>no value</i> sentinel, which defaults to <code>0</code>.
+ * This collection is not thread-safe.
+ */
+public class OffHeapLongIntMap implements Closeable {
+    /**
+     * The size of a slot in bytes: the key followed by the value.
+     */
+    private static final int SLOT_BYTES = 12;
+
+    private static final int VALUE_OFFSET = 8;
+
+    /**
+     * The minimum capacity of a segment - MUST be a power of two.
+     */
+    private static final int MINIMUM_SEGMENT_CAPACITY = 16;
+
+    /**
+     * The maximum capacity of a segment - MUST be a power of two. Limited by
+     * the maximum size of a buffer.
+     */
+    private static final int MAXIMUM_SEGMENT_CAPACITY = 1 << 26;
+
+    /**
+     * The capacity of the segments of a presized map is kept below this value
+     * by adding segments - MUST be a power of two.
+     */
+    private static final int PRESIZED_SEGMENT_CAPACITY = 1 << 20;
+
+    /**
+     * The minimum number of segments - MUST be a power of two.
+     */
+    private static final int MINIMUM_SEGMENTS = 64;
+
+    /**
+     * The maximum number of segments - MUST be a power of two.
+     */
+    private static final int MAXIMUM_SEGMENTS = 1 << 14;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final long DEFAULT_INITIAL_CAPACITY = MINIMUM_SEGMENTS * MINIMUM_SEGMENT_CAPACITY;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The segments of the table, or <code>null</code> once the map has been
+     * closed.
+     */
+    private ByteBuffer[] segments;
+
+    private final int[] segmentMasks;
+
+    private final int[] segmentSizes;
+
+    private final int[] segmentThresholds;
+
+    private final int segmentShift;
+
+    private final int initialSegmentCapacity;
+
+    private boolean hasZeroKey;
+
+    private int zeroValue;
+
+    private long size;
+
+    private final float loadFactor;
+
+    private final int noValue;
+
+    /**
+     * Constructs an empty <code>OffHeapLongIntMap</code> with the default
+     * initial capacity (1024), the default load factor (0.75) and
+     * <code>0</code> as the no value sentinel.
+     */
+    public OffHeapLongIntMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>OffHeapLongIntMap</code> with the specified
+     * initial capacity, the default load factor (0.75) and <code>0</code> as
+     * the no value sentinel.
+     *
+     * @param capacity the initial capacity
+     */
+    public OffHeapLongIntMap(final long capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty <code>OffHeapLongIntMap</code> with the specified
+     * initial capacity and load factor, and <code>0</code> as the no value
+     * sentinel.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public OffHeapLongIntMap(final long capacity, final float loadFactor) {
+        this(capacity, loadFactor, 0);
+    }
+
+    /**
+     * Constructs an empty <code>OffHeapLongIntMap</code> with the specified
+     * initial capacity, load factor and no value sentinel.
+     *
+     * @param capacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param noValue the value returned by the methods of this map to signal
+     *        the absence of a mapping
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public OffHeapLongIntMap(final long capacity, final float loadFactor, final int noValue) {
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.noValue = noValue;
+
+        final long total = BitMath.nextPowerOfTwo(MathEx.clamp(capacity, DEFAULT_INITIAL_CAPACITY,
+                (long) MAXIMUM_SEGMENTS * MAXIMUM_SEGMENT_CAPACITY));
+        final int segmentCount = (int) MathEx.clamp(total / PRESIZED_SEGMENT_CAPACITY, MINIMUM_SEGMENTS, MAXIMUM_SEGMENTS);
+        segmentShift = 64 - BitMath.numberOfTrailingZeros(segmentCount);
+        initialSegmentCapacity = (int) (total / segmentCount);
+        segments = new ByteBuffer[segmentCount];
+        segmentMasks = new int[segmentCount];
+        segmentSizes = new int[segmentCount];
+        segmentThresholds = new int[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            allocate(s, initialSegmentCapacity);
+        }
+    }
+
+    /**
+     * Applies the finalization step of MurmurHash3 to the key. The high bits of
+     * the result select the segment of the key and the low bits its first slot
+     * within the segment.
+     *
+     * @param key the key to be hashed
+     * @return the 64-bit hash of the key
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        return key ^ key >>> 33;
+    }
+
+    /**
+     * Returns the segments of this map, checking that it has not been closed.
+     *
+     * @return the segments of this map
+     * @throws IllegalStateException if this map has been closed
+     */
+    private ByteBuffer[] segments() {
+        final ByteBuffer[] segs = segments;
+        if (segs == null) {
+            throw new IllegalStateException("Map has been closed");
+        }
+        return segs;
+    }
+
+    /**
+     * Allocates an empty buffer for the specified segment and updates its mask
+     * and threshold accordingly. The previous buffer of the segment is not
+     * released.
+     *
+     * @param s the index of the segment
+     * @param capacity the new capacity of the segment, MUST be a power of two
+     * @return the new buffer
+     */
+    private ByteBuffer allocate(final int s, final int capacity) {
+        final ByteBuffer b = DirectBuffers.allocate(capacity * SLOT_BYTES);
+        segments[s] = b;
+        segmentMasks[s] = capacity - 1;
+        segmentThresholds[s] = Math.min((int) (capacity * loadFactor), capacity - 1);
+        return b;
+    }
+
+    /**
+     * Rehashes the contents of a segment into a new buffer with a different
+     * capacity and releases the old buffer. The other segments are left
+     * untouched.
+     *
+     * @param s the index of the segment
+     * @param newCapacity the new capacity, MUST be a power of two
+     */
+    private void rehash(final int s, final int newCapacity) {
+        final int oldCapacity = segmentMasks[s] + 1;
+        if (newCapacity == oldCapacity) {
+            return;
+        }
+        final ByteBuffer old = segments[s];
+        final ByteBuffer b = allocate(s, newCapacity);
+        final int mask = newCapacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            final long key = old.getLong(i * SLOT_BYTES);
+            if (key != 0) {
+                int pos = (int) hash(key) & mask;
+                while (b.getLong(pos * SLOT_BYTES) != 0) {
+                    pos = pos + 1 & mask;
+                }
+                b.putLong(pos * SLOT_BYTES, key);
+                b.putInt(pos * SLOT_BYTES + VALUE_OFFSET, old.getInt(i * SLOT_BYTES + VALUE_OFFSET));
+            }
+        }
+        DirectBuffers.free(old);
+    }
+
+    /**
+     * Returns the value used by this map to signal the absence of a mapping.
+     *
+     * @return the no value sentinel of this map
+     */
+    public int noValue() {
+        return noValue;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of slots currently allocated by this map, across all
+     * of its segments.
+     *
+     * @return the capacity of this map
+     */
+    public long capacity() {
+        segments();
+        long capacity = 0;
+        for (final int mask : segmentMasks) {
+            capacity += mask + 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the amount of native memory currently allocated by this map.
+     *
+     * @return the size of the buffers of this map, in bytes
+     */
+    public long offHeapBytes() {
+        return capacity() * SLOT_BYTES;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     * @throws IllegalStateException if this map has been closed
+     */
+    public boolean containsKey(final long key) {
+        final ByteBuffer[] segs = segments();
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        final long h = hash(key);
+        final int s = (int) (h >>> segmentShift);
+        final ByteBuffer b = segs[s];
+        final int mask = segmentMasks[s];
+        int pos = (int) h & mask;
+        long curr;
+        while ((curr = b.getLong(pos * SLOT_BYTES)) != 0) {
+            if (curr == key) {
+                return true;
+            }
+            pos = pos + 1 & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if this map maps one or more keys to the
+     * specified value. This operation scans the whole table.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return <code>true</code> if this map maps one or more keys to the
+     *         specified value
+     * @throws IllegalStateException if this map has been closed
+     */
+    public boolean containsValue(final int value) {
+        final ByteBuffer[] segs = segments();
+        if (hasZeroKey && zeroValue == value) {
+            return true;
+        }
+        for (int s = 0; s < segs.length; s++) {
+            final ByteBuffer b = segs[s];
+            for (int i = segmentMasks[s]; i >= 0; i--) {
+                if (b.getLong(i * SLOT_BYTES) != 0 && b.getInt(i * SLOT_BYTES + VALUE_OFFSET) == value) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the no value
+     * sentinel if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@link #noValue()} if this map contains no mapping for the key
+     * @throws IllegalStateException if this map has been closed
+     */
+    public int get(final long key) {
+        return getOrDefault(key, noValue);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>defaultValue</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if the key is not mapped
+     * @return the value to which the specified key is mapped, or
+     *         <code>defaultValue</code> if this map contains no mapping for the
+     *         key
+     * @throws IllegalStateException if this map has been closed
+     */
+    public int getOrDefault(final long key, final int defaultValue) {
+        final ByteBuffer[] segs = segments();
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        final long h = hash(key);
+        final int s = (int) (h >>> segmentShift);
+        final ByteBuffer b = segs[s];
+        final int mask = segmentMasks[s];
+        int pos = (int) h & mask;
+        long curr;
+        while ((curr = b.getLong(pos * SLOT_BYTES)) != 0) {
+            if (curr == key) {
+                return b.getInt(pos * SLOT_BYTES + VALUE_OFFSET);
+            }
+            pos = pos + 1 & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         {@link #noValue()} if there was no mapping for <code>key</code>
+     * @throws IllegalStateException if this map has been closed or the segment
+     *         of the key is full
+     */
+    public int put(final long key, final int value) {
+        final ByteBuffer[] segs = segments();
+        if (key == 0) {
+            final int old = hasZeroKey ? zeroValue : noValue;
+            zeroValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return old;
+        }
+        final long h = hash(key);
+        final int s = (int) (h >>> segmentShift);
+        final ByteBuffer b = segs[s];
+        final int offset = insertionOffset(b, s, h, key);
+        if (offset < 0) {
+            final int old = b.getInt(-offset - 1 + VALUE_OFFSET);
+            b.putInt(-offset - 1 + VALUE_OFFSET, value);
+            return old;
+        }
+        b.putInt(offset + VALUE_OFFSET, value);
+        inserted(s);
+        return noValue;
+    }
+
+    /**
+     * Adds the specified amount to the value associated with the specified
+     * key. If the map contained no mapping for the key, it is mapped to
+     * <code>initialValue + increment</code>.
+     *
+     * @param key key whose associated value is to be incremented
+     * @param increment the amount to add to the value
+     * @param initialValue the value to increment if there is no mapping for
+     *        the key
+     * @return the new value associated with <code>key</code>
+     * @throws IllegalStateException if this map has been closed or the segment
+     *         of the key is full
+     */
+    public int addTo(final long key, final int increment, final int initialValue) {
+        final ByteBuffer[] segs = segments();
+        if (key == 0) {
+            if (hasZeroKey) {
+                return zeroValue += increment;
+            }
+            hasZeroKey = true;
+            size++;
+            return zeroValue = initialValue + increment;
+        }
+        final long h = hash(key);
+        final int s = (int) (h >>> segmentShift);
+        final ByteBuffer b = segs[s];
+        final int offset = insertionOffset(b, s, h, key);
+        if (offset < 0) {
+            final int value = b.getInt(-offset - 1 + VALUE_OFFSET) + increment;
+            b.putInt(-offset - 1 + VALUE_OFFSET, value);
+            return value;
+        }
+        final int value = initialValue + increment;
+        b.putInt(offset + VALUE_OFFSET, value);
+        inserted(s);
+        return value;
+    }
+
+    /**
+     * Finds the slot for the specified nonzero key, claiming a free slot for
+     * it if the map contains no mapping for the key. The caller must store the
+     * value in the claimed slot and invoke {@link #inserted(int)}.
+     *
+     * @param b the buffer of the segment of the key
+     * @param s the index of the segment of the key
+     * @param h the hash of the key
+     * @param key the key
+     * @return the offset of the claimed slot within the buffer, or
+     *         <code>-(offset + 1)</code> if the key was already mapped
+     * @throws IllegalStateException if the key is not mapped and the segment
+     *         is full
+     */
+    private int insertionOffset(final ByteBuffer b, final int s, final long h, final long key) {
+        final int mask = segmentMasks[s];
+        int pos = (int) h & mask;
+        long curr;
+        while ((curr = b.getLong(pos * SLOT_BYTES)) != 0) {
+            if (curr == key) {
+                return -pos * SLOT_BYTES - 1;
+            }
+            pos = pos + 1 & mask;
+        }
+        // only a segment at the maximum capacity can be at its threshold here
+        if (segmentSizes[s] >= segmentThresholds[s]) {
+            throw new IllegalStateException("Segment " + s + " is full; presize the map with a larger capacity");
+        }
+        b.putLong(pos * SLOT_BYTES, key);
+        return pos * SLOT_BYTES;
+    }
+
+    /**
+     * Accounts for a mapping added through
+     * {@link #insertionOffset(ByteBuffer, int, long, long)}, growing its
+     * segment if needed.
+     *
+     * @param s the index of the segment
+     */
+    private void inserted(final int s) {
+        size++;
+        if (++segmentSizes[s] >= segmentThresholds[s] && segmentMasks[s] + 1 < MAXIMUM_SEGMENT_CAPACITY) {
+            rehash(s, segmentMasks[s] + 1 << 1);
+        }
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         {@link #noValue()} if there was no mapping for <code>key</code>
+     * @throws IllegalStateException if this map has been closed
+     */
+    public int remove(final long key) {
+        final ByteBuffer[] segs = segments();
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return noValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        final long h = hash(key);
+        final int s = (int) (h >>> segmentShift);
+        final ByteBuffer b = segs[s];
+        final int mask = segmentMasks[s];
+        int pos = (int) h & mask;
+        long curr;
+        while ((curr = b.getLong(pos * SLOT_BYTES)) != 0) {
+            if (curr == key) {
+                final int old = b.getInt(pos * SLOT_BYTES + VALUE_OFFSET);
+                shiftKeys(b, mask, pos);
+                segmentSizes[s]--;
+                size--;
+                return old;
+            }
+            pos = pos + 1 & mask;
+        }
+        return noValue;
+    }
+
+    /**
+     * Empties the specified slot and moves back the entries that follow it in
+     * the same probe sequence, so that no lookup is cut short by the hole.
+     *
+     * @param b the buffer of the segment
+     * @param mask the capacity mask of the segment
+     * @param slot the index of the slot to empty
+     */
+    private static void shiftKeys(final ByteBuffer b, final int mask, final int slot) {
+        int last = slot;
+        int pos = slot;
+        while (true) {
+            pos = pos + 1 & mask;
+            final long curr = b.getLong(pos * SLOT_BYTES);
+            if (curr == 0) {
+                b.putLong(last * SLOT_BYTES, 0);
+                return;
+            }
+            final int home = (int) hash(curr) & mask;
+            if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                b.putLong(last * SLOT_BYTES, curr);
+                b.putInt(last * SLOT_BYTES + VALUE_OFFSET, b.getInt(pos * SLOT_BYTES + VALUE_OFFSET));
+                last = pos;
+            }
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified heap map to this map.
+     * These mappings will replace any mappings that this map had for any of
+     * the keys currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     * @throws IllegalStateException if this map has been closed
+     */
+    public void putAll(final LongIntMap m) {
+        final long[] k = m.keyTable;
+        final int[] v = m.valueTable;
+        for (int i = k.length - 2; i >= 0; i--) {
+            if (k[i] != 0) {
+                put(k[i], v[i]);
+            }
+        }
+        if (m.hasZeroKey) {
+            put(0, v[k.length - 1]);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map, shrinking every segment back
+     * to its initial capacity. The map will be empty after this call returns.
+     *
+     * @throws IllegalStateException if this map has been closed
+     */
+    public void clear() {
+        final ByteBuffer[] segs = segments();
+        for (int s = 0; s < segs.length; s++) {
+            DirectBuffers.free(segs[s]);
+            allocate(s, initialSegmentCapacity);
+            segmentSizes[s] = 0;
+        }
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Shrinks every segment to the minimum capacity required to hold its
+     * mappings respecting the load factor.
+     *
+     * @throws IllegalStateException if this map has been closed
+     */
+    public void trimToSize() {
+        final ByteBuffer[] segs = segments();
+        for (int s = 0; s < segs.length; s++) {
+            final int capacity = Math.max(MINIMUM_SEGMENT_CAPACITY,
+                    Math.min(BitMath.nextPowerOfTwo((int) (segmentSizes[s] / loadFactor) + 1), MAXIMUM_SEGMENT_CAPACITY));
+            rehash(s, capacity);
+        }
+    }
+
+    /**
+     * Releases the native memory held by this map. Any further operation on
+     * the map, except for <code>close()</code> itself, throws an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        final ByteBuffer[] segs = segments;
+        if (segs == null) {
+            return;
+        }
+        segments = null;
+        for (final ByteBuffer b : segs) {
+            DirectBuffers.free(b);
+        }
+        hasZeroKey = false;
+        size = 0;
+    }
+}
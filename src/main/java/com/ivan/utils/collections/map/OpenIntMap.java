@@ -0,0 +1,1122 @@
+package com.ivan.utils.collections.map;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.ivan.utils.lang.Objects;
+import com.ivan.utils.math.MathEx;
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * <code>int</code>-based hash map which uses integer primitives as keys and
+ * stores its mappings in parallel key and value arrays using open addressing
+ * with linear probing. Unlike {@link IntMap}, this map does not allocate an
+ * entry object per mapping, which significantly reduces the memory footprint
+ * and the amount of work the garbage collector has to do on large maps, and
+ * lookups do not need to chase pointers.
+ * <p>
+ * This class provides the same operations as <code>IntMap</code>, including
+ * the collection views, and can be used as a drop-in replacement for it. Like
+ * <code>IntMap</code>, this class does not implement {@link Map}, but provides
+ * a method to convert an instance into one. This collection is not
+ * thread-safe.
+ * <p>
+ * The key <code>0</code> is used internally to mark free slots; mappings for
+ * that key are stored in a dedicated slot at the end of the arrays. Removals
+ * shift subsequent entries of the probe sequence back, so the table never
+ * accumulates tombstones. The load factor must be less than <code>1</code>.
+ * <p>
+ * The collections returned by {@link #keySet()}, {@link #values()},
+ * {@link #entrySet()} and {@link #asMap()} are backed by this map, that is,
+ * changes made to the collections returned by these methods are reflected in
+ * this map and vice-versa. The iterators returned by these collections are
+ * <i>fail-fast</i>. Since there are no entry objects in this map, the
+ * {@link IntMap.Entry} objects returned by the iterator of {@link #entrySet()}
+ * are snapshots of the mappings at the time they were returned.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public class OpenIntMap<V> {
+    int[] keyTable;
+
+    V[] valueTable;
+
+    /**
+     * The capacity mask, also the index of the slot reserved for the key 0.
+     */
+    int capacityMask;
+
+    boolean hasZeroKey;
+
+    int size;
+
+    volatile int modCount;
+
+    private float loadFactor;
+
+    private int threshold;
+
+    private final HashSpreader spreader;
+
+    private Collection<V> values;
+
+    /**
+     * The minimum capacity - MUST be a power of two.
+     */
+    private static final int MINIMUM_CAPACITY = 4;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+    * The maximum capacity, used if a higher value is implicitly specified
+    * by either of the constructors with arguments.
+    * MUST be a power of two <= 1<<30.
+    */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Constructs an empty <code>OpenIntMap</code> with the default initial
+     * capacity (16), the default load factor (0.75) and the
+     * {@link HashSpreader#FIBONACCI Fibonacci} hash spreader.
+     */
+    public OpenIntMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>OpenIntMap</code> with the specified initial
+     * capacity, the default load factor (0.75) and the
+     * {@link HashSpreader#FIBONACCI Fibonacci} hash spreader.
+     *
+     * @param initialCapacity the initial capacity.
+     */
+    public OpenIntMap(final int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty <code>OpenIntMap</code> with the specified initial
+     * capacity and load factor, and the {@link HashSpreader#FIBONACCI
+     * Fibonacci} hash spreader.
+     *
+     * @param initialCapacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     */
+    public OpenIntMap(final int capacity, final float loadFactor) {
+        this(capacity, loadFactor, HashSpreader.FIBONACCI);
+    }
+
+    /**
+     * Constructs an empty <code>OpenIntMap</code> with the specified initial
+     * capacity, load factor and hash spreader. Linear probing is sensitive to
+     * clustered hashes, so {@link HashSpreader#IDENTITY} should only be used
+     * with dense, sequential keys.
+     *
+     * @param initialCapacity the initial capacity, clamped to a valid number
+     * @param loadFactor the load factor
+     * @param spreader the function used to spread the bits of the keys
+     * @throws IllegalArgumentException if the load factor is nonpositive or
+     *         greater than or equal to <code>1</code>
+     * @throws NullPointerException if the spreader is null
+     */
+    public OpenIntMap(final int capacity, final float loadFactor, final HashSpreader spreader) {
+        if (spreader == null) {
+            throw new NullPointerException("spreader");
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        this.spreader = spreader;
+        allocate(MathEx.clamp(BitMath.nextPowerOfTwo(capacity), MINIMUM_CAPACITY, MAXIMUM_CAPACITY));
+    }
+
+    /**
+     * Constructs a new <code>OpenIntMap</code> with the same mappings as the
+     * specified <code>Map</code>. The <code>OpenIntMap</code> is created with
+     * default load factor (0.75) and an initial capacity sufficient to hold the
+     * mappings in the specified <code>Map</code>.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public OpenIntMap(final Map<Integer, V> map) {
+        this(Math.max((int) (map.size() / DEFAULT_LOAD_FACTOR) + 1,
+                DEFAULT_INITIAL_CAPACITY), DEFAULT_LOAD_FACTOR);
+        putAll(map);
+    }
+
+    /**
+     * Hashes the given key with the hash spreader of this map, returning the
+     * index of the slot where its probe sequence starts.
+     *
+     * @param key the key to be hashed
+     * @return the index of the first slot to probe for the key
+     */
+    int hash(final int key, final int mask) {
+        return spreader.spread(key) & mask;
+    }
+
+    /**
+     * Returns the function used by this map to spread the bits of the keys.
+     *
+     * @return the hash spreader of this map
+     */
+    public HashSpreader getHashSpreader() {
+        return spreader;
+    }
+
+    /**
+     * Allocates empty arrays for the specified capacity and updates the mask
+     * and threshold accordingly. One extra slot is allocated for the key 0.
+     *
+     * @param capacity the new capacity, MUST be a power of two
+     */
+    private void allocate(final int capacity) {
+        keyTable = new int[capacity + 1];
+        valueTable = createValues(capacity + 1);
+        capacityMask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    /**
+     * Rehashes the contents of this map into new arrays with a different
+     * capacity. This method is called automatically when the number of keys in
+     * this map reaches its threshold or {@link #trimToSize()} is invoked.
+     *
+     * @param newCapacity the new capacity, MUST be a power of two
+     */
+    private void rehash(final int newCapacity) {
+        if (newCapacity == capacityMask + 1) {
+            return;
+        }
+        final int[] oldKeys = keyTable;
+        final V[] oldValues = valueTable;
+        final int oldCapacity = capacityMask + 1;
+        allocate(newCapacity);
+
+        final int[] k = keyTable;
+        final V[] v = valueTable;
+        final int mask = capacityMask;
+        for (int i = 0; i < oldCapacity; i++) {
+            final int key = oldKeys[i];
+            if (key != 0) {
+                int pos = hash(key, mask);
+                while (k[pos] != 0) {
+                    pos = pos + 1 & mask;
+                }
+                k[pos] = key;
+                v[pos] = oldValues[i];
+            }
+        }
+        v[mask + 1] = oldValues[oldCapacity];
+    }
+
+    /**
+     * Creates a new value array with the specified length.
+     *
+     * @param length the array length
+     * @return the array
+     */
+    @SuppressWarnings("unchecked")
+    private V[] createValues(final int length) {
+        return (V[]) new Object[length];
+    }
+
+    /**
+     * Returns the index of the slot that holds the specified key, or
+     * <code>-1</code> if this map contains no mapping for the key.
+     *
+     * @param key the key to look up
+     * @return the index of the slot holding the key, or <code>-1</code>
+     */
+    int indexOf(final int key) {
+        if (key == 0) {
+            return hasZeroKey ? capacityMask + 1 : -1;
+        }
+        final int[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        int curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return pos;
+            }
+            pos = pos + 1 & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     */
+    public boolean containsKey(final int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map maps one or more keys to the
+     * specified value.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return <code>true</code> if this map maps one or more keys to the
+     *         specified value
+     */
+    public boolean containsValue(final V value) {
+        if (hasZeroKey && Objects.equals(valueTable[capacityMask + 1], value)) {
+            return true;
+        }
+        final int[] k = keyTable;
+        final V[] v = valueTable;
+        for (int i = capacityMask; i >= 0; i--) {
+            if (k[i] != 0 && Objects.equals(v[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null}
+     * if this map contains no mapping for the key.
+     *
+     * <p>More formally, if this map contains a mapping from a key {@code k} to
+     * a value {@code v} such that {@code key==k}, then this method returns
+     * {@code v}; otherwise it returns {@code null}.
+     * (There can be at most one such mapping.)
+     *
+     * <p>A return value of {@code null} does not <i>necessarily</i> indicate
+     * that the map contains no mapping for the key; it's also possible that the
+     * map explicitly maps the key to {@code null}.
+     * The {@link #containsKey containsKey} operation may be used to distinguish
+     * these two cases.
+     *
+     * @see #put(int, Object)
+     */
+    public V get(final int key) {
+        if (key == 0) {
+            return hasZeroKey ? valueTable[capacityMask + 1] : null;
+        }
+        final int[] k = keyTable;
+        final int mask = capacityMask;
+        int pos = hash(key, mask);
+        int curr;
+        while ((curr = k[pos]) != 0) {
+            if (curr == key) {
+                return valueTable[pos];
+            }
+            pos = pos + 1 & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>.
+     *         (A <code>null</code> return can also indicate that the map
+     *         previously associated <code>null</code> with <code>key</code>.)
+     */
+    public V put(final int key, final V value) {
+        final int pos;
+        if (key == 0) {
+            pos = capacityMask + 1;
+            if (hasZeroKey) {
+                final V old = valueTable[pos];
+                valueTable[pos] = value;
+                return old;
+            }
+            hasZeroKey = true;
+        } else {
+            final int[] k = keyTable;
+            final int mask = capacityMask;
+            int p = hash(key, mask);
+            int curr;
+            while ((curr = k[p]) != 0) {
+                if (curr == key) {
+                    final V old = valueTable[p];
+                    valueTable[p] = value;
+                    return old;
+                }
+                p = p + 1 & mask;
+            }
+            k[p] = key;
+            pos = p;
+        }
+        valueTable[pos] = value;
+        size++;
+        modCount++;
+
+        if (size >= threshold) {
+            rehash(capacityMask + 1 << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>.
+     *         (A <code>null</code> return can also indicate that the map
+     *         previously associated <code>null</code> with <code>key</code>.)
+     */
+    public V remove(final int key) {
+        final int pos = indexOf(key);
+        if (pos < 0) {
+            return null;
+        }
+        final V old = valueTable[pos];
+        removeAt(pos);
+        return old;
+    }
+
+    /**
+     * Removes the mapping stored in the specified slot.
+     *
+     * @param pos the index of an occupied slot
+     */
+    void removeAt(final int pos) {
+        if (pos == capacityMask + 1) {
+            hasZeroKey = false;
+            valueTable[pos] = null;
+        } else {
+            shiftKeys(pos);
+        }
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Empties the specified slot and moves back the entries that follow it in
+     * the same probe sequence, so that no lookup is cut short by the hole.
+     *
+     * @param slot the index of the slot to empty
+     */
+    private void shiftKeys(final int slot) {
+        final int[] k = keyTable;
+        final V[] v = valueTable;
+        final int mask = capacityMask;
+        int last = slot;
+        int pos = slot;
+        while (true) {
+            pos = pos + 1 & mask;
+            final int curr = k[pos];
+            if (curr == 0) {
+                k[last] = 0;
+                v[last] = null;
+                return;
+            }
+            final int home = hash(curr, mask);
+            if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                k[last] = curr;
+                v[last] = v[pos];
+                last = pos;
+            }
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified <code>OpenIntMap</code> to
+     * this map. These mappings will replace any mappings that this map had for
+     * any of the keys currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(final OpenIntMap<? extends V> m) {
+        final int numKeysToBeAdded = m.size();
+        if (numKeysToBeAdded == 0) {
+            return;
+        }
+        ensureCapacity(numKeysToBeAdded);
+
+        final int[] k = m.keyTable;
+        final V[] v = m.valueTable;
+        for (int i = k.length - 2; i >= 0; i--) {
+            if (k[i] != 0) {
+                put(k[i], v[i]);
+            }
+        }
+        if (m.hasZeroKey) {
+            put(0, v[k.length - 1]);
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map. These
+     * mappings will replace any mappings that this map had for any of the keys
+     * currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(final Map<? extends Integer, ? extends V> m) {
+        final int numKeysToBeAdded = m.size();
+        if (numKeysToBeAdded == 0) {
+            return;
+        }
+        ensureCapacity(numKeysToBeAdded);
+
+        for (final Map.Entry<? extends Integer, ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Expands the table ahead of a bulk insertion, if the number of mappings
+     * to be added is greater than the threshold. This is conservative; the
+     * obvious condition is (numKeysToBeAdded + size) >= threshold, but this
+     * condition could result in a map with twice the appropriate capacity, if
+     * the keys to be added overlap with the keys already in this map. By using
+     * the conservative calculation, we subject ourself to at most one extra
+     * resize.
+     *
+     * @param numKeysToBeAdded the number of mappings about to be added
+     */
+    private void ensureCapacity(final int numKeysToBeAdded) {
+        if (numKeysToBeAdded > threshold) {
+            int targetCapacity = (int) (numKeysToBeAdded / loadFactor + 1);
+            if (targetCapacity > MAXIMUM_CAPACITY) {
+                targetCapacity = MAXIMUM_CAPACITY;
+            }
+            int newCapacity = capacityMask + 1;
+            while (newCapacity < targetCapacity) {
+                newCapacity <<= 1;
+            }
+            rehash(newCapacity);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        size = 0;
+        modCount++;
+        hasZeroKey = false;
+        if (capacityMask + 1 == DEFAULT_INITIAL_CAPACITY) {
+            Arrays.fill(keyTable, 0);
+            Arrays.fill(valueTable, null);
+        } else {
+            allocate(DEFAULT_INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return an <code>int[]</code> with the keys contained in this map
+     */
+    public int[] keys() {
+        final int[] result = new int[size];
+        int i = 0;
+        final int[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                result[i++] = k[pos];
+            }
+        }
+        if (hasZeroKey) {
+            result[i] = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map. The set is
+     * backed by the map, so changes to the map are reflected in the set, and
+     * vice-versa. If the map is modified while an iteration over the set is in
+     * progress (except through the iterator's own <code>remove</code>
+     * operation), the results of the iteration are undefined. The set supports
+     * element removal, which removes the corresponding mapping from the map,
+     * via the <code>Iterator.remove</code>, <code>Set.remove</code>,
+     * <code>removeAll</code>, <code>retainAll</code>, and <code>clear</code>
+     * operations. It does not support the <code>add</code> or
+     * <code>addAll</code> operations.
+     *
+     * @return a <code>Set</code> view of the keys contained in this map
+     */
+    public Set<Integer> keySet() {
+        return new KeySet();
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this map.
+     * The collection is backed by the map, so changes to the map are reflected
+     * in the collection, and vice-versa.  If the map is modified while an
+     * iteration over the collection is in progress (except through the
+     * iterator's own <code>remove</code> operation), the results of the
+     * iteration are undefined. The collection supports element removal, which
+     * removes the corresponding mapping from the map, via the
+     * <code>Iterator.remove</code>, <code>Collection.remove</code>,
+     * <code>removeAll</code>, <code>retainAll</code> and <code>clear</code>
+     * operations. It does not support the <code>add</code> or
+     * <code>addAll</code> operations.
+     */
+    public Collection<V> values() {
+        final Collection<V> vs = values;
+        return vs != null ? vs : (values = new Values());
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map. The set
+     * is backed by the map, so changes to the map are reflected in the set, and
+     * vice-versa. If the map is modified while an iteration over the set is in
+     * progress (except through the iterator's own <code>remove</code>
+     * operation) the results of the iteration are undefined. The set supports
+     * element removal, which removes the corresponding mapping from the map,
+     * via the <code>Iterator.remove</code>, <code>Set.remove</code>,
+     * <code>removeAll</code>, <code>retainAll</code> and <code>clear</code>
+     * operations. It does not support the <code>add</code> or
+     * <code>addAll</code> operations.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    public Set<IntMap.Entry<V>> entrySet() {
+        return new EntrySet();
+    }
+
+    /**
+     * Returns a {@link Map} view of this map. The map is backed by this map, so
+     * changes to the map are reflected in that map, and vice-versa. All
+     * operations provided by <code>Map</code> are supported. In other words,
+     * this method returns a Map that conforms to the Java Collections Framework
+     * and can be used for interoperability.
+     *
+     * @return a <code>Map</code> view of this map
+     */
+    public Map<Integer, V> asMap() {
+        return new MapView();
+    }
+
+    /**
+     * Reduces the internal arrays to the minimum capacity required to hold all
+     * mappings contained in this mapping respecting the load factor.
+     */
+    public void trimToSize() {
+        final int newCapacity = Math.max(MINIMUM_CAPACITY, BitMath.nextPowerOfTwo((int) (size / loadFactor) + 1));
+        rehash(newCapacity);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        String sep = "";
+        final int[] k = keyTable;
+        for (int pos = capacityMask; pos >= 0; pos--) {
+            if (k[pos] != 0) {
+                sb.append(sep).append(k[pos]).append('=').append(valueTable[pos]);
+                sep = ", ";
+            }
+        }
+        if (hasZeroKey) {
+            sb.append(sep).append(0).append('=').append(valueTable[capacityMask + 1]);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * <code>Set</code> view of the keys contained in this map, returned by
+     * {@link OpenIntMap#keySet()}.
+     */
+    final class KeySet extends AbstractSet<Integer> {
+        @Override
+        public Iterator<Integer> iterator() {
+            return new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof Integer)) {
+                return false;
+            }
+            return containsKey((Integer) o);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            if (!(o instanceof Integer)) {
+                return false;
+            }
+            final int pos = indexOf((Integer) o);
+            if (pos < 0) {
+                return false;
+            }
+            removeAt(pos);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            OpenIntMap.this.clear();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * <code>Collection</code> view of the values contained in this map,
+     * returned by {@link OpenIntMap#values()}.
+     */
+    final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean contains(final Object o) {
+            return OpenIntMap.this.containsValue((V) o);
+        }
+
+        @Override
+        public void clear() {
+            OpenIntMap.this.clear();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * <code>Set</code> view of the mappings contained in this map, returned by
+     * {@link OpenIntMap#entrySet()}.
+     */
+    final class EntrySet extends AbstractSet<IntMap.Entry<V>> {
+        @Override
+        public Iterator<IntMap.Entry<V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof IntMap.Entry)) {
+                return false;
+            }
+            final IntMap.Entry<?> e = (IntMap.Entry<?>) o;
+            final int pos = indexOf(e.key);
+            return pos >= 0 && Objects.equals(valueTable[pos], e.value);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            if (!(o instanceof IntMap.Entry)) {
+                return false;
+            }
+            final int pos = indexOf(((IntMap.Entry<?>) o).key);
+            if (pos < 0) {
+                return false;
+            }
+            removeAt(pos);
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            OpenIntMap.this.clear();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * <code>Set</code> view of <code>Map.Entry</code> objects that correspond
+     * to the mappings contained in this map, used by {@link MapView}.
+     */
+    final class MapEntrySet extends AbstractSet<Map.Entry<Integer, V>> {
+        @Override
+        public Iterator<Map.Entry<Integer, V>> iterator() {
+            return new MapEntryIterator();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            if (!(e.getKey() instanceof Integer)) {
+                return false;
+            }
+            final int pos = indexOf((Integer) e.getKey());
+            return pos >= 0 && Objects.equals(valueTable[pos], e.getValue());
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            if (!(e.getKey() instanceof Integer)) {
+                return false;
+            }
+            final int pos = indexOf((Integer) e.getKey());
+            if (pos < 0) {
+                return false;
+            }
+            removeAt(pos);
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            OpenIntMap.this.clear();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * <code>Map</code> view of this map, returned by
+     * {@link OpenIntMap#asMap()}.
+     */
+    final class MapView extends AbstractMap<Integer, V> {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public V put(final Integer key, final V value) {
+            return OpenIntMap.this.put(key, value);
+        }
+
+        @Override
+        public V get(final Object key) {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            return OpenIntMap.this.get((Integer) key);
+        }
+
+        @Override
+        public V remove(final Object key) {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            return OpenIntMap.this.remove((Integer) key);
+        }
+
+        @Override
+        public void putAll(final Map<? extends Integer, ? extends V> m) {
+            OpenIntMap.this.putAll(m);
+        }
+
+        @Override
+        public Set<Integer> keySet() {
+            return OpenIntMap.this.keySet();
+        }
+
+        @Override
+        public Collection<V> values() {
+            return OpenIntMap.this.values();
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, V>> entrySet() {
+            return new MapEntrySet();
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            if (!(key instanceof Integer)) {
+                return false;
+            }
+            return OpenIntMap.this.containsKey((Integer) key);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean containsValue(final Object value) {
+            return OpenIntMap.this.containsValue((V) value);
+        }
+
+        @Override
+        public void clear() {
+            OpenIntMap.this.clear();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // iterator that enables operations on collections returned by the keySet(),
+    // values() and entrySet() methods to be backed by this map
+
+    /**
+     * Iterator returned by the collection views, enabling them to be backed by
+     * this map.
+     * <p>
+     * The slots are visited from the end of the table towards its start, so
+     * that entries moved back by a removal through the iterator land on slots
+     * that have already been visited. Entries that wrap around from the start
+     * of the table to its end are remembered and returned at the end of the
+     * iteration.
+     *
+     * @param <E> the type of the value
+     */
+    private abstract class HashIterator<E> implements Iterator<E> {
+        int expectedModCount; // For fast-fail
+
+        int pos; // current slot; negative once iterating over wrapped keys
+
+        int last = -1; // slot of the last returned mapping
+
+        int remaining; // number of mappings yet to be returned
+
+        boolean mustReturnZeroKey;
+
+        int[] wrapped; // keys moved from unvisited to visited slots
+
+        int wrappedCount;
+
+        HashIterator() {
+            expectedModCount = modCount;
+            pos = capacityMask + 1;
+            remaining = size;
+            mustReturnZeroKey = hasZeroKey;
+        }
+
+        @Override
+        public final boolean hasNext() {
+            return remaining != 0;
+        }
+
+        final int nextIndex() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            if (mustReturnZeroKey) {
+                mustReturnZeroKey = false;
+                return last = capacityMask + 1;
+            }
+            final int[] k = keyTable;
+            while (true) {
+                if (--pos < 0) {
+                    last = Integer.MIN_VALUE;
+                    return indexOf(wrapped[-pos - 1]);
+                }
+                if (k[pos] != 0) {
+                    return last = pos;
+                }
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (last == capacityMask + 1) {
+                removeAt(last);
+            } else if (pos >= 0) {
+                shiftKeys(last);
+                size--;
+                modCount++;
+            } else {
+                OpenIntMap.this.remove(wrapped[-pos - 1]);
+            }
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Same as {@link OpenIntMap#shiftKeys(int)}, but keeps track of the
+         * keys that wrap around into slots already visited by this iterator.
+         */
+        private void shiftKeys(final int slot) {
+            final int[] k = keyTable;
+            final V[] v = valueTable;
+            final int mask = capacityMask;
+            int last = slot;
+            int pos = slot;
+            while (true) {
+                pos = pos + 1 & mask;
+                final int curr = k[pos];
+                if (curr == 0) {
+                    k[last] = 0;
+                    v[last] = null;
+                    return;
+                }
+                final int home = hash(curr, mask);
+                if (last <= pos ? last >= home || home > pos : last >= home && home > pos) {
+                    if (pos < last) {
+                        addWrapped(curr);
+                    }
+                    k[last] = curr;
+                    v[last] = v[pos];
+                    last = pos;
+                }
+            }
+        }
+
+        private void addWrapped(final int key) {
+            if (wrapped == null) {
+                wrapped = new int[2];
+            } else if (wrappedCount == wrapped.length) {
+                wrapped = Arrays.copyOf(wrapped, wrappedCount << 1);
+            }
+            wrapped[wrappedCount++] = key;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * {@link HashIterator} for the key set view.
+     *
+     * @see OpenIntMap#keySet()
+     */
+    final class KeyIterator extends HashIterator<Integer> {
+        @Override
+        public Integer next() {
+            return keyTable[nextIndex()];
+        }
+    }
+
+    /**
+     * {@link HashIterator} for the value collection view.
+     *
+     * @see OpenIntMap#values()
+     */
+    final class ValueIterator extends HashIterator<V> {
+        @Override
+        public V next() {
+            return valueTable[nextIndex()];
+        }
+    }
+
+    /**
+     * {@link HashIterator} for the entry set view.
+     *
+     * @see OpenIntMap#entrySet()
+     */
+    final class EntryIterator extends HashIterator<IntMap.Entry<V>> {
+        @Override
+        public IntMap.Entry<V> next() {
+            final int index = nextIndex();
+            return new IntMap.Entry<V>(keyTable[index], valueTable[index], null);
+        }
+    }
+
+    /**
+     * {@link HashIterator} for the map view.
+     *
+     * @see OpenIntMap#asMap()
+     */
+    final class MapEntryIterator extends HashIterator<Map.Entry<Integer, V>> {
+        @Override
+        public Map.Entry<Integer, V> next() {
+            return new MapEntry(nextIndex());
+        }
+    }
+
+    /**
+     * Represents an entry in the {@link Map} view returned by
+     * {@link OpenIntMap#asMap()}. Writes go to the slot that held the mapping
+     * when the entry was returned.
+     */
+    private final class MapEntry implements Map.Entry<Integer, V> {
+        private final int index;
+
+        public MapEntry(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Integer getKey() {
+            return keyTable[index];
+        }
+
+        @Override
+        public V getValue() {
+            return valueTable[index];
+        }
+
+        @Override
+        public V setValue(final V value) {
+            final V old = valueTable[index];
+            valueTable[index] = value;
+            return old;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ivan.utils.collections.map;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a fixed number of independent tasks on a fork-join pool, for the
+ * parallel bulk operations of the maps.
+ */
+final class ParallelTasks {
+    private ParallelTasks() {
+    }
+
+    /**
+     * One of the tasks, identified by its index.
+     */
+    interface Task {
+        void run(int id);
+    }
+
+    /**
+     * Runs tasks <code>0</code> to <code>count - 1</code> and waits for all of
+     * them to finish, on the calling thread if the pool is <code>null</code>.
+     * All the writes made by the tasks are visible to the caller afterwards.
+     *
+     * @param pool the pool, or <code>null</code>
+     * @param count the number of tasks
+     * @param task the task
+     */
+    static void invoke(final ForkJoinPool pool, final int count, final Task task) {
+        if (pool == null) {
+            for (int id = 0; id < count; id++) {
+                task.run(id);
+            }
+        } else {
+            pool.invoke(new Range(task, 0, count));
+        }
+    }
+
+    /**
+     * Splits a range of tasks in halves until a single task is left.
+     */
+    private static final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Task task;
+
+        private final int lo;
+
+        private final int hi;
+
+        Range(final Task task, final int lo, final int hi) {
+            this.task = task;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                task.run(lo);
+                return;
+            }
+            final int mid = lo + hi >>> 1;
+            invokeAll(new Range(task, lo, mid), new Range(task, mid, hi));
+        }
+    }
+}
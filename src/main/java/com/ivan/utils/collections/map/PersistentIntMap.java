@@ -0,0 +1,630 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * Persistent map which uses <code>int</code> primitives as keys: an immutable
+ * map whose updates, {@link #with(int, Object)} and {@link #without(int)},
+ * return a new version of the map and leave the original untouched. The
+ * versions share all of their structure except the path to the changed key,
+ * so an update takes O(log<sub>32</sub> n) time and space instead of the O(n)
+ * of copying a whole {@link IntMap}.
+ * <p>
+ * The map is a compressed hash array mapped prefix trie (CHAMP). Each node
+ * branches on 5 bits of the hash of the key and keeps bitmaps of the branches
+ * that hold an inline mapping and of those that hold a subtree, with the keys
+ * in a primitive array. The hash is a bijection of the key, so distinct keys
+ * never collide and the trie is at most 7 levels deep.
+ * <p>
+ * Every version is immutable and can be shared by any number of threads
+ * without locking: a writer can publish new versions through a
+ * <code>volatile</code> field or an <code>AtomicReference</code> while readers
+ * keep using the version they already hold. Batches of updates are cheaper
+ * through a {@link Transient}, obtained from {@link #asTransient()}, which
+ * modifies the nodes it has already copied in place.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PersistentIntMap<Object> EMPTY = new PersistentIntMap<Object>(Node.EMPTY, 0);
+
+    private final Node root;
+
+    private final int size;
+
+    private PersistentIntMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @return the empty <code>PersistentIntMap</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns a persistent map with the mappings of the specified map.
+     *
+     * @param map the map whose mappings are to be copied
+     * @return a <code>PersistentIntMap</code> with the mappings of the map
+     */
+    public static <V> PersistentIntMap<V> from(final IntMap<? extends V> map) {
+        final Transient<V> t = PersistentIntMap.<V> empty().asTransient();
+        map.forEach(new IntObjectProcedure<V>() {
+            @Override
+            public void apply(final int key, final V value) {
+                t.put(key, value);
+            }
+        });
+        return t.persistent();
+    }
+
+    /**
+     * Spreads the bits of the key over the hash. Multiplying by an odd
+     * constant and xor-shifting are both invertible, so distinct keys always
+     * have distinct hashes.
+     */
+    private static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     */
+    public boolean containsKey(final int key) {
+        return lookup(root, key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final int key) {
+        return (V) lookup(root, key, null);
+    }
+
+    /**
+     * Returns the value mapped to the key in the trie, or
+     * <code>notFound</code>.
+     */
+    static Object lookup(final Node root, final int key, final Object notFound) {
+        final int h = hash(key);
+        Node n = root;
+        for (int shift = 0;; shift += BITS) {
+            final int bit = 1 << (h >>> shift & MASK);
+            if ((n.dataMap & bit) != 0) {
+                final int i = Integer.bitCount(n.dataMap & bit - 1);
+                return n.keys[i] == key ? n.values[i] : notFound;
+            }
+            if ((n.nodeMap & bit) == 0) {
+                return notFound;
+            }
+            n = n.nodes[Integer.bitCount(n.nodeMap & bit - 1)];
+        }
+    }
+
+    /**
+     * Returns a version of this map in which the specified key is associated
+     * with the specified value. This map is not modified.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the new version of the map, or this map if it already
+     *         associated the key with the same value
+     */
+    public PersistentIntMap<V> with(final int key, final V value) {
+        final Change change = new Change();
+        final Node newRoot = root.put(null, key, hash(key), 0, value, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<V>(newRoot, change.added ? size + 1 : size);
+    }
+
+    /**
+     * Returns a version of this map without a mapping for the specified key.
+     * This map is not modified.
+     *
+     * @param key key whose mapping is to be removed
+     * @return the new version of the map, or this map if it contains no
+     *         mapping for the key
+     */
+    public PersistentIntMap<V> without(final int key) {
+        final Change change = new Change();
+        final Node newRoot = root.remove(null, key, hash(key), 0, change);
+        if (!change.removed) {
+            return this;
+        }
+        return new PersistentIntMap<V>(newRoot, size - 1);
+    }
+
+    /**
+     * Returns a transient copy of this map, for applying a batch of updates
+     * without creating an intermediate version for each of them. Creating the
+     * transient takes constant time; this map is never modified by it.
+     *
+     * @return a transient map with the mappings of this map
+     */
+    public Transient<V> asTransient() {
+        return new Transient<V>(root, size);
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return an <code>int[]</code> with the keys contained in this map
+     */
+    public int[] keys() {
+        final int[] keys = new int[size];
+        root.collectKeys(keys, 0);
+        return keys;
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this map, without
+     * boxing the keys.
+     *
+     * @param procedure the procedure to invoke
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final IntObjectProcedure<? super V> procedure) {
+        root.forEach((IntObjectProcedure<Object>) procedure);
+    }
+
+    /**
+     * Copies the contents of this map into a new, mutable {@link IntMap}.
+     *
+     * @return an <code>IntMap</code> with the mappings of this map
+     */
+    public IntMap<V> toIntMap() {
+        final IntMap<V> map = new IntMap<V>((int) Math.min((long) (size / 0.75f) + 1, 1 << 30));
+        forEach(new IntObjectProcedure<V>() {
+            @Override
+            public void apply(final int key, final V value) {
+                map.put(key, value);
+            }
+        });
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        forEach(new IntObjectProcedure<V>() {
+            private String sep = "";
+
+            @Override
+            public void apply(final int key, final V value) {
+                sb.append(sep).append(key).append('=').append(value);
+                sep = ", ";
+            }
+        });
+        sb.append('}');
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The outcome of an update, filled in while descending the trie.
+     */
+    static final class Change {
+        boolean added;
+
+        boolean removed;
+
+        Object oldValue;
+    }
+
+    /**
+     * A trie node. Nodes reachable from a {@link PersistentIntMap} are never
+     * modified; a node whose owner is the editor of a {@link Transient} may
+     * be modified in place by that transient only.
+     */
+    static final class Node {
+        static final Node EMPTY = new Node(null, 0, 0, new int[0], new Object[0], new Node[0]);
+
+        private final Object owner;
+
+        int dataMap;
+
+        int nodeMap;
+
+        int[] keys;
+
+        Object[] values;
+
+        Node[] nodes;
+
+        Node(final Object owner, final int dataMap, final int nodeMap, final int[] keys, final Object[] values,
+                final Node[] nodes) {
+            this.owner = owner;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Returns this node if the editor owns it, or a copy owned by the
+         * editor otherwise.
+         */
+        private Node editable(final Object editor) {
+            if (editor != null && owner == editor) {
+                return this;
+            }
+            return new Node(editor, dataMap, nodeMap, keys.clone(), values.clone(), nodes.clone());
+        }
+
+        Node put(final Object editor, final int key, final int hash, final int shift, final Object value,
+                final Change change) {
+            final int bit = 1 << (hash >>> shift & MASK);
+            if ((dataMap & bit) != 0) {
+                final int i = Integer.bitCount(dataMap & bit - 1);
+                final int k = keys[i];
+                if (k == key) {
+                    change.oldValue = values[i];
+                    if (values[i] == value) {
+                        return this;
+                    }
+                    final Node n = editable(editor);
+                    n.values[i] = value;
+                    return n;
+                }
+                change.added = true;
+                final Node sub = pair(editor, k, values[i], hash(k), key, value, hash, shift + BITS);
+                return migrateToNode(editor, bit, i, sub);
+            }
+            if ((nodeMap & bit) != 0) {
+                final int j = Integer.bitCount(nodeMap & bit - 1);
+                final Node child = nodes[j];
+                final Node newChild = child.put(editor, key, hash, shift + BITS, value, change);
+                if (newChild == child) {
+                    return this;
+                }
+                final Node n = editable(editor);
+                n.nodes[j] = newChild;
+                return n;
+            }
+            change.added = true;
+            return insertValue(editor, bit, key, value);
+        }
+
+        Node remove(final Object editor, final int key, final int hash, final int shift, final Change change) {
+            final int bit = 1 << (hash >>> shift & MASK);
+            if ((dataMap & bit) != 0) {
+                final int i = Integer.bitCount(dataMap & bit - 1);
+                if (keys[i] != key) {
+                    return this;
+                }
+                change.removed = true;
+                change.oldValue = values[i];
+                return removeValue(editor, bit, i);
+            }
+            if ((nodeMap & bit) != 0) {
+                final int j = Integer.bitCount(nodeMap & bit - 1);
+                final Node child = nodes[j];
+                final Node newChild = child.remove(editor, key, hash, shift + BITS, change);
+                if (!change.removed) {
+                    return this;
+                }
+                if (newChild.nodeMap == 0 && Integer.bitCount(newChild.dataMap) == 1) {
+                    // keep the trie compact: a lone mapping moves up into
+                    // the branch that led to it
+                    return migrateToInline(editor, bit, j, newChild.keys[0], newChild.values[0]);
+                }
+                if (newChild == child) {
+                    return this;
+                }
+                final Node n = editable(editor);
+                n.nodes[j] = newChild;
+                return n;
+            }
+            return this;
+        }
+
+        /**
+         * Creates the subtree which holds two mappings whose hashes agree
+         * below the specified shift.
+         */
+        private static Node pair(final Object editor, final int k1, final Object v1, final int h1, final int k2,
+                final Object v2, final int h2, final int shift) {
+            final int f1 = h1 >>> shift & MASK;
+            final int f2 = h2 >>> shift & MASK;
+            if (f1 == f2) {
+                final Node sub = pair(editor, k1, v1, h1, k2, v2, h2, shift + BITS);
+                return new Node(editor, 0, 1 << f1, new int[0], new Object[0], new Node[] { sub });
+            }
+            if (f1 < f2) {
+                return new Node(editor, 1 << f1 | 1 << f2, 0, new int[] { k1, k2 }, new Object[] { v1, v2 },
+                        new Node[0]);
+            }
+            return new Node(editor, 1 << f1 | 1 << f2, 0, new int[] { k2, k1 }, new Object[] { v2, v1 },
+                    new Node[0]);
+        }
+
+        /**
+         * Returns the node to modify: this node if the editor owns it, or a
+         * new node owned by the editor, whose arrays the caller replaces.
+         */
+        private Node target(final Object editor) {
+            if (editor != null && owner == editor) {
+                return this;
+            }
+            return new Node(editor, dataMap, nodeMap, keys, values, nodes);
+        }
+
+        private Node insertValue(final Object editor, final int bit, final int key, final Object value) {
+            final int i = Integer.bitCount(dataMap & bit - 1);
+            final int n = keys.length;
+            final int[] newKeys = new int[n + 1];
+            final Object[] newValues = new Object[n + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(values, 0, newValues, 0, i);
+            newKeys[i] = key;
+            newValues[i] = value;
+            System.arraycopy(keys, i, newKeys, i + 1, n - i);
+            System.arraycopy(values, i, newValues, i + 1, n - i);
+            final Node t = target(editor);
+            t.dataMap = dataMap | bit;
+            t.keys = newKeys;
+            t.values = newValues;
+            if (t != this && editor != null) {
+                t.nodes = nodes.clone();
+            }
+            return t;
+        }
+
+        private Node removeValue(final Object editor, final int bit, final int i) {
+            final int n = keys.length;
+            final int[] newKeys = new int[n - 1];
+            final Object[] newValues = new Object[n - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, n - i - 1);
+            System.arraycopy(values, i + 1, newValues, i, n - i - 1);
+            final Node t = target(editor);
+            t.dataMap = dataMap ^ bit;
+            t.keys = newKeys;
+            t.values = newValues;
+            if (t != this && editor != null) {
+                t.nodes = nodes.clone();
+            }
+            return t;
+        }
+
+        /**
+         * Replaces the inline mapping at index <code>i</code> by a subtree.
+         */
+        private Node migrateToNode(final Object editor, final int bit, final int i, final Node sub) {
+            final int n = keys.length;
+            final int[] newKeys = new int[n - 1];
+            final Object[] newValues = new Object[n - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, n - i - 1);
+            System.arraycopy(values, i + 1, newValues, i, n - i - 1);
+            final int j = Integer.bitCount(nodeMap & bit - 1);
+            final int m = nodes.length;
+            final Node[] newNodes = new Node[m + 1];
+            System.arraycopy(nodes, 0, newNodes, 0, j);
+            newNodes[j] = sub;
+            System.arraycopy(nodes, j, newNodes, j + 1, m - j);
+            final Node t = target(editor);
+            t.dataMap = dataMap ^ bit;
+            t.nodeMap = nodeMap | bit;
+            t.keys = newKeys;
+            t.values = newValues;
+            t.nodes = newNodes;
+            return t;
+        }
+
+        /**
+         * Replaces the subtree at index <code>j</code> by an inline mapping.
+         */
+        private Node migrateToInline(final Object editor, final int bit, final int j, final int key,
+                final Object value) {
+            final int m = nodes.length;
+            final Node[] newNodes = new Node[m - 1];
+            System.arraycopy(nodes, 0, newNodes, 0, j);
+            System.arraycopy(nodes, j + 1, newNodes, j, m - j - 1);
+            final int i = Integer.bitCount(dataMap & bit - 1);
+            final int n = keys.length;
+            final int[] newKeys = new int[n + 1];
+            final Object[] newValues = new Object[n + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(values, 0, newValues, 0, i);
+            newKeys[i] = key;
+            newValues[i] = value;
+            System.arraycopy(keys, i, newKeys, i + 1, n - i);
+            System.arraycopy(values, i, newValues, i + 1, n - i);
+            final Node t = target(editor);
+            t.dataMap = dataMap | bit;
+            t.nodeMap = nodeMap ^ bit;
+            t.keys = newKeys;
+            t.values = newValues;
+            t.nodes = newNodes;
+            return t;
+        }
+
+        int collectKeys(final int[] out, final int start) {
+            System.arraycopy(keys, 0, out, start, keys.length);
+            int next = start + keys.length;
+            for (final Node child : nodes) {
+                next = child.collectKeys(out, next);
+            }
+            return next;
+        }
+
+        void forEach(final IntObjectProcedure<Object> procedure) {
+            for (int i = 0; i < keys.length; i++) {
+                procedure.apply(keys[i], values[i]);
+            }
+            for (final Node child : nodes) {
+                child.forEach(procedure);
+            }
+        }
+    }
+
+    /**
+     * A mutable copy of a {@link PersistentIntMap}, for applying a batch of
+     * updates. The first update of a node copies it, and later updates of the
+     * same node modify the copy in place; the map the transient was created
+     * from is never modified. {@link #persistent()} turns the result into a
+     * new persistent version in constant time, after which the transient can
+     * no longer be used.
+     * <p>
+     * A transient is not thread-safe and must not be shared.
+     *
+     * @param <V> the type of the values stored by the map
+     */
+    public static final class Transient<V> {
+        private Object editor = new Object();
+
+        private Node root;
+
+        private int size;
+
+        Transient(final Node root, final int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        private Object editor() {
+            final Object e = editor;
+            if (e == null) {
+                throw new IllegalStateException("Transient used after persistent()");
+            }
+            return e;
+        }
+
+        /**
+         * Returns the number of key-value mappings in this map.
+         *
+         * @return the number of key-value mappings in this map
+         */
+        public int size() {
+            editor();
+            return size;
+        }
+
+        /**
+         * Returns the value to which the specified key is mapped, or
+         * <code>null</code> if this map contains no mapping for the key.
+         *
+         * @param key the key whose associated value is to be returned
+         * @return the value to which the specified key is mapped, or
+         *         <code>null</code> if this map contains no mapping for the key
+         */
+        @SuppressWarnings("unchecked")
+        public V get(final int key) {
+            editor();
+            return (V) lookup(root, key, null);
+        }
+
+        /**
+         * Returns <code>true</code> if this map contains a mapping for the
+         * specified key.
+         *
+         * @param key The key whose presence in this map is to be tested
+         * @return <code>true</code> if this map contains a mapping for the
+         * specified key.
+         */
+        public boolean containsKey(final int key) {
+            editor();
+            return lookup(root, key, NOT_FOUND) != NOT_FOUND;
+        }
+
+        /**
+         * Associates the specified value with the specified key.
+         *
+         * @param key key with which the specified value is to be associated
+         * @param value value to be associated with the specified key
+         * @return the previous value associated with <code>key</code>, or
+         *         <code>null</code> if there was no mapping for <code>key</code>
+         * @throws IllegalStateException if {@link #persistent()} has been
+         *         invoked
+         */
+        @SuppressWarnings("unchecked")
+        public V put(final int key, final V value) {
+            final Change change = new Change();
+            root = root.put(editor(), key, hash(key), 0, value, change);
+            if (change.added) {
+                size++;
+            }
+            return (V) change.oldValue;
+        }
+
+        /**
+         * Removes the mapping for a key if it is present.
+         *
+         * @param key key whose mapping is to be removed
+         * @return the previous value associated with <code>key</code>, or
+         *         <code>null</code> if there was no mapping for <code>key</code>
+         * @throws IllegalStateException if {@link #persistent()} has been
+         *         invoked
+         */
+        @SuppressWarnings("unchecked")
+        public V remove(final int key) {
+            final Change change = new Change();
+            root = root.remove(editor(), key, hash(key), 0, change);
+            if (change.removed) {
+                size--;
+            }
+            return (V) change.oldValue;
+        }
+
+        /**
+         * Returns the persistent version of this map and ends the batch: the
+         * transient cannot be used afterwards.
+         *
+         * @return a <code>PersistentIntMap</code> with the mappings of this map
+         * @throws IllegalStateException if this method has already been invoked
+         */
+        public PersistentIntMap<V> persistent() {
+            editor();
+            editor = null;
+            return size == 0 ? PersistentIntMap.<V> empty() : new PersistentIntMap<V>(root, size);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map which uses <code>long</code> primitives as keys and holds its values
+ * through soft or weak references, so that the garbage collector may reclaim
+ * them, for instance to keep a cache of decoded data from running the
+ * application out of memory. The mappings are stored in a {@link LongMap}
+ * whose values are the references.
+ * <p>
+ * A mapping whose value has been collected disappears from the map: lookups
+ * no longer find it, and the iterators of {@link #asMap()} skip it. The
+ * references register with a {@link ReferenceQueue}, and every operation
+ * removes the entries of a few cleared references from the queue, so stale
+ * entries are purged a little at a time instead of in sweeps of the whole
+ * table. {@link #size()} purges the entire queue to report an accurate
+ * figure, which is proportional to the number of values collected since the
+ * previous purge, not to the size of the map.
+ * <p>
+ * Null values are not allowed. This collection is not thread-safe.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public class ReferenceLongMap<V> {
+    /**
+     * The maximum number of cleared references purged by each operation.
+     */
+    private static final int PURGE_BATCH = 16;
+
+    private final LongMap<Reference<V>> map;
+
+    private final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+
+    private final ReferenceStrength strength;
+
+    /**
+     * Constructs an empty <code>ReferenceLongMap</code> which holds its values
+     * with the specified strength.
+     *
+     * @param strength the kind of references to hold the values with
+     * @throws NullPointerException if the strength is null
+     */
+    public ReferenceLongMap(final ReferenceStrength strength) {
+        this(strength, 16);
+    }
+
+    /**
+     * Constructs an empty <code>ReferenceLongMap</code> which holds its values
+     * with the specified strength, with the specified initial capacity.
+     *
+     * @param strength the kind of references to hold the values with
+     * @param capacity the initial capacity
+     * @throws NullPointerException if the strength is null
+     */
+    public ReferenceLongMap(final ReferenceStrength strength, final int capacity) {
+        if (strength == null) {
+            throw new NullPointerException("strength");
+        }
+        this.strength = strength;
+        map = new LongMap<Reference<V>>(capacity);
+    }
+
+    /**
+     * Returns the strength of the references which hold the values.
+     *
+     * @return the reference strength of this map
+     */
+    public ReferenceStrength getStrength() {
+        return strength;
+    }
+
+    /**
+     * Removes the entries of at most <code>max</code> cleared references from
+     * the map.
+     */
+    private void purge(final int max) {
+        Reference<? extends V> ref;
+        for (int i = 0; i < max && (ref = queue.poll()) != null; i++) {
+            final long key = ((KeyedReference) ref).key();
+            // the key may have been mapped to another value since
+            if (map.get(key) == ref) {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of every value collected so far. There is no need
+     * to call this method, as the other operations purge the map
+     * incrementally, but it can be used to release the entries at a
+     * convenient time.
+     */
+    public void purge() {
+        purge(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of mappings in this map whose values have not been
+     * collected. A value may be collected as soon as this method returns.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        purge();
+        return map.size();
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key or its
+     * value has been collected.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     */
+    public V get(final long key) {
+        purge(PURGE_BATCH);
+        final Reference<V> ref = map.get(key);
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key whose value has not been collected.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     *         specified key
+     */
+    public boolean containsKey(final long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code> or
+     *         its value had been collected
+     * @throws NullPointerException if the value is null
+     */
+    public V put(final long key, final V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        purge(PURGE_BATCH);
+        final Reference<V> ref = strength == ReferenceStrength.SOFT ? new SoftValue<V>(key, value, queue)
+                : new WeakValue<V>(key, value, queue);
+        final Reference<V> old = map.put(key, ref);
+        return old == null ? null : old.get();
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code> or
+     *         its value had been collected
+     */
+    public V remove(final long key) {
+        purge(PURGE_BATCH);
+        final Reference<V> old = map.remove(key);
+        return old == null ? null : old.get();
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        map.clear();
+        while (queue.poll() != null) {
+            // the entries of the queued references are gone already
+        }
+    }
+
+    /**
+     * Returns an array of the keys whose values have not been collected.
+     *
+     * @return a <code>long[]</code> with the keys contained in this map
+     */
+    public long[] keys() {
+        purge();
+        final long[] keys = new long[map.size()];
+        int n = 0;
+        for (LongMap<Reference<V>>.Cursor c = map.cursor(); c.advance();) {
+            if (c.value().get() != null) {
+                keys[n++] = c.key();
+            }
+        }
+        return n == keys.length ? keys : Arrays.copyOf(keys, n);
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this map whose
+     * value has not been collected, without boxing the keys.
+     *
+     * @param procedure the procedure to invoke
+     */
+    public void forEach(final LongObjectProcedure<? super V> procedure) {
+        purge(PURGE_BATCH);
+        for (LongMap<Reference<V>>.Cursor c = map.cursor(); c.advance();) {
+            final V value = c.value().get();
+            if (value != null) {
+                procedure.apply(c.key(), value);
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link Map} view of this map. The map is backed by this map, so
+     * changes to the map are reflected in that map, and vice-versa. Its
+     * iterators work on a copy of the keys taken when they are created, so
+     * they are never invalidated by changes to the map, and skip the mappings
+     * removed or collected since then.
+     *
+     * @return a <code>Map</code> view of this map
+     */
+    public Map<Long, V> asMap() {
+        return new MapView();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A reference which remembers the key of its value, so that its entry can
+     * be found once it is cleared.
+     */
+    private interface KeyedReference {
+        long key();
+    }
+
+    private static final class SoftValue<V> extends SoftReference<V> implements KeyedReference {
+        private final long key;
+
+        SoftValue(final long key, final V value, final ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+    }
+
+    private static final class WeakValue<V> extends WeakReference<V> implements KeyedReference {
+        private final long key;
+
+        WeakValue(final long key, final V value, final ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+    }
+
+    /**
+     * <code>Map</code> view of this map, returned by
+     * {@link ReferenceLongMap#asMap()}.
+     */
+    final class MapView extends AbstractMap<Long, V> {
+        @Override
+        public int size() {
+            return ReferenceLongMap.this.size();
+        }
+
+        @Override
+        public V put(final Long key, final V value) {
+            return ReferenceLongMap.this.put(key, value);
+        }
+
+        @Override
+        public V get(final Object key) {
+            if (!(key instanceof Long)) {
+                return null;
+            }
+            return ReferenceLongMap.this.get((Long) key);
+        }
+
+        @Override
+        public V remove(final Object key) {
+            if (!(key instanceof Long)) {
+                return null;
+            }
+            return ReferenceLongMap.this.remove((Long) key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            if (!(key instanceof Long)) {
+                return false;
+            }
+            return ReferenceLongMap.this.containsKey((Long) key);
+        }
+
+        @Override
+        public void clear() {
+            ReferenceLongMap.this.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<Long, V>> entrySet() {
+            return new AbstractSet<Map.Entry<Long, V>>() {
+                @Override
+                public int size() {
+                    return ReferenceLongMap.this.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<Long, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public void clear() {
+                    ReferenceLongMap.this.clear();
+                }
+            };
+        }
+    }
+
+    /**
+     * Iterator over a copy of the keys of the map, which holds the value of
+     * the next mapping strongly until it is returned.
+     */
+    final class EntryIterator implements Iterator<Map.Entry<Long, V>> {
+        private final long[] keys = keys();
+
+        private int index;
+
+        private MapEntry next;
+
+        private MapEntry last;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && index < keys.length) {
+                final long key = keys[index++];
+                final V value = ReferenceLongMap.this.get(key);
+                if (value != null) {
+                    next = new MapEntry(key, value);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Long, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ReferenceLongMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    /**
+     * Entry returned by the iterators of the <code>Map</code> view, which
+     * writes its new values through to the map.
+     */
+    final class MapEntry extends AbstractMap.SimpleEntry<Long, V> {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(final long key, final V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(final V value) {
+            ReferenceLongMap.this.put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/**
+ * How strongly {@link ReferenceIntMap} and {@link ReferenceLongMap} hold their
+ * values.
+ */
+public enum ReferenceStrength {
+    /**
+     * Values are held through {@link SoftReference}s, which the garbage
+     * collector clears only when memory runs low, least recently used first.
+     * Suited to caches of values that are expensive to recreate.
+     */
+    SOFT,
+
+    /**
+     * Values are held through {@link WeakReference}s, which the garbage
+     * collector clears as soon as nothing else refers to the value. Suited to
+     * canonicalizing maps and to attaching data to objects owned elsewhere.
+     */
+    WEAK
+}
@@ -0,0 +1,415 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+import com.ivan.utils.math.bits.BitMath;
+
+/**
+ * <code>long</code>-based hash map which uses long primitives as keys and
+ * stores its mappings in parallel key and value arrays, probed in groups of 8
+ * slots like Google's SwissTable. Each slot has a control byte, packed 8 to a
+ * <code>long</code>: the 7 top bits of the hash of its key if the slot is
+ * full, or a marker for empty and deleted slots. A lookup compares the control
+ * bytes of a whole group with the hash of the key at once, using the zero byte
+ * search of {@link BitMath#rightMostZeroByte(long)}, and only compares the keys
+ * of the slots whose byte matches, which is rarely more than one.
+ * <p>
+ * Probes rarely leave their first group, so the table stays fast up to a load
+ * factor of 7/8, which makes it smaller than {@link OpenLongMap} and much
+ * smaller than {@link LongMap}. Removals leave tombstones in groups which have
+ * no empty slot, which are recycled by later insertions and cleared when the
+ * table is rebuilt.
+ * <p>
+ * This class provides the core operations of <code>LongMap</code>, but no
+ * collection views. This collection is not thread-safe.
+ *
+ * @param <V> the type of the values stored by this map
+ */
+public class SwissLongMap<V> {
+    private long[] control;
+
+    private long[] keyTable;
+
+    private Object[] valueTable;
+
+    private int groupMask;
+
+    private int size;
+
+    private int tombstones;
+
+    private int growthLimit;
+
+    private int modCount;
+
+    private final HashSpreader spreader;
+
+    private static final long LSB = 0x0101010101010101L;
+
+    private static final long MSB = 0x8080808080808080L;
+
+    /**
+     * The control byte of an empty slot. Every group of a new table is empty.
+     */
+    private static final long EMPTY = 0x80;
+
+    private static final long EMPTY_GROUP = EMPTY * LSB;
+
+    /**
+     * The control byte of a slot whose mapping was removed. Like empty slots,
+     * it has its top bit set, which full slots never have.
+     */
+    private static final long DELETED = 0xFE;
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+    * The maximum number of slots - MUST be a power of two <= 1<<30.
+    */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Constructs an empty <code>SwissLongMap</code> with room for 16 mappings
+     * and the {@link HashSpreader#FIBONACCI Fibonacci} hash spreader.
+     */
+    public SwissLongMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <code>SwissLongMap</code> with room for the specified
+     * number of mappings and the {@link HashSpreader#FIBONACCI Fibonacci} hash
+     * spreader.
+     *
+     * @param capacity the number of mappings the map can hold before growing
+     */
+    public SwissLongMap(final int capacity) {
+        this(capacity, HashSpreader.FIBONACCI);
+    }
+
+    /**
+     * Constructs an empty <code>SwissLongMap</code> with room for the specified
+     * number of mappings and the specified hash spreader. The control bytes
+     * hold the top bits of the spread hash, so {@link HashSpreader#IDENTITY}
+     * makes every slot of a group match small keys and should be avoided.
+     *
+     * @param capacity the number of mappings the map can hold before growing
+     * @param spreader the function used to spread the bits of the keys
+     * @throws NullPointerException if the spreader is null
+     */
+    public SwissLongMap(final int capacity, final HashSpreader spreader) {
+        if (spreader == null) {
+            throw new NullPointerException("spreader");
+        }
+        this.spreader = spreader;
+        allocate(slotsFor(capacity));
+    }
+
+    /**
+     * Returns the number of slots needed to hold the specified number of
+     * mappings at the maximum load factor of 7/8.
+     */
+    private static int slotsFor(final int capacity) {
+        final long slots = Math.max(0, capacity) + Math.max(0, capacity) / 7 + 1L;
+        return slots >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : Math.max(8, BitMath.nextPowerOfTwo((int) slots));
+    }
+
+    private void allocate(final int slots) {
+        control = new long[slots >>> 3];
+        Arrays.fill(control, EMPTY_GROUP);
+        keyTable = new long[slots];
+        valueTable = new Object[slots];
+        groupMask = (slots >>> 3) - 1;
+        // an eighth of the slots stays empty, so that probes terminate
+        growthLimit = slots - (slots >>> 3);
+        tombstones = 0;
+    }
+
+    /**
+     * Returns the function used by this map to spread the bits of the keys.
+     *
+     * @return the hash spreader of this map
+     */
+    public HashSpreader getHashSpreader() {
+        return spreader;
+    }
+
+    /**
+     * Returns the slot which holds the key, or -1. Probing visits the groups
+     * in triangular order, which covers the whole table, and stops at the
+     * first group with an empty slot: the key would have been stored there.
+     */
+    private int find(final long key, final int hash) {
+        final long pattern = LSB * (hash >>> 25);
+        int g = hash & groupMask;
+        for (int step = 1;; step++) {
+            final long group = control[g];
+            // the bytes equal to the pattern become zero
+            long x = group ^ pattern;
+            for (int i; (i = BitMath.rightMostZeroByte(x)) < 8; x |= 0xFFL << (i << 3)) {
+                final int slot = g << 3 | i;
+                if (keyTable[slot] == key) {
+                    return slot;
+                }
+            }
+            if (hasEmpty(group)) {
+                return -1;
+            }
+            g = g + step & groupMask;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the group has an empty slot: only empty
+     * slots have their top bit set and the next one clear.
+     */
+    private static boolean hasEmpty(final long group) {
+        return (group & ~(group << 1) & MSB) != 0;
+    }
+
+    /**
+     * Returns the first empty or deleted slot of the probe sequence of the
+     * hash.
+     */
+    private int findFree(final int hash) {
+        int g = hash & groupMask;
+        for (int step = 1;; step++) {
+            final long free = control[g] & MSB;
+            if (free != 0) {
+                return g << 3 | BitMath.numberOfTrailingZeros(free) >>> 3;
+            }
+            g = g + step & groupMask;
+        }
+    }
+
+    private long controlByte(final int slot) {
+        return control[slot >>> 3] >>> ((slot & 7) << 3) & 0xFF;
+    }
+
+    private void setControlByte(final int slot, final long b) {
+        final int shift = (slot & 7) << 3;
+        control[slot >>> 3] = control[slot >>> 3] & ~(0xFFL << shift) | b << shift;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains no key-value mappings.
+     *
+     * @return <code>true</code> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key The key whose presence in this map is to be tested
+     * @return <code>true</code> if this map contains a mapping for the
+     * specified key.
+     */
+    public boolean containsKey(final long key) {
+        return find(key, spreader.spread(key)) >= 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <code>null</code> if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         <code>null</code> if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final int slot = find(key, spreader.spread(key));
+        return slot < 0 ? null : (V) valueTable[slot];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old value is
+     * replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>.
+     *         (A <code>null</code> return can also indicate that the map
+     *         previously associated <code>null</code> with <code>key</code>.)
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        final int hash = spreader.spread(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            final V old = (V) valueTable[slot];
+            valueTable[slot] = value;
+            return old;
+        }
+        if (size + tombstones >= growthLimit) {
+            rebuild();
+        }
+        slot = findFree(hash);
+        if (controlByte(slot) == DELETED) {
+            tombstones--;
+        }
+        setControlByte(slot, hash >>> 25);
+        keyTable[slot] = key;
+        valueTable[slot] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with <code>key</code>, or
+     *         <code>null</code> if there was no mapping for <code>key</code>.
+     *         (A <code>null</code> return can also indicate that the map
+     *         previously associated <code>null</code> with <code>key</code>.)
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        final int slot = find(key, spreader.spread(key));
+        if (slot < 0) {
+            return null;
+        }
+        final V old = (V) valueTable[slot];
+        valueTable[slot] = null;
+        // a group with an empty slot has never been full, so no probe went
+        // past it and the slot can become empty again
+        if (hasEmpty(control[slot >>> 3])) {
+            setControlByte(slot, EMPTY);
+        } else {
+            setControlByte(slot, DELETED);
+            tombstones++;
+        }
+        size--;
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Rebuilds the table when the full and deleted slots reach the load
+     * limit: at the same capacity if tombstones take up at least half of the
+     * limit, or with twice the capacity otherwise.
+     */
+    private void rebuild() {
+        final int slots = keyTable.length;
+        if (size < growthLimit >>> 1) {
+            rehash(slots);
+        } else if (slots == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map is full");
+        } else {
+            rehash(slots << 1);
+        }
+    }
+
+    private void rehash(final int slots) {
+        final long[] oldControl = control;
+        final long[] oldKeys = keyTable;
+        final Object[] oldValues = valueTable;
+        allocate(slots);
+        for (int g = 0; g < oldControl.length; g++) {
+            for (long full = ~oldControl[g] & MSB; full != 0; full &= full - 1) {
+                final int slot = g << 3 | BitMath.numberOfTrailingZeros(full) >>> 3;
+                final long key = oldKeys[slot];
+                final int hash = spreader.spread(key);
+                final int free = findFree(hash);
+                setControlByte(free, hash >>> 25);
+                keyTable[free] = key;
+                valueTable[free] = oldValues[slot];
+            }
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        size = 0;
+        modCount++;
+        allocate(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Reduces the internal table to the minimum capacity required to hold all
+     * mappings contained in this map, dropping its tombstones.
+     */
+    public void trimToSize() {
+        rehash(slotsFor(size));
+    }
+
+    /**
+     * Returns an array of the keys contained in this map.
+     *
+     * @return a <code>long[]</code> with the keys contained in this map
+     */
+    public long[] keys() {
+        final long[] keys = new long[size];
+        int n = 0;
+        for (int g = 0; g < control.length; g++) {
+            for (long full = ~control[g] & MSB; full != 0; full &= full - 1) {
+                keys[n++] = keyTable[g << 3 | BitMath.numberOfTrailingZeros(full) >>> 3];
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Invokes the specified procedure with each mapping of this map, without
+     * boxing the keys.
+     *
+     * @param procedure the procedure to invoke
+     * @throws ConcurrentModificationException if the procedure modifies this
+     *         map
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final LongObjectProcedure<? super V> procedure) {
+        final int mc = modCount;
+        final long[] c = control;
+        for (int g = 0; g < c.length; g++) {
+            for (long full = ~c[g] & MSB; full != 0; full &= full - 1) {
+                final int slot = g << 3 | BitMath.numberOfTrailingZeros(full) >>> 3;
+                procedure.apply(keyTable[slot], (V) valueTable[slot]);
+            }
+            if (modCount != mc) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        forEach(new LongObjectProcedure<V>() {
+            private String sep = "";
+
+            @Override
+            public void apply(final long key, final V value) {
+                sb.append(sep).append(key).append('=').append(value);
+                sep = ", ";
+            }
+        });
+        sb.append('}');
+        return sb.toString();
+    }
+}
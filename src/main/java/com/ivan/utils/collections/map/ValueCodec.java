@@ -0,0 +1,38 @@
+package com.ivan.utils.collections.map;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the values of a map to and from bytes, for the snapshots written by
+ * {@link IntMap#writeTo(java.nio.file.Path, ValueCodec)} and
+ * {@link LongMap#writeTo(java.nio.file.Path, ValueCodec)}. Codecs for common
+ * types are provided by {@link ValueCodecs}.
+ * <p>
+ * <code>null</code> values are handled by the snapshot format itself and are
+ * never passed to a codec.
+ *
+ * @param <V> the type of the values
+ */
+public interface ValueCodec<V> {
+    /**
+     * Writes the specified value.
+     *
+     * @param value the value, never <code>null</code>
+     * @param out the output to write the value to
+     * @throws IOException if an I/O error occurs
+     */
+    void write(V value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value from the specified buffer, whose remaining bytes are
+     * exactly the bytes written by {@link #write(Object, DataOutput)}. The
+     * buffer may be backed by a memory-mapped file, so it must not be retained
+     * after this method returns.
+     *
+     * @param in the buffer to read the value from
+     * @return the value
+     */
+    V read(ByteBuffer in);
+}
@@ -0,0 +1,93 @@
+package com.ivan.utils.collections.map;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * {@link ValueCodec}s for common value types.
+ */
+public final class ValueCodecs {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes {@link Integer}s as 4 bytes.
+     */
+    public static final ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+        @Override
+        public void write(final Integer value, final DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(final ByteBuffer in) {
+            return in.getInt();
+        }
+    };
+
+    /**
+     * Writes {@link Long}s as 8 bytes.
+     */
+    public static final ValueCodec<Long> LONG = new ValueCodec<Long>() {
+        @Override
+        public void write(final Long value, final DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(final ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    /**
+     * Writes {@link Double}s as 8 bytes.
+     */
+    public static final ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+        @Override
+        public void write(final Double value, final DataOutput out) throws IOException {
+            out.writeDouble(value);
+        }
+
+        @Override
+        public Double read(final ByteBuffer in) {
+            return in.getDouble();
+        }
+    };
+
+    /**
+     * Writes {@link String}s encoded in UTF-8.
+     */
+    public static final ValueCodec<String> STRING = new ValueCodec<String>() {
+        @Override
+        public void write(final String value, final DataOutput out) throws IOException {
+            out.write(value.getBytes(UTF_8));
+        }
+
+        @Override
+        public String read(final ByteBuffer in) {
+            return UTF_8.decode(in).toString();
+        }
+    };
+
+    /**
+     * Writes byte arrays as is. Reading copies the bytes out of the snapshot.
+     */
+    public static final ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+        @Override
+        public void write(final byte[] value, final DataOutput out) throws IOException {
+            out.write(value);
+        }
+
+        @Override
+        public byte[] read(final ByteBuffer in) {
+            final byte[] bytes = new byte[in.remaining()];
+            in.get(bytes);
+            return bytes;
+        }
+    };
+
+    private ValueCodecs() {
+    }
+}
@@ -0,0 +1,18 @@
+package com.ivan.utils.collections.map;
+
+/**
+ * Computes the weight of the values of a weight-bounded cache, such as
+ * {@link IntLruCache} or {@link LongLruCache}.
+ *
+ * @param <V> the type of the values
+ */
+public interface Weigher<V> {
+    /**
+     * Returns the weight of the specified value. The weight of a value must
+     * not change while it is in the cache.
+     *
+     * @param value the value
+     * @return the weight of the value; must not be negative
+     */
+    int weigh(V value);
+}
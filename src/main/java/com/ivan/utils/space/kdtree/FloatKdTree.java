@@ -0,0 +1,574 @@
+package com.ivan.utils.space.kdtree;
+
+/**
+ * k-d tree over a cloud of points given by their <code>float</code>
+ * coordinates, either one array per axis or interleaved in a single array.
+ * Unlike {@link KdTree}, it does not go through {@link com.ivan.utils.space.Point}
+ * objects: the coordinates are copied into one array in the order of the
+ * tree, so that the points of a subtree are contiguous, and the searches
+ * return the indices of the points in the input.
+ * <p>
+ * The layout is the implicit one of {@link KdTree}, where the subtree over
+ * the range <code>[lo, hi)</code> has its root at the middle of the range,
+ * except that ranges of at most 8 points are left unsorted and scanned
+ * linearly. The distance computations are plain loops over the coordinates,
+ * which the JIT compiler can unroll.
+ * <p>
+ * The tree cannot be modified once built. Several threads may search it at
+ * once, each through its own {@link Query} context.
+ */
+public final class FloatKdTree {
+    /**
+     * The size of the ranges which are scanned rather than split further.
+     */
+    private static final int LEAF_SIZE = 8;
+
+    private final int k;
+
+    /**
+     * The coordinates of the points in the order of the tree, interleaved.
+     */
+    private final float[] coords;
+
+    /**
+     * The index in the input of the point at each position of the tree.
+     */
+    private final int[] ids;
+
+    private FloatKdTree(final int k, final int n, final float[][] axes, final float[] interleaved) {
+        if ((long) n * k > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many coordinates: " + (long) n * k);
+        }
+        this.k = k;
+        ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        build(0, n, 0, new float[n], axes, interleaved);
+
+        coords = new float[n * k];
+        for (int i = 0; i < n; i++) {
+            final int id = ids[i];
+            for (int axis = 0; axis < k; axis++) {
+                coords[i * k + axis] = axes != null ? axes[axis][id] : interleaved[id * k + axis];
+            }
+        }
+    }
+
+    /**
+     * Builds a tree over points given by one array of coordinates per axis:
+     * point <code>i</code> is <code>(axes[0][i], axes[1][i], ...)</code>. The
+     * arrays are copied.
+     *
+     * @param axes the coordinates of the points on each axis
+     * @return a new tree
+     * @throws IllegalArgumentException if there are no axes or the arrays do
+     *             not all have the same length
+     */
+    public static FloatKdTree build(final float[]... axes) {
+        if (axes.length == 0) {
+            throw new IllegalArgumentException("Illegal dimensions: 0");
+        }
+        final int n = axes[0].length;
+        for (final float[] axis : axes) {
+            if (axis.length != n) {
+                throw new IllegalArgumentException("Axis lengths differ: " + n + " and " + axis.length);
+            }
+        }
+        return new FloatKdTree(axes.length, n, axes, null);
+    }
+
+    /**
+     * Builds a tree over points given by interleaved coordinates: point
+     * <code>i</code> is <code>(coords[i * dimensions], coords[i * dimensions
+     * + 1], ...)</code>. The array is copied.
+     *
+     * @param coords the coordinates of the points
+     * @param dimensions the number of dimensions of the points
+     * @return a new tree
+     * @throws IllegalArgumentException if the number of dimensions is less
+     *             than 1 or the length of the array is not a multiple of it
+     */
+    public static FloatKdTree buildInterleaved(final float[] coords, final int dimensions) {
+        if (dimensions < 1 || coords.length % dimensions != 0) {
+            throw new IllegalArgumentException("Illegal dimensions: " + dimensions);
+        }
+        return new FloatKdTree(dimensions, coords.length / dimensions, null, coords);
+    }
+
+    /**
+     * Builds the subtree over the range <code>[lo, hi)</code>, using
+     * <code>keys</code> as scratch space for the coordinates of the range.
+     */
+    private void build(int lo, final int hi, int axis, final float[] keys, final float[][] axes,
+            final float[] interleaved) {
+        while (hi - lo > LEAF_SIZE) {
+            final int mid = lo + hi >>> 1;
+            if (axes != null) {
+                final float[] values = axes[axis];
+                for (int i = lo; i < hi; i++) {
+                    keys[i] = values[ids[i]];
+                }
+            } else {
+                for (int i = lo; i < hi; i++) {
+                    keys[i] = interleaved[ids[i] * k + axis];
+                }
+            }
+            select(keys, ids, lo, hi - 1, mid);
+            axis = axis + 1 == k ? 0 : axis + 1;
+            build(lo, mid, axis, keys, axes, interleaved);
+            lo = mid + 1;
+        }
+    }
+
+    /**
+     * Reorders the range <code>[lo, hi]</code> of <code>keys</code>, and the
+     * indices along with them, so that the key at index <code>nth</code> is the
+     * one which would be there if the range were sorted, with no greater key
+     * before it and no lesser key after it.
+     */
+    private static void select(final float[] keys, final int[] ids, int lo, int hi, final int nth) {
+        while (lo < hi) {
+            final float pivot = median(keys[lo], keys[lo + hi >>> 1], keys[hi]);
+            int i = lo;
+            int j = hi;
+            do {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (pivot < keys[j]) {
+                    j--;
+                }
+                if (i <= j) {
+                    final float key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    final int id = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = id;
+                    i++;
+                    j--;
+                }
+            } while (i <= j);
+            if (j < nth) {
+                lo = i;
+            }
+            if (nth < i) {
+                hi = j;
+            }
+        }
+    }
+
+    private static float median(final float a, final float b, final float c) {
+        if (a < b) {
+            return b < c ? b : a < c ? c : a;
+        }
+        return a < c ? a : b < c ? c : b;
+    }
+
+    private void checkDimensions(final float[] point) {
+        if (point.length != k) {
+            throw new IllegalArgumentException("Point has " + point.length + " dimensions, expected " + k);
+        }
+    }
+
+    /**
+     * Returns the squared distance between the point at the specified
+     * position of the tree and the specified point.
+     */
+    private float dist(final int position, final float[] point) {
+        final int base = position * k;
+        float d = 0;
+        for (int i = 0; i < k; i++) {
+            final float da = coords[base + i] - point[i];
+            d += da * da;
+        }
+        return d;
+    }
+
+    //////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of points in this tree.
+     *
+     * @return the number of points in this tree
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the number of dimensions of the points of this tree.
+     *
+     * @return the number of dimensions
+     */
+    public int getDimensions() {
+        return k;
+    }
+
+    /**
+     * Returns the index of the point of this tree nearest to the specified
+     * point. Repeated searches should go through a {@link #query()} context,
+     * which does not allocate.
+     *
+     * @param point the coordinates of the point
+     * @return the index of the nearest point in the input, or -1 if the tree
+     *         is empty
+     * @throws IllegalArgumentException if the point does not have the same
+     *             number of dimensions as the points of the tree
+     */
+    public int findNearest(final float... point) {
+        final Query query = query();
+        return query.findNearest(point, 1) == 0 ? -1 : query.get(0);
+    }
+
+    /**
+     * Returns a new search context over this tree, which keeps the scratch
+     * space and the results of its searches. Searching again through the same
+     * context allocates nothing once its arrays have grown to the number of
+     * points searched for.
+     *
+     * @return a new search context
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Invokes the visitor with the index of each point of this tree whose
+     * distance to the specified point is at most <code>radius</code>, in no
+     * particular order.
+     *
+     * @param center the coordinates of the center of the sphere to search
+     * @param radius the radius of the sphere to search
+     * @param visitor the visitor to invoke with the indices found
+     * @return the number of points found
+     * @throws IllegalArgumentException if the radius is negative or NaN, or
+     *             if the point does not have the same number of dimensions as
+     *             the points of the tree
+     */
+    public int findWithinRadius(final float[] center, final float radius, final KdTreeIndexVisitor visitor) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Illegal radius: " + radius);
+        }
+        checkDimensions(center);
+        return searchRadius(center, radius, radius * radius, 0, ids.length, 0, visitor);
+    }
+
+    /**
+     * Returns the number of points of this tree whose distance to the
+     * specified point is at most <code>radius</code>.
+     *
+     * @param center the coordinates of the center of the sphere to search
+     * @param radius the radius of the sphere to search
+     * @return the number of points found
+     * @throws IllegalArgumentException if the radius is negative or NaN, or
+     *             if the point does not have the same number of dimensions as
+     *             the points of the tree
+     */
+    public int countWithinRadius(final float[] center, final float radius) {
+        return findWithinRadius(center, radius, null);
+    }
+
+    /**
+     * Invokes the visitor with the index of each point of this tree inside the
+     * axis-aligned box between <code>min</code> and <code>max</code>,
+     * boundaries included, in no particular order.
+     *
+     * @param min the coordinates of the corner of the box with the lowest
+     *            coordinates
+     * @param max the coordinates of the corner of the box with the highest
+     *            coordinates
+     * @param visitor the visitor to invoke with the indices found
+     * @return the number of points found
+     * @throws IllegalArgumentException if the corners do not have the same
+     *             number of dimensions as the points of the tree
+     */
+    public int findInBox(final float[] min, final float[] max, final KdTreeIndexVisitor visitor) {
+        checkDimensions(min);
+        checkDimensions(max);
+        return searchBox(min, max, 0, ids.length, 0, visitor);
+    }
+
+    /**
+     * Returns the number of points of this tree inside the axis-aligned box
+     * between <code>min</code> and <code>max</code>, boundaries included.
+     *
+     * @param min the coordinates of the corner of the box with the lowest
+     *            coordinates
+     * @param max the coordinates of the corner of the box with the highest
+     *            coordinates
+     * @return the number of points found
+     * @throws IllegalArgumentException if the corners do not have the same
+     *             number of dimensions as the points of the tree
+     */
+    public int countInBox(final float[] min, final float[] max) {
+        return findInBox(min, max, null);
+    }
+
+    private int searchRadius(final float[] center, final float radius, final float radiusSquared, int lo,
+            final int hi, int axis, final KdTreeIndexVisitor visitor) {
+        int count = 0;
+        while (hi - lo > LEAF_SIZE) {
+            final int mid = lo + hi >>> 1;
+            if (dist(mid, center) <= radiusSquared) {
+                visit(visitor, mid);
+                count++;
+            }
+            final float split = coords[mid * k + axis];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (center[axis] - radius <= split) {
+                count += searchRadius(center, radius, radiusSquared, lo, mid, next, visitor);
+            }
+            if (center[axis] + radius < split) {
+                return count;
+            }
+            lo = mid + 1;
+            axis = next;
+        }
+        for (int i = lo; i < hi; i++) {
+            if (dist(i, center) <= radiusSquared) {
+                visit(visitor, i);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int searchBox(final float[] min, final float[] max, int lo, final int hi, int axis,
+            final KdTreeIndexVisitor visitor) {
+        int count = 0;
+        while (hi - lo > LEAF_SIZE) {
+            final int mid = lo + hi >>> 1;
+            if (inBox(min, max, mid)) {
+                visit(visitor, mid);
+                count++;
+            }
+            final float split = coords[mid * k + axis];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (min[axis] <= split) {
+                count += searchBox(min, max, lo, mid, next, visitor);
+            }
+            if (max[axis] < split) {
+                return count;
+            }
+            lo = mid + 1;
+            axis = next;
+        }
+        for (int i = lo; i < hi; i++) {
+            if (inBox(min, max, i)) {
+                visit(visitor, i);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean inBox(final float[] min, final float[] max, final int position) {
+        final int base = position * k;
+        for (int i = 0; i < k; i++) {
+            final float c = coords[base + i];
+            if (c < min[i] || c > max[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void visit(final KdTreeIndexVisitor visitor, final int position) {
+        if (visitor != null) {
+            visitor.visit(ids[position]);
+        }
+    }
+
+    /**
+     * Search context of a tree, returned by {@link FloatKdTree#query()}. The
+     * results of a search stay available until the next search through the
+     * same context.
+     */
+    public final class Query {
+        private float[] point;
+
+        /**
+         * Max-heap on the squared distances of the results, and the positions
+         * of the results in the tree, replaced by their indices in the input
+         * once sorted.
+         */
+        private float[] distances = new float[0];
+
+        private int[] indices = new int[0];
+
+        private int count;
+
+        private int numToFind;
+
+        Query() {
+        }
+
+        /**
+         * Finds the <code>numToFind</code> points of the tree nearest to the
+         * specified point, whose indices can then be read with
+         * {@link #get(int)}, from the nearest to the farthest.
+         *
+         * @param point the coordinates of the point
+         * @param numToFind the number of points to find
+         * @return the number of points found, fewer than
+         *         <code>numToFind</code> if the tree has fewer points
+         * @throws IllegalArgumentException if the point does not have the
+         *             same number of dimensions as the points of the tree
+         */
+        public int findNearest(final float[] point, final int numToFind) {
+            checkDimensions(point);
+            count = 0;
+            final int capacity = Math.min(numToFind, ids.length);
+            if (capacity <= 0) {
+                return 0;
+            }
+            if (distances.length < capacity) {
+                distances = new float[capacity];
+                indices = new int[capacity];
+            }
+            this.point = point;
+            this.numToFind = capacity;
+            searchNode(0, ids.length, 0);
+            this.point = null;
+            sortResults();
+            return count;
+        }
+
+        /**
+         * Searches the subtree over the range <code>[lo, hi)</code>,
+         * descending first on the side of the splitting plane where the query
+         * lies, and then on the other side only if the plane is nearer than
+         * the farthest result.
+         */
+        private void searchNode(final int lo, final int hi, final int axis) {
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < hi; i++) {
+                    offer(dist(i, point), i);
+                }
+                return;
+            }
+            final int mid = lo + hi >>> 1;
+            offer(dist(mid, point), mid);
+
+            final float diff = point[axis] - coords[mid * k + axis];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (diff <= 0) {
+                searchNode(lo, mid, next);
+                if (count < numToFind || diff * diff < distances[0]) {
+                    searchNode(mid + 1, hi, next);
+                }
+            } else {
+                searchNode(mid + 1, hi, next);
+                if (count < numToFind || diff * diff < distances[0]) {
+                    searchNode(lo, mid, next);
+                }
+            }
+        }
+
+        /**
+         * Adds a result to the heap if it is not full, or replaces the
+         * farthest result if the new one is nearer.
+         */
+        private void offer(final float distance, final int position) {
+            if (count < numToFind) {
+                int i = count++;
+                while (i > 0) {
+                    final int parent = i - 1 >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    distances[i] = distances[parent];
+                    indices[i] = indices[parent];
+                    i = parent;
+                }
+                distances[i] = distance;
+                indices[i] = position;
+            } else if (distance < distances[0]) {
+                siftDown(distance, position, count);
+            }
+        }
+
+        /**
+         * Puts a result at the root of the heap of the specified size and
+         * moves it down to its place.
+         */
+        private void siftDown(final float distance, final int position, final int size) {
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                distances[i] = distances[child];
+                indices[i] = indices[child];
+                i = child;
+            }
+            distances[i] = distance;
+            indices[i] = position;
+        }
+
+        /**
+         * Sorts the heap from the nearest to the farthest result, and replaces
+         * the positions of the results by their indices in the input.
+         */
+        private void sortResults() {
+            for (int size = count - 1; size > 0; size--) {
+                final float distance = distances[size];
+                final int position = indices[size];
+                distances[size] = distances[0];
+                indices[size] = indices[0];
+                siftDown(distance, position, size);
+            }
+            for (int i = 0; i < count; i++) {
+                indices[i] = ids[indices[i]];
+            }
+        }
+
+        /**
+         * Returns the number of points found by the last search.
+         *
+         * @return the number of results
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Returns the index in the input of a point found by the last search.
+         *
+         * @param i the rank of the point, 0 for the nearest
+         * @return the index of the point
+         * @throws IndexOutOfBoundsException if <code>i</code> is not less than
+         *             {@link #size()}
+         */
+        public int get(final int i) {
+            checkIndex(i);
+            return indices[i];
+        }
+
+        /**
+         * Returns the squared distance between the point searched for and a
+         * point found by the last search.
+         *
+         * @param i the rank of the point, 0 for the nearest
+         * @return the squared Euclidean distance
+         * @throws IndexOutOfBoundsException if <code>i</code> is not less than
+         *             {@link #size()}
+         */
+        public float squaredDistance(final int i) {
+            checkIndex(i);
+            return distances[i];
+        }
+
+        private void checkIndex(final int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+            }
+        }
+    }
+}
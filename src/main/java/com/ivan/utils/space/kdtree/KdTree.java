@@ -3,357 +3,967 @@ package com.ivan.utils.space.kdtree;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.ivan.utils.space.Point;
 
+/**
+ * k-d tree over points of any number of dimensions.
+ * <p>
+ * The tree has an implicit layout: its points are stored in a single array,
+ * where the subtree over the range <code>[lo, hi)</code> has its root at the
+ * middle index <code>(lo + hi) / 2</code>, the lesser subtree on its left and
+ * the greater subtree on its right, splitting on the axis
+ * <code>depth % k</code>. No node objects are created, and the splitting
+ * coordinates are kept in a parallel <code>double[]</code> so the descent
+ * does not have to go through the points. The tree is built in O(n log n)
+ * time by selecting the median of each range in place.
+ * <p>
+ * The balanced layout is rebuilt rather than updated: added points are kept
+ * in a small buffer which is searched linearly, and removed points are marked
+ * as such, until either grows large enough to rebuild the whole tree.
+ * <p>
+ * Large trees can be built on a fork-join pool, and batches of queries
+ * searched on one with {@link #findNearestAll(Point[], int, ForkJoinPool)}.
+ * Several threads may search the tree at once, each through its own
+ * {@link Query} context, as long as no thread modifies it; otherwise this
+ * collection is not thread-safe.
+ *
+ * @param <T> the type of the points
+ */
 public final class KdTree<T extends Point> {
-    final int k;
+    /**
+     * The minimum number of added points buffered before the tree is rebuilt.
+     */
+    private static final int MIN_PENDING = 64;
 
-    private KdNode root;
+    /**
+     * The size below which subtrees are built on a single thread.
+     */
+    private static final int PARALLEL_BUILD_CUTOFF = 1 << 13;
 
-    private KdTree(final T[] points) {
-        k = points[0].getDimensions();
-        root = createNode(points, 0);
+    /**
+     * The number of queries searched by each task of a batch.
+     */
+    private static final int QUERY_BATCH = 64;
+
+    /**
+     * The number of dimensions of the points, or 0 before the first point.
+     */
+    int k;
+
+    private Point[] points;
+
+    /**
+     * The coordinate on the splitting axis of the point at each index.
+     */
+    private double[] splits;
+
+    private long[] removed;
+
+    private int removedCount;
+
+    private Point[] pending = new Point[MIN_PENDING];
+
+    private int pendingCount;
+
+    private KdTree(final Point[] points, final ForkJoinPool pool) {
+        rebuild(points, pool);
     }
 
-    private KdNode createNode(final T[] points, final int depth) {
-        if (points.length == 0) {
-            return null;
-        }
+    /**
+     * Builds a tree over the specified points. The array is not modified.
+     *
+     * @param points the points of the tree
+     * @return a new tree
+     * @throws IllegalArgumentException if the points do not all have the same
+     *             number of dimensions
+     */
+    public static <T extends Point> KdTree<T> build(final T... points) {
+        return new KdTree<T>(points.clone(), null);
+    }
 
-        final int axis = depth % k;
-        Arrays.sort(points, new Comparator<Point>() {
-            @Override
-            public int compare(final Point o1, final Point o2) {
-                final double a1 = o1.get(axis);
-                final double a2 = o2.get(axis);
-                return a1 > a2 ? 1 : a1 < a2 ? -1 : 0;
-            }
-        });
+    /**
+     * Builds a tree over the specified points.
+     *
+     * @param points the points of the tree
+     * @return a new tree
+     * @throws IllegalArgumentException if the points do not all have the same
+     *             number of dimensions
+     */
+    public static <T extends Point> KdTree<T> build(final Collection<T> points) {
+        return new KdTree<T>(points.toArray(new Point[points.size()]), null);
+    }
 
-        final int medianIndex = points.length / 2;
-        final KdNode node = new KdNode(depth, points[medianIndex]);
-        if (medianIndex > 0) {
-            final T[] less = Arrays.copyOfRange(points, 0, medianIndex);
-            if (less.length > 0) {
-                node.lesser = createNode(less, depth + 1);
-                node.lesser.parent = node;
+    /**
+     * Builds a tree over the specified points on a fork-join pool. The
+     * subtrees with at least 8192 points are built by separate tasks once
+     * their root has been selected. The array is not modified.
+     *
+     * @param points the points of the tree
+     * @param pool the pool to build the tree with, or <code>null</code> to
+     *            build it on the calling thread
+     * @return a new tree
+     * @throws IllegalArgumentException if the points do not all have the same
+     *             number of dimensions
+     */
+    public static <T extends Point> KdTree<T> build(final T[] points, final ForkJoinPool pool) {
+        return new KdTree<T>(points.clone(), pool);
+    }
+
+    /**
+     * Builds a tree over the specified points on a fork-join pool.
+     *
+     * @param points the points of the tree
+     * @param pool the pool to build the tree with, or <code>null</code> to
+     *            build it on the calling thread
+     * @return a new tree
+     * @throws IllegalArgumentException if the points do not all have the same
+     *             number of dimensions
+     * @see #build(Point[], ForkJoinPool)
+     */
+    public static <T extends Point> KdTree<T> build(final Collection<T> points, final ForkJoinPool pool) {
+        return new KdTree<T>(points.toArray(new Point[points.size()]), pool);
+    }
+
+    /**
+     * Replaces the tree with a balanced tree over the specified points, which
+     * are reordered in place, on the pool if it is not <code>null</code>.
+     */
+    private void rebuild(final Point[] points, final ForkJoinPool pool) {
+        final int n = points.length;
+        if (n > 0) {
+            k = points[0].getDimensions();
+            for (int i = 1; i < n; i++) {
+                checkDimensions(points[i]);
             }
         }
-        if (medianIndex < points.length - 1) {
-            final T[] more = Arrays.copyOfRange(points, medianIndex + 1, points.length);
-            if (more.length > 0) {
-                node.greater = createNode(more, depth + 1);
-                node.greater.parent = node;
+        this.points = points;
+        splits = new double[n];
+        removed = new long[n + 63 >>> 6];
+        removedCount = 0;
+        pendingCount = 0;
+        if (pool != null && n >= PARALLEL_BUILD_CUTOFF) {
+            pool.invoke(new BuildTask(0, n, 0, new double[n]));
+        } else if (n > 0) {
+            build(0, n, 0, new double[n]);
+        }
+    }
+
+    /**
+     * Builds the subtree over the range <code>[lo, hi)</code>, using
+     * <code>keys</code> as scratch space for the coordinates of the range.
+     */
+    private void build(int lo, final int hi, int axis, final double[] keys) {
+        while (lo < hi) {
+            final int mid = selectRoot(lo, hi, axis, keys);
+            axis = axis + 1 == k ? 0 : axis + 1;
+            build(lo, mid, axis, keys);
+            lo = mid + 1;
+        }
+    }
+
+    /**
+     * Moves the median of the range <code>[lo, hi)</code> on the specified
+     * axis to the middle of the range, the lesser points before it and the
+     * greater points after it.
+     *
+     * @return the index of the root of the range
+     */
+    private int selectRoot(final int lo, final int hi, final int axis, final double[] keys) {
+        final int mid = lo + hi >>> 1;
+        for (int i = lo; i < hi; i++) {
+            keys[i] = points[i].get(axis);
+        }
+        select(keys, points, lo, hi - 1, mid);
+        splits[mid] = keys[mid];
+        return mid;
+    }
+
+    /**
+     * Reorders the range <code>[lo, hi]</code> of <code>keys</code>, and the
+     * points along with them, so that the key at index <code>nth</code> is the
+     * one which would be there if the range were sorted, with no greater key
+     * before it and no lesser key after it.
+     */
+    static void select(final double[] keys, final Object[] points, int lo, int hi, final int nth) {
+        while (lo < hi) {
+            final double pivot = median(keys[lo], keys[lo + hi >>> 1], keys[hi]);
+            int i = lo;
+            int j = hi;
+            do {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (pivot < keys[j]) {
+                    j--;
+                }
+                if (i <= j) {
+                    final double key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    final Object point = points[i];
+                    points[i] = points[j];
+                    points[j] = point;
+                    i++;
+                    j--;
+                }
+            } while (i <= j);
+            if (j < nth) {
+                lo = i;
+            }
+            if (nth < i) {
+                hi = j;
             }
         }
+    }
 
-        return node;
+    private static double median(final double a, final double b, final double c) {
+        if (a < b) {
+            return b < c ? b : a < c ? c : a;
+        }
+        return a < c ? a : b < c ? c : b;
     }
 
-    public static <T extends Point> KdTree<T> build(final T... points) {
-        return new KdTree<T>(points);
+    private void checkDimensions(final Point point) {
+        if (point.getDimensions() != k) {
+            throw new IllegalArgumentException("Point has " + point.getDimensions() + " dimensions, expected " + k);
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    public static <T extends Point> KdTree<T> build(final Collection<T> points) {
-        return build(points.toArray((T[]) new Object[points.size()]));
+    /**
+     * Returns the coordinates of the specified point.
+     */
+    private double[] coordinates(final Point point) {
+        final double[] coords = new double[k];
+        for (int i = 0; i < k; i++) {
+            coords[i] = point.get(i);
+        }
+        return coords;
+    }
+
+    private boolean isRemoved(final int index) {
+        return (removed[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Rebuilds the tree over the points which have not been removed and the
+     * added points.
+     */
+    private void compact() {
+        final Point[] live = new Point[size()];
+        int n = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (!isRemoved(i)) {
+                live[n++] = points[i];
+            }
+        }
+        System.arraycopy(pending, 0, live, n, pendingCount);
+        rebuild(live, null);
+        pending = new Point[MIN_PENDING];
     }
 
     //////////////////////////////////////////////////////////
 
+    /**
+     * Returns the number of points in this tree.
+     *
+     * @return the number of points in this tree
+     */
+    public int size() {
+        return points.length - removedCount + pendingCount;
+    }
+
+    /**
+     * Adds a point to this tree. The point is searched linearly until the tree
+     * is rebuilt, which happens once the number of added points exceeds the
+     * square root of the size of the tree.
+     *
+     * @param value the point to add
+     * @return <code>true</code> unless the point is null
+     * @throws IllegalArgumentException if the point does not have the same
+     *             number of dimensions as the points of the tree
+     */
     public boolean add(final T value) {
         if (value == null) {
             return false;
         }
-
-        if (root == null) {
-            root = new KdNode(0, value);
-            return true;
+        if (size() == 0) {
+            k = value.getDimensions();
+        } else {
+            checkDimensions(value);
         }
 
-        KdNode node = root;
-        while (true) {
-            if (node.comparePoint(value) <= 0) {
-                if (node.lesser == null) {
-                    final KdNode newNode = new KdNode(node, value);
-                    node.lesser = newNode;
-                    break;
-                }
-                node = node.lesser;
-            } else {
-                if (node.greater == null) {
-                    final KdNode newNode = new KdNode(node, value);
-                    node.greater = newNode;
-                    break;
-                }
-                node = node.greater;
-            }
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount << 1);
+        }
+        pending[pendingCount++] = value;
+        if (pendingCount > Math.max(MIN_PENDING, (int) Math.sqrt(size()))) {
+            compact();
         }
-
         return true;
     }
 
+    /**
+     * Returns <code>true</code> if this tree contains a point equal to the
+     * specified point.
+     *
+     * @param value the point to look for
+     * @return <code>true</code> if this tree contains the point
+     */
     public boolean contains(final T value) {
-        if (value == null) {
+        if (value == null || value.getDimensions() != k) {
             return false;
         }
-
-        final KdNode node = getNode(value);
-        return node != null;
+        return indexOf(value, coordinates(value), 0, points.length, 0) >= 0 || pendingIndexOf(value) >= 0;
     }
 
+    /**
+     * Removes a point equal to the specified point from this tree. The tree is
+     * rebuilt once half of its points have been removed.
+     *
+     * @param value the point to remove
+     * @return <code>true</code> if the tree contained the point
+     */
     public boolean remove(final T value) {
-        if (value == null) {
+        if (value == null || value.getDimensions() != k) {
             return false;
         }
 
-        final KdNode node = getNode(value);
-        if (node == null) {
+        final int p = pendingIndexOf(value);
+        if (p >= 0) {
+            pending[p] = pending[--pendingCount];
+            pending[pendingCount] = null;
+            return true;
+        }
+        final int index = indexOf(value, coordinates(value), 0, points.length, 0);
+        if (index < 0) {
             return false;
         }
-
-        final KdNode parent = node.parent;
-        if (parent != null) {
-            if (parent.lesser != null && node.equals(parent.lesser)) {
-                final T[] nodes = getTree(node);
-                if (nodes.length > 0) {
-                    parent.lesser = createNode(nodes, node.depth);
-                    if (parent.lesser != null) {
-                        parent.lesser.parent = parent;
-                    }
-                } else {
-                    parent.lesser = null;
-                }
-            } else {
-                final T[] nodes = getTree(node);
-                if (nodes.length > 0) {
-                    parent.greater = createNode(nodes, node.depth);
-                    if (parent.greater != null) {
-                        parent.greater.parent = parent;
-                    }
-                } else {
-                    parent.greater = null;
-                }
-            }
-        } else {
-            final T[] nodes = getTree(node);
-            if (nodes.length > 0) {
-                root = createNode(nodes, node.depth);
-            } else {
-                root = null;
-            }
+        removed[index >>> 6] |= 1L << index;
+        if (++removedCount > points.length >>> 1) {
+            compact();
         }
-
         return true;
     }
 
+    /**
+     * Returns the point of this tree nearest to the specified point.
+     *
+     * @param value the point whose nearest neighbour is to be found
+     * @return the nearest point, or <code>null</code> if the tree is empty
+     */
     public T findNearest(final T value) {
-        return findNearest(value, 1).iterator().next();
+        if (value == null) {
+            return null;
+        }
+        return query().findNearest(value);
     }
 
+    /**
+     * Returns the <code>numToFind</code> points of this tree nearest to the
+     * specified point, from the nearest to the farthest. Points at the same
+     * distance are returned in no particular order. Repeated searches should
+     * go through a {@link #query()} context, which does not allocate.
+     *
+     * @param value the point whose nearest neighbours are to be found
+     * @param numToFind the number of points to find
+     * @return the nearest points, fewer than <code>numToFind</code> if the tree
+     *         has fewer points, or <code>null</code> if the point is null
+     */
     public Collection<T> findNearest(final T value, final int numToFind) {
         if (value == null) {
             return null;
         }
-
-        // Map used for results
-        final TreeSet<KdNode> results = new TreeSet<KdNode>(new EuclideanComparator(value));
-
-        // Find the closest leaf node
-        KdNode prev = null;
-        KdNode node = root;
-        while (node != null) {
-            if (node.comparePoint(value) < 0) {
-                prev = node;
-                node = node.greater;
-            } else {
-                prev = node;
-                node = node.lesser;
-            }
+        final Query query = query();
+        final int found = query.findNearest(value, numToFind);
+        final List<T> collection = new ArrayList<T>(found);
+        for (int i = 0; i < found; i++) {
+            collection.add(query.get(i));
         }
-        final KdNode leaf = prev;
-
-        if (leaf != null) {
-            // Used to not re-examine nodes
-            final Set<KdNode> examined = new HashSet<KdNode>();
+        return collection;
+    }
 
-            // Go up the tree, looking for better solutions
-            node = leaf;
-            while (node != null) {
-                // Search node
-                searchNode(value, node, numToFind, results, examined);
-                node = node.parent;
-            }
+    /**
+     * Finds the <code>numToFind</code> points of this tree nearest to each of
+     * the specified points, on a new pool with as many threads as there are
+     * processors.
+     *
+     * @param queries the points whose nearest neighbours are to be found
+     * @param numToFind the number of points to find for each query
+     * @return the nearest points of each query, from the nearest to the
+     *         farthest, in the order of the queries
+     * @throws IllegalArgumentException if a query does not have the same
+     *             number of dimensions as the points of the tree
+     * @see #findNearestAll(Point[], int, ForkJoinPool)
+     */
+    public List<List<T>> findNearestAll(final T[] queries, final int numToFind) {
+        final ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return findNearestAll(queries, numToFind, pool);
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        // Load up the collection of the results
-        final Collection<T> collection = new ArrayList<T>(numToFind);
-        for (final KdNode kdNode : results) {
-            collection.add(kdNode.point);
+    /**
+     * Finds the <code>numToFind</code> points of this tree nearest to each of
+     * the specified points, on a fork-join pool. The queries are split into
+     * tasks of 64 queries, and each task searches its queries through a
+     * single {@link Query} context, which is released when the task ends, so
+     * the allocations are the contexts and the result lists. The tree must not
+     * be modified until this method returns.
+     *
+     * @param queries the points whose nearest neighbours are to be found
+     * @param numToFind the number of points to find for each query
+     * @param pool the pool to search on, or <code>null</code> to search on the
+     *            calling thread
+     * @return the nearest points of each query, from the nearest to the
+     *         farthest, in the order of the queries
+     * @throws IllegalArgumentException if a query does not have the same
+     *             number of dimensions as the points of the tree
+     */
+    public List<List<T>> findNearestAll(final T[] queries, final int numToFind, final ForkJoinPool pool) {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final List<T>[] results = new List[queries.length];
+        final NearestTask task = new NearestTask(queries, numToFind, results, 0, queries.length);
+        if (pool == null) {
+            task.search(0, queries.length);
+        } else {
+            pool.invoke(task);
         }
-        return collection;
+        return Arrays.asList(results);
     }
 
-    private final void searchNode(final T value, final KdNode node, final int numToSearch, final TreeSet<KdNode> results, final Set<KdNode> examined) {
-        examined.add(node);
-
-        // Search node
-        KdNode lastNode = null;
-        double lastDistance = Double.MAX_VALUE;
-        if (results.size() > 0) {
-            lastNode = results.last();
-            lastDistance = dist(lastNode.point, value);
+    /**
+     * Invokes the visitor with each point of this tree whose distance to the
+     * specified point is at most <code>radius</code>, in no particular order.
+     * Subtrees are skipped when their splitting plane is farther than the
+     * radius from the point.
+     *
+     * @param point the center of the sphere to search
+     * @param radius the radius of the sphere to search
+     * @param visitor the visitor to invoke with the points found
+     * @return the number of points found
+     * @throws IllegalArgumentException if the radius is negative or NaN, or
+     *             if the point does not have the same number of dimensions as
+     *             the points of the tree
+     */
+    public int findWithinRadius(final Point point, final double radius, final KdTreeVisitor<? super T> visitor) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Illegal radius: " + radius);
         }
-        final double nodeDistance = dist(node.point, value);
-        if (Double.compare(nodeDistance, lastDistance) < 0) {
-            if (results.size() == numToSearch && lastNode != null) {
-                results.remove(lastNode);
+        if (size() == 0) {
+            return 0;
+        }
+        checkDimensions(point);
+        final double[] center = coordinates(point);
+        final double radiusSquared = radius * radius;
+        int count = searchRadius(center, radius, radiusSquared, 0, points.length, 0, visitor);
+        for (int i = 0; i < pendingCount; i++) {
+            if (dist(center, pending[i]) <= radiusSquared) {
+                visit(visitor, pending[i]);
+                count++;
             }
-            results.add(node);
-        } else if (Double.compare(nodeDistance, lastDistance) == 0) {
-            results.add(node);
-        } else if (results.size() < numToSearch) {
-            results.add(node);
         }
-        lastNode = results.last();
-        lastDistance = dist(lastNode.point, value);
-
-        final int axis = node.depth % k;
-        final KdNode lesser = node.lesser;
-        final KdNode greater = node.greater;
-
-        // Search children branches, if axis aligned distance is less than current distance
-        if (lesser != null && !examined.contains(lesser)) {
-            examined.add(lesser);
+        return count;
+    }
 
-            final double p1 = node.point.get(axis);
-            final double p2 = value.get(axis) - lastDistance;
-            final boolean intersects = p2 <= p1;
+    /**
+     * Returns the number of points of this tree whose distance to the
+     * specified point is at most <code>radius</code>.
+     *
+     * @param point the center of the sphere to search
+     * @param radius the radius of the sphere to search
+     * @return the number of points found
+     * @throws IllegalArgumentException if the radius is negative or NaN, or
+     *             if the point does not have the same number of dimensions as
+     *             the points of the tree
+     */
+    public int countWithinRadius(final Point point, final double radius) {
+        return findWithinRadius(point, radius, null);
+    }
 
-            // Continue down lesser branch
-            if (intersects) {
-                searchNode(value, lesser, numToSearch, results, examined);
+    /**
+     * Invokes the visitor with each point of this tree inside the
+     * axis-aligned box between <code>min</code> and <code>max</code>,
+     * boundaries included, in no particular order. Subtrees are skipped when
+     * their splitting plane leaves them outside the box.
+     *
+     * @param min the corner of the box with the lowest coordinates
+     * @param max the corner of the box with the highest coordinates
+     * @param visitor the visitor to invoke with the points found
+     * @return the number of points found
+     * @throws IllegalArgumentException if the corners do not have the same
+     *             number of dimensions as the points of the tree
+     */
+    public int findInBox(final Point min, final Point max, final KdTreeVisitor<? super T> visitor) {
+        if (size() == 0) {
+            return 0;
+        }
+        checkDimensions(min);
+        checkDimensions(max);
+        final double[] low = coordinates(min);
+        final double[] high = coordinates(max);
+        int count = searchBox(low, high, 0, points.length, 0, visitor);
+        for (int i = 0; i < pendingCount; i++) {
+            if (inBox(low, high, pending[i])) {
+                visit(visitor, pending[i]);
+                count++;
             }
         }
-        if (greater != null && !examined.contains(greater)) {
-            examined.add(greater);
+        return count;
+    }
 
-            final double p1 = node.point.get(axis);
-            final double p2 = value.get(axis) + lastDistance;
-            final boolean intersects = p2 >= p1;
+    /**
+     * Returns the number of points of this tree inside the axis-aligned box
+     * between <code>min</code> and <code>max</code>, boundaries included.
+     *
+     * @param min the corner of the box with the lowest coordinates
+     * @param max the corner of the box with the highest coordinates
+     * @return the number of points found
+     * @throws IllegalArgumentException if the corners do not have the same
+     *             number of dimensions as the points of the tree
+     */
+    public int countInBox(final Point min, final Point max) {
+        return findInBox(min, max, null);
+    }
 
-            // Continue down greater branch
-            if (intersects) {
-                searchNode(value, greater, numToSearch, results, examined);
+    private int searchRadius(final double[] center, final double radius, final double radiusSquared, int lo,
+            final int hi, int axis, final KdTreeVisitor<? super T> visitor) {
+        int count = 0;
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (!isRemoved(mid) && dist(center, points[mid]) <= radiusSquared) {
+                visit(visitor, points[mid]);
+                count++;
             }
+            final double split = splits[mid];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (center[axis] - radius <= split) {
+                count += searchRadius(center, radius, radiusSquared, lo, mid, next, visitor);
+            }
+            if (center[axis] + radius < split) {
+                break;
+            }
+            lo = mid + 1;
+            axis = next;
         }
+        return count;
     }
 
-    ////////////////////////////////////////////////////////////////////
-
-    private final KdNode getNode(final T value) {
-        if (root == null || value == null) {
-            return null;
+    private int searchBox(final double[] low, final double[] high, int lo, final int hi, int axis,
+            final KdTreeVisitor<? super T> visitor) {
+        int count = 0;
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (!isRemoved(mid) && inBox(low, high, points[mid])) {
+                visit(visitor, points[mid]);
+                count++;
+            }
+            final double split = splits[mid];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (low[axis] <= split) {
+                count += searchBox(low, high, lo, mid, next, visitor);
+            }
+            if (high[axis] < split) {
+                break;
+            }
+            lo = mid + 1;
+            axis = next;
         }
+        return count;
+    }
 
-        KdNode node = root;
-        while (true) {
-            if (node.point.equals(value)) {
-                return node;
-            } else if (node.comparePoint(value) < 0) {
-                if (node.greater == null) {
-                    return null;
-                }
-                node = node.greater;
-            } else {
-                if (node.lesser == null) {
-                    return null;
-                }
-                node = node.lesser;
+    private boolean inBox(final double[] low, final double[] high, final Point point) {
+        for (int i = 0; i < k; i++) {
+            final double c = point.get(i);
+            if (c < low[i] || c > high[i]) {
+                return false;
             }
         }
+        return true;
     }
 
     @SuppressWarnings("unchecked")
-    private final T[] getTree(final KdNode root) {
-        if (root == null) {
-            return (T[]) new Object[0];
+    private void visit(final KdTreeVisitor<? super T> visitor, final Point point) {
+        if (visitor != null) {
+            visitor.visit((T) point);
         }
-        final List<T> list = getTreeList(root);
-        return (T[]) list.toArray(new Object[list.size()]);
     }
 
-    private final List<T> getTreeList(final KdNode root) {
-        final List<T> list = new ArrayList<T>();
+    /**
+     * Returns a new search context over this tree. A context keeps the
+     * scratch space and the results of its searches, so that searching again
+     * through the same context allocates nothing once its arrays have grown
+     * to the number of points searched for. A context must not be shared
+     * between threads, but each thread can search the same tree through its
+     * own context as long as the tree is not modified.
+     *
+     * @return a new search context
+     */
+    public Query query() {
+        return new Query();
+    }
 
-        if (root.lesser != null) {
-            list.add(root.lesser.point);
-            list.addAll(getTreeList(root.lesser));
-        }
-        if (root.greater != null) {
-            list.add(root.greater.point);
-            list.addAll(getTreeList(root.greater));
+    ////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the index of a point of the subtree over <code>[lo, hi)</code>
+     * which is equal to the specified point and not removed, or -1. Points
+     * with the same coordinate as the splitting point may be on either side.
+     */
+    private int indexOf(final Point value, final double[] coords, int lo, int hi, int axis) {
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (!isRemoved(mid) && points[mid].equals(value)) {
+                return mid;
+            }
+            final double split = splits[mid];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (coords[axis] < split) {
+                hi = mid;
+            } else if (coords[axis] > split) {
+                lo = mid + 1;
+            } else {
+                final int index = indexOf(value, coords, lo, mid, next);
+                if (index >= 0) {
+                    return index;
+                }
+                lo = mid + 1;
+            }
+            axis = next;
         }
+        return -1;
+    }
 
-        return list;
+    private int pendingIndexOf(final Point value) {
+        for (int i = 0; i < pendingCount; i++) {
+            if (pending[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     //////////////////////////////////////////////////////////
-    double dist(final Point p1, final Point p2) {
+    double dist(final double[] p1, final Point p2) {
         double d = 0.0;
         for (int i = 0; i < k; i++) {
-            final double a1 = p1.get(i);
-            final double a2 = p2.get(i);
-            final double da = a2 - a1;
+            final double da = p2.get(i) - p1[i];
             d += da * da;
         }
         return d;
     }
 
-    class KdNode {
-        final int depth;
+    /**
+     * Builds the subtree over a range, and forks the builds of its lesser and
+     * greater subtrees while they are large enough.
+     */
+    private final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        final T point;
+        private final int lo;
 
-        KdNode lesser, greater;
+        private final int hi;
 
-        KdNode parent;
+        private final int axis;
 
-        public KdNode(final int depth, final T point) {
-            this.depth = depth;
-            this.point = point;
-        }
+        private final double[] keys;
 
-        public KdNode(final KdNode parent, final T point) {
-            this(parent.depth + 1, point);
+        BuildTask(final int lo, final int hi, final int axis, final double[] keys) {
+            this.lo = lo;
+            this.hi = hi;
+            this.axis = axis;
+            this.keys = keys;
         }
 
-        public int comparePoint(final T that) {
-            final int axis = depth % k;
-            final double a1 = point.get(axis);
-            final double a2 = that.get(axis);
-            return a1 > a2 ? 1 : a1 < a2 ? -1 : 0;
+        @Override
+        protected void compute() {
+            if (hi - lo < PARALLEL_BUILD_CUTOFF) {
+                build(lo, hi, axis, keys);
+                return;
+            }
+            final int mid = selectRoot(lo, hi, axis, keys);
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            invokeAll(new BuildTask(lo, mid, next, keys), new BuildTask(mid + 1, hi, next, keys));
         }
     }
 
-    class EuclideanComparator implements Comparator<KdNode> {
-        private Point point = null;
+    /**
+     * Splits a range of queries in halves until a batch is left, and searches
+     * the batch through a context of its own.
+     */
+    private final class NearestTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T[] queries;
 
-        public EuclideanComparator(final Point point) {
-            this.point = point;
+        private final int numToFind;
+
+        private final List<T>[] results;
+
+        private final int lo;
+
+        private final int hi;
+
+        NearestTask(final T[] queries, final int numToFind, final List<T>[] results, final int lo, final int hi) {
+            this.queries = queries;
+            this.numToFind = numToFind;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
         }
 
         @Override
-        public int compare(final KdNode o1, final KdNode o2) {
-            final double d1 = dist(point, o1.point);
-            final double d2 = dist(point, o2.point);
-            return Double.compare(d1, d2);
+        protected void compute() {
+            if (hi - lo <= QUERY_BATCH) {
+                search(lo, hi);
+                return;
+            }
+            final int mid = lo + hi >>> 1;
+            invokeAll(new NearestTask(queries, numToFind, results, lo, mid), new NearestTask(queries, numToFind,
+                    results, mid, hi));
+        }
+
+        void search(final int from, final int to) {
+            final Query query = query();
+            for (int i = from; i < to; i++) {
+                final int found = query.findNearest(queries[i], numToFind);
+                final List<T> nearest = new ArrayList<T>(found);
+                for (int j = 0; j < found; j++) {
+                    nearest.add(query.get(j));
+                }
+                results[i] = nearest;
+            }
+        }
+    }
+
+    /**
+     * Search context of a tree, returned by {@link KdTree#query()}. The
+     * results of a search stay available until the next search through the
+     * same context, and are not affected by later modifications of the tree.
+     * <pre>
+     * KdTree&lt;T&gt;.Query q = tree.query();
+     * for (T point : queries) {
+     *     for (int i = 0, n = q.findNearest(point, 10); i &lt; n; i++) {
+     *         use(q.get(i), q.squaredDistance(i));
+     *     }
+     * }
+     * </pre>
+     */
+    public final class Query {
+        private double[] coords = new double[k];
+
+        /**
+         * Max-heap on the squared distances of the results, and the indices
+         * of the results in the tree, or past its end in the added points.
+         */
+        private double[] distances = new double[0];
+
+        private int[] indices = new int[0];
+
+        private Point[] results = new Point[0];
+
+        private int count;
+
+        private int numToFind;
+
+        Query() {
+        }
+
+        /**
+         * Finds the point of the tree nearest to the specified point.
+         *
+         * @param value the point whose nearest neighbour is to be found
+         * @return the nearest point, or <code>null</code> if the tree is empty
+         * @throws IllegalArgumentException if the point does not have the
+         *             same number of dimensions as the points of the tree
+         */
+        public T findNearest(final T value) {
+            return findNearest(value, 1) == 0 ? null : get(0);
+        }
+
+        /**
+         * Finds the <code>numToFind</code> points of the tree nearest to the
+         * specified point, which can then be read with {@link #get(int)},
+         * from the nearest to the farthest.
+         *
+         * @param value the point whose nearest neighbours are to be found
+         * @param numToFind the number of points to find
+         * @return the number of points found, fewer than
+         *         <code>numToFind</code> if the tree has fewer points
+         * @throws IllegalArgumentException if the point does not have the
+         *             same number of dimensions as the points of the tree
+         */
+        public int findNearest(final T value, final int numToFind) {
+            count = 0;
+            final int size = KdTree.this.size();
+            if (numToFind <= 0 || size == 0) {
+                return 0;
+            }
+            checkDimensions(value);
+            if (coords.length != k) {
+                coords = new double[k];
+            }
+            for (int i = 0; i < k; i++) {
+                coords[i] = value.get(i);
+            }
+            final int capacity = Math.min(numToFind, size);
+            if (distances.length < capacity) {
+                distances = new double[capacity];
+                indices = new int[capacity];
+                results = new Point[capacity];
+            }
+            this.numToFind = capacity;
+
+            searchNode(0, points.length, 0);
+            for (int i = 0; i < pendingCount; i++) {
+                offer(dist(coords, pending[i]), points.length + i);
+            }
+            sortResults();
+            return count;
+        }
+
+        /**
+         * Searches the subtree over the range <code>[lo, hi)</code>,
+         * descending first on the side of the splitting plane where the query
+         * lies, and then on the other side only if the plane is nearer than
+         * the farthest result.
+         */
+        private void searchNode(final int lo, final int hi, final int axis) {
+            if (lo >= hi) {
+                return;
+            }
+            final int mid = lo + hi >>> 1;
+            if (!isRemoved(mid)) {
+                offer(dist(coords, points[mid]), mid);
+            }
+
+            final double diff = coords[axis] - splits[mid];
+            final int next = axis + 1 == k ? 0 : axis + 1;
+            if (diff <= 0) {
+                searchNode(lo, mid, next);
+                if (count < numToFind || diff * diff < distances[0]) {
+                    searchNode(mid + 1, hi, next);
+                }
+            } else {
+                searchNode(mid + 1, hi, next);
+                if (count < numToFind || diff * diff < distances[0]) {
+                    searchNode(lo, mid, next);
+                }
+            }
+        }
+
+        /**
+         * Adds a result to the heap if it is not full, or replaces the
+         * farthest result if the new one is nearer.
+         */
+        private void offer(final double distance, final int index) {
+            if (count < numToFind) {
+                int i = count++;
+                while (i > 0) {
+                    final int parent = i - 1 >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    distances[i] = distances[parent];
+                    indices[i] = indices[parent];
+                    i = parent;
+                }
+                distances[i] = distance;
+                indices[i] = index;
+            } else if (distance < distances[0]) {
+                siftDown(distance, index, count);
+            }
+        }
+
+        /**
+         * Puts a result at the root of the heap of the specified size and
+         * moves it down to its place.
+         */
+        private void siftDown(final double distance, final int index, final int size) {
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                distances[i] = distances[child];
+                indices[i] = indices[child];
+                i = child;
+            }
+            distances[i] = distance;
+            indices[i] = index;
+        }
+
+        /**
+         * Sorts the heap from the nearest to the farthest result, and resolves
+         * the points of the results.
+         */
+        private void sortResults() {
+            for (int size = count - 1; size > 0; size--) {
+                final double distance = distances[size];
+                final int index = indices[size];
+                distances[size] = distances[0];
+                indices[size] = indices[0];
+                siftDown(distance, index, size);
+            }
+            for (int i = 0; i < count; i++) {
+                final int index = indices[i];
+                results[i] = index < points.length ? points[index] : pending[index - points.length];
+            }
+            for (int i = count; i < results.length && results[i] != null; i++) {
+                results[i] = null;
+            }
+        }
+
+        /**
+         * Returns the number of points found by the last search.
+         *
+         * @return the number of results
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Returns a point found by the last search.
+         *
+         * @param i the rank of the point, 0 for the nearest
+         * @return the point
+         * @throws IndexOutOfBoundsException if <code>i</code> is not less than
+         *             {@link #size()}
+         */
+        @SuppressWarnings("unchecked")
+        public T get(final int i) {
+            checkIndex(i);
+            return (T) results[i];
+        }
+
+        /**
+         * Returns the squared distance between the point searched for and a
+         * point found by the last search.
+         *
+         * @param i the rank of the point, 0 for the nearest
+         * @return the squared Euclidean distance
+         * @throws IndexOutOfBoundsException if <code>i</code> is not less than
+         *             {@link #size()}
+         */
+        public double squaredDistance(final int i) {
+            checkIndex(i);
+            return distances[i];
+        }
+
+        private void checkIndex(final int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+            }
         }
     }
 }
@@ -0,0 +1,15 @@
+package com.ivan.utils.space.kdtree;
+
+/**
+ * Callback which receives the indices of the points found by the range
+ * queries of {@link DoubleKdTree} and {@link FloatKdTree}, one at a time,
+ * without collecting them first.
+ */
+public interface KdTreeIndexVisitor {
+    /**
+     * Invoked for each point found.
+     *
+     * @param index the index in the input of a point found by the query
+     */
+    void visit(int index);
+}
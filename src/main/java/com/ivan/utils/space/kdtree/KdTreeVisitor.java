@@ -0,0 +1,19 @@
+package com.ivan.utils.space.kdtree;
+
+import com.ivan.utils.space.Point;
+
+/**
+ * Callback which receives the points found by the range queries of
+ * {@link KdTree}, one at a time, without collecting them first.
+ *
+ * @param <T> the type of the points
+ */
+public interface KdTreeVisitor<T extends Point> {
+    /**
+     * Invoked for each point found. The tree must not be modified until the
+     * query returns.
+     *
+     * @param point a point found by the query
+     */
+    void visit(T point);
+}
@@ -0,0 +1,75 @@
+package com.ivan.utils.collections.map;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentIntMapTest {
+	static final int THREADS = 8;
+
+	static final int KEYS = 200000;
+
+	public static void main(final String[] args) throws InterruptedException {
+		// a tiny initial capacity forces every segment to resize repeatedly while the threads run
+		final ConcurrentIntMap<Integer> map = new ConcurrentIntMap<Integer>(2, 0.75f, 4);
+		final AtomicInteger computations = new AtomicInteger();
+		final AtomicInteger lostUpdates = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < KEYS; i++) {
+						// shared keys: every thread computes, only one computation may win
+						map.computeIfAbsent(i, new IntFunction<Integer>() {
+							@Override
+							public Integer apply(final int key) {
+								computations.incrementAndGet();
+								return key;
+							}
+						});
+						// private keys: each thread owns the keys congruent to its id
+						final int own = -1 - (i * THREADS + id);
+						map.put(own, 0);
+						for (int n = 1; n <= 3; n++) {
+							if (!map.replace(own, n - 1, n)) {
+								lostUpdates.incrementAndGet();
+							}
+						}
+						if ((i & 1) == 0 && !map.remove(own, 3)) {
+							lostUpdates.incrementAndGet();
+						}
+						if (map.putIfAbsent(i, -1) == null) {
+							lostUpdates.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		System.out.println("computeIfAbsent() invocations: " + computations.get() + " (expected " + KEYS + ")");
+		System.out.println("lost updates                 : " + lostUpdates.get() + " (expected 0)");
+		System.out.println("size()                       : " + map.size() + " (expected " + (KEYS + KEYS * THREADS / 2) + ")");
+		System.out.println("keys().length                : " + map.keys().length);
+		boolean ok = true;
+		for (int i = 0; i < KEYS; i++) {
+			ok &= map.get(i) == i;
+		}
+		for (int i = 0; i < KEYS * THREADS; i++) {
+			final Integer v = map.get(-1 - i);
+			ok &= (i / THREADS & 1) == 0 ? v == null : v == 3;
+		}
+		System.out.println("contents as expected         : " + ok);
+	}
+}
@@ -0,0 +1,56 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class FrozenIntMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(29);
+		for (final int size : new int[] { 0, 1, 2, 3, 5, 100, 4099, 1000000 }) {
+			final IntMap<String> m = new IntMap<String>();
+			while (m.size() < size) {
+				final int key = m.size() < 3 && size > 3 ? new int[] { 0, Integer.MIN_VALUE, Integer.MAX_VALUE }[m.size()]
+						: rnd.nextInt();
+				m.put(key, m.size() % 7 == 0 ? null : Integer.toString(key));
+			}
+			final long start = System.nanoTime();
+			final FrozenIntMap<String> f = m.freeze();
+			final long elapsed = System.nanoTime() - start;
+
+			int mismatches = 0;
+			for (final int key : m.keys()) {
+				final String expected = m.get(key);
+				mismatches += f.containsKey(key) && (expected == null ? f.get(key) == null : expected.equals(f.get(key)))
+						? 0 : 1;
+			}
+			int falsePositives = 0;
+			for (int i = 0; i < 100000; i++) {
+				final int key = rnd.nextInt();
+				if (!m.containsKey(key) && (f.containsKey(key) || f.get(key) != null)) {
+					falsePositives++;
+				}
+			}
+			final int[] keys = f.keys();
+			final int[] expectedKeys = m.keys();
+			Arrays.sort(keys);
+			Arrays.sort(expectedKeys);
+			System.out.println(String.format("%8d mappings: frozen in %6.1f ms, size() %s, keys() %s, mismatches %d,"
+					+ " false positives %d, toIntMap() %s", size, elapsed / 1e6, f.size() == size ? "ok" : "WRONG",
+					Arrays.equals(keys, expectedKeys) ? "ok" : "WRONG", mismatches, falsePositives,
+					f.toIntMap().keySet().equals(m.keySet()) ? "ok" : "WRONG"));
+		}
+
+		System.out.println("FrozenLongMap with keys that differ only in their high bits");
+		final LongMap<Long> lm = new LongMap<Long>();
+		for (int i = 0; i < 100000; i++) {
+			lm.put((long) i << 40, (long) i);
+		}
+		final FrozenLongMap<Long> lf = lm.freeze();
+		int mismatches = 0;
+		for (int i = 0; i < 200000; i++) {
+			final Long value = lf.get((long) i << 40);
+			mismatches += i < 100000 ? value != null && value == i ? 0 : 1 : value == null ? 0 : 1;
+		}
+		System.out.println("  size() = " + lf.size() + ", mismatches: " + mismatches);
+	}
+}
@@ -0,0 +1,135 @@
+package com.ivan.utils.collections.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class IntLruCacheTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(23);
+		final int maxSize = 1000;
+		final List<Integer> evicted = new ArrayList<Integer>();
+		final List<Integer> expectedEvicted = new ArrayList<Integer>();
+		final IntLruCache<Integer> cache = new IntLruCache<Integer>(maxSize, new IntObjectProcedure<Integer>() {
+			@Override
+			public void apply(final int key, final Integer value) {
+				evicted.add(key);
+			}
+		});
+		final Map<Integer, Integer> ref = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Integer, Integer> eldest) {
+				if (size() > maxSize) {
+					expectedEvicted.add(eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+
+		System.out.println("random get()/put()/remove() against an access-ordered LinkedHashMap, " + maxSize
+				+ " entries, keys in [-1500, 1500)");
+		long hits = 0;
+		long misses = 0;
+		for (int i = 0; i < 1000000; i++) {
+			final int key = rnd.nextInt(3000) - 1500;
+			final int op = rnd.nextInt(10);
+			if (op < 5) {
+				final Integer expected = ref.get(key);
+				if (expected == null) {
+					misses++;
+				} else {
+					hits++;
+				}
+				check("get(" + key + ")", expected, cache.get(key));
+			} else if (op < 9) {
+				check("put(" + key + ")", ref.put(key, i), cache.put(key, i));
+			} else {
+				check("remove(" + key + ")", ref.remove(key), cache.remove(key));
+			}
+		}
+		compare(ref, cache);
+		System.out.println("  evictions match: " + evicted.equals(expectedEvicted) + " (" + cache.evictionCount()
+				+ "), hits: " + (cache.hitCount() == hits) + ", misses: " + (cache.missCount() == misses));
+
+		System.out.println("peek() and containsKey() leave the recency order alone");
+		final int[] before = cache.keys();
+		for (int i = 0; i < 1000; i++) {
+			cache.peek(before[rnd.nextInt(before.length)]);
+			cache.containsKey(rnd.nextInt(3000) - 1500);
+		}
+		System.out.println("  order unchanged: " + Arrays.equals(before, cache.keys()) + ", hits unchanged: "
+				+ (cache.hitCount() == hits));
+
+		System.out.println("weight-bounded cache of strings, at most 100 characters");
+		final IntLruCache<String> strings = new IntLruCache<String>(1000, 100, new Weigher<String>() {
+			@Override
+			public int weigh(final String value) {
+				return value.length();
+			}
+		}, null);
+		for (int i = 0; i < 100; i++) {
+			strings.put(i, Integer.toString(i * 1000));
+		}
+		System.out.println("  size() = " + strings.size() + ", weight() = " + strings.weight() + ": " + strings);
+		strings.put(-1, "0123456789012345678901234567890123456789012345678901234567890123456789");
+		System.out.println("  after a 70 character value: size() = " + strings.size() + ", weight() = "
+				+ strings.weight() + ": " + strings);
+		strings.put(-2, "too heavy to be kept by this cache, too heavy to be kept by this cache, too heavy to be kept by this cache");
+		System.out.println("  after a value heavier than the cache: size() = " + strings.size() + ", weight() = "
+				+ strings.weight() + ", containsKey(-2) = " + strings.containsKey(-2));
+
+		System.out.println("LongLruCache with keys that differ only in their high bits");
+		final LongLruCache<Long> longs = new LongLruCache<Long>(500);
+		final Map<Long, Long> lref = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, Long> eldest) {
+				return size() > 500;
+			}
+		};
+		int mismatches = 0;
+		for (int i = 0; i < 200000; i++) {
+			final long key = (long) rnd.nextInt(1000) << 40;
+			if (rnd.nextBoolean()) {
+				final Long expected = lref.get(key);
+				final Long actual = longs.get(key);
+				mismatches += expected == null ? actual == null ? 0 : 1 : expected.equals(actual) ? 0 : 1;
+			} else {
+				lref.put(key, (long) i);
+				longs.put(key, (long) i);
+			}
+		}
+		final long[] lkeys = longs.keys();
+		final Iterator<Long> it = lref.keySet().iterator();
+		for (int i = lkeys.length - 1; i >= 0; i--) {
+			mismatches += it.next() == lkeys[i] ? 0 : 1;
+		}
+		System.out.println("  size() = " + longs.size() + ", mismatches: " + mismatches + ", hit rate: "
+				+ longs.hitRate());
+	}
+
+	private static void check(final String op, final Integer expected, final Integer actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			System.out.println("  ERROR: " + op + " returned " + actual + ", expected " + expected);
+		}
+	}
+
+	private static void compare(final Map<Integer, Integer> ref, final IntLruCache<Integer> cache) {
+		// LinkedHashMap iterates from the least to the most recently used
+		final int[] keys = new int[ref.size()];
+		int i = keys.length;
+		for (final int key : ref.keySet()) {
+			keys[--i] = key;
+		}
+		System.out.println("  size() = " + cache.size() + ", expected " + ref.size() + "; recency order matches: "
+				+ Arrays.equals(keys, cache.keys()));
+	}
+}
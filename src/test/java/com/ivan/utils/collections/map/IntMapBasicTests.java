@@ -125,6 +125,29 @@ public class IntMapBasicTests {
 		System.out.println("  get()     : " + toStringGet(m));
 		System.out.println("  entrySet(): " + toStringEntrySet(m));
 
+		final int[] batchKeys = new int[100];
+		final String[] batchValues = new String[100];
+		for (int i = 0; i < batchKeys.length; i++) {
+			batchKeys[i] = i * 7 % 130;
+			batchValues[i] = "b" + i;
+		}
+		batchKeys[99] = batchKeys[0];
+		m.putAll(batchKeys, batchValues);
+		System.out.println();
+		System.out.println("after putAll(int[], V[]) with 99 distinct keys and a duplicate:");
+		System.out.println("  size()    : " + m.size());
+		System.out.println("  get()     : " + toStringGet(m));
+
+		final String[] out = new String[batchKeys.length];
+		m.getAll(batchKeys, out);
+		boolean match = true;
+		for (int i = 0; i < batchKeys.length; i++) {
+			match &= out[i] == m.get(batchKeys[i]);
+		}
+		System.out.println("  getAll() matches get() ? " + match);
+		System.out.println("  containsAll(batch)         ? " + m.containsAll(batchKeys));
+		System.out.println("  containsAll(batch + 1000)  ? " + m.containsAll(new int[] { 0, 7, 1000 }));
+
 		System.out.println();
 		final Map<Integer, String> toMap = m.asMap();
 		System.out.println("toMap(): " + toMap);
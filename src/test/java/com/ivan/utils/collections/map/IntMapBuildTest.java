@@ -0,0 +1,109 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Random;
+
+public class IntMapBuildTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(12345);
+		final int n = 500000;
+		final int[] keys = new int[n];
+		final Integer[] values = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			// about a fifth of the keys repeat
+			keys[i] = rnd.nextInt(n * 2);
+			values[i] = i;
+		}
+		final IntMap<Integer> expected = new IntMap<Integer>();
+		for (int i = 0; i < n; i++) {
+			expected.put(keys[i], values[i]);
+		}
+
+		System.out.println(n + " random keys, last wins");
+		for (final int parallelism : new int[] { 1, 2, 4 }) {
+			final long start = System.nanoTime();
+			final IntMap<Integer> built = IntMap.build(keys, values, parallelism);
+			final long time = System.nanoTime() - start;
+			System.out.println("  parallelism " + parallelism + ": size() " + built.size() + ", expected "
+					+ expected.size() + "; equal " + sameMappings(expected, built) + "; " + time / 1000000 + " ms");
+		}
+
+		System.out.println("duplicates rejected");
+		for (final int parallelism : new int[] { 1, 4 }) {
+			try {
+				IntMap.build(keys, values, parallelism, DuplicateKeyPolicy.REJECT);
+				System.out.println("  parallelism " + parallelism + ": no exception (wrong)");
+			} catch (final IllegalArgumentException e) {
+				System.out.println("  parallelism " + parallelism + ": " + e.getMessage() + ", expected "
+						+ firstDuplicate(keys));
+			}
+		}
+		final int[] distinct = new int[n];
+		for (int i = 0; i < n; i++) {
+			distinct[i] = i * 7;
+		}
+		final IntMap<Integer> rejected = IntMap.build(distinct, values, 4, DuplicateKeyPolicy.REJECT);
+		System.out.println("  distinct keys: size() " + rejected.size() + ", expected " + n + "; get(21) "
+				+ rejected.get(21) + ", expected 3");
+
+		System.out.println("small input");
+		final IntMap<String> small = IntMap.build(new int[] { 1, 2, 1 }, new String[] { "a", "b", "c" }, 4);
+		System.out.println("  " + small + ", expected {1=c, 2=b} in any order");
+		System.out.println("  empty: " + IntMap.build(new int[0], new String[0], 2));
+
+		System.out.println("illegal arguments");
+		try {
+			IntMap.build(new int[2], new String[1], 1);
+			System.out.println("  lengths: no exception (wrong)");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  lengths: " + e.getMessage());
+		}
+		try {
+			IntMap.build(new int[1], new String[1], 0);
+			System.out.println("  parallelism: no exception (wrong)");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  parallelism: " + e.getMessage());
+		}
+
+		System.out.println("LongMap, last wins");
+		final long[] longKeys = new long[n];
+		final LongMap<Integer> expectedLong = new LongMap<Integer>();
+		for (int i = 0; i < n; i++) {
+			longKeys[i] = (long) keys[i] << 32 | i & 3;
+			expectedLong.put(longKeys[i], values[i]);
+		}
+		final LongMap<Integer> builtLong = LongMap.build(longKeys, values, 4);
+		boolean equal = builtLong.size() == expectedLong.size();
+		for (int i = 0; i < n && equal; i++) {
+			equal = expectedLong.get(longKeys[i]).equals(builtLong.get(longKeys[i]));
+		}
+		System.out.println("  size() " + builtLong.size() + ", expected " + expectedLong.size() + "; equal " + equal);
+		try {
+			LongMap.build(new long[] { 5L << 40, 6, 5L << 40 }, new String[3], 2, DuplicateKeyPolicy.REJECT);
+			System.out.println("  reject: no exception (wrong)");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  reject: " + e.getMessage() + ", expected " + (5L << 40));
+		}
+	}
+
+	private static boolean sameMappings(final IntMap<Integer> expected, final IntMap<Integer> actual) {
+		if (expected.size() != actual.size()) {
+			return false;
+		}
+		for (final int key : expected.keys()) {
+			if (!expected.get(key).equals(actual.get(key))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int firstDuplicate(final int[] keys) {
+		final IntSet seen = new IntSet();
+		for (final int key : keys) {
+			if (!seen.add(key)) {
+				return key;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,138 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import com.ivan.utils.time.Stopwatch;
+
+public class IntMapCursorTest {
+	static long sum;
+
+	public static void main(final String[] args) {
+		final Random rnd = new Random(5);
+		final IntMap<Integer> m = new IntMap<Integer>(4);
+		final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		for (int i = 0; i < 100000; i++) {
+			final int key = rnd.nextInt(50000) - 25000;
+			m.put(key, i);
+			ref.put(key, i);
+		}
+
+		System.out.println("removing a random half through the cursor, doubling the rest with setValue()");
+		for (final IntMap<Integer>.Cursor c = m.cursor(); c.advance();) {
+			if (rnd.nextBoolean()) {
+				ref.remove(c.key());
+				c.remove();
+			} else {
+				ref.put(c.key(), c.value() * 2);
+				c.setValue(c.value() * 2);
+			}
+		}
+		compare(ref, m);
+
+		System.out.println("removeIf() on odd keys, replaceAll() adding the key");
+		m.removeIf(new IntObjectPredicate<Integer>() {
+			@Override
+			public boolean evaluate(final int key, final Integer value) {
+				return (key & 1) != 0;
+			}
+		});
+		m.replaceAll(new IntObjectTransformer<Integer>() {
+			@Override
+			public Integer transform(final int key, final Integer value) {
+				return value + key;
+			}
+		});
+		for (final Iterator<Map.Entry<Integer, Integer>> it = ref.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<Integer, Integer> e = it.next();
+			if ((e.getKey() & 1) != 0) {
+				it.remove();
+			} else {
+				e.setValue(e.getValue() + e.getKey());
+			}
+		}
+		compare(ref, m);
+
+		System.out.println("modifying the map during a cursor walk");
+		try {
+			final IntMap<Integer>.Cursor c = m.cursor();
+			c.advance();
+			m.put(Integer.MIN_VALUE, 0);
+			c.advance();
+			System.out.println("  no exception");
+		} catch (final java.util.ConcurrentModificationException e) {
+			System.out.println("  ConcurrentModificationException");
+		}
+
+		System.out.println();
+		System.out.println("walking 1000000 mappings 20 times:");
+		final IntMap<Integer> big = new IntMap<Integer>();
+		for (int i = 0; i < 1000000; i++) {
+			big.put(i * 7, i);
+		}
+		final IntObjectProcedure<Integer> adder = new IntObjectProcedure<Integer>() {
+			@Override
+			public void apply(final int key, final Integer value) {
+				sum += key;
+			}
+		};
+		for (int pass = 0; pass < 2; pass++) {
+			long before = allocatedBytes();
+			final Stopwatch sw = new Stopwatch();
+			sw.start();
+			for (int r = 0; r < 20; r++) {
+				for (final int key : big.keySet()) {
+					sum += key;
+				}
+			}
+			report(pass, "keySet()  ", sw, before);
+
+			before = allocatedBytes();
+			sw.restart();
+			for (int r = 0; r < 20; r++) {
+				for (final IntMap<Integer>.Cursor c = big.cursor(); c.advance();) {
+					sum += c.key();
+				}
+			}
+			report(pass, "cursor()  ", sw, before);
+
+			before = allocatedBytes();
+			sw.restart();
+			for (int r = 0; r < 20; r++) {
+				big.forEach(adder);
+			}
+			report(pass, "forEach() ", sw, before);
+		}
+		System.out.println("  (checksum " + sum + ")");
+	}
+
+	private static void report(final int pass, final String name, final Stopwatch sw, final long before) {
+		final long time = sw.timeElapsed();
+		final long allocated = allocatedBytes() - before;
+		if (pass > 0) {
+			System.out.println("  " + name + ": " + time + " ms, " + allocated / 1024 + " KB allocated");
+		}
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void compare(final Map<Integer, Integer> ref, final IntMap<Integer> m) {
+		boolean ok = ref.size() == m.size();
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			ok &= e.getValue().equals(m.get(e.getKey()));
+		}
+		int visited = 0;
+		for (final IntMap<Integer>.Cursor c = m.cursor(); c.advance();) {
+			ok &= c.value().equals(ref.get(c.key()));
+			visited++;
+		}
+		ok &= visited == ref.size();
+		System.out.println("  size() = " + m.size() + ", matches reference: " + ok);
+	}
+}
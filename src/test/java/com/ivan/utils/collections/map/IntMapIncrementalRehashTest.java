@@ -0,0 +1,105 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IntMapIncrementalRehashTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(37);
+		final IntMap<Integer> m = new IntMap<Integer>();
+		m.setIncrementalRehash(true);
+		final HashMap<Integer, Integer> ref = new HashMap<Integer, Integer>();
+
+		System.out.println("random put()/remove()/get() against HashMap while growing to 200000 keys");
+		int mismatches = 0;
+		for (int i = 0; i < 2000000; i++) {
+			final int key = rnd.nextInt(i / 8 + 16) * 65537;
+			switch (rnd.nextInt(8)) {
+			case 0:
+			case 1:
+				mismatches += same(ref.remove(key), m.remove(key));
+				break;
+			case 2:
+				mismatches += same(ref.get(key), m.get(key)) + (ref.containsKey(key) == m.containsKey(key) ? 0 : 1);
+				break;
+			default:
+				mismatches += same(ref.put(key, i), m.put(key, i));
+			}
+			if (m.size() != ref.size()) {
+				mismatches++;
+			}
+		}
+		System.out.println("  mismatches: " + mismatches + ", size() = " + m.size() + ", expected " + ref.size());
+
+		System.out.println("batched lookups and iteration in the middle of a migration");
+		final IntMap<Integer> g = new IntMap<Integer>();
+		g.setIncrementalRehash(true);
+		final HashMap<Integer, Integer> gref = new HashMap<Integer, Integer>();
+		// 12 keys fill the default table: the 12th starts a migration
+		for (int i = 0; i < 12 << 10; i++) {
+			g.put(i, i);
+			gref.put(i, i);
+		}
+		final int[] keys = new int[1000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i * 12;
+		}
+		final Integer[] out = new Integer[keys.length];
+		g.getAll(keys, out);
+		mismatches = 0;
+		for (int i = 0; i < keys.length; i++) {
+			mismatches += same(gref.get(keys[i]), out[i]);
+		}
+		System.out.println("  getAll() mismatches: " + mismatches + ", containsAll() " + g.containsAll(keys)
+				+ ", containsAll() with a missing key " + g.containsAll(new int[] { 5, -1 }));
+		final int[] gkeys = g.keys();
+		Arrays.sort(gkeys);
+		final int[] expected = new int[gref.size()];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = i;
+		}
+		System.out.println("  keys() match: " + Arrays.equals(expected, gkeys));
+		int removed = 0;
+		for (final IntMap<Integer>.Cursor c = g.cursor(); c.advance();) {
+			final int key = c.key();
+			if (key % 3 == 0) {
+				c.remove();
+				gref.remove(key);
+				removed++;
+			}
+		}
+		mismatches = 0;
+		for (final Map.Entry<Integer, Integer> e : gref.entrySet()) {
+			mismatches += same(e.getValue(), g.get(e.getKey()));
+		}
+		System.out.println("  cursor removed " + removed + ", size() = " + g.size() + ", expected " + gref.size()
+				+ ", mismatches: " + mismatches);
+
+		System.out.println("LongMap with keys that differ only in their high bits");
+		final LongMap<Long> lm = new LongMap<Long>();
+		lm.setIncrementalRehash(true);
+		final HashMap<Long, Long> lref = new HashMap<Long, Long>();
+		mismatches = 0;
+		for (int i = 0; i < 300000; i++) {
+			final long key = (long) i << 40;
+			lm.put(key, (long) i);
+			lref.put(key, (long) i);
+			if (i % 3 == 0) {
+				final long old = (long) (i / 2) << 40;
+				mismatches += lref.remove(old).equals(lm.remove(old)) ? 0 : 1;
+			}
+		}
+		for (int i = 0; i < 300000; i++) {
+			final Long expectedValue = lref.get((long) i << 40);
+			final Long value = lm.get((long) i << 40);
+			mismatches += expectedValue == null ? value == null ? 0 : 1 : expectedValue.equals(value) ? 0 : 1;
+		}
+		System.out.println("  size() = " + lm.size() + ", expected " + lref.size() + ", mismatches: " + mismatches);
+	}
+
+	private static int same(final Integer expected, final Integer actual) {
+		return expected == null ? actual == null ? 0 : 1 : expected.equals(actual) ? 0 : 1;
+	}
+}
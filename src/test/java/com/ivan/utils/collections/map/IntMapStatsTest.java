@@ -0,0 +1,67 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+
+public class IntMapStatsTest {
+	public static void main(final String[] args) {
+		System.out.println("empty map");
+		System.out.println("  " + new IntMap<Object>().stats());
+
+		System.out.println("1000000 sequential keys");
+		final IntMap<Object> seq = new IntMap<Object>();
+		for (int i = 0; i < 1000000; i++) {
+			seq.put(i, null);
+		}
+		MapStats stats = seq.stats();
+		System.out.println("  " + stats);
+		System.out.println("  histogram " + Arrays.toString(stats.chainLengthHistogram()));
+
+		System.out.println("100000 keys that are multiples of 2^20, with each hash spreader");
+		for (final HashSpreader spreader : HashSpreader.values()) {
+			final IntMap<Object> strided = new IntMap<Object>(16, 0.75f, spreader);
+			for (int i = 0; i < 100000; i++) {
+				strided.put(i << 20, null);
+			}
+			stats = strided.stats();
+			System.out.println("  " + spreader + ": maxChainLength() " + stats.maxChainLength() + ", meanChainLength() "
+					+ stats.meanChainLength() + ", emptyBucketRatio() " + stats.emptyBucketRatio());
+		}
+
+		System.out.println("lookup counters");
+		seq.get(1);
+		seq.setRecordStats(true);
+		for (int i = 0; i < 1500; i++) {
+			seq.get(i * 1000);
+		}
+		seq.containsKey(-1);
+		stats = seq.stats();
+		System.out.println("  lookupCount() " + stats.lookupCount() + ", expected 1501; missCount() "
+				+ stats.missCount() + ", expected 501");
+		seq.resetStats();
+		seq.setRecordStats(false);
+		seq.get(-2);
+		System.out.println("  after resetStats(): lookupCount() " + seq.stats().lookupCount() + ", expected 0");
+
+		System.out.println("incremental rehash in progress");
+		final IntMap<Object> incr = new IntMap<Object>();
+		incr.setIncrementalRehash(true);
+		for (int i = 0; i < 12 << 10; i++) {
+			incr.put(i, null);
+		}
+		stats = incr.stats();
+		int counted = 0;
+		final int[] histogram = stats.chainLengthHistogram();
+		for (int i = 0; i < histogram.length; i++) {
+			counted += i * histogram[i];
+		}
+		System.out.println("  " + stats);
+		System.out.println("  mappings in the histogram: " + counted + ", expected " + incr.size());
+
+		final LongMap<Object> lm = new LongMap<Object>();
+		for (int i = 0; i < 1000; i++) {
+			lm.put((long) i << 32, null);
+		}
+		System.out.println("LongMap with keys that differ only in their high bits");
+		System.out.println("  " + lm.stats());
+	}
+}
@@ -0,0 +1,145 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class IntMultiMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(42);
+		final IntMultiMap<String> m = new IntMultiMap<String>();
+		final Map<Integer, List<String>> ref = new HashMap<Integer, List<String>>();
+
+		System.out.println("random add()/removeAll() on IntMultiMap against HashMap<Integer, List<String>>");
+		for (int i = 0; i < 300000; i++) {
+			// a few keys collect thousands of values, most only a handful
+			final int key = rnd.nextInt(4) == 0 ? rnd.nextInt(16) : rnd.nextInt(20000) - 10000;
+			if (rnd.nextInt(50) == 0) {
+				final List<String> old = ref.remove(key);
+				final int removed = m.removeAll(key);
+				if (removed != (old == null ? 0 : old.size())) {
+					System.out.println("  MISMATCH on removeAll(" + key + "): " + removed);
+				}
+			} else {
+				List<String> list = ref.get(key);
+				if (list == null) {
+					ref.put(key, list = new ArrayList<String>());
+				}
+				list.add("v" + i);
+				if (m.add(key, "v" + i) != list.size()) {
+					System.out.println("  MISMATCH on add(" + key + ")");
+				}
+			}
+		}
+		System.out.println("  size() = " + m.size() + ", valueCount() = " + m.valueCount() + ", matches reference: "
+				+ matches(ref, m));
+		System.out.println("  arenaSize() = " + m.arenaSize());
+		m.compact();
+		System.out.println("  after compact(): arenaSize() = " + m.arenaSize() + ", matches reference: "
+				+ matches(ref, m));
+		for (int i = 0; i < 1000; i++) {
+			final int key = rnd.nextInt(16);
+			if (!ref.containsKey(key)) {
+				ref.put(key, new ArrayList<String>());
+			}
+			ref.get(key).add("w" + i);
+			m.add(key, "w" + i);
+		}
+		System.out.println("  adding after compact(), matches reference: " + matches(ref, m));
+
+		System.out.println("get(key, index)");
+		final IntMultiMap<String> small = new IntMultiMap<String>();
+		small.add(0, "a");
+		small.add(0, "b");
+		small.add(7, "c");
+		System.out.println("  " + small + ", get(0, 1) = " + small.get(0, 1) + ", valueCount(8) = " + small.valueCount(8));
+		try {
+			small.get(7, 1);
+			System.out.println("  get(7, 1): no exception (wrong)");
+		} catch (final IndexOutOfBoundsException e) {
+			System.out.println("  get(7, 1): " + e.getMessage());
+		}
+		small.clear();
+		System.out.println("  after clear(): " + small + ", arenaSize() = " + small.arenaSize());
+
+		System.out.println("IntIntMultiMap as an adjacency list of 100000 vertices");
+		final IntIntMultiMap graph = new IntIntMultiMap(1 << 17);
+		final long[] expectedSums = new long[100000];
+		for (int i = 0; i < 1000000; i++) {
+			final int from = rnd.nextInt(100000);
+			final int to = rnd.nextInt(100000);
+			graph.add(from, to);
+			expectedSums[from] += to;
+		}
+		final long[] sum = new long[1];
+		final IntIntProcedure adder = new IntIntProcedure() {
+			@Override
+			public void apply(final int key, final int value) {
+				sum[0] += value;
+			}
+		};
+		boolean ok = true;
+		for (int v = 0; v < 100000; v++) {
+			sum[0] = 0;
+			graph.forEachValue(v, adder);
+			ok &= sum[0] == expectedSums[v];
+		}
+		System.out.println("  valueCount() = " + graph.valueCount() + ", neighbour sums match: " + ok);
+		final long before = allocatedBytes();
+		for (int v = 0; v < 100000; v++) {
+			graph.forEachValue(v, adder);
+		}
+		System.out.println("  bytes allocated by 100000 forEachValue() calls: " + (allocatedBytes() - before));
+		System.out.println("  arenaSize() = " + graph.arenaSize() + ", after compact() = " + compacted(graph));
+
+		System.out.println("LongMultiMap and LongIntMultiMap");
+		final LongMultiMap<Integer> lm = new LongMultiMap<Integer>();
+		final LongIntMultiMap lim = new LongIntMultiMap();
+		for (int i = 0; i < 100000; i++) {
+			final long key = (long) (i % 1000) << 40;
+			lm.add(key, i);
+			lim.add(key, i);
+		}
+		lm.removeAll(5L << 40);
+		lim.removeAll(5L << 40);
+		lm.compact();
+		System.out.println("  size() = " + lm.size() + " and " + lim.size() + ", expected 999; valueCount(3L << 40) = "
+				+ lm.valueCount(3L << 40) + " and " + lim.valueCount(3L << 40) + ", expected 100; get(3L << 40, 99) = "
+				+ lm.get(3L << 40, 99) + " and " + lim.get(3L << 40, 99) + ", expected 99003");
+	}
+
+	private static boolean matches(final Map<Integer, List<String>> ref, final IntMultiMap<String> m) {
+		boolean ok = ref.size() == m.size();
+		long values = 0;
+		for (final Map.Entry<Integer, List<String>> e : ref.entrySet()) {
+			final List<String> expected = e.getValue();
+			final int key = e.getKey();
+			values += expected.size();
+			ok &= m.valueCount(key) == expected.size();
+			for (int i = 0; i < expected.size() && ok; i++) {
+				ok &= expected.get(i).equals(m.get(key, i));
+			}
+		}
+		final List<String> visited = new ArrayList<String>();
+		m.forEach(new IntObjectProcedure<String>() {
+			@Override
+			public void apply(final int key, final String value) {
+				visited.add(value);
+			}
+		});
+		return ok && values == m.valueCount() && visited.size() == values;
+	}
+
+	private static long compacted(final IntIntMultiMap m) {
+		m.compact();
+		return m.arenaSize();
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
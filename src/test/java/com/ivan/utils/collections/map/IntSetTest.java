@@ -0,0 +1,95 @@
+package com.ivan.utils.collections.map;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+public class IntSetTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(11);
+		final IntSet s = new IntSet();
+		final Set<Integer> ref = new HashSet<Integer>();
+
+		System.out.println("random add()/remove() against HashSet, elements clustered in [-512, 512)");
+		for (int i = 0; i < 1000000; i++) {
+			final int key = rnd.nextInt(1024) - 512;
+			if (rnd.nextInt(3) == 0) {
+				check("remove(" + key + ")", ref.remove(key), s.remove(key));
+			} else {
+				check("add(" + key + ")", ref.add(key), s.add(key));
+			}
+		}
+		compare(ref, s);
+
+		System.out.println("addAll(int[]) with 100000 multiples of 1024");
+		final int[] multiples = new int[100000];
+		for (int i = 0; i < multiples.length; i++) {
+			multiples[i] = i << 10;
+			ref.add(i << 10);
+		}
+		s.addAll(multiples);
+		compare(ref, s);
+
+		System.out.println("retainAll() with a random set, removeAll() with a smaller and a larger set");
+		final IntSet other = new IntSet();
+		for (int i = 0; i < 60000; i++) {
+			other.add(rnd.nextInt(100000) << 10);
+			other.add(rnd.nextInt(1024) - 512);
+		}
+		check("retainAll()", ref.retainAll(other.asSet()), s.retainAll(other));
+		compare(ref, s);
+		final IntSet small = new IntSet(new int[] { 0, 1024, 2048, -1, 7 });
+		check("removeAll(small)", ref.removeAll(small.asSet()), s.removeAll(small));
+		compare(ref, s);
+		final IntSet large = new IntSet();
+		for (int i = 0; i < 200000; i++) {
+			large.add(rnd.nextInt(200000) << 10);
+		}
+		check("removeAll(large)", ref.removeAll(large.asSet()), s.removeAll(large));
+		compare(ref, s);
+
+		System.out.println("removing odd elements through the asSet() iterator");
+		for (final Iterator<Integer> it = s.asSet().iterator(); it.hasNext();) {
+			final int key = it.next();
+			if ((key & 1) != 0) {
+				it.remove();
+				ref.remove(key);
+			}
+		}
+		compare(ref, s);
+		System.out.println("  asSet().equals(reference): " + s.asSet().equals(ref) + ", hashCode() matches: "
+				+ (s.hashCode() == ref.hashCode()));
+
+		System.out.println("LongSet with keys that differ only in their high bits");
+		final LongSet ls = new LongSet();
+		final Set<Long> lref = new HashSet<Long>();
+		for (int i = 0; i < 100000; i++) {
+			final long key = (long) rnd.nextInt(50000) << 40;
+			if (rnd.nextInt(4) == 0) {
+				check("remove(" + key + ")", lref.remove(key), ls.remove(key));
+			} else {
+				check("add(" + key + ")", lref.add(key), ls.add(key));
+			}
+		}
+		System.out.println("  size() = " + ls.size() + ", asSet().equals(reference): " + ls.asSet().equals(lref)
+				+ ", hashCode() matches: " + (ls.hashCode() == lref.hashCode()));
+	}
+
+	private static void check(final String op, final boolean expected, final boolean actual) {
+		if (expected != actual) {
+			System.out.println("  MISMATCH on " + op + ": expected " + expected + ", got " + actual);
+		}
+	}
+
+	private static void compare(final Set<Integer> ref, final IntSet s) {
+		boolean ok = ref.size() == s.size() && s.toArray().length == ref.size();
+		for (final int key : ref) {
+			ok &= s.contains(key);
+		}
+		for (final int key : s.toArray()) {
+			ok &= ref.contains(key);
+		}
+		System.out.println("  size() = " + s.size() + ", matches reference: " + ok);
+	}
+}
@@ -0,0 +1,244 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class IntTreeMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(17);
+		final IntTreeMap<Integer> m = new IntTreeMap<Integer>();
+		final TreeMap<Integer, Integer> ref = new TreeMap<Integer, Integer>();
+
+		System.out.println("random put()/remove() against TreeMap, keys in [0, 20000)");
+		for (int i = 0; i < 1000000; i++) {
+			final int key = rnd.nextInt(20000);
+			if (rnd.nextInt(5) < 2) {
+				check("remove(" + key + ")", ref.remove(key), m.remove(key));
+			} else {
+				check("put(" + key + ")", ref.put(key, i), m.put(key, i));
+			}
+		}
+		compare(ref, m);
+		checkNavigation(ref, m, rnd, 20000);
+
+		System.out.println("removing every key in random order");
+		final int[] keys = m.keys();
+		shuffle(keys, rnd);
+		for (final int key : keys) {
+			check("remove(" + key + ")", ref.remove(key), m.remove(key));
+		}
+		compare(ref, m);
+		checkNavigation(ref, m, rnd, 20000);
+
+		System.out.println("bulk load of 100000 sorted keys spread over the whole int range, then updates");
+		final int[] sorted = new int[100000];
+		final Integer[] values = new Integer[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = Integer.MIN_VALUE + i * 42949;
+			values[i] = i;
+			ref.put(sorted[i], i);
+		}
+		final IntTreeMap<Integer> bulk = new IntTreeMap<Integer>(sorted, values);
+		compare(ref, bulk);
+		for (int i = 0; i < 200000; i++) {
+			final int key = sorted[rnd.nextInt(sorted.length)] + rnd.nextInt(3) - 1;
+			if (rnd.nextBoolean()) {
+				check("remove(" + key + ")", ref.remove(key), bulk.remove(key));
+			} else {
+				check("put(" + key + ")", ref.put(key, -i), bulk.put(key, -i));
+			}
+		}
+		compare(ref, bulk);
+		checkNavigation(ref, bulk, rnd, Integer.MAX_VALUE);
+
+		System.out.println("subMap(), headMap(), tailMap() cursors and forEach()");
+		for (int i = 0; i < 200; i++) {
+			int from = rnd.nextInt();
+			int to = rnd.nextInt();
+			if (from > to) {
+				final int t = from;
+				from = to;
+				to = t;
+			}
+			checkRange("subMap(" + from + ", " + to + ")", ref.subMap(from, to), bulk.subMap(from, to));
+			checkRange("headMap(" + to + ")", ref.headMap(to), bulk.headMap(to));
+			checkRange("tailMap(" + from + ")", ref.tailMap(from), bulk.tailMap(from));
+		}
+
+		System.out.println("setValue() through a cursor, fail-fast cursor after put()");
+		for (final IntTreeMap<Integer>.Cursor c = bulk.subMap(0, 1000000000).cursor(); c.advance();) {
+			c.setValue(c.key());
+			ref.put(c.key(), c.key());
+		}
+		compare(ref, bulk);
+		final IntTreeMap<Integer>.Cursor c = bulk.cursor();
+		c.advance();
+		bulk.put(12345, 0);
+		try {
+			c.advance();
+			System.out.println("  ERROR: advance() after put() did not throw");
+		} catch (final ConcurrentModificationException e) {
+			System.out.println("  advance() after put() threw ConcurrentModificationException");
+		}
+
+		try {
+			new IntTreeMap<Integer>(new int[] { 1, 3, 2 }, new Integer[3]);
+			System.out.println("  ERROR: unsorted bulk load did not throw");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  unsorted bulk load threw IllegalArgumentException");
+		}
+
+		System.out.println("LongTreeMap with keys that differ only in their high bits");
+		final LongTreeMap<Long> lm = new LongTreeMap<Long>();
+		final TreeMap<Long, Long> lref = new TreeMap<Long, Long>();
+		for (int i = 0; i < 300000; i++) {
+			final long key = (long) (rnd.nextInt(50000) - 25000) << 40;
+			if (rnd.nextInt(4) == 0) {
+				checkLong("remove(" + key + ")", lref.remove(key), lm.remove(key));
+			} else {
+				checkLong("put(" + key + ")", lref.put(key, (long) i), lm.put(key, (long) i));
+			}
+		}
+		final long[] lkeys = new long[lref.size()];
+		int i = 0;
+		for (final long key : lref.keySet()) {
+			lkeys[i++] = key;
+		}
+		System.out.println("  size() = " + lm.size() + ", keys() match: " + Arrays.equals(lkeys, lm.keys()));
+		int mismatches = 0;
+		for (int j = 0; j < 10000; j++) {
+			final long key = (long) (rnd.nextInt(50000) - 25000) << 40 | rnd.nextInt(3) - 1;
+			final Long floor = lref.floorKey(key);
+			final Long ceiling = lref.ceilingKey(key);
+			if (floor != null && floor != lm.floorKey(key) || ceiling != null && ceiling != lm.ceilingKey(key)) {
+				mismatches++;
+			}
+		}
+		final long from = -1L << 50;
+		final long to = 1L << 50;
+		final long[] sub = lm.subMap(from, to).keys();
+		System.out.println("  floorKey()/ceilingKey() mismatches: " + mismatches + ", subMap() keys match: "
+				+ (sub.length == lref.subMap(from, to).size()));
+	}
+
+	private static void checkNavigation(final NavigableMap<Integer, Integer> ref, final IntTreeMap<Integer> m,
+			final Random rnd, final int bound) {
+		int mismatches = 0;
+		for (int i = 0; i < 100000; i++) {
+			final int key = bound == Integer.MAX_VALUE ? rnd.nextInt() : rnd.nextInt(bound + 2) - 1;
+			mismatches += same(ref.floorKey(key), new Query() {
+				@Override
+				int run() {
+					return m.floorKey(key);
+				}
+			});
+			mismatches += same(ref.lowerKey(key), new Query() {
+				@Override
+				int run() {
+					return m.lowerKey(key);
+				}
+			});
+			mismatches += same(ref.ceilingKey(key), new Query() {
+				@Override
+				int run() {
+					return m.ceilingKey(key);
+				}
+			});
+			mismatches += same(ref.higherKey(key), new Query() {
+				@Override
+				int run() {
+					return m.higherKey(key);
+				}
+			});
+			mismatches += ref.containsKey(key) == m.containsKey(key) ? 0 : 1;
+		}
+		mismatches += same(ref.isEmpty() ? null : ref.firstKey(), new Query() {
+			@Override
+			int run() {
+				return m.firstKey();
+			}
+		});
+		mismatches += same(ref.isEmpty() ? null : ref.lastKey(), new Query() {
+			@Override
+			int run() {
+				return m.lastKey();
+			}
+		});
+		System.out.println("  floor/lower/ceiling/higher/first/last/containsKey mismatches: " + mismatches);
+	}
+
+	private abstract static class Query {
+		abstract int run();
+	}
+
+	private static int same(final Integer expected, final Query query) {
+		try {
+			final int actual = query.run();
+			return expected != null && expected == actual ? 0 : 1;
+		} catch (final NoSuchElementException e) {
+			return expected == null ? 0 : 1;
+		}
+	}
+
+	private static void checkRange(final String op, final Map<Integer, Integer> expected,
+			final IntTreeMap<Integer>.SubMap view) {
+		final int[] keys = new int[expected.size()];
+		int i = 0;
+		for (final int key : expected.keySet()) {
+			keys[i++] = key;
+		}
+		final int[] seen = new int[keys.length + 1];
+		final int[] n = new int[1];
+		view.forEach(new IntObjectProcedure<Integer>() {
+			@Override
+			public void apply(final int key, final Integer value) {
+				if (n[0] < seen.length) {
+					seen[n[0]] = key;
+				}
+				n[0]++;
+			}
+		});
+		if (!Arrays.equals(keys, view.keys()) || view.size() != keys.length || n[0] != keys.length
+				|| !Arrays.equals(keys, Arrays.copyOf(seen, keys.length)) || view.isEmpty() != (keys.length == 0)) {
+			System.out.println("  ERROR: " + op + " has " + view.size() + " keys, expected " + keys.length);
+		}
+	}
+
+	private static void check(final String op, final Integer expected, final Integer actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			System.out.println("  ERROR: " + op + " returned " + actual + ", expected " + expected);
+		}
+	}
+
+	private static void checkLong(final String op, final Long expected, final Long actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			System.out.println("  ERROR: " + op + " returned " + actual + ", expected " + expected);
+		}
+	}
+
+	private static void compare(final TreeMap<Integer, Integer> ref, final IntTreeMap<Integer> m) {
+		final int[] keys = new int[ref.size()];
+		int i = 0;
+		boolean values = true;
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			keys[i++] = e.getKey();
+			values &= e.getValue().equals(m.get(e.getKey()));
+		}
+		System.out.println("  size() = " + m.size() + ", expected " + ref.size() + "; keys() in order: "
+				+ Arrays.equals(keys, m.keys()) + "; get() matches: " + values);
+	}
+
+	private static void shuffle(final int[] a, final Random rnd) {
+		for (int i = a.length - 1; i > 0; i--) {
+			final int j = rnd.nextInt(i + 1);
+			final int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
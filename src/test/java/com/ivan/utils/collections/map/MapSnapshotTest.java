@@ -0,0 +1,124 @@
+package com.ivan.utils.collections.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.ivan.utils.time.Stopwatch;
+
+public class MapSnapshotTest {
+	public static void main(final String[] args) throws IOException {
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		final Path intFile = Files.createTempFile("intmap", ".snapshot");
+		final Path longFile = Files.createTempFile("longmap", ".snapshot");
+		try {
+			final Random rnd = new Random(7);
+			final IntMap<String> im = new IntMap<String>();
+			final LongMap<Long> lm = new LongMap<Long>();
+			for (int i = 0; i < count; i++) {
+				final int key = rnd.nextInt();
+				im.put(key, "value " + key);
+				lm.put(key * 0x9E3779B97F4A7C15L, (long) i);
+			}
+			im.put(0, null);
+			im.put(-1, "");
+			lm.put(0, -1L);
+
+			System.out.println("IntMap<String> with " + im.size() + " mappings");
+			final Stopwatch sw = new Stopwatch();
+			sw.start();
+			im.writeTo(intFile, ValueCodecs.STRING);
+			System.out.println("  writeTo(): " + sw.timeElapsed() + " ms, " + Files.size(intFile) / 1024 + " KB");
+			sw.restart();
+			final MappedIntMap<String> mim = MappedIntMap.open(intFile, ValueCodecs.STRING);
+			System.out.println("  open()   : " + sw.timeElapsedNanos() / 1000 + " us");
+			boolean ok = mim.size() == im.size() && mim.keys().length == im.size();
+			for (final IntMap.Entry<String> e : im.entrySet()) {
+				final String v = mim.get(e.getKey());
+				ok &= mim.containsKey(e.getKey()) && (v == null ? e.getValue() == null : v.equals(e.getValue()));
+			}
+			for (int i = 0; i < 100000; i++) {
+				final int key = rnd.nextInt();
+				ok &= mim.containsKey(key) == im.containsKey(key);
+			}
+			ok &= mim.toIntMap().asMap().equals(im.asMap());
+			System.out.println("  contents as expected: " + ok + ", containsKey(0) = " + mim.containsKey(0) + ", get(0) = " + mim.get(0));
+			mim.close();
+			try {
+				mim.get(1);
+				System.out.println("  get() after close() did not throw");
+			} catch (final IllegalStateException e) {
+				System.out.println("  get() after close(): " + e.getMessage());
+			}
+
+			System.out.println("LongMap<Long> with " + lm.size() + " mappings");
+			sw.restart();
+			lm.writeTo(longFile, ValueCodecs.LONG);
+			System.out.println("  writeTo(): " + sw.timeElapsed() + " ms, " + Files.size(longFile) / 1024 + " KB");
+			sw.restart();
+			final MappedLongMap<Long> mlm = MappedLongMap.open(longFile, ValueCodecs.LONG);
+			System.out.println("  open()   : " + sw.timeElapsedNanos() / 1000 + " us");
+			ok = mlm.size() == lm.size();
+			for (final LongMap.Entry<Long> e : lm.entrySet()) {
+				ok &= e.getValue().equals(mlm.get(e.getKey()));
+			}
+			System.out.println("  contents as expected: " + ok);
+			mlm.close();
+
+			try {
+				MappedLongMap.open(intFile, ValueCodecs.LONG);
+				System.out.println("opening an IntMap snapshot as a LongMap did not fail");
+			} catch (final IOException e) {
+				System.out.println("opening an IntMap snapshot as a LongMap: " + e.getMessage().replace(intFile.toString(), "<file>"));
+			}
+
+			System.out.println("corrupt headers");
+			final IntMap<String> small = new IntMap<String>();
+			for (int i = 0; i < 100; i++) {
+				small.put(i, "v" + i);
+			}
+			small.writeTo(intFile, ValueCodecs.STRING);
+			final byte[] snapshot = Files.readAllBytes(intFile);
+			openCorrupt(intFile, snapshot, 4, 99, "version 99");
+			openCorrupt(intFile, snapshot, MapSnapshot.SPREADER_OFFSET, 99, "spreader 99");
+			openCorrupt(intFile, snapshot, MapSnapshot.CAPACITY_OFFSET, 3L, "capacity 3");
+			openCorrupt(intFile, snapshot, MapSnapshot.CAPACITY_OFFSET, 1L << 40, "capacity 2^40");
+			openCorrupt(intFile, snapshot, MapSnapshot.SIZE_OFFSET, 256L, "size 256 for capacity 256");
+			openCorrupt(intFile, snapshot, MapSnapshot.SIZE_OFFSET, -1L, "size -1");
+			Files.write(intFile, Arrays.copyOf(snapshot, MapSnapshot.HEADER_BYTES + 100));
+			try {
+				MappedIntMap.open(intFile, ValueCodecs.STRING).close();
+				System.out.println("  truncated index: no exception (wrong)");
+			} catch (final IOException e) {
+				System.out.println("  truncated index: " + e.getMessage().replace(intFile.toString(), "<file>"));
+			}
+		} finally {
+			Files.delete(intFile);
+			Files.delete(longFile);
+		}
+	}
+
+	/**
+	 * Opens a copy of the snapshot with an <code>int</code> or
+	 * <code>long</code> of its header replaced.
+	 */
+	private static void openCorrupt(final Path file, final byte[] snapshot, final int offset, final Number value,
+			final String description) throws IOException {
+		final ByteBuffer copy = ByteBuffer.wrap(snapshot.clone());
+		if (value instanceof Long) {
+			copy.putLong(offset, value.longValue());
+		} else {
+			copy.putInt(offset, value.intValue());
+		}
+		Files.write(file, copy.array());
+		try {
+			MappedIntMap.open(file, ValueCodecs.STRING).close();
+			System.out.println("  " + description + ": no exception (wrong)");
+		} catch (final IOException e) {
+			System.out.println("  " + description + ": " + e.getMessage().replace(file.toString(), "<file>"));
+		}
+	}
+}
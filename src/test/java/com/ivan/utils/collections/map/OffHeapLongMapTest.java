@@ -0,0 +1,96 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.ivan.utils.time.Stopwatch;
+
+public class OffHeapLongMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(99);
+		final OffHeapLongLongMap m = new OffHeapLongLongMap();
+		final LongLongMap ref = new LongLongMap();
+
+		System.out.println("random put()/remove()/addTo() on OffHeapLongLongMap against LongLongMap");
+		for (int i = 0; i < 2000000; i++) {
+			final long key = (rnd.nextInt(200000) - 1000) * 0x100000001L;
+			switch (rnd.nextInt(3)) {
+			case 0:
+				check("remove(" + key + ")", ref.remove(key), m.remove(key));
+				break;
+			case 1:
+				check("put(" + key + ")", ref.put(key, i), m.put(key, i));
+				break;
+			default:
+				check("addTo(" + key + ")", ref.addTo(key, 3, -7), m.addTo(key, 3, -7));
+			}
+		}
+		boolean ok = ref.size() == m.size();
+		final long[] keys = ref.keys();
+		final long[] values = ref.values();
+		for (int i = 0; i < keys.length; i++) {
+			ok &= m.containsKey(keys[i]) && m.get(keys[i]) == values[i];
+		}
+		System.out.println("  size() = " + m.size() + ", capacity() = " + m.capacity() + ", matches reference: " + ok);
+		m.trimToSize();
+		ok = true;
+		for (int i = 0; i < keys.length; i++) {
+			ok &= m.get(keys[i]) == values[i];
+		}
+		System.out.println("  after trimToSize(), capacity() = " + m.capacity() + ", matches reference: " + ok);
+		m.clear();
+		System.out.println("  after clear(), size() = " + m.size() + ", get(" + keys[0] + ") = " + m.get(keys[0]));
+		m.close();
+		try {
+			m.get(1);
+			System.out.println("  get() after close() did not throw");
+		} catch (final IllegalStateException e) {
+			System.out.println("  get() after close(): " + e.getMessage());
+		}
+
+		System.out.println();
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+		System.out.println("growing an OffHeapLongIntMap to " + count + " mappings from the default capacity");
+		final OffHeapLongIntMap im = new OffHeapLongIntMap();
+		final long gcBefore = gcCount();
+		final Stopwatch sw = new Stopwatch();
+		sw.start();
+		long maxStep = 0;
+		long last = sw.timeElapsedNanos();
+		for (int i = 0; i < count; i++) {
+			im.put(i * 0x9E3779B97F4A7C15L, i);
+			final long now = sw.timeElapsedNanos();
+			maxStep = Math.max(maxStep, now - last);
+			last = now;
+		}
+		final long elapsed = sw.timeElapsedNanos();
+		ok = true;
+		for (int i = 0; i < count; i++) {
+			ok &= im.get(i * 0x9E3779B97F4A7C15L) == i;
+		}
+		System.out.println("  " + elapsed / 1000000 + " ms, slowest put() " + maxStep / 1000 + " us, " + (gcCount() - gcBefore)
+				+ " collections, " + im.offHeapBytes() / (1024 * 1024) + " MB off-heap, heap used "
+				+ usedHeap() / (1024 * 1024) + " MB, contents as expected: " + ok);
+		im.close();
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += gc.getCollectionCount();
+		}
+		return count;
+	}
+
+	private static long usedHeap() {
+		final Runtime rt = Runtime.getRuntime();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	private static void check(final String op, final long expected, final long actual) {
+		if (expected != actual) {
+			System.out.println("  MISMATCH on " + op + ": expected " + expected + ", got " + actual);
+		}
+	}
+}
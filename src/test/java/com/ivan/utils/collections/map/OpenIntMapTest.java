@@ -0,0 +1,74 @@
+package com.ivan.utils.collections.map;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+public class OpenIntMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(1234);
+		final OpenIntMap<Integer> m = new OpenIntMap<Integer>();
+		final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+
+		System.out.println("random put()/remove() against HashMap, keys clustered in [-512, 512)");
+		for (int i = 0; i < 1000000; i++) {
+			final int key = rnd.nextInt(1024) - 512;
+			if (rnd.nextInt(3) == 0) {
+				check("remove(" + key + ")", ref.remove(key), m.remove(key));
+			} else {
+				check("put(" + key + ")", ref.put(key, i), m.put(key, i));
+			}
+		}
+		compare(ref, m);
+
+		System.out.println("removing odd keys through the key set iterator");
+		for (final Iterator<Integer> it = m.keySet().iterator(); it.hasNext();) {
+			final int key = it.next();
+			if ((key & 1) != 0) {
+				it.remove();
+				ref.remove(key);
+			}
+		}
+		compare(ref, m);
+
+		System.out.println("removing all mappings through the entry set iterator");
+		int count = 0;
+		for (final Iterator<IntMap.Entry<Integer>> it = m.entrySet().iterator(); it.hasNext();) {
+			final IntMap.Entry<Integer> e = it.next();
+			check("entry " + e.getKey(), ref.remove(e.getKey()), e.getValue());
+			it.remove();
+			count++;
+		}
+		System.out.println("  removed " + count + " mappings, size() = " + m.size() + ", reference size = " + ref.size());
+
+		System.out.println("put() 100000 multiples of 1024, trimToSize(), asMap() equality");
+		for (int i = 0; i < 100000; i++) {
+			m.put(i << 10, i);
+			ref.put(i << 10, i);
+		}
+		m.trimToSize();
+		compare(ref, m);
+		System.out.println("  asMap().equals(reference): " + m.asMap().equals(ref));
+	}
+
+	private static void check(final String op, final Integer expected, final Integer actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			System.out.println("  MISMATCH on " + op + ": expected " + expected + ", got " + actual);
+		}
+	}
+
+	private static void compare(final Map<Integer, Integer> ref, final OpenIntMap<Integer> m) {
+		boolean ok = ref.size() == m.size() && ref.size() == m.keys().length;
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			ok &= e.getValue().equals(m.get(e.getKey()));
+		}
+		int visited = 0;
+		for (final IntMap.Entry<Integer> e : m.entrySet()) {
+			ok &= e.getValue().equals(ref.get(e.getKey()));
+			visited++;
+		}
+		ok &= visited == ref.size();
+		System.out.println("  size() = " + m.size() + ", matches reference: " + ok);
+	}
+}
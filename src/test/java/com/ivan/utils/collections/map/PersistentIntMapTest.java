@@ -0,0 +1,141 @@
+package com.ivan.utils.collections.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PersistentIntMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(31);
+		final List<PersistentIntMap<Integer>> versions = new ArrayList<PersistentIntMap<Integer>>();
+		final List<Map<Integer, Integer>> expected = new ArrayList<Map<Integer, Integer>>();
+		final HashMap<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		PersistentIntMap<Integer> m = PersistentIntMap.empty();
+
+		System.out.println("random with()/without() against HashMap, keys in [0, 30000) and spread over the int range");
+		for (int i = 0; i < 1000000; i++) {
+			final int key = rnd.nextBoolean() ? rnd.nextInt(30000) : rnd.nextInt(30000) * 143165;
+			final boolean present = ref.containsKey(key);
+			final PersistentIntMap<Integer> next;
+			if (rnd.nextInt(5) < 2) {
+				ref.remove(key);
+				next = m.without(key);
+				if (!present && next != m) {
+					System.out.println("  ERROR: without(" + key + ") of a missing key returned a new version");
+				}
+			} else {
+				ref.put(key, i);
+				next = m.with(key, i);
+			}
+			m = next;
+			if (i % 100000 == 0) {
+				versions.add(m);
+				expected.add(new HashMap<Integer, Integer>(ref));
+			}
+		}
+		compare("  final version", ref, m);
+
+		System.out.println("old versions are unchanged");
+		for (int i = 0; i < versions.size(); i++) {
+			compare("  version " + i, expected.get(i), versions.get(i));
+		}
+
+		System.out.println("transient batch edits");
+		final PersistentIntMap<Integer> before = m;
+		final Map<Integer, Integer> beforeRef = new HashMap<Integer, Integer>(ref);
+		final PersistentIntMap.Transient<Integer> t = m.asTransient();
+		int mismatches = 0;
+		for (int i = 0; i < 300000; i++) {
+			final int key = rnd.nextInt(40000);
+			final Integer actual;
+			final Integer old;
+			if (rnd.nextInt(3) == 0) {
+				old = ref.remove(key);
+				actual = t.remove(key);
+			} else {
+				old = ref.put(key, -i);
+				actual = t.put(key, -i);
+			}
+			mismatches += (old == null ? actual == null : old.equals(actual)) ? 0 : 1;
+			mismatches += ref.containsKey(key) == t.containsKey(key) && t.size() == ref.size() ? 0 : 1;
+		}
+		System.out.println("  put()/remove() mismatches: " + mismatches);
+		final PersistentIntMap<Integer> after = t.persistent();
+		compare("  persistent()", ref, after);
+		compare("  source of the transient", beforeRef, before);
+		try {
+			t.put(1, 1);
+			System.out.println("  ERROR: put() after persistent() did not throw");
+		} catch (final IllegalStateException e) {
+			System.out.println("  put() after persistent() threw IllegalStateException");
+		}
+		compare("  edit of a persistent() result", ref, after.asTransient().persistent());
+
+		System.out.println("IntMap conversion");
+		final IntMap<Integer> im = after.toIntMap();
+		compare("  toIntMap()/from()", ref, PersistentIntMap.from(im));
+		System.out.println("  toIntMap() size " + im.size() + ", expected " + ref.size());
+
+		System.out.println("removing every key");
+		final Map<Integer, Integer> afterRef = new HashMap<Integer, Integer>(ref);
+		final int[] keys = after.keys();
+		PersistentIntMap<Integer> shrinking = after;
+		for (final int key : keys) {
+			ref.remove(key);
+			shrinking = shrinking.without(key);
+		}
+		compare("  emptied", ref, shrinking);
+		compare("  source of the removals", afterRef, after);
+
+		System.out.println("null values, toString()");
+		final PersistentIntMap<String> nulls = PersistentIntMap.<String> empty().with(7, null).with(-3, "x");
+		System.out.println("  containsKey(7) " + nulls.containsKey(7) + ", get(7) " + nulls.get(7) + ", size() "
+				+ nulls.size() + ", " + nulls);
+
+		System.out.println("PersistentLongMap with keys that differ only in their high bits");
+		PersistentLongMap<Long> lm = PersistentLongMap.empty();
+		final PersistentLongMap<Long> lempty = lm;
+		for (int i = 0; i < 100000; i++) {
+			lm = lm.with((long) i << 40, (long) i);
+		}
+		for (int i = 0; i < 100000; i += 2) {
+			lm = lm.without((long) i << 40);
+		}
+		mismatches = 0;
+		for (int i = 0; i < 200000; i++) {
+			final Long value = lm.get((long) i << 40);
+			mismatches += i < 100000 && i % 2 == 1 ? value != null && value == i ? 0 : 1 : value == null ? 0 : 1;
+		}
+		System.out.println("  size() = " + lm.size() + ", mismatches: " + mismatches + ", empty version size() = "
+				+ lempty.size());
+	}
+
+	private static void compare(final String label, final Map<Integer, Integer> ref,
+			final PersistentIntMap<Integer> m) {
+		int mismatches = 0;
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			mismatches += m.containsKey(e.getKey()) && e.getValue().equals(m.get(e.getKey())) ? 0 : 1;
+		}
+		final int[] keys = m.keys();
+		final int[] expectedKeys = new int[ref.size()];
+		int i = 0;
+		for (final int key : ref.keySet()) {
+			expectedKeys[i++] = key;
+		}
+		Arrays.sort(keys);
+		Arrays.sort(expectedKeys);
+		final int[] seen = new int[1];
+		m.forEach(new IntObjectProcedure<Integer>() {
+			@Override
+			public void apply(final int key, final Integer value) {
+				seen[0]++;
+			}
+		});
+		System.out.println(label + ": size() = " + m.size() + ", expected " + ref.size() + "; keys() "
+				+ (Arrays.equals(keys, expectedKeys) ? "ok" : "WRONG") + "; forEach() "
+				+ (seen[0] == ref.size() ? "ok" : "WRONG") + "; get() mismatches: " + mismatches);
+	}
+}
@@ -1,10 +1,16 @@
 package com.ivan.utils.collections.map;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 import com.ivan.utils.time.Stopwatch;
 
@@ -24,7 +30,29 @@ public class PrimitiveMapPerformanceTest {
 
     static final Object obj = new Object();
 
-    public static void main(final String[] args) {
+    public static void main(final String[] args) throws InterruptedException {
+        if (args.length > 0 && args[0].equals("adversarial")) {
+            testAdversarialKeys(args.length > 1 ? Integer.parseInt(args[1]) : 50000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batched")) {
+            testBatchedOperations();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("frozen")) {
+            testFrozenMaps();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("swiss")) {
+            testSwissMaps();
+            return;
+        }
+        // run with a young generation large enough to keep GC out of the
+        // resizes, e.g. -Xms4g -Xmx4g -Xmn2g
+        if (args.length > 0 && args[0].equals("putlatency")) {
+            testPutLatency(args.length > 1 ? Integer.parseInt(args[1]) : 10000000);
+            return;
+        }
         final TestResults results = new TestResults();
         warmup();
         testMaps(20000000, 3, results);
@@ -37,6 +65,7 @@ public class PrimitiveMapPerformanceTest {
         testMaps(10, 1000000, results);
         testMaps(1, 10000000, results);
         results.print();
+        testConcurrentMaps(1000000, 5000000);
     }
 
     private static void warmup() {
@@ -44,47 +73,57 @@ public class PrimitiveMapPerformanceTest {
         final Map<Integer, Object> ihm = new HashMap<Integer, Object>();
         final IntMap<Object> im = new IntMap<Object>();
         final Map<Integer, Object> imv = im.asMap();
+        final OpenIntMap<Object> oim = new OpenIntMap<Object>();
         final OpenIntObjectHashMap cim = new OpenIntObjectHashMap();
         final Map<Long, Object> lhm = new HashMap<Long, Object>();
         final LongMap<Object> lm = new LongMap<Object>();
         final Map<Long, Object> lmv = lm.asMap();
+        final OpenLongMap<Object> olm = new OpenLongMap<Object>();
         final OpenLongObjectHashMap clm = new OpenLongObjectHashMap();
 
         for (int i = 0; i < 2000000; i++) {
             ihm.put(i, obj);
             im.put(i, obj);
             imv.put(i, obj);
+            oim.put(i, obj);
             cim.put(i, obj);
             lhm.put((long) i, obj);
             lm.put(i, obj);
             lmv.put((long) i, obj);
+            olm.put(i, obj);
             clm.put(i, obj);
 
             ihm.get(i);
             im.get(i);
             imv.get(i);
+            oim.get(i);
             cim.get(i);
             lhm.get((long) i);
             lm.get(i);
             lmv.get(i);
+            olm.get(i);
             clm.get(i);
 
             ihm.containsKey(i);
             im.containsKey(i);
             imv.containsKey(i);
+            oim.containsKey(i);
             cim.containsKey(i);
             lhm.containsKey(i);
             lm.containsKey(i);
             lmv.containsKey(i);
+            olm.containsKey(i);
             clm.containsKey(i);
 
             ihm.remove(i);
             im.remove(i);
             imv.remove(i);
+            oim.remove(i);
             cim.removeKey(i);
             lhm.remove((long) i);
             lm.remove(i);
             lmv.remove(i);
+            olm.remove(i);
             clm.removeKey(i);
         }
         System.out.println(" Done!");
@@ -96,6 +135,7 @@ public class PrimitiveMapPerformanceTest {
         testGet(count, repeats, results);
         testRemove(count, repeats, results);
         testContainsKey(count, repeats, results);
+        testFootprint(count);
         System.out.println("====================");
         results.incTests();
     }
@@ -115,6 +155,11 @@ public class PrimitiveMapPerformanceTest {
                 protected void doIteration(final int i) {
                     value.put(i, obj);
                 }
+            }, new OpenIntMapTestKernel(count) {
+                @Override
+                protected void doIteration(final int i) {
+                    value.put(i, obj);
+                }
             }, new CernIntMapTestKernel(count) {
                 @Override
                 protected void doIteration(final int i) {
@@ -133,6 +178,11 @@ public class PrimitiveMapPerformanceTest {
                 protected void doIteration(final long i) {
                     value.put(i, obj);
                 }
+            }, new OpenLongMapTestKernel(count) {
+                @Override
+                protected void doIteration(final long i) {
+                    value.put(i, obj);
+                }
             }, new CernLongMapTestKernel(count) {
                 @Override
                 protected void doIteration(final long i) {
@@ -167,6 +217,18 @@ public class PrimitiveMapPerformanceTest {
                     }
                 }
 
+                @Override
+                protected void doIteration(final int i) {
+                    value.get(i);
+                }
+            }, new OpenIntMapTestKernel(count) {
+                @Override
+                public void init() {
+                    for (int i = 0; i < count; i++) {
+                        value.put(i, obj);
+                    }
+                }
+
                 @Override
                 protected void doIteration(final int i) {
                     value.get(i);
@@ -206,6 +268,18 @@ public class PrimitiveMapPerformanceTest {
                     }
                 }
 
+                @Override
+                protected void doIteration(final long i) {
+                    value.get(i);
+                }
+            }, new OpenLongMapTestKernel(count) {
+                @Override
+                public void init() {
+                    for (long i = 0; i < count; i++) {
+                        value.put(i, obj);
+                    }
+                }
+
                 @Override
                 protected void doIteration(final long i) {
                     value.get(i);
@@ -251,6 +325,18 @@ public class PrimitiveMapPerformanceTest {
                     }
                 }
 
+                @Override
+                protected void doIteration(final int i) {
+                    value.remove(i);
+                }
+            }, new OpenIntMapTestKernel(count) {
+                @Override
+                public void repeat() {
+                    for (int i = 0; i < count; i++) {
+                        value.put(i, obj);
+                    }
+                }
+
                 @Override
                 protected void doIteration(final int i) {
                     value.remove(i);
@@ -290,6 +376,18 @@ public class PrimitiveMapPerformanceTest {
                     }
                 }
 
+                @Override
+                protected void doIteration(final long i) {
+                    value.remove(i);
+                }
+            }, new OpenLongMapTestKernel(count) {
+                @Override
+                public void repeat() {
+                    for (long i = 0; i < count; i++) {
+                        value.put(i, obj);
+                    }
+                }
+
                 @Override
                 protected void doIteration(final long i) {
                     value.remove(i);
@@ -335,6 +433,18 @@ public class PrimitiveMapPerformanceTest {
                     }
                 }
 
+                @Override
+                protected void doIteration(final int i) {
+                    value.containsKey(i);
+                }
+            }, new OpenIntMapTestKernel(count) {
+                @Override
+                public void init() {
+                    for (int i = 0; i < count; i++) {
+                        value.put(i, obj);
+                    }
+                }
+
                 @Override
                 protected void doIteration(final int i) {
                     value.containsKey(i);
@@ -374,6 +484,18 @@ public class PrimitiveMapPerformanceTest {
                     }
                 }
 
+                @Override
+                protected void doIteration(final long i) {
+                    value.containsKey(i);
+                }
+            }, new OpenLongMapTestKernel(count) {
+                @Override
+                public void init() {
+                    for (long i = 0; i < count; i++) {
+                        value.put(i, obj);
+                    }
+                }
+
                 @Override
                 protected void doIteration(final long i) {
                     value.containsKey(i);
@@ -394,7 +516,919 @@ public class PrimitiveMapPerformanceTest {
         System.out.println("--------------------");
     }
 
-    private static void testIntMap(final int repeats, final TestResults.TestType testType, final TestResults results, final IntegerHashMapTestKernel hmKernel, final IntMapTestKernel imKernel, final CernIntMapTestKernel cimKernel) {
+    private static void testFootprint(final int count) {
+        // the heap is too coarse to measure small maps meaningfully
+        if (count < 100000) {
+            return;
+        }
+        System.out.println("Heap footprint of " + count + " items (values are shared, boxed keys included)");
+
+        System.out.println();
+        measureFootprint("HashMap<Integer, Object>", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final Map<Integer, Object> map = new HashMap<Integer, Object>();
+                for (int i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("IntMap<Object>          ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final IntMap<Object> map = new IntMap<Object>();
+                for (int i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("OpenIntMap<Object>      ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final OpenIntMap<Object> map = new OpenIntMap<Object>();
+                for (int i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("OpenIntObjectHashMap    ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final OpenIntObjectHashMap map = new OpenIntObjectHashMap();
+                for (int i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("IntSet                  ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final IntSet set = new IntSet();
+                for (int i = 0; i < count; i++) {
+                    set.add(i);
+                }
+                return set;
+            }
+        });
+        measureFootprint("TreeMap<Integer, Object>", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final Map<Integer, Object> map = new TreeMap<Integer, Object>();
+                for (int i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("IntTreeMap<Object>      ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final IntTreeMap<Object> map = new IntTreeMap<Object>();
+                for (int i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        System.out.println();
+        measureFootprint("HashMap<Long, Object>   ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final Map<Long, Object> map = new HashMap<Long, Object>();
+                for (long i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("LongMap<Object>         ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final LongMap<Object> map = new LongMap<Object>();
+                for (long i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("OpenLongMap<Object>     ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final OpenLongMap<Object> map = new OpenLongMap<Object>();
+                for (long i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("OpenLongObjectHashMap   ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final OpenLongObjectHashMap map = new OpenLongObjectHashMap();
+                for (long i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("LongSet                 ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final LongSet set = new LongSet();
+                for (long i = 0; i < count; i++) {
+                    set.add(i);
+                }
+                return set;
+            }
+        });
+        measureFootprint("TreeMap<Long, Object>   ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final Map<Long, Object> map = new TreeMap<Long, Object>();
+                for (long i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        measureFootprint("LongTreeMap<Object>     ", count, new FootprintKernel() {
+            @Override
+            public Object build(final int count) {
+                final LongTreeMap<Object> map = new LongTreeMap<Object>();
+                for (long i = 0; i < count; i++) {
+                    map.put(i, obj);
+                }
+                return map;
+            }
+        });
+        System.out.println("--------------------");
+    }
+
+    private static void testAdversarialKeys(final int count) {
+        System.out.println("Adversarial key distributions with " + count + " keys");
+        System.out.println("(probe length = number of keys compared by a successful lookup)");
+
+        final int[][] intKeys = new int[4][count];
+        final long[][] longKeys = new long[4][count];
+        for (int i = 0; i < count; i++) {
+            intKeys[0][i] = i;
+            intKeys[1][i] = i << 10;
+            intKeys[2][i] = Integer.rotateLeft(i, 16);
+            intKeys[3][i] = (i >> 6) << 20 | i & 63;
+
+            longKeys[0][i] = i;
+            longKeys[1][i] = (long) i << 10;
+            longKeys[2][i] = 1400000000000L + i << 22;
+            longKeys[3][i] = 1400000000000000000L + i * 1000000L;
+        }
+        final String[] intNames = {
+            "sequential", "multiples of 1024", "high 16 bits only", "blocks of 64 every 2^20" };
+        final String[] longNames = {
+            "sequential", "multiples of 1024", "snowflake ids (timestamp << 22)", "nanosecond timestamps every 1 ms" };
+
+        for (int d = 0; d < intKeys.length; d++) {
+            System.out.println();
+            System.out.println("int keys, " + intNames[d] + ":");
+            System.out.println("                          put()+get()  max probe  mean probe");
+            for (final HashSpreader spreader : HashSpreader.values()) {
+                final IntMap<Object> im = new IntMap<Object>(16, 0.75f, spreader);
+                final long imTime = timePutGet(im, intKeys[d]);
+                System.out.println(String.format("  IntMap     %-9s: % 9d ms  %s", spreader, imTime / 1000000, probeLengths(im)));
+                final OpenIntMap<Object> oim = new OpenIntMap<Object>(16, 0.75f, spreader);
+                final long oimTime = timePutGet(oim, intKeys[d]);
+                System.out.println(String.format("  OpenIntMap %-9s: % 9d ms  %s", spreader, oimTime / 1000000, probeLengths(oim)));
+            }
+        }
+        for (int d = 0; d < longKeys.length; d++) {
+            System.out.println();
+            System.out.println("long keys, " + longNames[d] + ":");
+            System.out.println("                          put()+get()  max probe  mean probe");
+            for (final HashSpreader spreader : HashSpreader.values()) {
+                final LongMap<Object> lm = new LongMap<Object>(16, 0.75f, spreader);
+                final long lmTime = timePutGet(lm, longKeys[d]);
+                System.out.println(String.format("  LongMap     %-9s: % 8d ms  %s", spreader, lmTime / 1000000, probeLengths(lm)));
+                final OpenLongMap<Object> olm = new OpenLongMap<Object>(16, 0.75f, spreader);
+                final long olmTime = timePutGet(olm, longKeys[d]);
+                System.out.println(String.format("  OpenLongMap %-9s: % 8d ms  %s", spreader, olmTime / 1000000, probeLengths(olm)));
+            }
+        }
+    }
+
+    private static long timePutGet(final IntMap<Object> map, final int[] keys) {
+        final Stopwatch sw = new Stopwatch();
+        sw.start();
+        for (final int key : keys) {
+            map.put(key, obj);
+        }
+        for (final int key : keys) {
+            map.get(key);
+        }
+        return sw.timeElapsedNanos();
+    }
+
+    private static long timePutGet(final OpenIntMap<Object> map, final int[] keys) {
+        final Stopwatch sw = new Stopwatch();
+        sw.start();
+        for (final int key : keys) {
+            map.put(key, obj);
+        }
+        for (final int key : keys) {
+            map.get(key);
+        }
+        return sw.timeElapsedNanos();
+    }
+
+    private static long timePutGet(final LongMap<Object> map, final long[] keys) {
+        final Stopwatch sw = new Stopwatch();
+        sw.start();
+        for (final long key : keys) {
+            map.put(key, obj);
+        }
+        for (final long key : keys) {
+            map.get(key);
+        }
+        return sw.timeElapsedNanos();
+    }
+
+    private static long timePutGet(final OpenLongMap<Object> map, final long[] keys) {
+        final Stopwatch sw = new Stopwatch();
+        sw.start();
+        for (final long key : keys) {
+            map.put(key, obj);
+        }
+        for (final long key : keys) {
+            map.get(key);
+        }
+        return sw.timeElapsedNanos();
+    }
+
+    private static String probeLengths(final IntMap<?> map) {
+        int max = 0;
+        long total = 0;
+        for (final IntMap.Entry<?> head : map.table) {
+            int length = 0;
+            for (IntMap.Entry<?> e = head; e != null; e = e.next) {
+                total += ++length;
+            }
+            max = Math.max(max, length);
+        }
+        return formatProbeLengths(max, total, map.size());
+    }
+
+    private static String probeLengths(final LongMap<?> map) {
+        int max = 0;
+        long total = 0;
+        for (final LongMap.Entry<?> head : map.table) {
+            int length = 0;
+            for (LongMap.Entry<?> e = head; e != null; e = e.next) {
+                total += ++length;
+            }
+            max = Math.max(max, length);
+        }
+        return formatProbeLengths(max, total, map.size());
+    }
+
+    private static String probeLengths(final OpenIntMap<?> map) {
+        final int mask = map.capacityMask;
+        int max = 1;
+        long total = map.hasZeroKey ? 1 : 0;
+        for (int i = 0; i <= mask; i++) {
+            final int key = map.keyTable[i];
+            if (key != 0) {
+                final int length = (i - map.hash(key, mask) & mask) + 1;
+                total += length;
+                max = Math.max(max, length);
+            }
+        }
+        return formatProbeLengths(max, total, map.size());
+    }
+
+    private static String probeLengths(final OpenLongMap<?> map) {
+        final int mask = map.capacityMask;
+        int max = 1;
+        long total = map.hasZeroKey ? 1 : 0;
+        for (int i = 0; i <= mask; i++) {
+            final long key = map.keyTable[i];
+            if (key != 0) {
+                final int length = (i - map.hash(key, mask) & mask) + 1;
+                total += length;
+                max = Math.max(max, length);
+            }
+        }
+        return formatProbeLengths(max, total, map.size());
+    }
+
+    private static String formatProbeLengths(final int max, final long total, final int size) {
+        return String.format("% 9d  % 10.2f", max, (double) total / size);
+    }
+
+    private static void testBatchedOperations() {
+        final int[] counts = { 20000000, 10000000, 1000000, 100000, 10000, 1000, 100, 10, 1 };
+        final int[] batchSizes = { 256, 4096 };
+        final int lookups = 1 << 22;
+        System.out.println("Batched operations against loops of single calls, " + lookups
+                + " random existing keys per measurement (ns per key, best of 3)");
+        System.out.println();
+        System.out.println("            items  batch |  get() getAll() | containsKey() containsAll() |  put() putAll()");
+        for (final int count : counts) {
+            final Random rnd = new Random(count);
+            final int[] keys = new int[count];
+            IntMap<Object> im = new IntMap<Object>();
+            for (int i = 0; i < count; i++) {
+                im.put(keys[i] = rnd.nextInt(), obj);
+            }
+            for (final int batch : batchSizes) {
+                final int[] batchKeys = new int[lookups];
+                for (int i = 0; i < lookups; i++) {
+                    batchKeys[i] = keys[rnd.nextInt(count)];
+                }
+                System.out.println(String.format("  IntMap  %9d %6d | %s", count, batch, measureBatched(im, batchKeys, batch)));
+            }
+            im = null;
+
+            final long[] longKeys = new long[count];
+            final LongMap<Object> lm = new LongMap<Object>();
+            for (int i = 0; i < count; i++) {
+                lm.put(longKeys[i] = rnd.nextLong(), obj);
+            }
+            for (final int batch : batchSizes) {
+                final long[] batchKeys = new long[lookups];
+                for (int i = 0; i < lookups; i++) {
+                    batchKeys[i] = longKeys[rnd.nextInt(count)];
+                }
+                System.out.println(String.format("  LongMap %9d %6d | %s", count, batch, measureBatched(lm, batchKeys, batch)));
+            }
+        }
+        System.out.println("--------------------");
+    }
+
+    private static String measureBatched(final IntMap<Object> map, final int[] keys, final int batch) {
+        final Object[] out = new Object[batch];
+        final int[] chunk = new int[batch];
+        final long[] best = new long[6];
+        Arrays.fill(best, Long.MAX_VALUE);
+        boolean check = true;
+        for (int run = 0; run < 3; run++) {
+            final Stopwatch sw = new Stopwatch();
+            sw.start();
+            for (int base = 0; base < keys.length; base += batch) {
+                for (int i = 0; i < batch; i++) {
+                    out[i] = map.get(keys[base + i]);
+                }
+            }
+            best[0] = Math.min(best[0], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                System.arraycopy(keys, base, chunk, 0, batch);
+                map.getAll(chunk, out);
+            }
+            best[1] = Math.min(best[1], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                boolean all = true;
+                for (int i = 0; i < batch; i++) {
+                    all &= map.containsKey(keys[base + i]);
+                }
+                check &= all;
+            }
+            best[2] = Math.min(best[2], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                System.arraycopy(keys, base, chunk, 0, batch);
+                check &= map.containsAll(chunk);
+            }
+            best[3] = Math.min(best[3], sw.timeElapsedNanos());
+            Arrays.fill(out, obj);
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                for (int i = 0; i < batch; i++) {
+                    map.put(keys[base + i], out[i]);
+                }
+            }
+            best[4] = Math.min(best[4], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                System.arraycopy(keys, base, chunk, 0, batch);
+                map.putAll(chunk, out);
+            }
+            best[5] = Math.min(best[5], sw.timeElapsedNanos());
+        }
+        return formatBatched(best, keys.length, check);
+    }
+
+    private static String measureBatched(final LongMap<Object> map, final long[] keys, final int batch) {
+        final Object[] out = new Object[batch];
+        final long[] chunk = new long[batch];
+        final long[] best = new long[6];
+        Arrays.fill(best, Long.MAX_VALUE);
+        boolean check = true;
+        for (int run = 0; run < 3; run++) {
+            final Stopwatch sw = new Stopwatch();
+            sw.start();
+            for (int base = 0; base < keys.length; base += batch) {
+                for (int i = 0; i < batch; i++) {
+                    out[i] = map.get(keys[base + i]);
+                }
+            }
+            best[0] = Math.min(best[0], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                System.arraycopy(keys, base, chunk, 0, batch);
+                map.getAll(chunk, out);
+            }
+            best[1] = Math.min(best[1], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                boolean all = true;
+                for (int i = 0; i < batch; i++) {
+                    all &= map.containsKey(keys[base + i]);
+                }
+                check &= all;
+            }
+            best[2] = Math.min(best[2], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                System.arraycopy(keys, base, chunk, 0, batch);
+                check &= map.containsAll(chunk);
+            }
+            best[3] = Math.min(best[3], sw.timeElapsedNanos());
+            Arrays.fill(out, obj);
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                for (int i = 0; i < batch; i++) {
+                    map.put(keys[base + i], out[i]);
+                }
+            }
+            best[4] = Math.min(best[4], sw.timeElapsedNanos());
+            sw.restart();
+            for (int base = 0; base < keys.length; base += batch) {
+                System.arraycopy(keys, base, chunk, 0, batch);
+                map.putAll(chunk, out);
+            }
+            best[5] = Math.min(best[5], sw.timeElapsedNanos());
+        }
+        return formatBatched(best, keys.length, check);
+    }
+
+    private static String formatBatched(final long[] best, final int keys, final boolean check) {
+        return String.format("%6.1f %8.1f | %13.1f %13.1f | %6.1f %7.1f%s", (double) best[0] / keys, (double) best[1] / keys,
+                (double) best[2] / keys, (double) best[3] / keys, (double) best[4] / keys, (double) best[5] / keys,
+                check ? "" : "  (containsAll() MISMATCH)");
+    }
+
+    private static void testPutLatency(final int count) {
+        System.out.println("Latency of single put() calls while growing from empty to " + count
+                + " items, with one-shot and incremental rehashing (run with the lowest max of 3)");
+        System.out.println();
+        System.out.println("                          |    p50    p99  p99.9 p99.99 |       max | slowest resize put (GC) | total ms");
+        for (int pass = 0; pass < 2; pass++) {
+            // the first pass warms up both variants
+            final int n = pass == 0 ? Math.min(count, 1000000) : count;
+            for (final boolean incremental : new boolean[] { false, true }) {
+                int[] best = null;
+                String bestResize = null;
+                long bestTotal = 0;
+                for (int r = 0; r < 3; r++) {
+                    final int[] latencies = new int[n];
+                    final IntMap<Object> im = new IntMap<Object>();
+                    im.setIncrementalRehash(incremental);
+                    // the puts that cross the threshold of the default
+                    // capacity and load factor leave 12, 24, 48... items
+                    int nextResize = 12;
+                    long resize = 0;
+                    long resizeGc = 0;
+                    final long start = System.nanoTime();
+                    long last = start;
+                    for (int i = 0; i < n; i++) {
+                        if (i + 1 == nextResize) {
+                            final long gc = gcMillis();
+                            im.put(i * 0x9E3779B9, obj);
+                            final long now = System.nanoTime();
+                            if (now - last > resize) {
+                                resize = now - last;
+                                resizeGc = gcMillis() - gc;
+                            }
+                            latencies[i] = (int) Math.min(now - last, Integer.MAX_VALUE);
+                            last = System.nanoTime();
+                            nextResize <<= 1;
+                            continue;
+                        }
+                        im.put(i * 0x9E3779B9, obj);
+                        final long now = System.nanoTime();
+                        latencies[i] = (int) Math.min(now - last, Integer.MAX_VALUE);
+                        last = now;
+                    }
+                    final long total = last - start;
+                    if (best == null || max(latencies) < max(best)) {
+                        best = latencies;
+                        bestResize = String.format("%13.1f (%4d ms)", resize / 1e3, resizeGc);
+                        bestTotal = total;
+                    }
+                }
+                if (pass == 1) {
+                    System.out.println(String.format("  IntMap %-17s | %s | %s | %8.1f", incremental ? "incremental" : "one-shot",
+                            formatLatencies(best), bestResize, bestTotal / 1e6));
+                }
+                best = null;
+            }
+        }
+        System.out.println("  (latencies in microseconds; GC is the collection time spent inside the slowest resize put)");
+        System.out.println("--------------------");
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static int max(final int[] a) {
+        int max = 0;
+        for (final int v : a) {
+            max = Math.max(max, v);
+        }
+        return max;
+    }
+
+    private static String formatLatencies(final int[] latencies) {
+        final int[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        final int n = sorted.length;
+        return String.format("%6.2f %6.2f %6.2f %6.2f | %9.1f", sorted[n / 2] / 1e3, sorted[(int) (n * 0.99)] / 1e3,
+                sorted[(int) (n * 0.999)] / 1e3, sorted[(int) (n * 0.9999)] / 1e3, sorted[n - 1] / 1e3);
+    }
+
+    private static void testSwissMaps() {
+        final int[] counts = { 10000000, 1000000, 100000, 10000, 1000, 100 };
+        final int ops = 1 << 22;
+        System.out.println("SwissIntMap against IntMap and colt's OpenIntObjectHashMap, random keys (Mops/s, best of 5)");
+        System.out.println();
+        System.out.println("            items map         |   put  hit get  miss get  remove | bytes/entry");
+        for (final int count : counts) {
+            final Random rnd = new Random(count);
+            final int[] keys = new int[count];
+            final IntMap<Object> present = new IntMap<Object>(count);
+            for (int i = 0; i < count; i++) {
+                present.put(keys[i] = rnd.nextInt(), obj);
+            }
+            final int[] hits = new int[ops];
+            final int[] misses = new int[ops];
+            for (int i = 0; i < ops; i++) {
+                hits[i] = keys[rnd.nextInt(count)];
+                int key;
+                do {
+                    key = rnd.nextInt();
+                } while (present.containsKey(key));
+                misses[i] = key;
+            }
+            final int repeats = Math.max(1, ops / count);
+            final SwissKernel[] kernels = { new SwissKernel("IntMap") {
+                IntMap<Object> m;
+
+                @Override
+                Object build() {
+                    m = new IntMap<Object>();
+                    for (final int key : keys) {
+                        m.put(key, obj);
+                    }
+                    return m;
+                }
+
+                @Override
+                int get(final int[] keys) {
+                    int found = 0;
+                    for (final int key : keys) {
+                        found += m.get(key) != null ? 1 : 0;
+                    }
+                    return found;
+                }
+
+                @Override
+                void release() {
+                    m = null;
+                }
+
+                @Override
+                void removeAll() {
+                    for (final int key : keys) {
+                        m.remove(key);
+                    }
+                }
+            }, new SwissKernel("SwissIntMap") {
+                SwissIntMap<Object> m;
+
+                @Override
+                Object build() {
+                    m = new SwissIntMap<Object>();
+                    for (final int key : keys) {
+                        m.put(key, obj);
+                    }
+                    return m;
+                }
+
+                @Override
+                int get(final int[] keys) {
+                    int found = 0;
+                    for (final int key : keys) {
+                        found += m.get(key) != null ? 1 : 0;
+                    }
+                    return found;
+                }
+
+                @Override
+                void release() {
+                    m = null;
+                }
+
+                @Override
+                void removeAll() {
+                    for (final int key : keys) {
+                        m.remove(key);
+                    }
+                }
+            }, new SwissKernel("colt") {
+                OpenIntObjectHashMap m;
+
+                @Override
+                Object build() {
+                    m = new OpenIntObjectHashMap();
+                    for (final int key : keys) {
+                        m.put(key, obj);
+                    }
+                    return m;
+                }
+
+                @Override
+                int get(final int[] keys) {
+                    int found = 0;
+                    for (final int key : keys) {
+                        found += m.get(key) != null ? 1 : 0;
+                    }
+                    return found;
+                }
+
+                @Override
+                void release() {
+                    m = null;
+                }
+
+                @Override
+                void removeAll() {
+                    for (final int key : keys) {
+                        m.removeKey(key);
+                    }
+                }
+            } };
+            for (final SwissKernel kernel : kernels) {
+                final long[] best = new long[4];
+                Arrays.fill(best, Long.MAX_VALUE);
+                int found = 0;
+                final Stopwatch sw = new Stopwatch();
+                for (int run = 0; run < 5; run++) {
+                    long put = 0;
+                    long remove = 0;
+                    for (int r = 0; r < repeats; r++) {
+                        sw.restart();
+                        kernel.build();
+                        put += sw.timeElapsedNanos();
+                        if (r < repeats - 1) {
+                            sw.restart();
+                            kernel.removeAll();
+                            remove += sw.timeElapsedNanos();
+                        }
+                    }
+                    best[0] = Math.min(best[0], put);
+                    sw.restart();
+                    found += kernel.get(hits);
+                    best[1] = Math.min(best[1], sw.timeElapsedNanos());
+                    sw.restart();
+                    found += kernel.get(misses);
+                    best[2] = Math.min(best[2], sw.timeElapsedNanos());
+                    sw.restart();
+                    kernel.removeAll();
+                    remove += sw.timeElapsedNanos();
+                    best[3] = Math.min(best[3], remove);
+                }
+                if (found != 5 * ops) {
+                    System.out.println("  lookup MISMATCH: " + found + " hits, expected " + 5 * ops);
+                }
+                kernel.release();
+                String footprint = "";
+                if (count >= 100000) {
+                    footprint = String.format("%11.2f", footprint(count, new FootprintKernel() {
+                        @Override
+                        public Object build(final int count) {
+                            final Object map = kernel.build();
+                            kernel.release();
+                            return map;
+                        }
+                    }));
+                }
+                final double built = (double) count * repeats;
+                System.out.println(String.format("  %14d %-11s | %5.1f %8.1f %9.1f %7.1f | %s", count, kernel.name,
+                        built * 1e3 / best[0], ops * 1e3 / best[1], ops * 1e3 / best[2], built * 1e3 / best[3], footprint));
+            }
+        }
+        System.out.println("--------------------");
+    }
+
+    private abstract static class SwissKernel {
+        final String name;
+
+        SwissKernel(final String name) {
+            this.name = name;
+        }
+
+        abstract Object build();
+
+        abstract int get(int[] keys);
+
+        abstract void release();
+
+        abstract void removeAll();
+    }
+
+    private static void testFrozenMaps() {
+        final int[] counts = { 20000000, 10000000, 1000000, 100000, 10000, 1000, 100, 10, 1 };
+        final int lookups = 1 << 22;
+        System.out.println("FrozenIntMap against IntMap, " + lookups + " random lookups per measurement (best of 3)");
+        System.out.println();
+        System.out.println("               items | freeze ms | hit lookups/s: IntMap     Frozen | miss lookups/s: IntMap     Frozen | bytes/entry: IntMap Frozen");
+        for (final int count : counts) {
+            final Random rnd = new Random(count);
+            final int[] keys = new int[count];
+            IntMap<Object> map = new IntMap<Object>();
+            for (int i = 0; i < count; i++) {
+                map.put(keys[i] = rnd.nextInt(), obj);
+            }
+            final int[] hits = new int[lookups];
+            final int[] misses = new int[lookups];
+            for (int i = 0; i < lookups; i++) {
+                hits[i] = keys[rnd.nextInt(count)];
+                int key;
+                do {
+                    key = rnd.nextInt();
+                } while (map.containsKey(key));
+                misses[i] = key;
+            }
+
+            final Stopwatch sw = new Stopwatch();
+            sw.start();
+            FrozenIntMap<Object> frozen = map.freeze();
+            final long freezeTime = sw.timeElapsedNanos();
+
+            final long[] best = new long[4];
+            Arrays.fill(best, Long.MAX_VALUE);
+            int found = 0;
+            for (int run = 0; run < 3; run++) {
+                sw.restart();
+                for (final int key : hits) {
+                    found += map.get(key) != null ? 1 : 0;
+                }
+                best[0] = Math.min(best[0], sw.timeElapsedNanos());
+                sw.restart();
+                for (final int key : hits) {
+                    found += frozen.get(key) != null ? 1 : 0;
+                }
+                best[1] = Math.min(best[1], sw.timeElapsedNanos());
+                sw.restart();
+                for (final int key : misses) {
+                    found += map.get(key) != null ? 1 : 0;
+                }
+                best[2] = Math.min(best[2], sw.timeElapsedNanos());
+                sw.restart();
+                for (final int key : misses) {
+                    found += frozen.get(key) != null ? 1 : 0;
+                }
+                best[3] = Math.min(best[3], sw.timeElapsedNanos());
+            }
+            if (found != 6 * lookups) {
+                System.out.println("  lookup MISMATCH: " + found + " hits, expected " + 6 * lookups);
+            }
+
+            map = null;
+            frozen = null;
+            String footprint = "";
+            if (count >= 100000) {
+                final FootprintKernel mapKernel = new FootprintKernel() {
+                    @Override
+                    public Object build(final int count) {
+                        final IntMap<Object> m = new IntMap<Object>();
+                        for (final int key : keys) {
+                            m.put(key, obj);
+                        }
+                        return m;
+                    }
+                };
+                final FootprintKernel frozenKernel = new FootprintKernel() {
+                    @Override
+                    public Object build(final int count) {
+                        return ((IntMap<?>) mapKernel.build(count)).freeze();
+                    }
+                };
+                footprint = String.format(" %6.2f %6.2f", footprint(count, mapKernel), footprint(count, frozenKernel));
+            }
+            System.out.println(String.format("  IntMap %12d | %9s | %21s %10s | %22s %10s |%s", count,
+                    fmt.format(freezeTime / 1e6), fmt.format(lookups * 1e9 / best[0]), fmt.format(lookups * 1e9 / best[1]),
+                    fmt.format(lookups * 1e9 / best[2]), fmt.format(lookups * 1e9 / best[3]), footprint));
+        }
+        System.out.println("--------------------");
+    }
+
+    private static void testConcurrentMaps(final int count, final int opsPerThread) throws InterruptedException {
+        System.out.println();
+        System.out.println("Concurrent access to " + count + " keys, " + opsPerThread + " operations per thread, 1 put() for every 7 get()");
+        System.out.println();
+        System.out.println("Throughput (Mops/s):");
+        System.out.println("  threads  ConcurrentHashMap<Integer>  synchronized IntMap  ConcurrentIntMap");
+        final int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            final Map<Integer, Object> chm = new ConcurrentHashMap<Integer, Object>();
+            final IntMap<Object> sim = new IntMap<Object>();
+            final ConcurrentIntMap<Object> cim = new ConcurrentIntMap<Object>();
+            for (int i = 0; i < count; i++) {
+                chm.put(i, obj);
+                sim.put(i, obj);
+                cim.put(i, obj);
+            }
+
+            final long chmTime = measureConcurrentTest(threads, count, opsPerThread, new ConcurrentTestKernel() {
+                @Override
+                public void doOperation(final int key, final boolean put) {
+                    if (put) {
+                        chm.put(key, obj);
+                    } else {
+                        chm.get(key);
+                    }
+                }
+            });
+            final long simTime = measureConcurrentTest(threads, count, opsPerThread, new ConcurrentTestKernel() {
+                @Override
+                public void doOperation(final int key, final boolean put) {
+                    synchronized (sim) {
+                        if (put) {
+                            sim.put(key, obj);
+                        } else {
+                            sim.get(key);
+                        }
+                    }
+                }
+            });
+            final long cimTime = measureConcurrentTest(threads, count, opsPerThread, new ConcurrentTestKernel() {
+                @Override
+                public void doOperation(final int key, final boolean put) {
+                    if (put) {
+                        cim.put(key, obj);
+                    } else {
+                        cim.get(key);
+                    }
+                }
+            });
+            final double ops = (double) threads * opsPerThread * 1000;
+            System.out.println(String.format("  % 7d  % 26.2f  % 19.2f  % 16.2f", threads, ops / chmTime, ops / simTime, ops / cimTime));
+            System.gc();
+        }
+    }
+
+    private static long measureConcurrentTest(final int threads, final int count, final int ops, final ConcurrentTestKernel kernel) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int seed = 0x9E3779B9 * (t + 1);
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    // xorshift, so that threads do not contend on a shared Random
+                    int r = seed;
+                    for (int i = 0; i < ops; i++) {
+                        r ^= r << 13;
+                        r ^= r >>> 17;
+                        r ^= r << 5;
+                        kernel.doOperation((r >>> 3) % count, (r & 7) == 0);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        final Stopwatch sw = new Stopwatch();
+        sw.start();
+        start.countDown();
+        done.await();
+        return sw.timeElapsedNanos();
+    }
+
+    private static void testIntMap(final int repeats, final TestResults.TestType testType, final TestResults results, final IntegerHashMapTestKernel hmKernel, final IntMapTestKernel imKernel, final OpenIntMapTestKernel oimKernel, final CernIntMapTestKernel cimKernel) {
         hmKernel.setValue(new HashMap<Integer, Object>());
         final long hmTime = measureTest(repeats, hmKernel);
         System.out.println("HashMap<Integer, Object>: " + String.format("% 6d ms", hmTime / 1000000));
@@ -413,6 +1447,12 @@ public class PrimitiveMapPerformanceTest {
         hmKernel.setValue(null);
         System.gc();
 
+        oimKernel.setValue(new OpenIntMap<Object>());
+        final long omTime = measureTest(repeats, oimKernel);
+        System.out.println("OpenIntMap<Object>      : " + String.format("% 6d ms", omTime / 1000000));
+        oimKernel.setValue(null);
+        System.gc();
+
         cimKernel.setValue(new OpenIntObjectHashMap());
         final long cmTime = measureTest(repeats, cimKernel);
         System.out.println("OpenIntObjectHashMap    : " + String.format("% 6d ms", cmTime / 1000000));
@@ -422,12 +1462,13 @@ public class PrimitiveMapPerformanceTest {
         printSpeedComparison(new TimeEntry("Integer HashMap", hmTime),
             new TimeEntry("IntMap", mTime),
             new TimeEntry("IntMap View", mvTime),
+            new TimeEntry("OpenIntMap", omTime),
             new TimeEntry("CERN IntHashMap", cmTime));
 
-        testType.addIntResult(results, hmTime, mTime, mvTime, cmTime);
+        testType.addIntResult(results, hmTime, mTime, mvTime, omTime, cmTime);
     }
 
-    private static void testLongMap(final int repeats, final TestResults.TestType testType, final TestResults results, final LongHashMapTestKernel hmKernel, final LongMapTestKernel lmKernel, final CernLongMapTestKernel clmKernel) {
+    private static void testLongMap(final int repeats, final TestResults.TestType testType, final TestResults results, final LongHashMapTestKernel hmKernel, final LongMapTestKernel lmKernel, final OpenLongMapTestKernel olmKernel, final CernLongMapTestKernel clmKernel) {
         hmKernel.setValue(new HashMap<Long, Object>());
         final long hmTime = measureTest(repeats, hmKernel);
         System.out.println("HashMap<Long, Object>   : " + String.format("% 6d ms", hmTime / 1000000));
@@ -446,6 +1487,12 @@ public class PrimitiveMapPerformanceTest {
         hmKernel.setValue(null);
         System.gc();
 
+        olmKernel.setValue(new OpenLongMap<Object>());
+        final long omTime = measureTest(repeats, olmKernel);
+        System.out.println("OpenLongMap<Object>     : " + String.format("% 6d ms", omTime / 1000000));
+        olmKernel.setValue(null);
+        System.gc();
+
         clmKernel.setValue(new OpenLongObjectHashMap());
         final long cmTime = measureTest(repeats, clmKernel);
         System.out.println("OpenLongObjectHashMap   : " + String.format("% 6d ms", cmTime / 1000000));
@@ -455,9 +1502,10 @@ public class PrimitiveMapPerformanceTest {
         printSpeedComparison(new TimeEntry("Long HashMap", hmTime),
             new TimeEntry("LongMap", mTime),
             new TimeEntry("LongMap View", mvTime),
+            new TimeEntry("OpenLongMap", omTime),
             new TimeEntry("CERN LongHashMap", cmTime));
 
-        testType.addLongResult(results, hmTime, mTime, mvTime, cmTime);
+        testType.addLongResult(results, hmTime, mTime, mvTime, omTime, cmTime);
     }
 
     private static final TestKernel nullKernel = new TestKernel() {
@@ -503,6 +1551,28 @@ public class PrimitiveMapPerformanceTest {
         return sw.timeElapsedNanos() - overhead;
     }
 
+    static Object footprintHolder;
+
+    private static void measureFootprint(final String name, final int count, final FootprintKernel kernel) {
+        System.out.println(name + ": " + String.format("% 8.2f bytes/entry", footprint(count, kernel)));
+    }
+
+    private static double footprint(final int count, final FootprintKernel kernel) {
+        final long before = usedMemory();
+        footprintHolder = kernel.build(count);
+        final long after = usedMemory();
+        footprintHolder = null;
+        return (double) (after - before) / count;
+    }
+
+    private static long usedMemory() {
+        final Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
     private static final class TimeEntry implements Comparable<TimeEntry> {
         final String name;
         final long time;
@@ -574,6 +1644,14 @@ public class PrimitiveMapPerformanceTest {
         void run();
     }
 
+    private static interface ConcurrentTestKernel {
+        void doOperation(int key, boolean put);
+    }
+
+    private static interface FootprintKernel {
+        Object build(int count);
+    }
+
     private static abstract class AbstractOneArgTestKernel<T> implements TestKernel {
         protected T value;
 
@@ -647,6 +1725,12 @@ public class PrimitiveMapPerformanceTest {
         }
     }
 
+    private static abstract class OpenIntMapTestKernel extends AbstractIteratedIntTestKernel<OpenIntMap<Object>> {
+        public OpenIntMapTestKernel(final int count) {
+            super(count);
+        }
+    }
+
     private static abstract class CernIntMapTestKernel extends AbstractIteratedIntTestKernel<OpenIntObjectHashMap> {
         public CernIntMapTestKernel(final int count) {
             super(count);
@@ -665,6 +1749,12 @@ public class PrimitiveMapPerformanceTest {
         }
     }
 
+    private static abstract class OpenLongMapTestKernel extends AbstractIteratedLongTestKernel<OpenLongMap<Object>> {
+        public OpenLongMapTestKernel(final long count) {
+            super(count);
+        }
+    }
+
     private static abstract class CernLongMapTestKernel extends AbstractIteratedLongTestKernel<OpenLongObjectHashMap> {
         public CernLongMapTestKernel(final long count) {
             super(count);
@@ -698,19 +1788,21 @@ public class PrimitiveMapPerformanceTest {
                 }
             };
 
-            public void addIntResult(final TestResults results, final long hmTime, final long mTime, final long mvTime, final long cmTime) {
+            public void addIntResult(final TestResults results, final long hmTime, final long mTime, final long mvTime, final long omTime, final long cmTime) {
                 final Times times = getTimes(results);
                 times.ihm += hmTime;
                 times.im += mTime;
                 times.imv += mvTime;
+                times.oim += omTime;
                 times.cim += cmTime;
             }
 
-            public void addLongResult(final TestResults results, final long hmTime, final long mTime, final long mvTime, final long cmTime) {
+            public void addLongResult(final TestResults results, final long hmTime, final long mTime, final long mvTime, final long omTime, final long cmTime) {
                 final Times times = getTimes(results);
                 times.lhm += hmTime;
                 times.lm += mTime;
                 times.lmv += mvTime;
+                times.olm += omTime;
                 times.clm += cmTime;
             }
 
@@ -724,11 +1816,13 @@ public class PrimitiveMapPerformanceTest {
             public long ihm; // Map<Integer, Object>
             public long im; //  IntMap<Object>
             public long imv; // IntMap<Object>.asMap()
+            public long oim; // OpenIntMap<Object>
             public long cim; // OpenIntObjectHashMap
 
             public long lhm; // Map<Long, Object>
             public long lm; //  LongMap<Object>
             public long lmv; // LongMap<Object>.asMap()
+            public long olm; // OpenLongMap<Object>
             public long clm; // OpenLongObjectHashMap
 
             public Times add(final Times times) {
@@ -736,11 +1830,13 @@ public class PrimitiveMapPerformanceTest {
                 t.ihm = ihm + times.ihm;
                 t.im = im + times.im;
                 t.imv = imv + times.imv;
+                t.oim = oim + times.oim;
                 t.cim = cim + times.cim;
 
                 t.lhm = lhm + times.lhm;
                 t.lm = lm + times.lm;
                 t.lmv = lmv + times.lmv;
+                t.olm = olm + times.olm;
                 t.clm = clm + times.clm;
                 return t;
             }
@@ -764,8 +1860,8 @@ public class PrimitiveMapPerformanceTest {
             final Times totalTimes = putTimes.add(getTimes).add(removeTimes).add(containsKeyTimes);
             System.out.println("Test results: " + numTests + " tests executed");
             System.out.println();
-            System.out.println("                    Integer                IntMap   CERN Int    Long                  LongMap  CERN Long");
-            System.out.println("Total times:        HashMap     IntMap   Map View    HashMap    HashMap    LongMap   Map View    HashMap");
+            System.out.println("                    Integer                IntMap       Open   CERN Int    Long                  LongMap       Open  CERN Long");
+            System.out.println("Total times:        HashMap     IntMap   Map View     IntMap    HashMap    HashMap    LongMap   Map View    LongMap    HashMap");
             printTimes("  put()        :", putTimes);
             printTimes("  get()        :", getTimes);
             printTimes("  remove()     :", removeTimes);
@@ -792,8 +1888,8 @@ public class PrimitiveMapPerformanceTest {
         }
 
         private static void printSummary(final Times times) {
-            printSpeedComparison("    ", new TimeEntry("Integer HashMap", times.ihm), new TimeEntry("IntMap", times.im), new TimeEntry("IntMap View", times.imv), new TimeEntry("CERN IntHashMap", times.cim));
-            printSpeedComparison("    ", new TimeEntry("Long HashMap", times.lhm), new TimeEntry("LongMap", times.lm), new TimeEntry("LongMap View", times.lmv), new TimeEntry("CERN LongHashMap", times.clm));
+            printSpeedComparison("    ", new TimeEntry("Integer HashMap", times.ihm), new TimeEntry("IntMap", times.im), new TimeEntry("IntMap View", times.imv), new TimeEntry("OpenIntMap", times.oim), new TimeEntry("CERN IntHashMap", times.cim));
+            printSpeedComparison("    ", new TimeEntry("Long HashMap", times.lhm), new TimeEntry("LongMap", times.lm), new TimeEntry("LongMap View", times.lmv), new TimeEntry("OpenLongMap", times.olm), new TimeEntry("CERN LongHashMap", times.clm));
         }
 
         private static void printTimes(final String name, final Times times) {
@@ -801,10 +1897,12 @@ public class PrimitiveMapPerformanceTest {
                 + "  " + String.format("% 6d ms", times.ihm / 1000000)
                 + "  " + String.format("% 6d ms", times.im / 1000000)
                 + "  " + String.format("% 6d ms", times.imv / 1000000)
+                + "  " + String.format("% 6d ms", times.oim / 1000000)
                 + "  " + String.format("% 6d ms", times.cim / 1000000)
                 + "  " + String.format("% 6d ms", times.lhm / 1000000)
                 + "  " + String.format("% 6d ms", times.lm / 1000000)
                 + "  " + String.format("% 6d ms", times.lmv / 1000000)
+                + "  " + String.format("% 6d ms", times.olm / 1000000)
                 + "  " + String.format("% 6d ms", times.clm / 1000000));
         }
 
@@ -813,10 +1911,12 @@ public class PrimitiveMapPerformanceTest {
                 + "  " + String.format("% 6.0f ms", (double) times.ihm / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.im / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.imv / numTests / 1000000)
+                + "  " + String.format("% 6.0f ms", (double) times.oim / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.cim / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.lhm / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.lm / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.lmv / numTests / 1000000)
+                + "  " + String.format("% 6.0f ms", (double) times.olm / numTests / 1000000)
                 + "  " + String.format("% 6.0f ms", (double) times.clm / numTests / 1000000));
         }
     }
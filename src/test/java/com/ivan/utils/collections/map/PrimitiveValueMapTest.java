@@ -0,0 +1,82 @@
+package com.ivan.utils.collections.map;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PrimitiveValueMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(42);
+		final IntIntMap m = new IntIntMap(16, 0.75f, -1);
+		final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+
+		System.out.println("random put()/remove()/addTo() on IntIntMap against HashMap");
+		for (int i = 0; i < 1000000; i++) {
+			final int key = (rnd.nextInt(2048) - 1024) << 10;
+			switch (rnd.nextInt(3)) {
+			case 0:
+				check("remove(" + key + ")", ref.remove(key), m.remove(key), m.noValue());
+				break;
+			case 1:
+				check("put(" + key + ")", ref.put(key, i), m.put(key, i), m.noValue());
+				break;
+			default:
+				final Integer old = ref.get(key);
+				ref.put(key, old == null ? 100 + 5 : old + 5);
+				m.addTo(key, 5, 100);
+			}
+		}
+		boolean ok = ref.size() == m.size();
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			ok &= m.get(e.getKey()) == e.getValue();
+		}
+		final int[] keys = m.keys();
+		final int[] values = m.values();
+		for (int i = 0; i < keys.length; i++) {
+			ok &= ref.get(keys[i]) == values[i];
+		}
+		System.out.println("  size() = " + m.size() + ", matches reference: " + ok);
+
+		m.trimToSize();
+		System.out.println("  after trimToSize(), get(missing) = " + m.get(1) + ", containsKey(0) = " + m.containsKey(0));
+
+		System.out.println();
+		System.out.println("IntDoubleMap with NaN as the no value sentinel");
+		final IntDoubleMap dm = new IntDoubleMap(16, 0.75f, Double.NaN);
+		dm.put(7, 0.5);
+		System.out.println("  get(7) = " + dm.get(7) + ", get(8) = " + dm.get(8) + ", containsValue(NaN) = " + dm.containsValue(Double.NaN));
+
+		System.out.println();
+		System.out.println("allocations during 10000000 get()/put() calls on a presized LongLongMap:");
+		final LongLongMap lm = new LongLongMap(1 << 21);
+		final long before = allocatedBytes();
+		long sum = 0;
+		for (long i = 0; i < 10000000; i++) {
+			lm.put(i & 0xFFFFF, i);
+			sum += lm.get(i * 31 & 0xFFFFF);
+		}
+		final long after = allocatedBytes();
+		System.out.println("  " + (after - before) + " bytes (checksum " + sum + ")");
+		System.out.println("  keys().length == size() ? " + (lm.keys().length == lm.size()) + ", sorted prefix: "
+				+ Arrays.toString(Arrays.copyOf(sorted(lm.keys()), 4)));
+	}
+
+	private static long[] sorted(final long[] a) {
+		Arrays.sort(a);
+		return a;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void check(final String op, final Integer expected, final int actual, final int noValue) {
+		final int e = expected == null ? noValue : expected;
+		if (e != actual) {
+			System.out.println("  MISMATCH on " + op + ": expected " + e + ", got " + actual);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Map;
+
+public class ReferenceIntMapTest {
+	public static void main(final String[] args) throws InterruptedException {
+		System.out.println("weak values");
+		final ReferenceIntMap<Object> m = new ReferenceIntMap<Object>(ReferenceStrength.WEAK);
+		final Object[] kept = new Object[100];
+		for (int i = 0; i < 1000; i++) {
+			final Object value = new byte[64];
+			m.put(i, value);
+			if (i % 10 == 0) {
+				kept[i / 10] = value;
+			}
+		}
+		System.out.println("  before gc: size() = " + m.size() + ", expected 1000");
+		collect();
+		// only a batch of the queued references is purged per operation
+		m.get(-1);
+		System.out.println("  after gc: get(10) is kept " + (m.get(10) == kept[1]) + ", get(11) = " + m.get(11)
+				+ ", containsKey(11) = " + m.containsKey(11));
+		System.out.println("  size() = " + m.size() + ", expected 100; keys().length = " + m.keys().length
+				+ "; get(990) is kept " + (m.get(990) == kept[99]));
+
+		System.out.println("a key mapped again before its old value is purged");
+		final Object replacement = new Object();
+		m.put(5, new Object());
+		collect();
+		m.put(5, replacement);
+		m.purge();
+		System.out.println("  get(5) is the replacement: " + (m.get(5) == replacement));
+		m.clear();
+		System.out.println("  after clear(): size() = " + m.size());
+
+		System.out.println("MapBuilder");
+		final Object strong = new Object();
+		final Map<Integer, Object> weak = MapBuilder.<Object> intMap()
+				.put(1, strong)
+				.weakValues()
+				.put(2, new Object())
+				.build();
+		System.out.println("  before gc: " + weak.size() + " mappings");
+		collect();
+		System.out.println("  after gc: " + weak.size() + " mapping, get(1) is kept " + (weak.get(1) == strong)
+				+ ", entrySet().size() = " + weak.entrySet().size());
+		final Map<Long, String> soft = MapBuilder.<String> longMap()
+				.softValues()
+				.put(1L << 40, "one")
+				.build();
+		System.out.println("  soft: " + soft + ", get(1L << 40) = " + soft.get(1L << 40));
+		try {
+			MapBuilder.<Integer, Object> treeMap().softValues();
+			System.out.println("  treeMap().softValues(): no exception (wrong)");
+		} catch (final UnsupportedOperationException e) {
+			System.out.println("  treeMap().softValues(): " + e.getMessage());
+		}
+		System.out.println("  hashMap().weakKeys(): " + MapBuilder.<Integer, String> hashMap()
+				.put(1, "one")
+				.weakKeys()
+				.build().getClass().getSimpleName());
+
+		System.out.println("LongMap, iterating while values are collected");
+		final ReferenceLongMap<Object> lm = new ReferenceLongMap<Object>(ReferenceStrength.WEAK);
+		final Object[] held = new Object[10];
+		for (int i = 0; i < 20; i++) {
+			final Object value = new Object();
+			lm.put((long) i << 33, value);
+			if (i % 2 == 0) {
+				held[i / 2] = value;
+			}
+		}
+		int seen = 0;
+		for (final Map.Entry<Long, Object> e : lm.asMap().entrySet()) {
+			if (seen++ == 0) {
+				collect();
+			}
+		}
+		System.out.println("  visited " + seen + " entries, expected at least 10; size() = " + lm.size()
+				+ ", expected 10; get(18L << 33) is kept " + (lm.get(18L << 33) == held[9]));
+	}
+
+	private static void collect() throws InterruptedException {
+		System.gc();
+		// give the reference handler time to enqueue the cleared references
+		Thread.sleep(100);
+	}
+}
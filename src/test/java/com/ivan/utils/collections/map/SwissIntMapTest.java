@@ -0,0 +1,94 @@
+package com.ivan.utils.collections.map;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class SwissIntMapTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(41);
+		for (final HashSpreader spreader : HashSpreader.values()) {
+			System.out.println("random put()/remove()/get() against HashMap with " + spreader + " spreading");
+			final SwissIntMap<Integer> m = new SwissIntMap<Integer>(0, spreader);
+			final HashMap<Integer, Integer> ref = new HashMap<Integer, Integer>();
+			int mismatches = 0;
+			for (int i = 0; i < 2000000; i++) {
+				// few distinct keys with many removals, to pile up tombstones
+				final int key = i < 1000000 ? rnd.nextInt(5000) << 12 : rnd.nextInt();
+				switch (rnd.nextInt(6)) {
+				case 0:
+				case 1:
+					mismatches += same(ref.remove(key), m.remove(key));
+					break;
+				case 2:
+					mismatches += same(ref.get(key), m.get(key)) + (ref.containsKey(key) == m.containsKey(key) ? 0 : 1);
+					break;
+				default:
+					mismatches += same(ref.put(key, i), m.put(key, i));
+				}
+			}
+			compare(ref, m, mismatches);
+			m.trimToSize();
+			compare(ref, m, 0);
+		}
+
+		System.out.println("null values, clear(), toString()");
+		final SwissIntMap<String> s = new SwissIntMap<String>();
+		s.put(0, null);
+		s.put(-1, "x");
+		System.out.println("  containsKey(0) " + s.containsKey(0) + ", get(0) " + s.get(0) + ", size() " + s.size()
+				+ ", " + s);
+		s.clear();
+		System.out.println("  after clear(): size() " + s.size() + ", containsKey(-1) " + s.containsKey(-1));
+
+		System.out.println("SwissLongMap with keys that differ only in their high bits");
+		final SwissLongMap<Long> lm = new SwissLongMap<Long>();
+		final HashMap<Long, Long> lref = new HashMap<Long, Long>();
+		int mismatches = 0;
+		for (int i = 0; i < 500000; i++) {
+			final long key = (long) rnd.nextInt(100000) << 40;
+			if (rnd.nextInt(3) == 0) {
+				final Long expected = lref.remove(key);
+				final Long actual = lm.remove(key);
+				mismatches += expected == null ? actual == null ? 0 : 1 : expected.equals(actual) ? 0 : 1;
+			} else {
+				final Long expected = lref.put(key, (long) i);
+				final Long actual = lm.put(key, (long) i);
+				mismatches += expected == null ? actual == null ? 0 : 1 : expected.equals(actual) ? 0 : 1;
+			}
+		}
+		for (final Map.Entry<Long, Long> e : lref.entrySet()) {
+			mismatches += e.getValue().equals(lm.get(e.getKey())) ? 0 : 1;
+		}
+		System.out.println("  size() = " + lm.size() + ", expected " + lref.size() + ", mismatches: " + mismatches);
+	}
+
+	private static void compare(final HashMap<Integer, Integer> ref, final SwissIntMap<Integer> m, int mismatches) {
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			mismatches += same(e.getValue(), m.get(e.getKey()));
+		}
+		final int[] keys = m.keys();
+		final int[] expected = new int[ref.size()];
+		int i = 0;
+		for (final int key : ref.keySet()) {
+			expected[i++] = key;
+		}
+		Arrays.sort(keys);
+		Arrays.sort(expected);
+		final int[] seen = new int[1];
+		m.forEach(new IntObjectProcedure<Integer>() {
+			@Override
+			public void apply(final int key, final Integer value) {
+				seen[0]++;
+			}
+		});
+		System.out.println("  size() = " + m.size() + ", expected " + ref.size() + "; keys() "
+				+ (Arrays.equals(keys, expected) ? "ok" : "WRONG") + "; forEach() " + (seen[0] == ref.size() ? "ok" : "WRONG")
+				+ "; mismatches: " + mismatches);
+	}
+
+	private static int same(final Integer expected, final Integer actual) {
+		return expected == null ? actual == null ? 0 : 1 : expected.equals(actual) ? 0 : 1;
+	}
+}
@@ -5,8 +5,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
 
-import com.ivan.utils.collections.map.IntMap;
-import com.ivan.utils.collections.map.LongMap;
+import com.ivan.utils.collections.map.IntIntMap;
+import com.ivan.utils.collections.map.LongIntMap;
+import com.ivan.utils.collections.map.LongLruCache;
 
 @SuppressWarnings("unused")
 public class CollatzDepth {
@@ -14,11 +15,15 @@ public class CollatzDepth {
 
 	static BigInteger three = BigInteger.valueOf(3);
 
-	static IntMap<Integer> intCache = new IntMap<Integer>();
+	// depths are always positive, so the default no value (0) means "not cached"
+	static IntIntMap intCache = new IntIntMap();
 
-	static LongMap<Integer> longCache = new LongMap<Integer>();
+	static LongIntMap longCache = new LongIntMap();
 	static Map<Long, Integer> weakLongCache = new WeakHashMap<Long, Integer>();
 
+	// bounded, so the long run no longer grows until the heap is exhausted
+	static LongLruCache<Integer> lruLongCache = new LongLruCache<Integer>(1 << 20);
+
 	static Map<BigInteger, Long> bigintCache = new HashMap<BigInteger, Long>();
 
 	private static long collatzDepth(final BigInteger nn) throws IllegalArgumentException {
@@ -51,7 +56,7 @@ public class CollatzDepth {
 			throw new IllegalArgumentException("n must be >= 1");
 		}
 		{
-			final Integer cachedDepth = weakLongCache.get(n);
+			final Integer cachedDepth = lruLongCache.get(n);
 			if (cachedDepth != null) {
 				return cachedDepth;
 			}
@@ -66,15 +71,15 @@ public class CollatzDepth {
 			if (nn < 0) {
 				throw new ArithmeticException("Overflow");
 			}
-			final Integer cachedDepth = weakLongCache.get(nn);
+			final Integer cachedDepth = lruLongCache.get(nn);
 			if (cachedDepth != null) {
 				depth += cachedDepth;
-				weakLongCache.put(n, depth);
+				lruLongCache.put(n, depth);
 				return depth;
 			}
 			depth++;
 		}
-		weakLongCache.put(n, depth);
+		lruLongCache.put(n, depth);
 		return depth;
 	}
 
@@ -83,8 +88,9 @@ public class CollatzDepth {
 		if (n < 1) {
 			throw new IllegalArgumentException("n must be >= 1");
 		}
-		if (intCache.get(n) != null) {
-			return intCache.get(n);
+		final int cachedDepth = intCache.get(n);
+		if (cachedDepth != 0) {
+			return cachedDepth;
 		}
 		int depth = 1;
 		while (n != 1) {
@@ -96,8 +102,9 @@ public class CollatzDepth {
 			if (n < 0) {
 				throw new ArithmeticException("Overflow");
 			}
-			if (intCache.get(n) != null) {
-				return depth + intCache.get(n);
+			final int cached = intCache.get(n);
+			if (cached != 0) {
+				return depth + cached;
 			}
 			depth++;
 		}
@@ -117,5 +124,6 @@ public class CollatzDepth {
 				System.out.println(i + " : " + depth);
 			}
 		}
+		System.out.println("cache hit rate: " + lruLongCache.hitRate() + ", evictions: " + lruLongCache.evictionCount());
 	}
 }
@@ -0,0 +1,141 @@
+package com.ivan.utils.space.kdtree;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.ivan.utils.math.geometry.Point3D;
+
+public class DoubleKdTreeTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(42);
+
+		System.out.println("DoubleKdTree against a linear scan");
+		final int n = 50000;
+		final double[] xs = new double[n];
+		final double[] ys = new double[n];
+		final double[] zs = new double[n];
+		final double[] interleaved = new double[n * 3];
+		for (int i = 0; i < n; i++) {
+			xs[i] = interleaved[i * 3] = rnd.nextDouble();
+			ys[i] = interleaved[i * 3 + 1] = rnd.nextDouble();
+			// a coarse axis, so that many points share the splitting coordinate
+			zs[i] = interleaved[i * 3 + 2] = rnd.nextInt(8) / 8.0;
+		}
+		final DoubleKdTree soa = DoubleKdTree.build(xs, ys, zs);
+		final DoubleKdTree.Query q = soa.query();
+		final DoubleKdTree.Query qi = DoubleKdTree.buildInterleaved(interleaved, 3).query();
+		boolean ok = true;
+		for (int t = 0; t < 300; t++) {
+			final double[] p = { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() };
+			final double[] d = new double[n];
+			for (int i = 0; i < n; i++) {
+				d[i] = sq(xs[i] - p[0]) + sq(ys[i] - p[1]) + sq(zs[i] - p[2]);
+			}
+			final double[] sorted = d.clone();
+			Arrays.sort(sorted);
+			ok &= q.findNearest(p, 12) == 12 && qi.findNearest(p, 12) == 12;
+			for (int j = 0; j < 12; j++) {
+				ok &= q.squaredDistance(j) == sorted[j] && d[q.get(j)] == sorted[j] && d[qi.get(j)] == sorted[j];
+			}
+
+			final double r = rnd.nextDouble() * 0.1;
+			int inSphere = 0;
+			int inBox = 0;
+			for (int i = 0; i < n; i++) {
+				inSphere += d[i] <= r * r ? 1 : 0;
+				inBox += Math.abs(xs[i] - p[0]) <= r && Math.abs(ys[i] - p[1]) <= r && Math.abs(zs[i] - p[2]) <= r ? 1 : 0;
+			}
+			final double[] min = { p[0] - r, p[1] - r, p[2] - r };
+			final double[] max = { p[0] + r, p[1] + r, p[2] + r };
+			final int[] visited = new int[1];
+			ok &= soa.findWithinRadius(p, r, new KdTreeIndexVisitor() {
+				@Override
+				public void visit(final int index) {
+					visited[0] += sq(xs[index] - p[0]) + sq(ys[index] - p[1]) + sq(zs[index] - p[2]) <= r * r ? 1 : 0;
+				}
+			}) == inSphere && visited[0] == inSphere;
+			ok &= soa.countInBox(min, max) == inBox;
+		}
+		System.out.println("  300 searches for 12 points, spheres and boxes match: " + ok);
+		System.out.println("  findNearest(xs[7], ys[7], zs[7]) = " + soa.findNearest(xs[7], ys[7], zs[7])
+				+ ", expected 7; empty tree: " + DoubleKdTree.build(new double[0], new double[0]).findNearest(0, 0));
+		try {
+			DoubleKdTree.build(new double[2], new double[3]);
+			System.out.println("  build() with different lengths: no exception (wrong)");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  build() with different lengths: " + e.getMessage());
+		}
+
+		System.out.println("FloatKdTree");
+		final float[] fx = new float[n];
+		final float[] fy = new float[n];
+		for (int i = 0; i < n; i++) {
+			fx[i] = (float) xs[i];
+			fy[i] = (float) ys[i];
+		}
+		final FloatKdTree ft = FloatKdTree.build(fx, fy);
+		final FloatKdTree.Query fq = ft.query();
+		boolean fok = true;
+		for (int t = 0; t < 300; t++) {
+			final float[] p = { rnd.nextFloat(), rnd.nextFloat() };
+			float best = Float.MAX_VALUE;
+			for (int i = 0; i < n; i++) {
+				final float dx = fx[i] - p[0];
+				final float dy = fy[i] - p[1];
+				best = Math.min(best, dx * dx + dy * dy);
+			}
+			fok &= fq.findNearest(p, 1) == 1 && fq.squaredDistance(0) == best;
+		}
+		System.out.println("  300 searches for the nearest point match: " + fok + "; countInBox() of the unit square = "
+				+ ft.countInBox(new float[] { 0, 0 }, new float[] { 1, 1 }));
+
+		System.out.println("1000000 points: DoubleKdTree against KdTree<Point3D>");
+		final int m = 1000000;
+		final double[][] axes = new double[3][m];
+		final Point3D[] points = new Point3D[m];
+		for (int i = 0; i < m; i++) {
+			points[i] = new Point3D(axes[0][i] = rnd.nextDouble(), axes[1][i] = rnd.nextDouble(),
+					axes[2][i] = rnd.nextDouble());
+		}
+		final double[][] queries = new double[1 << 16][];
+		final Point3D[] queryPoints = new Point3D[queries.length];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() };
+			queryPoints[i] = new Point3D(queries[i][0], queries[i][1], queries[i][2]);
+		}
+		for (int round = 0; round < 2; round++) {
+			long time = System.nanoTime();
+			final DoubleKdTree primitive = DoubleKdTree.build(axes);
+			final long primitiveBuild = System.nanoTime() - time;
+			time = System.nanoTime();
+			final KdTree<Point3D> objects = KdTree.build(points);
+			final long objectBuild = System.nanoTime() - time;
+
+			final DoubleKdTree.Query pq = primitive.query();
+			final KdTree<Point3D>.Query oq = objects.query();
+			final double[] farthest = new double[queries.length];
+			time = System.nanoTime();
+			for (int i = 0; i < queries.length; i++) {
+				pq.findNearest(queries[i], 10);
+				farthest[i] = pq.squaredDistance(9);
+			}
+			final long primitiveSearch = System.nanoTime() - time;
+			time = System.nanoTime();
+			boolean same = true;
+			for (int i = 0; i < queries.length; i++) {
+				oq.findNearest(queryPoints[i], 10);
+				same &= farthest[i] == oq.squaredDistance(9);
+			}
+			final long objectSearch = System.nanoTime() - time;
+			if (round == 1) {
+				System.out.printf("  build: %d ms against %d ms; 10 nearest: %d ns against %d ns per search (same results: %s)%n",
+						primitiveBuild / 1000000, objectBuild / 1000000, primitiveSearch / queries.length, objectSearch
+								/ queries.length, same);
+			}
+		}
+	}
+
+	private static double sq(final double d) {
+		return d * d;
+	}
+}
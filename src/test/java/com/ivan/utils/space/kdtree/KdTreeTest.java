@@ -0,0 +1,342 @@
+package com.ivan.utils.space.kdtree;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.ivan.utils.math.geometry.Point3D;
+
+public class KdTreeTest {
+	public static void main(final String[] args) {
+		final Random rnd = new Random(42);
+
+		System.out.println("findNearest() against a linear scan");
+		final Point3D[] points = randomPoints(rnd, 20000);
+		final KdTree<Point3D> tree = KdTree.build(points);
+		boolean ok = true;
+		for (int i = 0; i < 500; i++) {
+			final Point3D query = randomPoint(rnd);
+			ok &= sameDistances(tree.findNearest(query, 10), linearNearest(points, points.length, query, 10), query);
+		}
+		System.out.println("  k = 10, 500 queries match: " + ok);
+
+		System.out.println("Query context");
+		final KdTree<Point3D>.Query q = tree.query();
+		final Point3D[] queries = randomPoints(rnd, 10000);
+		boolean same = true;
+		for (int i = 0; i < 200; i++) {
+			final List<Point3D> expected = linearNearest(points, points.length, queries[i], 20);
+			same &= q.findNearest(queries[i], 20) == 20;
+			for (int j = 0; j < 20; j++) {
+				same &= q.squaredDistance(j) == dist(expected.get(j), queries[i]) && dist(q.get(j), queries[i]) == q.squaredDistance(j);
+			}
+		}
+		System.out.println("  findNearest(query, 20) matches a linear scan: " + same);
+		searchAll(q, queries);
+		// reading the counter allocates too
+		final long overhead = -allocatedBytes() + allocatedBytes();
+		final long before = allocatedBytes();
+		final double checksum = searchAll(q, queries);
+		final long searchBytes = allocatedBytes() - before - overhead;
+		System.out.println("  bytes allocated by 10000 searches for 16 points: " + searchBytes + " (checksum " + checksum
+				+ ")");
+		try {
+			q.get(16);
+			System.out.println("  get(16): no exception (wrong)");
+		} catch (final IndexOutOfBoundsException e) {
+			System.out.println("  get(16): " + e.getMessage());
+		}
+		System.out.println("  findNearest(query, 30000) on 20000 points finds " + q.findNearest(queries[0], 30000));
+
+		System.out.println("add(), remove() and contains()");
+		final List<Point3D> live = new ArrayList<Point3D>(Arrays.asList(points));
+		for (int i = 0; i < 5000; i++) {
+			if (rnd.nextInt(3) == 0) {
+				final Point3D p = live.remove(rnd.nextInt(live.size()));
+				ok &= tree.remove(p) && !tree.contains(p);
+			} else {
+				final Point3D p = randomPoint(rnd);
+				live.add(p);
+				ok &= tree.add(p) && tree.contains(p);
+			}
+		}
+		final Point3D[] remaining = live.toArray(new Point3D[live.size()]);
+		for (int i = 0; i < 200; i++) {
+			final Point3D query = randomPoint(rnd);
+			ok &= sameDistances(tree.findNearest(query, 5), linearNearest(remaining, remaining.length, query, 5), query);
+		}
+		System.out.println("  size() = " + tree.size() + ", expected " + live.size() + "; queries match: " + ok);
+
+		System.out.println("findWithinRadius() and findInBox() against a linear scan, after add() and remove()");
+		final List<Point3D> visited = new ArrayList<Point3D>();
+		final KdTreeVisitor<Point3D> collector = new KdTreeVisitor<Point3D>() {
+			@Override
+			public void visit(final Point3D point) {
+				visited.add(point);
+			}
+		};
+		boolean ranges = true;
+		for (int i = 0; i < 200; i++) {
+			final Point3D center = randomPoint(rnd);
+			final double radius = rnd.nextDouble() * 0.2;
+			int expected = 0;
+			for (final Point3D p : remaining) {
+				expected += dist(p, center) <= radius * radius ? 1 : 0;
+			}
+			visited.clear();
+			ranges &= tree.findWithinRadius(center, radius, collector) == expected && visited.size() == expected
+					&& tree.countWithinRadius(center, radius) == expected;
+			for (final Point3D p : visited) {
+				ranges &= dist(p, center) <= radius * radius;
+			}
+
+			final Point3D min = randomPoint(rnd);
+			final Point3D max = new Point3D(min.x + rnd.nextDouble() * 0.3, min.y + rnd.nextDouble() * 0.3, min.z
+					+ rnd.nextDouble() * 0.3);
+			expected = 0;
+			for (final Point3D p : remaining) {
+				expected += inBox(p, min, max) ? 1 : 0;
+			}
+			visited.clear();
+			ranges &= tree.findInBox(min, max, collector) == expected && visited.size() == expected
+					&& tree.countInBox(min, max) == expected;
+			for (final Point3D p : visited) {
+				ranges &= inBox(p, min, max);
+			}
+		}
+		System.out.println("  200 spheres and 200 boxes match: " + ranges);
+		System.out.println("  countInBox() of the unit cube = " + tree.countInBox(new Point3D(0, 0, 0), new Point3D(1, 1, 1))
+				+ ", expected " + remaining.length + "; countWithinRadius(p, 0) of a point of the tree = "
+				+ tree.countWithinRadius(remaining[0], 0));
+		try {
+			tree.countWithinRadius(remaining[0], -1);
+			System.out.println("  countWithinRadius(p, -1): no exception (wrong)");
+		} catch (final IllegalArgumentException e) {
+			System.out.println("  countWithinRadius(p, -1): " + e.getMessage());
+		}
+
+		System.out.println("duplicate coordinates");
+		final List<Point3D> grid = new ArrayList<Point3D>();
+		for (int i = 0; i < 4000; i++) {
+			grid.add(new Point3D(rnd.nextInt(4), rnd.nextInt(4), rnd.nextInt(4)));
+		}
+		final KdTree<Point3D> gridTree = KdTree.build(grid);
+		boolean found = true;
+		for (final Point3D p : grid) {
+			found &= gridTree.contains(p);
+		}
+		int onGrid = 0;
+		for (final Point3D p : grid) {
+			onGrid += p.x == 1 && p.y >= 2 ? 1 : 0;
+		}
+		System.out.println("  countInBox((1, 2, 0), (1, 3, 3)) = " + gridTree.countInBox(new Point3D(1, 2, 0), new Point3D(1,
+				3, 3)) + ", expected " + onGrid);
+		System.out.println("  build(Collection) contains every point: " + found + ", findNearest(1.1, 2.9, 0.2) = "
+				+ gridTree.findNearest(new Point3D(1.1, 2.9, 0.2)));
+		System.out.println("  empty tree: findNearest() = " + KdTree.build(new Point3D[0]).findNearest(new Point3D()));
+
+		System.out.println("build(points, pool) and findNearestAll()");
+		final Point3D[] many = randomPoints(rnd, 300000);
+		final Point3D[] batch = randomPoints(rnd, 20000);
+		final ForkJoinPool four = new ForkJoinPool(4);
+		final KdTree<Point3D> parallelTree = KdTree.build(many, four);
+		final KdTree<Point3D>.Query sequential = KdTree.build(many).query();
+		final List<List<Point3D>> all = parallelTree.findNearestAll(batch, 8, four);
+		boolean parallelOk = all.size() == batch.length;
+		for (int i = 0; i < batch.length && parallelOk; i++) {
+			final List<Point3D> nearest = all.get(i);
+			parallelOk &= sequential.findNearest(batch[i], 8) == nearest.size();
+			for (int j = 0; j < nearest.size(); j++) {
+				parallelOk &= sequential.squaredDistance(j) == dist(nearest.get(j), batch[i]);
+			}
+		}
+		four.shutdown();
+		System.out.println("  4 threads, 20000 queries match the sequential tree: " + parallelOk
+				+ "; without a pool, findNearestAll() finds " + parallelTree.findNearestAll(batch, 8, null).get(0).size());
+
+		System.out.println("scaling on 1000000 points and 200000 queries for 10 points ("
+				+ Runtime.getRuntime().availableProcessors() + " processors)");
+		final Point3D[] large = randomPoints(rnd, 1000000);
+		final Point3D[] queryBatch = randomPoints(rnd, 200000);
+		final int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2, maxThreads)
+				: threads + 1) {
+			final ForkJoinPool pool = new ForkJoinPool(threads);
+			// warm up
+			KdTree.build(Arrays.copyOf(large, 100000), pool).findNearestAll(Arrays.copyOf(queryBatch, 10000), 10, pool);
+			long time = System.nanoTime();
+			final KdTree<Point3D> t = KdTree.build(large, pool);
+			final long buildTime = System.nanoTime() - time;
+			time = System.nanoTime();
+			t.findNearestAll(queryBatch, 10, pool);
+			time = System.nanoTime() - time;
+			pool.shutdown();
+			System.out.printf("  %2d threads: build %5d ms, findNearestAll %5d ms%n", threads, buildTime / 1000000,
+					time / 1000000);
+		}
+
+		System.out.println("build time and memory against the previous tree (sorting, node objects)");
+		for (final int n : new int[] { 100000, 1000000 }) {
+			final Point3D[] input = randomPoints(rnd, n);
+			// warm up both builders
+			for (int i = 0; i < 3; i++) {
+				KdTree.build(Arrays.copyOf(input, 10000));
+				LegacyKdTree.build(Arrays.copyOf(input, 10000));
+			}
+			long retained = usedHeap();
+			long allocated = allocatedBytes();
+			long time = System.nanoTime();
+			Object built = KdTree.build(input);
+			time = System.nanoTime() - time;
+			allocated = allocatedBytes() - allocated;
+			retained = usedHeap() - retained;
+			System.out.printf("  %8d points, implicit: %6d ms, %5d MB allocated, %5d MB retained%n", n, time / 1000000,
+					allocated >> 20, retained >> 20);
+			built.hashCode();
+			built = null;
+			final Point3D[] copy = input.clone();
+			retained = usedHeap();
+			allocated = allocatedBytes();
+			time = System.nanoTime();
+			built = LegacyKdTree.build(copy);
+			time = System.nanoTime() - time;
+			allocated = allocatedBytes() - allocated;
+			retained = usedHeap() - retained;
+			System.out.printf("  %8d points, previous: %6d ms, %5d MB allocated, %5d MB retained%n", n, time / 1000000,
+					allocated >> 20, retained >> 20);
+			built.hashCode();
+		}
+	}
+
+	private static double searchAll(final KdTree<Point3D>.Query q, final Point3D[] queries) {
+		double sum = 0;
+		for (final Point3D query : queries) {
+			sum += q.squaredDistance(q.findNearest(query, 16) - 1);
+		}
+		return sum;
+	}
+
+	static Point3D randomPoint(final Random rnd) {
+		return new Point3D(rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble());
+	}
+
+	static Point3D[] randomPoints(final Random rnd, final int n) {
+		final Point3D[] points = new Point3D[n];
+		for (int i = 0; i < n; i++) {
+			points[i] = randomPoint(rnd);
+		}
+		return points;
+	}
+
+	static double dist(final Point3D a, final Point3D b) {
+		final double dx = a.x - b.x;
+		final double dy = a.y - b.y;
+		final double dz = a.z - b.z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	static boolean inBox(final Point3D p, final Point3D min, final Point3D max) {
+		return p.x >= min.x && p.x <= max.x && p.y >= min.y && p.y <= max.y && p.z >= min.z && p.z <= max.z;
+	}
+
+	static List<Point3D> linearNearest(final Point3D[] points, final int n, final Point3D query, final int count) {
+		final Point3D[] sorted = Arrays.copyOf(points, n);
+		Arrays.sort(sorted, new Comparator<Point3D>() {
+			@Override
+			public int compare(final Point3D o1, final Point3D o2) {
+				return Double.compare(dist(o1, query), dist(o2, query));
+			}
+		});
+		return Arrays.asList(Arrays.copyOf(sorted, Math.min(count, n)));
+	}
+
+	/**
+	 * Compares the distances only, as points at the same distance may be
+	 * returned in any order.
+	 */
+	static boolean sameDistances(final Collection<Point3D> actual, final List<Point3D> expected, final Point3D query) {
+		if (actual.size() != expected.size()) {
+			return false;
+		}
+		int i = 0;
+		for (final Point3D p : actual) {
+			if (dist(p, query) != dist(expected.get(i++), query)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long usedHeap() {
+		final Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * The construction of the previous tree: the points are sorted on the axis
+	 * at every level and both halves are copied, and each point gets a node.
+	 */
+	static final class LegacyKdTree {
+		final Node root;
+
+		private LegacyKdTree(final Point3D[] points) {
+			root = createNode(points, 0);
+		}
+
+		static LegacyKdTree build(final Point3D[] points) {
+			return new LegacyKdTree(points);
+		}
+
+		private static Node createNode(final Point3D[] points, final int depth) {
+			if (points.length == 0) {
+				return null;
+			}
+			final int axis = depth % 3;
+			Arrays.sort(points, new Comparator<Point3D>() {
+				@Override
+				public int compare(final Point3D o1, final Point3D o2) {
+					final double a1 = o1.get(axis);
+					final double a2 = o2.get(axis);
+					return a1 > a2 ? 1 : a1 < a2 ? -1 : 0;
+				}
+			});
+			final int medianIndex = points.length / 2;
+			final Node node = new Node(depth, points[medianIndex]);
+			node.lesser = createNode(Arrays.copyOfRange(points, 0, medianIndex), depth + 1);
+			node.greater = createNode(Arrays.copyOfRange(points, medianIndex + 1, points.length), depth + 1);
+			if (node.lesser != null) {
+				node.lesser.parent = node;
+			}
+			if (node.greater != null) {
+				node.greater.parent = node;
+			}
+			return node;
+		}
+
+		static final class Node {
+			final int depth;
+
+			final Point3D point;
+
+			Node lesser, greater, parent;
+
+			Node(final int depth, final Point3D point) {
+				this.depth = depth;
+				this.point = point;
+			}
+		}
+	}
+}